@@ -16,33 +16,70 @@
 
 package com.github.nodeepshit;
 
+import com.github.nodeepshit.model.OverflowPolicy;
 import com.github.nodeepshit.model.TraceLevel;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Lynx configuration parameters used to open main activity. All the configuration library is
  * provided by library clients using this class. With LynxConfig you can privde different values
  * for:
  *
- * - Max number of traces to show in LynxView.
+ * - Max number of traces to show in LynxView and max bytes taken by them.
+ * - History of the traces discarded kept in disk and max bytes taken by it.
+ * - Journal of the traces ingested, replayed as the previous session on the next launch, and max
+ *   bytes taken by it. Applied when Lynx starts reading.
  * - Filter used to get a list of traces to show.
  * - Text size in DP used to render a trace.
  * - Sampling rate used to read from the Logcat output.
+ * - Background thread used to filter traces logged with Logdog and the bound of its queue. Both
+ *   are applied when Lynx starts reading.
+ * - Overflow policy used when traces arrive faster than they are notified.
+ * - Collapse of consecutive identical traces into one row with a repeat count.
+ * - Logcat reading, applied when Lynx starts reading, and the tags, process, start time and output
+ *   format passed to the logcat command.
  *
  * @author Pedro Vicente Gomez Sanchez.
  */
 public class LynxConfig implements Serializable, Cloneable {
   private static final long serialVersionUID = 293939299388293L;
 
+  public static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+
   private static final float DEFAULT_TEXT_SIZE_IN_PX = 36;
+  private static final int DEFAULT_DISPATCH_QUEUE_SIZE = 1024;
+  private static final float DEFAULT_OVERFLOW_SAMPLING_PROBABILITY = 0.1f;
+  private static final long DEFAULT_OVERFLOW_TIMEOUT_IN_MILLIS = 100;
+  private static final long DEFAULT_MAX_BYTES_OF_DISK_HISTORY = 32 * 1024 * 1024;
+  private static final long DEFAULT_MAX_BYTES_OF_SESSION_JOURNAL = 4 * 1024 * 1024;
 
   private int maxNumberOfTracesToShow = 2500;
+  private long maxBytesOfTracesToShow = UNLIMITED_BYTES;
+  private boolean diskHistory;
+  private long maxBytesOfDiskHistory = DEFAULT_MAX_BYTES_OF_DISK_HISTORY;
+  private boolean sessionJournal;
+  private long maxBytesOfSessionJournal = DEFAULT_MAX_BYTES_OF_SESSION_JOURNAL;
   private String filter;
   private TraceLevel filterTraceLevel;
   private Float textSizeInPx;
   private int samplingRate = 150;
   private boolean focusable = true;
+  private boolean dispatchOnBackgroundThread;
+  private int dispatchQueueSize = DEFAULT_DISPATCH_QUEUE_SIZE;
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+  private float overflowSamplingProbability = DEFAULT_OVERFLOW_SAMPLING_PROBABILITY;
+  private long overflowTimeoutInMillis = DEFAULT_OVERFLOW_TIMEOUT_IN_MILLIS;
+  private boolean collapseDuplicates;
+  private boolean readLogcat;
+  private ArrayList<String> logcatTags = new ArrayList<>();
+  private boolean logcatOwnProcessOnly;
+  private boolean logcatStartFromNow;
+  private boolean logcatBinary;
 
   public LynxConfig() {
     filter = "";
@@ -59,6 +96,70 @@ public class LynxConfig implements Serializable, Cloneable {
     return this;
   }
 
+  /**
+   * Configures the max number of bytes taken by the traces kept to show in LynxView, the UTF-8
+   * message and the fields of every trace and the search index of their messages. The oldest
+   * traces are discarded until both this limit and the max number of traces are respected.
+   * UNLIMITED_BYTES by default.
+   */
+  public LynxConfig setMaxBytesOfTracesToShow(long maxBytesOfTracesToShow) {
+    if (maxBytesOfTracesToShow <= 0) {
+      throw new IllegalArgumentException(
+          "You can't use a max number of bytes equals or lower than zero.");
+    }
+
+    this.maxBytesOfTracesToShow = maxBytesOfTracesToShow;
+    return this;
+  }
+
+  /**
+   * Keeps the traces discarded from LynxView in files of the application cache directory, so the
+   * user can scroll back to them. The files are deleted when the view is created again.
+   */
+  public LynxConfig setDiskHistory(boolean diskHistory) {
+    this.diskHistory = diskHistory;
+    return this;
+  }
+
+  /**
+   * Configures the max number of bytes taken by the disk history files, the oldest traces are
+   * deleted once it's exceeded. 32 MB by default.
+   */
+  public LynxConfig setMaxBytesOfDiskHistory(long maxBytesOfDiskHistory) {
+    if (maxBytesOfDiskHistory <= 0) {
+      throw new IllegalArgumentException(
+          "You can't use a max number of bytes equals or lower than zero.");
+    }
+
+    this.maxBytesOfDiskHistory = maxBytesOfDiskHistory;
+    return this;
+  }
+
+  /**
+   * Writes every trace ingested to memory-mapped files of the application cache directory, kept
+   * even if the process crashes. The newest traces of the previous process, up to the max number
+   * of traces to show, are read back on the next launch and can be shown in LynxView as the
+   * previous session.
+   */
+  public LynxConfig setSessionJournal(boolean sessionJournal) {
+    this.sessionJournal = sessionJournal;
+    return this;
+  }
+
+  /**
+   * Configures the max number of bytes taken by the session journal files, the oldest traces are
+   * deleted once it's exceeded. 4 MB by default.
+   */
+  public LynxConfig setMaxBytesOfSessionJournal(long maxBytesOfSessionJournal) {
+    if (maxBytesOfSessionJournal <= 0) {
+      throw new IllegalArgumentException(
+          "You can't use a max number of bytes equals or lower than zero.");
+    }
+
+    this.maxBytesOfSessionJournal = maxBytesOfSessionJournal;
+    return this;
+  }
+
   public LynxConfig setFilter(String filter) {
     if (filter == null) {
       throw new IllegalArgumentException("filter can't be null");
@@ -85,10 +186,148 @@ public class LynxConfig implements Serializable, Cloneable {
     return this;
   }
 
+  /**
+   * Moves filtering, Trace creation and Android log printing out of the threads calling Logdog to
+   * a dedicated background thread. Callers only enqueue the trace.
+   */
+  public LynxConfig setDispatchOnBackgroundThread(boolean dispatchOnBackgroundThread) {
+    this.dispatchOnBackgroundThread = dispatchOnBackgroundThread;
+    return this;
+  }
+
+  /**
+   * Configures the max number of traces waiting for the background thread. Rounded up to the next
+   * power of two.
+   */
+  public LynxConfig setDispatchQueueSize(int dispatchQueueSize) {
+    if (dispatchQueueSize <= 0) {
+      throw new IllegalArgumentException(
+          "You can't use a dispatch queue size equals or lower than zero.");
+    }
+    this.dispatchQueueSize = dispatchQueueSize;
+    return this;
+  }
+
+  /**
+   * Configures what to do with new traces once the number of traces pending to be notified
+   * reaches the max number of traces to show. OverflowPolicy.DROP_OLDEST by default.
+   */
+  public LynxConfig setOverflowPolicy(OverflowPolicy overflowPolicy) {
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("overflowPolicy can't be null");
+    }
+    this.overflowPolicy = overflowPolicy;
+    return this;
+  }
+
+  /**
+   * Configures the probability of keeping a new trace used by OverflowPolicy.SAMPLING.
+   */
+  public LynxConfig setOverflowSamplingProbability(float overflowSamplingProbability) {
+    if (overflowSamplingProbability <= 0 || overflowSamplingProbability > 1) {
+      throw new IllegalArgumentException(
+          "You can't use an overflow sampling probability out of the (0, 1] range.");
+    }
+    this.overflowSamplingProbability = overflowSamplingProbability;
+    return this;
+  }
+
+  /**
+   * Configures the max time a logging thread waits for room when using
+   * OverflowPolicy.BLOCK_WITH_TIMEOUT.
+   */
+  public LynxConfig setOverflowTimeoutInMillis(long overflowTimeoutInMillis) {
+    if (overflowTimeoutInMillis < 0) {
+      throw new IllegalArgumentException(
+          "You can't use a negative overflow timeout.");
+    }
+    this.overflowTimeoutInMillis = overflowTimeoutInMillis;
+    return this;
+  }
+
+  /**
+   * Folds consecutive traces with the same level and message into one trace with a repeat count,
+   * shown with a "\u00d7N" badge.
+   */
+  public LynxConfig setCollapseDuplicates(boolean collapseDuplicates) {
+    this.collapseDuplicates = collapseDuplicates;
+    return this;
+  }
+
+  /**
+   * Shows the traces printed in logcat by other tags along with the traces logged using Logdog.
+   */
+  public LynxConfig setReadLogcat(boolean readLogcat) {
+    this.readLogcat = readLogcat;
+    return this;
+  }
+
+  /**
+   * Configures the only tags read from logcat. Every tag is read if no tag is passed.
+   */
+  public LynxConfig setLogcatTags(String... logcatTags) {
+    for (String tag : logcatTags) {
+      if (tag == null || tag.isEmpty()) {
+        throw new IllegalArgumentException("logcatTags can't contain null or empty tags");
+      }
+    }
+    this.logcatTags = new ArrayList<>(Arrays.asList(logcatTags));
+    return this;
+  }
+
+  /**
+   * Reads only the logcat traces printed by this process. Applied on Android 7.0 and newer, older
+   * versions only show the traces of the process to applications.
+   */
+  public LynxConfig setLogcatOwnProcessOnly(boolean logcatOwnProcessOnly) {
+    this.logcatOwnProcessOnly = logcatOwnProcessOnly;
+    return this;
+  }
+
+  /**
+   * Skips the traces printed in logcat before Lynx starts reading. Applied on Android 5.0 and
+   * newer.
+   */
+  public LynxConfig setLogcatStartFromNow(boolean logcatStartFromNow) {
+    this.logcatStartFromNow = logcatStartFromNow;
+    return this;
+  }
+
+  /**
+   * Reads the binary logcat output, decoded without parsing text lines. Logcat doesn't apply the
+   * tag filters to this output, so more data is piped to the application, and the own process only
+   * mode is applied on every Android version. The text output is read if the device doesn't
+   * support the binary one.
+   */
+  public LynxConfig setLogcatBinary(boolean logcatBinary) {
+    this.logcatBinary = logcatBinary;
+    return this;
+  }
+
   public int getMaxNumberOfTracesToShow() {
     return maxNumberOfTracesToShow;
   }
 
+  public long getMaxBytesOfTracesToShow() {
+    return maxBytesOfTracesToShow;
+  }
+
+  public boolean isDiskHistory() {
+    return diskHistory;
+  }
+
+  public long getMaxBytesOfDiskHistory() {
+    return maxBytesOfDiskHistory;
+  }
+
+  public boolean isSessionJournal() {
+    return sessionJournal;
+  }
+
+  public long getMaxBytesOfSessionJournal() {
+    return maxBytesOfSessionJournal;
+  }
+
   public String getFilter() {
     return filter;
   }
@@ -113,6 +352,50 @@ public class LynxConfig implements Serializable, Cloneable {
     return samplingRate;
   }
 
+  public boolean isDispatchOnBackgroundThread() {
+    return dispatchOnBackgroundThread;
+  }
+
+  public int getDispatchQueueSize() {
+    return dispatchQueueSize;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public float getOverflowSamplingProbability() {
+    return overflowSamplingProbability;
+  }
+
+  public long getOverflowTimeoutInMillis() {
+    return overflowTimeoutInMillis;
+  }
+
+  public boolean isCollapseDuplicates() {
+    return collapseDuplicates;
+  }
+
+  public boolean isReadLogcat() {
+    return readLogcat;
+  }
+
+  public List<String> getLogcatTags() {
+    return Collections.unmodifiableList(logcatTags);
+  }
+
+  public boolean isLogcatOwnProcessOnly() {
+    return logcatOwnProcessOnly;
+  }
+
+  public boolean isLogcatStartFromNow() {
+    return logcatStartFromNow;
+  }
+
+  public boolean isLogcatBinary() {
+    return logcatBinary;
+  }
+
   public boolean isFocusable() {
     return focusable;
   }
@@ -128,7 +411,25 @@ public class LynxConfig implements Serializable, Cloneable {
     LynxConfig that = (LynxConfig) o;
 
     if (maxNumberOfTracesToShow != that.maxNumberOfTracesToShow) return false;
+    if (maxBytesOfTracesToShow != that.maxBytesOfTracesToShow) return false;
+    if (diskHistory != that.diskHistory) return false;
+    if (maxBytesOfDiskHistory != that.maxBytesOfDiskHistory) return false;
+    if (sessionJournal != that.sessionJournal) return false;
+    if (maxBytesOfSessionJournal != that.maxBytesOfSessionJournal) return false;
     if (samplingRate != that.samplingRate) return false;
+    if (dispatchOnBackgroundThread != that.dispatchOnBackgroundThread) return false;
+    if (dispatchQueueSize != that.dispatchQueueSize) return false;
+    if (overflowPolicy != that.overflowPolicy) return false;
+    if (Float.compare(that.overflowSamplingProbability, overflowSamplingProbability) != 0) {
+      return false;
+    }
+    if (overflowTimeoutInMillis != that.overflowTimeoutInMillis) return false;
+    if (collapseDuplicates != that.collapseDuplicates) return false;
+    if (readLogcat != that.readLogcat) return false;
+    if (!logcatTags.equals(that.logcatTags)) return false;
+    if (logcatOwnProcessOnly != that.logcatOwnProcessOnly) return false;
+    if (logcatStartFromNow != that.logcatStartFromNow) return false;
+    if (logcatBinary != that.logcatBinary) return false;
     if (filter != null ? !filter.equals(that.filter) : that.filter != null) return false;
     if (textSizeInPx != null ? !textSizeInPx.equals(that.textSizeInPx)
         : that.textSizeInPx != null) {
@@ -140,23 +441,66 @@ public class LynxConfig implements Serializable, Cloneable {
 
   @Override public int hashCode() {
     int result = maxNumberOfTracesToShow;
+    result = 31 * result + (int) (maxBytesOfTracesToShow ^ (maxBytesOfTracesToShow >>> 32));
+    result = 31 * result + (diskHistory ? 1 : 0);
+    result = 31 * result + (int) (maxBytesOfDiskHistory ^ (maxBytesOfDiskHistory >>> 32));
+    result = 31 * result + (sessionJournal ? 1 : 0);
+    result = 31 * result
+        + (int) (maxBytesOfSessionJournal ^ (maxBytesOfSessionJournal >>> 32));
     result = 31 * result + (filter != null ? filter.hashCode() : 0);
     result = 31 * result + (textSizeInPx != null ? textSizeInPx.hashCode() : 0);
     result = 31 * result + samplingRate;
+    result = 31 * result + (dispatchOnBackgroundThread ? 1 : 0);
+    result = 31 * result + dispatchQueueSize;
+    result = 31 * result + overflowPolicy.hashCode();
+    result = 31 * result + Float.floatToIntBits(overflowSamplingProbability);
+    result = 31 * result + (int) (overflowTimeoutInMillis ^ (overflowTimeoutInMillis >>> 32));
+    result = 31 * result + (collapseDuplicates ? 1 : 0);
+    result = 31 * result + (readLogcat ? 1 : 0);
+    result = 31 * result + logcatTags.hashCode();
+    result = 31 * result + (logcatOwnProcessOnly ? 1 : 0);
+    result = 31 * result + (logcatStartFromNow ? 1 : 0);
+    result = 31 * result + (logcatBinary ? 1 : 0);
     return result;
   }
 
   @Override public Object clone() {
     return new LynxConfig().setMaxNumberOfTracesToShow(getMaxNumberOfTracesToShow())
+        .setMaxBytesOfTracesToShow(maxBytesOfTracesToShow)
+        .setDiskHistory(diskHistory)
+        .setMaxBytesOfDiskHistory(maxBytesOfDiskHistory)
+        .setSessionJournal(sessionJournal)
+        .setMaxBytesOfSessionJournal(maxBytesOfSessionJournal)
         .setFilter(filter)
         .setFilterTraceLevel(filterTraceLevel)
-        .setSamplingRate(getSamplingRate());
+        .setSamplingRate(getSamplingRate())
+        .setDispatchOnBackgroundThread(dispatchOnBackgroundThread)
+        .setDispatchQueueSize(dispatchQueueSize)
+        .setOverflowPolicy(overflowPolicy)
+        .setOverflowSamplingProbability(overflowSamplingProbability)
+        .setOverflowTimeoutInMillis(overflowTimeoutInMillis)
+        .setCollapseDuplicates(collapseDuplicates)
+        .setReadLogcat(readLogcat)
+        .setLogcatTags(logcatTags.toArray(new String[logcatTags.size()]))
+        .setLogcatOwnProcessOnly(logcatOwnProcessOnly)
+        .setLogcatStartFromNow(logcatStartFromNow)
+        .setLogcatBinary(logcatBinary);
   }
 
   @Override public String toString() {
     return "LynxConfig{"
         + "maxNumberOfTracesToShow="
         + maxNumberOfTracesToShow
+        + ", maxBytesOfTracesToShow="
+        + maxBytesOfTracesToShow
+        + ", diskHistory="
+        + diskHistory
+        + ", maxBytesOfDiskHistory="
+        + maxBytesOfDiskHistory
+        + ", sessionJournal="
+        + sessionJournal
+        + ", maxBytesOfSessionJournal="
+        + maxBytesOfSessionJournal
         + ", filter='"
         + filter
         + '\''
@@ -164,6 +508,28 @@ public class LynxConfig implements Serializable, Cloneable {
         + textSizeInPx
         + ", samplingRate="
         + samplingRate
+        + ", dispatchOnBackgroundThread="
+        + dispatchOnBackgroundThread
+        + ", dispatchQueueSize="
+        + dispatchQueueSize
+        + ", overflowPolicy="
+        + overflowPolicy
+        + ", overflowSamplingProbability="
+        + overflowSamplingProbability
+        + ", overflowTimeoutInMillis="
+        + overflowTimeoutInMillis
+        + ", collapseDuplicates="
+        + collapseDuplicates
+        + ", readLogcat="
+        + readLogcat
+        + ", logcatTags="
+        + logcatTags
+        + ", logcatOwnProcessOnly="
+        + logcatOwnProcessOnly
+        + ", logcatStartFromNow="
+        + logcatStartFromNow
+        + ", logcatBinary="
+        + logcatBinary
         + '}';
   }
 }
@@ -0,0 +1,297 @@
+package com.github.nodeepshit;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.RelativeLayout;
+import android.widget.Toast;
+
+import androidx.annotation.CheckResult;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.github.nodeepshit.model.AndroidMainThread;
+import com.github.nodeepshit.model.Logcat;
+import com.github.nodeepshit.model.Logdog;
+import com.github.nodeepshit.model.Lynx;
+import com.github.nodeepshit.model.TimeProvider;
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.presenter.LynxPresenter;
+import com.github.nodeepshit.renderer.TraceRecyclerAdapter;
+import com.pedrogomez.renderers.ListAdapteeCollection;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * RecyclerView based alternative to LynxView. It is configured using the same styleable
+ * attributes and LynxConfig object, but rows are identified by the trace sequence number and
+ * every change reported by LynxPresenter is notified as a range change. This way RecyclerView
+ * only binds the rows affected and keeps the first visible trace in place when the oldest traces
+ * are discarded while the user is reading.
+ */
+public class LynxRecyclerView extends RelativeLayout implements LynxPresenter.View {
+
+  private static final String DISK_HISTORY_DIRECTORY = "lynx-history";
+  private static final String JOURNAL_DIRECTORY = "lynx-journal";
+
+  private LynxPresenter presenter;
+  private LynxConfig lynxConfig;
+
+  private RecyclerView rv_traces;
+  private LinearLayoutManager layoutManager;
+
+  private ListAdapteeCollection<Trace> traces;
+  private TraceRecyclerAdapter adapter;
+  private boolean autoScroll = true;
+
+  public LynxRecyclerView(Context context) {
+    this(context, null);
+  }
+
+  public LynxRecyclerView(Context context, AttributeSet attrs) {
+    this(context, attrs, 0);
+  }
+
+  public LynxRecyclerView(Context context, AttributeSet attrs, int defStyleAttr) {
+    super(context, attrs, defStyleAttr);
+    lynxConfig = LynxView.readLynxConfig(context, attrs);
+    initializePresenter();
+    initializeView();
+  }
+
+  /**
+   * Initializes LynxPresenter if LynxRecyclerView is visible when is attached to the window.
+   */
+  @Override protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    if (isVisible()) {
+      resumePresenter();
+    }
+  }
+
+  /**
+   * Stops LynxPresenter when LynxRecyclerView is detached from the window.
+   */
+  @Override protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    pausePresenter();
+  }
+
+  /**
+   * Initializes or stops LynxPresenter based on visibility changes.
+   */
+  @Override protected void onVisibilityChanged(View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    if (changedView != this) {
+      return;
+    }
+
+    if (visibility == View.VISIBLE) {
+      resumePresenter();
+    } else {
+      pausePresenter();
+    }
+  }
+
+  /**
+   * Given a valid LynxConfig object update all the dependencies to apply this new configuration.
+   *
+   * @param lynxConfig the lynx configuration
+   */
+  public void setLynxConfig(LynxConfig lynxConfig) {
+    validateLynxConfig(lynxConfig);
+    boolean hasChangedLynxConfig = !this.lynxConfig.equals(lynxConfig);
+    if (hasChangedLynxConfig) {
+      boolean hasChangedTextSize = lynxConfig.hasTextSizeInPx()
+          && this.lynxConfig.getTextSizeInPx() != lynxConfig.getTextSizeInPx();
+      this.lynxConfig = (LynxConfig) lynxConfig.clone();
+      if (hasChangedTextSize) {
+        initializeAdapter();
+      }
+      presenter.setLynxConfig(lynxConfig);
+    }
+  }
+
+  /**
+   * Returns the current LynxConfig object used.
+   *
+   * @return the lynx configuration
+   */
+  public LynxConfig getLynxConfig() {
+    return lynxConfig;
+  }
+
+  /**
+   * Shows the traces of the previous session, read back from the session journal if
+   * LynxConfig.isSessionJournal(), instead of the traces of the current one.
+   */
+  public void showPreviousSession() {
+    presenter.showPreviousSession();
+  }
+
+  /**
+   * Shows the traces of the current session again after showPreviousSession.
+   */
+  public void showCurrentSession() {
+    presenter.showCurrentSession();
+  }
+
+  @Override public void showTraces(List<Trace> traces, int removedTraces) {
+    this.traces.clear();
+    this.traces.addAll(traces);
+    adapter.notifyDataSetChanged();
+    scrollToLastTraceIfNeeded();
+  }
+
+  @Override public void appendTraces(List<Trace> traces) {
+    int firstNewPosition = this.traces.size();
+    this.traces.addAll(traces);
+    adapter.notifyItemRangeInserted(firstNewPosition, traces.size());
+    scrollToLastTraceIfNeeded();
+  }
+
+  /**
+   * Inserts older rows at the top, found by the search of a new filter. The layout manager keeps
+   * the rows the user is reading in place.
+   */
+  @Override public void prependTraces(List<Trace> traces) {
+    this.traces.addAll(0, traces);
+    adapter.notifyItemRangeInserted(0, traces.size());
+  }
+
+  /**
+   * Removes the oldest rows. The layout manager anchors the scroll position to the first visible
+   * row still present, so the rows the user is reading don't move.
+   */
+  @Override public void removeFirstTraces(int numberOfTraces) {
+    traces.subList(0, numberOfTraces).clear();
+    adapter.notifyItemRangeRemoved(0, numberOfTraces);
+  }
+
+  @Override public void replaceLastTrace(Trace trace) {
+    int lastPosition = traces.size() - 1;
+    traces.set(lastPosition, trace);
+    adapter.notifyItemChanged(lastPosition);
+  }
+
+  @Override public void clear() {
+    int numberOfTraces = traces.size();
+    traces.clear();
+    adapter.notifyItemRangeRemoved(0, numberOfTraces);
+  }
+
+  @CheckResult
+  @Override public boolean shareTraces(String plainTraces) {
+    return LynxView.shareTraces(getContext(), plainTraces);
+  }
+
+  @Override public void notifyShareTracesFailed() {
+    Toast.makeText(getContext(), "Share failed", Toast.LENGTH_SHORT).show();
+  }
+
+  @Override public void notifyRegexpFilterDisabled() {
+    Toast.makeText(getContext(), "Regular expression too slow, ignored", Toast.LENGTH_LONG).show();
+  }
+
+  @Override public void disableAutoScroll() {
+    autoScroll = false;
+  }
+
+  @Override public void enableAutoScroll() {
+    autoScroll = true;
+  }
+
+  private boolean isPresenterReady() {
+    return presenter != null;
+  }
+
+  private void resumePresenter() {
+    if (isPresenterReady()) {
+      presenter.resume();
+      scrollToLastTraceIfNeeded();
+    }
+  }
+
+  private void pausePresenter() {
+    if (isPresenterReady()) {
+      presenter.pause();
+    }
+  }
+
+  private boolean isVisible() {
+    return getVisibility() == View.VISIBLE;
+  }
+
+  private void initializeView() {
+    LayoutInflater.from(getContext()).inflate(R.layout.lynx_recycler_view, this);
+    rv_traces = (RecyclerView) findViewById(R.id.rv_traces);
+    rv_traces.setFocusable(lynxConfig.isFocusable());
+    rv_traces.setItemAnimator(null);
+    layoutManager = new LinearLayoutManager(getContext());
+    rv_traces.setLayoutManager(layoutManager);
+    initializeAdapter();
+    hookListeners();
+  }
+
+  private void initializeAdapter() {
+    traces = new ListAdapteeCollection<>();
+    traces.addAll(presenter.getCurrentTraces());
+    adapter = new TraceRecyclerAdapter(lynxConfig, traces);
+    rv_traces.setAdapter(adapter);
+  }
+
+  private void hookListeners() {
+    rv_traces.addOnScrollListener(new RecyclerView.OnScrollListener() {
+      @Override public void onScrollStateChanged(@NonNull RecyclerView recyclerView,
+          int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_DRAGGING
+            && !recyclerView.canScrollVertically(-1)) {
+          presenter.onScrollToTop();
+        }
+      }
+
+      @Override public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        int lastVisiblePositionInTheList = layoutManager.findLastVisibleItemPosition() + 1;
+        presenter.onScrollToPosition(lastVisiblePositionInTheList);
+        if (dy < 0 && layoutManager.findFirstVisibleItemPosition() == 0) {
+          presenter.onScrollToTop();
+        }
+      }
+    });
+  }
+
+  private void scrollToLastTraceIfNeeded() {
+    int numberOfTraces = traces.size();
+    if (autoScroll && numberOfTraces > 0) {
+      rv_traces.scrollToPosition(numberOfTraces - 1);
+    }
+  }
+
+  private void initializePresenter() {
+    Lynx lynx = new Lynx(new Logcat(), new Logdog(), new AndroidMainThread(), new TimeProvider());
+    lynx.setConfig(lynxConfig);
+    lynx.setJournalDirectory(new File(getContext().getCacheDir(), JOURNAL_DIRECTORY));
+    lynx.startReading();
+    presenter = new LynxPresenter(lynx, this, lynxConfig.getMaxNumberOfTracesToShow());
+    presenter.setDiskHistoryDirectory(
+        new File(getContext().getCacheDir(), DISK_HISTORY_DIRECTORY));
+  }
+
+  private void validateLynxConfig(LynxConfig lynxConfig) {
+    if (lynxConfig == null) {
+      throw new IllegalArgumentException(
+          "You can't configure Lynx with a null LynxConfig instance.");
+    }
+  }
+
+  /**
+   * Backdoor used to replace the presenter used in this view. This method should be used just for
+   * testing purposes.
+   */
+  void setPresenter(LynxPresenter presenter) {
+    this.presenter = presenter;
+  }
+}
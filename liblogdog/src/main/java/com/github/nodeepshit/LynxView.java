@@ -38,9 +38,11 @@ import com.github.nodeepshit.model.TimeProvider;
 import com.github.nodeepshit.model.Trace;
 import com.github.nodeepshit.presenter.LynxPresenter;
 import com.github.nodeepshit.renderer.TraceRendererBuilder;
+import com.pedrogomez.renderers.ListAdapteeCollection;
 import com.pedrogomez.renderers.RendererAdapter;
 import com.pedrogomez.renderers.RendererBuilder;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -56,14 +58,18 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
   private static final String SHARE_INTENT_TYPE = "text/plain";
   private static final CharSequence SHARE_INTENT_TITLE = "Application Logcat";
   private static final int DEFAULT_POSITION = 0;
+  private static final String DISK_HISTORY_DIRECTORY = "lynx-history";
+  private static final String JOURNAL_DIRECTORY = "lynx-journal";
 
   private LynxPresenter presenter;
   private LynxConfig lynxConfig;
 
   private ListView lv_traces;
 
+  private ListAdapteeCollection<Trace> traces;
   private RendererAdapter<Trace> adapter;
   private int lastScrollPosition;
+  private boolean scrolledByUser;
 
   public LynxView(Context context) {
     this(context, null);
@@ -140,25 +146,75 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
     return lynxConfig;
   }
 
+  /**
+   * Shows the traces of the previous session, read back from the session journal if
+   * LynxConfig.isSessionJournal(), instead of the traces of the current one.
+   */
+  public void showPreviousSession() {
+    presenter.showPreviousSession();
+  }
+
+  /**
+   * Shows the traces of the current session again after showPreviousSession.
+   */
+  public void showCurrentSession() {
+    presenter.showCurrentSession();
+  }
+
   /**
    * Given a {@code List<Trace>} updates the ListView adapter with this information and keeps the
    * scroll position if needed.
    */
   @Override public void showTraces(List<Trace> traces, int removedTraces) {
-    if (lastScrollPosition == 0) {
-      lastScrollPosition = lv_traces.getFirstVisiblePosition();
-    }
-    adapter.clear();
-    adapter.addAll(traces);
+    rememberScrollPosition();
+    this.traces.clear();
+    this.traces.addAll(traces);
     adapter.notifyDataSetChanged();
     updateScrollPosition(removedTraces);
   }
 
+  /**
+   * Adds the new traces at the end of the ListView.
+   */
+  @Override public void appendTraces(List<Trace> traces) {
+    rememberScrollPosition();
+    this.traces.addAll(traces);
+    adapter.notifyDataSetChanged();
+  }
+
+  /**
+   * Adds older traces at the beginning of the ListView keeping the rows the user is reading.
+   */
+  @Override public void prependTraces(List<Trace> traces) {
+    int firstVisiblePosition = lv_traces.getFirstVisiblePosition();
+    this.traces.addAll(0, traces);
+    adapter.notifyDataSetChanged();
+    lv_traces.setSelectionFromTop(firstVisiblePosition + traces.size(), 0);
+  }
+
+  /**
+   * Removes the oldest traces rendered in the ListView and keeps the scroll position if needed.
+   */
+  @Override public void removeFirstTraces(int numberOfTraces) {
+    rememberScrollPosition();
+    traces.subList(0, numberOfTraces).clear();
+    adapter.notifyDataSetChanged();
+    updateScrollPosition(numberOfTraces);
+  }
+
+  /**
+   * Replaces the last trace rendered in the ListView.
+   */
+  @Override public void replaceLastTrace(Trace trace) {
+    traces.set(traces.size() - 1, trace);
+    adapter.notifyDataSetChanged();
+  }
+
   /**
    * Removes all the traces rendered in the ListView.
    */
   @Override public void clear() {
-    adapter.clear();
+    traces.clear();
     adapter.notifyDataSetChanged();
   }
 
@@ -168,28 +224,17 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
    */
   @CheckResult
   @Override public boolean shareTraces(String fullTraces) {
-    try {
-      shareTracesInternal(fullTraces);
-      return true;
-    } catch (RuntimeException exception1) { // Likely cause is a TransactionTooLargeException on API levels 15+.
-      try {
-        /*
-         * Limit trace size to between 100kB and 400kB, since Unicode characters can be 1-4 bytes each.
-         */
-        int fullTracesLength = fullTraces.length();
-        String truncatedTraces = fullTraces.substring(Math.max(0, fullTracesLength - 100000), fullTracesLength);
-        shareTracesInternal(truncatedTraces);
-        return true;
-      } catch (RuntimeException exception2) { // Likely cause is a TransactionTooLargeException on API levels 15+.
-        return false;
-      }
-    }
+    return shareTraces(getContext(), fullTraces);
   }
 
   @Override public void notifyShareTracesFailed() {
     Toast.makeText(getContext(), "Share failed", Toast.LENGTH_SHORT).show();
   }
 
+  @Override public void notifyRegexpFilterDisabled() {
+    Toast.makeText(getContext(), "Regular expression too slow, ignored", Toast.LENGTH_LONG).show();
+  }
+
   @Override public void disableAutoScroll() {
     lv_traces.setTranscriptMode(AbsListView.TRANSCRIPT_MODE_DISABLED);
   }
@@ -221,30 +266,7 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
   }
 
   private void initializeConfiguration(AttributeSet attrs) {
-    lynxConfig = new LynxConfig();
-    if (attrs != null) {
-      TypedArray attributes = getContext().obtainStyledAttributes(attrs, R.styleable.lynx);
-
-      int maxTracesToShow = attributes.getInteger(R.styleable.lynx_max_traces_to_show,
-          lynxConfig.getMaxNumberOfTracesToShow());
-      String filter = attributes.getString(R.styleable.lynx_filter);
-      float fontSizeInPx = attributes.getDimension(R.styleable.lynx_text_size, -1);
-      if (fontSizeInPx != -1) {
-        fontSizeInPx = pixelsToSp(fontSizeInPx);
-        lynxConfig.setTextSizeInPx(fontSizeInPx);
-      }
-      int samplingRate =
-          attributes.getInteger(R.styleable.lynx_sampling_rate, lynxConfig.getSamplingRate());
-
-      lynxConfig.setMaxNumberOfTracesToShow(maxTracesToShow)
-          .setFilter(TextUtils.isEmpty(filter) ? "" : filter)
-          .setSamplingRate(samplingRate);
-
-      boolean focusable = attributes.getBoolean(R.styleable.lynx_focusable, lynxConfig.isFocusable());
-      lynxConfig.setFocusable(focusable);
-
-      attributes.recycle();
-    }
+    lynxConfig = readLynxConfig(getContext(), attrs);
   }
 
   private void initializeView() {
@@ -264,8 +286,9 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
 
   private void initializeRenderers() {
     RendererBuilder<Trace> tracesRendererBuilder = new TraceRendererBuilder(lynxConfig);
-    adapter = new RendererAdapter<>(tracesRendererBuilder);
-    adapter.addAll(presenter.getCurrentTraces());
+    traces = new ListAdapteeCollection<>();
+    traces.addAll(presenter.getCurrentTraces());
+    adapter = new RendererAdapter<>(tracesRendererBuilder, traces);
     if (adapter.getCount() > 0) {
       adapter.notifyDataSetChanged();
     }
@@ -275,7 +298,10 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
   private void hookListeners() {
     lv_traces.setOnScrollListener(new AbsListView.OnScrollListener() {
       @Override public void onScrollStateChanged(AbsListView view, int scrollState) {
-        //Empty
+        scrolledByUser = scrollState != SCROLL_STATE_IDLE;
+        if (scrollState == SCROLL_STATE_TOUCH_SCROLL && !view.canScrollVertically(-1)) {
+          presenter.onScrollToTop();
+        }
       }
 
       @Override public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
@@ -287,6 +313,9 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
         }
         int lastVisiblePositionInTheList = firstVisibleItem + visibleItemCount;
         presenter.onScrollToPosition(lastVisiblePositionInTheList);
+        if (scrolledByUser && firstVisibleItem == 0) {
+          presenter.onScrollToTop();
+        }
       }
     });
   }
@@ -294,8 +323,11 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
   private void initializePresenter() {
     Lynx lynx = new Lynx(new Logcat(), new Logdog(),new AndroidMainThread(), new TimeProvider());
     lynx.setConfig(lynxConfig);
+    lynx.setJournalDirectory(new File(getContext().getCacheDir(), JOURNAL_DIRECTORY));
     lynx.startReading();
     presenter = new LynxPresenter(lynx, this, lynxConfig.getMaxNumberOfTracesToShow());
+    presenter.setDiskHistoryDirectory(
+        new File(getContext().getCacheDir(), DISK_HISTORY_DIRECTORY));
   }
 
   private void validateLynxConfig(LynxConfig lynxConfig) {
@@ -312,9 +344,10 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
     }
   }
 
-  private float pixelsToSp(float px) {
-    float scaledDensity = getContext().getResources().getDisplayMetrics().scaledDensity;
-    return px / scaledDensity;
+  private void rememberScrollPosition() {
+    if (lastScrollPosition == 0) {
+      lastScrollPosition = lv_traces.getFirstVisiblePosition();
+    }
   }
 
   private void updateScrollPosition(int removedTraces) {
@@ -326,11 +359,72 @@ public class LynxView extends RelativeLayout implements LynxPresenter.View {
     }
   }
 
-  private void shareTracesInternal(final String plainTraces) {
+  /**
+   * Creates a LynxConfig object using the styleable attributes configured in the layout. Shared
+   * with LynxRecyclerView.
+   */
+  static LynxConfig readLynxConfig(Context context, AttributeSet attrs) {
+    LynxConfig lynxConfig = new LynxConfig();
+    if (attrs != null) {
+      TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.lynx);
+
+      int maxTracesToShow = attributes.getInteger(R.styleable.lynx_max_traces_to_show,
+          lynxConfig.getMaxNumberOfTracesToShow());
+      String filter = attributes.getString(R.styleable.lynx_filter);
+      float fontSizeInPx = attributes.getDimension(R.styleable.lynx_text_size, -1);
+      if (fontSizeInPx != -1) {
+        fontSizeInPx = pixelsToSp(context, fontSizeInPx);
+        lynxConfig.setTextSizeInPx(fontSizeInPx);
+      }
+      int samplingRate =
+          attributes.getInteger(R.styleable.lynx_sampling_rate, lynxConfig.getSamplingRate());
+
+      lynxConfig.setMaxNumberOfTracesToShow(maxTracesToShow)
+          .setFilter(TextUtils.isEmpty(filter) ? "" : filter)
+          .setSamplingRate(samplingRate);
+
+      boolean focusable = attributes.getBoolean(R.styleable.lynx_focusable, lynxConfig.isFocusable());
+      lynxConfig.setFocusable(focusable);
+
+      attributes.recycle();
+    }
+    return lynxConfig;
+  }
+
+  /**
+   * Uses an intent to share content and given one String with all the information related to the
+   * List of traces shares this information with other applications. Shared with
+   * LynxRecyclerView.
+   */
+  static boolean shareTraces(Context context, String fullTraces) {
+    try {
+      shareTracesInternal(context, fullTraces);
+      return true;
+    } catch (RuntimeException exception1) { // Likely cause is a TransactionTooLargeException on API levels 15+.
+      try {
+        /*
+         * Limit trace size to between 100kB and 400kB, since Unicode characters can be 1-4 bytes each.
+         */
+        int fullTracesLength = fullTraces.length();
+        String truncatedTraces = fullTraces.substring(Math.max(0, fullTracesLength - 100000), fullTracesLength);
+        shareTracesInternal(context, truncatedTraces);
+        return true;
+      } catch (RuntimeException exception2) { // Likely cause is a TransactionTooLargeException on API levels 15+.
+        return false;
+      }
+    }
+  }
+
+  private static void shareTracesInternal(Context context, final String plainTraces) {
     Intent sharingIntent = new Intent(Intent.ACTION_SEND);
     sharingIntent.setType(SHARE_INTENT_TYPE);
     sharingIntent.putExtra(Intent.EXTRA_TEXT, plainTraces);
-    getContext().startActivity(Intent.createChooser(sharingIntent, SHARE_INTENT_TITLE));
+    context.startActivity(Intent.createChooser(sharingIntent, SHARE_INTENT_TITLE));
+  }
+
+  private static float pixelsToSp(Context context, float px) {
+    float scaledDensity = context.getResources().getDisplayMetrics().scaledDensity;
+    return px / scaledDensity;
   }
 
   /**
@@ -36,4 +36,12 @@ public class AndroidMainThread implements MainThread {
   public void post(Runnable runnable) {
     handler.post(runnable);
   }
+
+  public void postDelayed(Runnable runnable, long delayMillis) {
+    handler.postDelayed(runnable, delayMillis);
+  }
+
+  public boolean isCurrentThread() {
+    return Looper.myLooper() == Looper.getMainLooper();
+  }
 }
@@ -0,0 +1,211 @@
+package com.github.nodeepshit.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Parses the output of "logcat -B", a sequence of little endian logger_entry records:
+ * <pre>
+ * uint16 payload length, uint16 header size, int32 pid, int32 tid, int32 sec, int32 nsec, ...
+ * payload: uint8 priority, tag, '\0', message, '\0'
+ * </pre>
+ * The first version of the record has no header size, those 16 bits are padding and the header
+ * is 20 bytes long. Later versions append fields to the header and are read using its size.
+ * <p>
+ * Priority, pid, tid and timestamp are read from a reusable ByteBuffer wrapping the read buffer
+ * and the tag is resolved with a TagCache. The message is only decoded if the entry passes the
+ * TraceFilter and the LogcatCommand filterspecs, logcat doesn't apply them to the binary output.
+ * <p>
+ * The read method has to be invoked from one thread, setFilter, setCommand and stop can be
+ * invoked from any thread.
+ */
+class BinaryLogcatParser {
+
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int PREFIX_SIZE = 4;
+  private static final int V1_HEADER_SIZE = 20;
+  private static final int MAX_HEADER_SIZE = 64;
+  private static final int MIN_PAYLOAD_SIZE = 3;
+  private static final int PID_OFFSET = 4;
+  private static final int TID_OFFSET = 8;
+  private static final int SECONDS_OFFSET = 12;
+  private static final int NANOSECONDS_OFFSET = 16;
+  private static final TraceLevel[] LEVELS_BY_PRIORITY = {
+      TraceLevel.DEBUG, TraceLevel.DEBUG, TraceLevel.VERBOSE, TraceLevel.DEBUG, TraceLevel.INFO,
+      TraceLevel.WARNING, TraceLevel.ERROR, TraceLevel.WTF
+  };
+
+  private final Logcat.Listener listener;
+  private final TagCache tagCache = new TagCache();
+
+  private byte[] buffer;
+  private ByteBuffer entries;
+  private long entriesRead;
+  private volatile TraceFilter filter = TraceFilter.NONE;
+  private volatile LogcatCommand command;
+  private volatile boolean reading;
+
+  BinaryLogcatParser(Logcat.Listener listener, LogcatCommand command) {
+    this(listener, command, DEFAULT_BUFFER_SIZE);
+  }
+
+  BinaryLogcatParser(Logcat.Listener listener, LogcatCommand command, int bufferSize) {
+    this.listener = listener;
+    this.command = command;
+    this.buffer = new byte[bufferSize];
+    this.entries = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  void setFilter(TraceFilter filter) {
+    this.filter = filter;
+  }
+
+  void setCommand(LogcatCommand command) {
+    this.command = command;
+  }
+
+  /**
+   * Returns the number of well formed entries read so far, filtered or not.
+   */
+  long getEntriesRead() {
+    return entriesRead;
+  }
+
+  /**
+   * Reads and parses entries until the end of the stream or until stop is invoked.
+   *
+   * @throws InvalidEntryException if the stream doesn't contain logger_entry records, logcat
+   * printed text because it doesn't support the binary output
+   */
+  void read(InputStream inputStream) throws IOException {
+    reading = true;
+    int end = 0;
+    while (reading) {
+      int read = inputStream.read(buffer, end, buffer.length - end);
+      if (read == -1) {
+        break;
+      }
+      end += read;
+      int consumed = parse(end);
+      end -= consumed;
+      System.arraycopy(buffer, consumed, buffer, 0, end);
+      if (end >= PREFIX_SIZE) {
+        ensureCapacity(getEntrySize(0));
+      }
+    }
+    if (reading && end > 0 && entriesRead == 0) {
+      throw new InvalidEntryException("Incomplete logger_entry of " + end + " bytes");
+    }
+  }
+
+  void stop() {
+    reading = false;
+  }
+
+  /**
+   * Parses every complete entry at the beginning of the buffer.
+   *
+   * @return the number of bytes consumed
+   */
+  private int parse(int end) throws InvalidEntryException {
+    int entryStart = 0;
+    while (end - entryStart >= PREFIX_SIZE) {
+      int entrySize = getEntrySize(entryStart);
+      if (end - entryStart < entrySize) {
+        break;
+      }
+      parseEntry(entryStart, entryStart + getHeaderSize(entryStart), entryStart + entrySize);
+      entriesRead++;
+      entryStart += entrySize;
+    }
+    return entryStart;
+  }
+
+  private int getEntrySize(int entryStart) throws InvalidEntryException {
+    int payloadSize = entries.getShort(entryStart) & 0xFFFF;
+    if (payloadSize < MIN_PAYLOAD_SIZE) {
+      throw new InvalidEntryException("Invalid logger_entry payload size " + payloadSize);
+    }
+    return getHeaderSize(entryStart) + payloadSize;
+  }
+
+  private int getHeaderSize(int entryStart) throws InvalidEntryException {
+    int headerSize = entries.getShort(entryStart + 2) & 0xFFFF;
+    if (headerSize == 0) {
+      return V1_HEADER_SIZE;
+    }
+    if (headerSize < V1_HEADER_SIZE || headerSize > MAX_HEADER_SIZE) {
+      throw new InvalidEntryException("Invalid logger_entry header size " + headerSize);
+    }
+    return headerSize;
+  }
+
+  private void parseEntry(int entryStart, int payloadStart, int entryEnd) {
+    TraceFilter filter = this.filter;
+    int priority = buffer[payloadStart];
+    TraceLevel level = priority >= 0 && priority < LEVELS_BY_PRIORITY.length
+        ? LEVELS_BY_PRIORITY[priority] : TraceLevel.DEBUG;
+    if (!filter.matchesLevel(level)) {
+      return;
+    }
+    int tagStart = payloadStart + 1;
+    int tagEnd = indexOfNul(tagStart, entryEnd);
+    if (tagEnd == -1) {
+      return;
+    }
+    int pid = entries.getInt(entryStart + PID_OFFSET);
+    String tag = tagCache.get(buffer, tagStart, tagEnd);
+    if (!command.accepts(pid, tag)) {
+      return;
+    }
+    int messageStart = tagEnd + 1;
+    int messageEnd = entryEnd;
+    while (messageEnd > messageStart
+        && (buffer[messageEnd - 1] == '\0' || buffer[messageEnd - 1] == '\n')) {
+      messageEnd--;
+    }
+    int matchesMessage = filter.matchesMessage(buffer, messageStart, messageEnd);
+    if (matchesMessage == TraceFilter.NO_MATCH) {
+      return;
+    }
+    String message = new String(buffer, messageStart, messageEnd - messageStart, UTF_8);
+    if (matchesMessage == TraceFilter.UNDECIDED && !filter.matches(level, tag, message)) {
+      return;
+    }
+    long timestamp = (entries.getInt(entryStart + SECONDS_OFFSET) & 0xFFFFFFFFL) * 1000
+        + entries.getInt(entryStart + NANOSECONDS_OFFSET) / 1000000;
+    listener.onTraceRead(level, tag, message, timestamp, entries.getInt(entryStart + TID_OFFSET));
+  }
+
+  private int indexOfNul(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buffer[i] == '\0') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void ensureCapacity(int size) {
+    if (size > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+      entries = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  /**
+   * Thrown when the bytes read can't be a logger_entry record.
+   */
+  static class InvalidEntryException extends IOException {
+
+    InvalidEntryException(String message) {
+      super(message);
+    }
+  }
+}
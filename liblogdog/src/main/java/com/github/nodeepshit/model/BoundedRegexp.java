@@ -0,0 +1,147 @@
+package com.github.nodeepshit.model;
+
+import android.util.Log;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Case insensitive regular expression search with a bounded cost per text, so an expression typed
+ * by the user can't freeze the threads filtering traces.
+ * <p>
+ * Expressions supported by LinearRegexp are searched in linear time. The rest are searched with
+ * java.util.regex over a CharSequence counting the chars read: a search reading more than
+ * STEP_BUDGET chars, or overflowing the stack, is aborted and the expression is disabled: from
+ * then on the texts containing the expression as plain text match, like a filter without regular
+ * expression, and isBudgetExceeded reports it so the view can tell the user.
+ */
+class BoundedRegexp {
+
+  static final int STEP_BUDGET = 100_000;
+
+  private static final String LOGTAG = "Lynx";
+
+  private final LinearRegexp linearRegexp;
+  private final Pattern pattern;
+  private final CaseInsensitiveMatcher literal;
+  private final Runnable onBudgetExceeded;
+  private final ThreadLocal<BudgetedSearch> searches;
+  private volatile boolean budgetExceeded;
+
+  BoundedRegexp(String regexp) {
+    this(regexp, null);
+  }
+
+  /**
+   * @param onBudgetExceeded invoked, if not null, from the thread searching once the expression is
+   *                         disabled
+   * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+   */
+  BoundedRegexp(String regexp, Runnable onBudgetExceeded) {
+    this.pattern = Pattern.compile(regexp, flagsFor(regexp));
+    this.linearRegexp = LinearRegexp.compile(regexp);
+    this.literal = new CaseInsensitiveMatcher(regexp);
+    this.onBudgetExceeded = onBudgetExceeded;
+    this.searches = new ThreadLocal<BudgetedSearch>() {
+      @Override protected BudgetedSearch initialValue() {
+        return new BudgetedSearch(pattern);
+      }
+    };
+  }
+
+  boolean isLinear() {
+    return linearRegexp != null;
+  }
+
+  boolean isBudgetExceeded() {
+    return budgetExceeded;
+  }
+
+  /**
+   * Returns true if any part of the text matches the expression ignoring case. Once a search
+   * exceeded the budget, returns true if the text contains the expression as plain text.
+   */
+  boolean find(String text) {
+    if (linearRegexp != null) {
+      return linearRegexp.find(text);
+    }
+    if (budgetExceeded) {
+      return literal.matches(text);
+    }
+    try {
+      return searches.get().find(text);
+    } catch (BudgetExceededException | StackOverflowError exception) {
+      disable();
+      return literal.matches(text);
+    }
+  }
+
+  private synchronized void disable() {
+    if (budgetExceeded) {
+      return;
+    }
+    budgetExceeded = true;
+    Log.w(LOGTAG, "Regexp filter " + pattern + " disabled, too slow to evaluate.");
+    if (onBudgetExceeded != null) {
+      onBudgetExceeded.run();
+    }
+  }
+
+  /**
+   * Returns the java.util.regex flags ignoring case. UNICODE_CASE, much slower, is only used for
+   * non ASCII expressions.
+   */
+  private static int flagsFor(String regexp) {
+    return LinearRegexp.isUnicodeCase(regexp)
+        ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : Pattern.CASE_INSENSITIVE;
+  }
+
+  private static class BudgetExceededException extends RuntimeException {
+  }
+
+  /**
+   * Matcher reused by a thread over a CharSequence which throws once STEP_BUDGET chars are read.
+   */
+  private static class BudgetedSearch implements CharSequence {
+
+    private static final BudgetExceededException BUDGET_EXCEEDED = new BudgetExceededException();
+
+    private final Matcher matcher;
+    private String text = "";
+    private int steps;
+
+    BudgetedSearch(Pattern pattern) {
+      this.matcher = pattern.matcher(this);
+    }
+
+    boolean find(String text) {
+      this.text = text;
+      this.steps = 0;
+      try {
+        return matcher.reset(this).find();
+      } finally {
+        this.text = "";
+        matcher.reset(this);
+      }
+    }
+
+    @Override public char charAt(int index) {
+      if (++steps > STEP_BUDGET) {
+        throw BUDGET_EXCEEDED;
+      }
+      return text.charAt(index);
+    }
+
+    @Override public int length() {
+      return text.length();
+    }
+
+    @Override public CharSequence subSequence(int start, int end) {
+      return text.subSequence(start, end);
+    }
+
+    @Override public String toString() {
+      return text;
+    }
+  }
+}
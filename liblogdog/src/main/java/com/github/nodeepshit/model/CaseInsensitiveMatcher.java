@@ -0,0 +1,139 @@
+package com.github.nodeepshit.model;
+
+/**
+ * Precompiled case insensitive substring search based on Boyer-Moore-Horspool. The pattern is
+ * folded once, every text char is folded while it's compared, so nothing is allocated per search.
+ * Chars are folded the way String.equalsIgnoreCase compares them, upper case and then lower case,
+ * with a lookup table for ASCII chars.
+ * <p>
+ * The bad character shift table is indexed by the low byte of the folded char. Chars sharing a
+ * slot keep the smallest shift, so the table stays small for any alphabet without skipping
+ * matches.
+ * <p>
+ * ASCII patterns can be searched in UTF-8 encoded bytes too: bytes of multi-byte sequences never
+ * match an ASCII byte.
+ */
+class CaseInsensitiveMatcher {
+
+  private static final int SHIFT_TABLE_SIZE = 256;
+  private static final char[] ASCII_FOLDED = new char[128];
+
+  static {
+    for (char c = 0; c < ASCII_FOLDED.length; c++) {
+      ASCII_FOLDED[c] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+  }
+
+  private final char[] pattern;
+  private final byte[] asciiPattern;
+  private final int[] shifts = new int[SHIFT_TABLE_SIZE];
+
+  CaseInsensitiveMatcher(String pattern) {
+    this.pattern = new char[pattern.length()];
+    boolean ascii = true;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      this.pattern[i] = fold(c);
+      ascii &= c < 0x80;
+    }
+    this.asciiPattern = ascii ? toBytes(this.pattern) : null;
+    int last = this.pattern.length - 1;
+    for (int i = 0; i < shifts.length; i++) {
+      shifts[i] = this.pattern.length;
+    }
+    for (int i = 0; i < last; i++) {
+      shifts[this.pattern[i] & (SHIFT_TABLE_SIZE - 1)] = last - i;
+    }
+  }
+
+  boolean isEmpty() {
+    return pattern.length == 0;
+  }
+
+  /**
+   * Returns true if the pattern is ASCII and can be searched with matches(byte[], int, int).
+   */
+  boolean isAscii() {
+    return asciiPattern != null;
+  }
+
+  /**
+   * Returns true if the text contains the pattern ignoring case.
+   */
+  boolean matches(String text) {
+    int length = pattern.length;
+    if (length == 0) {
+      return true;
+    }
+    int last = length - 1;
+    char lastChar = pattern[last];
+    int end = text.length() - length;
+    int i = 0;
+    while (i <= end) {
+      char c = fold(text.charAt(i + last));
+      if (c == lastChar) {
+        int j = last - 1;
+        while (j >= 0 && fold(text.charAt(i + j)) == pattern[j]) {
+          j--;
+        }
+        if (j < 0) {
+          return true;
+        }
+      }
+      i += shifts[c & (SHIFT_TABLE_SIZE - 1)];
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the UTF-8 encoded text between start (inclusive) and end (exclusive) contains
+   * the pattern ignoring ASCII case. Only valid for ASCII patterns.
+   */
+  boolean matches(byte[] bytes, int start, int end) {
+    byte[] pattern = asciiPattern;
+    int length = pattern.length;
+    if (length == 0) {
+      return true;
+    }
+    int last = length - 1;
+    byte lastByte = pattern[last];
+    int i = start;
+    int lastStart = end - length;
+    while (i <= lastStart) {
+      byte b = fold(bytes[i + last]);
+      if (b == lastByte) {
+        int j = last - 1;
+        while (j >= 0 && fold(bytes[i + j]) == pattern[j]) {
+          j--;
+        }
+        if (j < 0) {
+          return true;
+        }
+      }
+      i += shifts[b & (SHIFT_TABLE_SIZE - 1)];
+    }
+    return false;
+  }
+
+  /**
+   * Folds the char the way String.equalsIgnoreCase compares chars.
+   */
+  static char fold(char c) {
+    if (c < 0x80) {
+      return ASCII_FOLDED[c];
+    }
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  private static byte fold(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+  }
+
+  private static byte[] toBytes(char[] asciiChars) {
+    byte[] bytes = new byte[asciiChars.length];
+    for (int i = 0; i < asciiChars.length; i++) {
+      bytes[i] = (byte) asciiChars[i];
+    }
+    return bytes;
+  }
+}
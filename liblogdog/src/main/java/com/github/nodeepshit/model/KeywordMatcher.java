@@ -0,0 +1,215 @@
+package com.github.nodeepshit.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Aho-Corasick automaton searching any of a set of keywords ignoring case. The keywords are
+ * folded like CaseInsensitiveMatcher does and compiled once to a DFA, so a text is searched in a
+ * single pass with one table lookup per char whatever the number of keywords.
+ * <p>
+ * Only chars used by the keywords get a column in the transition table, every other char shares
+ * the column of chars restarting the search. ASCII chars are mapped to their column with a lookup
+ * table which already folds them, the rest with a binary search over the folded chars used. The
+ * table stores the offset of the target row, or MATCHED for accepting states, so the search loop
+ * is a single lookup and comparison per char.
+ * <p>
+ * ASCII keywords can be searched in UTF-8 encoded bytes too: bytes of multi-byte sequences never
+ * match an ASCII byte.
+ */
+class KeywordMatcher {
+
+  private static final int ASCII = 128;
+  private static final int ROOT = 0;
+  private static final int NO_STATE = -1;
+  private static final int MATCHED = -1;
+  private static final String ALTERNATION = "|";
+
+  private final int[] asciiColumns = new int[ASCII];
+  private final char[] nonAsciiChars;
+  private final int numberOfColumns;
+  private final int[] transitions;
+  private final boolean matchesEverything;
+  private final int numberOfStates;
+
+  KeywordMatcher(Collection<String> keywords) {
+    TreeSet<Character> alphabet = new TreeSet<>();
+    int maxStates = 1;
+    for (String keyword : keywords) {
+      for (int i = 0; i < keyword.length(); i++) {
+        alphabet.add(CaseInsensitiveMatcher.fold(keyword.charAt(i)));
+      }
+      maxStates += keyword.length();
+    }
+    this.numberOfColumns = alphabet.size() + 1;
+    this.nonAsciiChars = mapColumns(alphabet);
+    int[] transitions = new int[maxStates * numberOfColumns];
+    Arrays.fill(transitions, NO_STATE);
+    boolean[] accepting = new boolean[maxStates];
+    int states = 1;
+    for (String keyword : keywords) {
+      int state = ROOT;
+      for (int i = 0; i < keyword.length(); i++) {
+        int transition = state * numberOfColumns + column(keyword.charAt(i));
+        if (transitions[transition] == NO_STATE) {
+          transitions[transition] = states++;
+        }
+        state = transitions[transition];
+      }
+      accepting[state] = true;
+    }
+    this.numberOfStates = states;
+    this.transitions = Arrays.copyOf(transitions, states * numberOfColumns);
+    addFailureTransitions(accepting);
+    this.matchesEverything = accepting[ROOT];
+    for (int i = 0; i < this.transitions.length; i++) {
+      int target = this.transitions[i];
+      this.transitions[i] = accepting[target] ? MATCHED : target * numberOfColumns;
+    }
+  }
+
+  /**
+   * Returns the alternatives of a regular expression made only of literal alternatives, like
+   * "E1001|E1002|timeout", or null if it's any other regular expression.
+   */
+  static List<String> parseLiteralAlternation(String regexp) {
+    if (!regexp.contains(ALTERNATION)
+        || TraceFilter.hasRegexpMetacharacters(regexp.replace(ALTERNATION, ""))) {
+      return null;
+    }
+    return Arrays.asList(regexp.split(Pattern.quote(ALTERNATION), -1));
+  }
+
+  /**
+   * Returns true if every keyword is ASCII and the matcher can search UTF-8 encoded bytes.
+   */
+  boolean isAscii() {
+    return nonAsciiChars.length == 0;
+  }
+
+  int getNumberOfStates() {
+    return numberOfStates;
+  }
+
+  /**
+   * Returns true if the text contains any of the keywords ignoring case.
+   */
+  boolean matches(String text) {
+    if (matchesEverything) {
+      return true;
+    }
+    int row = ROOT;
+    for (int i = 0; i < text.length(); i++) {
+      row = transitions[row + column(text.charAt(i))];
+      if (row == MATCHED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the UTF-8 encoded text between start (inclusive) and end (exclusive) contains
+   * any of the keywords ignoring ASCII case. Only valid for ASCII keywords.
+   */
+  boolean matches(byte[] bytes, int start, int end) {
+    if (matchesEverything) {
+      return true;
+    }
+    int row = ROOT;
+    for (int i = start; i < end; i++) {
+      int b = bytes[i];
+      row = transitions[row + (b < 0 ? 0 : asciiColumns[b])];
+      if (row == MATCHED) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Assigns a column to every char of the alphabet, column 0 is left for the chars not used.
+   *
+   * @return the non ASCII chars of the alphabet, their column is their index plus the number of
+   * ASCII columns plus one
+   */
+  private char[] mapColumns(TreeSet<Character> alphabet) {
+    int asciiChars = 0;
+    for (char c : alphabet) {
+      if (c < ASCII) {
+        asciiChars++;
+      }
+    }
+    char[] nonAsciiChars = new char[alphabet.size() - asciiChars];
+    int column = 1;
+    for (char c : alphabet) {
+      if (c >= ASCII) {
+        nonAsciiChars[column - asciiChars - 1] = c;
+      }
+      column++;
+    }
+    column = 1;
+    for (char c : alphabet) {
+      if (c < ASCII) {
+        for (char ascii = 0; ascii < ASCII; ascii++) {
+          if (CaseInsensitiveMatcher.fold(ascii) == c) {
+            asciiColumns[ascii] = column;
+          }
+        }
+      }
+      column++;
+    }
+    return nonAsciiChars;
+  }
+
+  private int column(char c) {
+    if (c < ASCII) {
+      return asciiColumns[c];
+    }
+    char folded = CaseInsensitiveMatcher.fold(c);
+    if (folded < ASCII) {
+      return asciiColumns[folded];
+    }
+    int index = Arrays.binarySearch(nonAsciiChars, folded);
+    return index < 0 ? 0 : numberOfColumns - nonAsciiChars.length + index;
+  }
+
+  /**
+   * Completes the trie into a DFA visiting the states breadth first: a missing transition goes
+   * where the failure state of the state goes, and a state accepts if its failure state accepts.
+   */
+  private void addFailureTransitions(boolean[] accepting) {
+    int[] failures = new int[numberOfStates];
+    int[] queue = new int[numberOfStates];
+    int head = 0;
+    int tail = 0;
+    for (int column = 0; column < numberOfColumns; column++) {
+      int child = transitions[column];
+      if (child == NO_STATE) {
+        transitions[column] = ROOT;
+      } else {
+        failures[child] = ROOT;
+        queue[tail++] = child;
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      int failure = failures[state];
+      accepting[state] |= accepting[failure];
+      for (int column = 0; column < numberOfColumns; column++) {
+        int transition = state * numberOfColumns + column;
+        int failureTarget = transitions[failure * numberOfColumns + column];
+        int child = transitions[transition];
+        if (child == NO_STATE) {
+          transitions[transition] = failureTarget;
+        } else {
+          failures[child] = failureTarget;
+          queue[tail++] = child;
+        }
+      }
+    }
+  }
+}
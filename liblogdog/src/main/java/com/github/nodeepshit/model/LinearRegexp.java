@@ -0,0 +1,762 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Case insensitive regular expression search running in time linear in the text length, like
+ * RE2 does: the expression is compiled to a Thompson NFA whose states are all simulated at once
+ * over the text, so no input can make it backtrack.
+ * <p>
+ * Supports literals, escaped metacharacters, ".", character classes with ranges and negation,
+ * \d \w \s and their negations, groups, non capturing and named groups, alternation, greedy and
+ * lazy quantifiers including bounded ones, and the ^ $ \A \z \Z \b \B anchors, with the meaning
+ * java.util.regex gives them without flags. Backreferences, lookarounds, possessive quantifiers,
+ * inline flags and the rest of the syntax aren't supported, compile returns null for them.
+ * <p>
+ * Case is ignored like java.util.regex does with CASE_INSENSITIVE, adding UNICODE_CASE only for non
+ * ASCII expressions as BoundedRegexp does: an ASCII expression only folds ASCII chars.
+ */
+class LinearRegexp {
+
+  private static final int MAX_INSTRUCTIONS = 2000;
+  private static final int MAX_REPETITIONS = 1000;
+  private static final int INFINITE = -1;
+
+  private static final int CHAR = 0;
+  private static final int CLASS = 1;
+  private static final int ANY = 2;
+  private static final int SPLIT = 3;
+  private static final int JUMP = 4;
+  private static final int MATCH = 5;
+  private static final int BEGIN = 6;
+  private static final int END = 7;
+  private static final int FINAL_END = 8;
+  private static final int WORD_BOUNDARY = 9;
+  private static final int NOT_WORD_BOUNDARY = 10;
+
+  private static final int LITERAL_NODE = 0;
+  private static final int CLASS_NODE = 1;
+  private static final int ANY_NODE = 2;
+  private static final int ASSERTION_NODE = 3;
+  private static final int CONCATENATION_NODE = 4;
+  private static final int ALTERNATION_NODE = 5;
+  private static final int REPETITION_NODE = 6;
+
+  private final int[] opcodes;
+  private final int[] arguments;
+  private final int[] alternatives;
+  private final CharClass[] classes;
+  private final boolean anchoredAtBegin;
+  private final boolean unicodeCase;
+  private final ThreadLocal<Simulation> simulations = new ThreadLocal<Simulation>() {
+    @Override protected Simulation initialValue() {
+      return new Simulation(opcodes.length);
+    }
+  };
+
+  private LinearRegexp(Compiler compiler, boolean unicodeCase) {
+    this.opcodes = Arrays.copyOf(compiler.opcodes, compiler.size);
+    this.arguments = Arrays.copyOf(compiler.arguments, compiler.size);
+    this.alternatives = Arrays.copyOf(compiler.alternatives, compiler.size);
+    this.classes = compiler.classes.toArray(new CharClass[compiler.classes.size()]);
+    this.anchoredAtBegin = opcodes[0] == BEGIN;
+    this.unicodeCase = unicodeCase;
+  }
+
+  /**
+   * Compiles a valid java.util.regex expression or returns null if it uses syntax not supported.
+   */
+  static LinearRegexp compile(String regexp) {
+    try {
+      Parser parser = new Parser(regexp);
+      Node root = parser.parseAlternation();
+      if (!parser.atEnd()) {
+        return null;
+      }
+      Compiler compiler = new Compiler();
+      compiler.emit(root);
+      compiler.add(MATCH, 0, 0);
+      return new LinearRegexp(compiler, parser.unicodeCase);
+    } catch (UnsupportedSyntaxException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the expression has non ASCII chars, so case is ignored for every char and not
+   * only for ASCII ones, like java.util.regex does with UNICODE_CASE.
+   */
+  static boolean isUnicodeCase(String regexp) {
+    for (int i = 0; i < regexp.length(); i++) {
+      if (regexp.charAt(i) >= 0x80) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int getNumberOfInstructions() {
+    return opcodes.length;
+  }
+
+  /**
+   * Returns true if any part of the text matches the expression ignoring case.
+   */
+  boolean find(String text) {
+    Simulation simulation = simulations.get();
+    SparseSet current = simulation.current;
+    SparseSet next = simulation.next;
+    current.clear();
+    int length = text.length();
+    int index = 0;
+    while (true) {
+      if ((index == 0 || !anchoredAtBegin) && addThread(current, 0, text, index, simulation)) {
+        return true;
+      }
+      if (index == length || (current.size == 0 && anchoredAtBegin)) {
+        return false;
+      }
+      int codePoint = text.codePointAt(index);
+      int nextIndex = index + Character.charCount(codePoint);
+      next.clear();
+      for (int i = 0; i < current.size; i++) {
+        int pc = current.dense[i];
+        if (consumes(pc, codePoint) && addThread(next, pc + 1, text, nextIndex, simulation)) {
+          return true;
+        }
+      }
+      SparseSet swap = current;
+      current = next;
+      next = swap;
+      index = nextIndex;
+    }
+  }
+
+  private boolean consumes(int pc, int codePoint) {
+    switch (opcodes[pc]) {
+      case CHAR:
+        return fold(codePoint, unicodeCase) == arguments[pc];
+      case CLASS:
+        return classes[arguments[pc]].matches(codePoint, unicodeCase);
+      case ANY:
+        return !isLineTerminator(codePoint);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Adds the instruction and every instruction reachable from it without consuming a char at the
+   * given index.
+   *
+   * @return true if the match instruction is reachable
+   */
+  private boolean addThread(SparseSet set, int start, String text, int index,
+      Simulation simulation) {
+    int[] stack = simulation.stack;
+    int top = 0;
+    stack[top++] = start;
+    while (top > 0) {
+      int pc = stack[--top];
+      if (set.contains(pc)) {
+        continue;
+      }
+      set.add(pc);
+      switch (opcodes[pc]) {
+        case MATCH:
+          return true;
+        case JUMP:
+          stack[top++] = arguments[pc];
+          break;
+        case SPLIT:
+          stack[top++] = alternatives[pc];
+          stack[top++] = arguments[pc];
+          break;
+        case BEGIN:
+          if (index == 0) {
+            stack[top++] = pc + 1;
+          }
+          break;
+        case END:
+          if (isEnd(text, index)) {
+            stack[top++] = pc + 1;
+          }
+          break;
+        case FINAL_END:
+          if (index == text.length()) {
+            stack[top++] = pc + 1;
+          }
+          break;
+        case WORD_BOUNDARY:
+          if (isWordBoundary(text, index)) {
+            stack[top++] = pc + 1;
+          }
+          break;
+        case NOT_WORD_BOUNDARY:
+          if (!isWordBoundary(text, index)) {
+            stack[top++] = pc + 1;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true at the end of the text or before a line terminator ending it, like $ does. A
+   * "\r\n" ending the text is one line terminator, so the index between both chars isn't an end.
+   */
+  private static boolean isEnd(String text, int index) {
+    int remaining = text.length() - index;
+    if (remaining == 0) {
+      return true;
+    }
+    if (remaining == 1) {
+      char last = text.charAt(index);
+      return isLineTerminator(last)
+          && !(last == '\n' && index > 0 && text.charAt(index - 1) == '\r');
+    }
+    return remaining == 2 && text.charAt(index) == '\r' && text.charAt(index + 1) == '\n';
+  }
+
+  private static boolean isWordBoundary(String text, int index) {
+    boolean wordBefore = index > 0 && isWord(text.codePointBefore(index));
+    boolean wordAfter = index < text.length() && isWord(text.codePointAt(index));
+    return wordBefore != wordAfter;
+  }
+
+  private static boolean isWord(int codePoint) {
+    return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+  }
+
+  private static boolean isLineTerminator(int codePoint) {
+    return codePoint == '\n' || codePoint == '\r' || codePoint == '\u0085'
+        || codePoint == '\u2028' || codePoint == '\u2029';
+  }
+
+  /**
+   * Returns the code point ignoring case. Non ASCII code points are only folded if unicodeCase.
+   */
+  private static int fold(int codePoint, boolean unicodeCase) {
+    if (codePoint < CharClass.ASCII) {
+      return CaseInsensitiveMatcher.fold((char) codePoint);
+    }
+    if (!unicodeCase) {
+      return codePoint;
+    }
+    if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+      return CaseInsensitiveMatcher.fold((char) codePoint);
+    }
+    return Character.toLowerCase(Character.toUpperCase(codePoint));
+  }
+
+  private static class UnsupportedSyntaxException extends Exception {
+  }
+
+  private static class Node {
+
+    final int type;
+    final int value;
+    final CharClass charClass;
+    final Node[] children;
+    final int min;
+    final int max;
+
+    Node(int type, int value, CharClass charClass, Node[] children, int min, int max) {
+      this.type = type;
+      this.value = value;
+      this.charClass = charClass;
+      this.children = children;
+      this.min = min;
+      this.max = max;
+    }
+
+    static Node leaf(int type, int value) {
+      return new Node(type, value, null, null, 0, 0);
+    }
+
+    static Node charClass(CharClass charClass) {
+      return new Node(CLASS_NODE, 0, charClass, null, 0, 0);
+    }
+
+    static Node parent(int type, List<Node> children) {
+      Node[] array = children.toArray(new Node[children.size()]);
+      return new Node(type, 0, null, array, 0, 0);
+    }
+
+    static Node repetition(Node child, int min, int max) {
+      return new Node(REPETITION_NODE, 0, null, new Node[] { child }, min, max);
+    }
+  }
+
+  /**
+   * Recursive descent parser of the supported syntax. The expression has already been validated
+   * by java.util.regex, so anything unexpected is just reported as not supported.
+   */
+  private static class Parser {
+
+    private final String regexp;
+    private final boolean unicodeCase;
+    private int position;
+
+    Parser(String regexp) {
+      this.regexp = regexp;
+      this.unicodeCase = isUnicodeCase(regexp);
+    }
+
+    boolean atEnd() {
+      return position == regexp.length();
+    }
+
+    Node parseAlternation() throws UnsupportedSyntaxException {
+      List<Node> alternatives = new ArrayList<>();
+      alternatives.add(parseConcatenation());
+      while (!atEnd() && peek() == '|') {
+        position++;
+        alternatives.add(parseConcatenation());
+      }
+      return alternatives.size() == 1 ? alternatives.get(0)
+          : Node.parent(ALTERNATION_NODE, alternatives);
+    }
+
+    private Node parseConcatenation() throws UnsupportedSyntaxException {
+      List<Node> items = new ArrayList<>();
+      while (!atEnd() && peek() != '|' && peek() != ')') {
+        items.add(parseRepetition());
+      }
+      return items.size() == 1 ? items.get(0) : Node.parent(CONCATENATION_NODE, items);
+    }
+
+    private Node parseRepetition() throws UnsupportedSyntaxException {
+      Node atom = parseAtom();
+      while (!atEnd() && "*+?{".indexOf(peek()) != -1) {
+        char quantifier = regexp.charAt(position++);
+        int min;
+        int max;
+        if (quantifier == '*') {
+          min = 0;
+          max = INFINITE;
+        } else if (quantifier == '+') {
+          min = 1;
+          max = INFINITE;
+        } else if (quantifier == '?') {
+          min = 0;
+          max = 1;
+        } else {
+          min = parseNumber();
+          max = min;
+          if (consume(',')) {
+            max = !atEnd() && peek() == '}' ? INFINITE : parseNumber();
+          }
+          if (!consume('}')) {
+            throw new UnsupportedSyntaxException();
+          }
+        }
+        if (consume('+')) {
+          throw new UnsupportedSyntaxException();
+        }
+        consume('?');
+        atom = Node.repetition(atom, min, max);
+      }
+      return atom;
+    }
+
+    private int parseNumber() throws UnsupportedSyntaxException {
+      int start = position;
+      while (!atEnd() && Character.isDigit(peek()) && position - start < 4) {
+        position++;
+      }
+      if (start == position || (!atEnd() && Character.isDigit(peek()))) {
+        throw new UnsupportedSyntaxException();
+      }
+      int number = Integer.parseInt(regexp.substring(start, position));
+      if (number > MAX_REPETITIONS) {
+        throw new UnsupportedSyntaxException();
+      }
+      return number;
+    }
+
+    private Node parseAtom() throws UnsupportedSyntaxException {
+      int codePoint = regexp.codePointAt(position);
+      position += Character.charCount(codePoint);
+      switch (codePoint) {
+        case '(':
+          return parseGroup();
+        case '[':
+          return Node.charClass(parseClass());
+        case '.':
+          return Node.leaf(ANY_NODE, 0);
+        case '^':
+          return Node.leaf(ASSERTION_NODE, BEGIN);
+        case '$':
+          return Node.leaf(ASSERTION_NODE, END);
+        case '\\':
+          return parseEscape();
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+          throw new UnsupportedSyntaxException();
+        default:
+          return Node.leaf(LITERAL_NODE, fold(codePoint, unicodeCase));
+      }
+    }
+
+    private Node parseGroup() throws UnsupportedSyntaxException {
+      if (consume('?')) {
+        if (consume(':')) {
+          return parseGroupContent();
+        }
+        if (consume('<') && !atEnd() && Character.isLetter(peek())) {
+          int end = regexp.indexOf('>', position);
+          if (end == -1) {
+            throw new UnsupportedSyntaxException();
+          }
+          position = end + 1;
+          return parseGroupContent();
+        }
+        throw new UnsupportedSyntaxException();
+      }
+      return parseGroupContent();
+    }
+
+    private Node parseGroupContent() throws UnsupportedSyntaxException {
+      Node content = parseAlternation();
+      if (!consume(')')) {
+        throw new UnsupportedSyntaxException();
+      }
+      return content;
+    }
+
+    private Node parseEscape() throws UnsupportedSyntaxException {
+      if (atEnd()) {
+        throw new UnsupportedSyntaxException();
+      }
+      char escaped = regexp.charAt(position++);
+      switch (escaped) {
+        case 'b':
+          return Node.leaf(ASSERTION_NODE, WORD_BOUNDARY);
+        case 'B':
+          return Node.leaf(ASSERTION_NODE, NOT_WORD_BOUNDARY);
+        case 'A':
+          return Node.leaf(ASSERTION_NODE, BEGIN);
+        case 'z':
+          return Node.leaf(ASSERTION_NODE, FINAL_END);
+        case 'Z':
+          return Node.leaf(ASSERTION_NODE, END);
+        default:
+          CharClass predefined = CharClass.predefined(escaped);
+          if (predefined != null) {
+            return Node.charClass(predefined);
+          }
+          return Node.leaf(LITERAL_NODE, fold(parseEscapedChar(escaped), unicodeCase));
+      }
+    }
+
+    private CharClass parseClass() throws UnsupportedSyntaxException {
+      CharClass charClass = new CharClass(consume('^'));
+      if (!atEnd() && peek() == ']') {
+        throw new UnsupportedSyntaxException();
+      }
+      while (!consume(']')) {
+        if (atEnd() || peek() == '[' || regexp.startsWith("&&", position)) {
+          throw new UnsupportedSyntaxException();
+        }
+        int from = regexp.codePointAt(position);
+        position += Character.charCount(from);
+        if (from == '\\') {
+          if (atEnd()) {
+            throw new UnsupportedSyntaxException();
+          }
+          char escaped = regexp.charAt(position++);
+          CharClass predefined = CharClass.predefined(escaped);
+          if (predefined != null) {
+            charClass.addClass(predefined);
+            continue;
+          }
+          from = parseEscapedChar(escaped);
+        }
+        int to = from;
+        if (regexp.startsWith("-", position) && position + 1 < regexp.length()
+            && regexp.charAt(position + 1) != ']') {
+          position++;
+          to = regexp.codePointAt(position);
+          position += Character.charCount(to);
+          if (to == '\\') {
+            if (atEnd()) {
+              throw new UnsupportedSyntaxException();
+            }
+            to = parseEscapedChar(regexp.charAt(position++));
+          } else if (to == '[') {
+            throw new UnsupportedSyntaxException();
+          }
+        }
+        charClass.addRange(from, to);
+      }
+      return charClass;
+    }
+
+    private static int parseEscapedChar(char escaped) throws UnsupportedSyntaxException {
+      switch (escaped) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        default:
+          if (Character.isLetterOrDigit(escaped)) {
+            throw new UnsupportedSyntaxException();
+          }
+          return escaped;
+      }
+    }
+
+    private char peek() {
+      return regexp.charAt(position);
+    }
+
+    private boolean consume(char c) {
+      if (!atEnd() && peek() == c) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Emits the program of a node tree. Bounded repetitions are unrolled and alternations chained
+   * with splits, the first branch of a split being the preferred one.
+   */
+  private static class Compiler {
+
+    int[] opcodes = new int[16];
+    int[] arguments = new int[16];
+    int[] alternatives = new int[16];
+    final List<CharClass> classes = new ArrayList<>();
+    int size;
+
+    void emit(Node node) throws UnsupportedSyntaxException {
+      switch (node.type) {
+        case LITERAL_NODE:
+          add(CHAR, node.value, 0);
+          break;
+        case CLASS_NODE:
+          classes.add(node.charClass);
+          add(CLASS, classes.size() - 1, 0);
+          break;
+        case ANY_NODE:
+          add(ANY, 0, 0);
+          break;
+        case ASSERTION_NODE:
+          add(node.value, 0, 0);
+          break;
+        case CONCATENATION_NODE:
+          for (Node child : node.children) {
+            emit(child);
+          }
+          break;
+        case ALTERNATION_NODE:
+          emitAlternation(node.children);
+          break;
+        default:
+          emitRepetition(node.children[0], node.min, node.max);
+          break;
+      }
+    }
+
+    private void emitAlternation(Node[] branches) throws UnsupportedSyntaxException {
+      int[] jumps = new int[branches.length - 1];
+      for (int i = 0; i < branches.length - 1; i++) {
+        int split = add(SPLIT, size + 1, 0);
+        emit(branches[i]);
+        jumps[i] = add(JUMP, 0, 0);
+        alternatives[split] = size;
+      }
+      emit(branches[branches.length - 1]);
+      for (int jump : jumps) {
+        arguments[jump] = size;
+      }
+    }
+
+    private void emitRepetition(Node child, int min, int max) throws UnsupportedSyntaxException {
+      for (int i = 0; i < min; i++) {
+        emit(child);
+      }
+      if (max == INFINITE) {
+        int split = add(SPLIT, size + 1, 0);
+        emit(child);
+        add(JUMP, split, 0);
+        alternatives[split] = size;
+        return;
+      }
+      int[] splits = new int[max - min];
+      for (int i = 0; i < splits.length; i++) {
+        splits[i] = add(SPLIT, size + 1, 0);
+        emit(child);
+      }
+      for (int split : splits) {
+        alternatives[split] = size;
+      }
+    }
+
+    int add(int opcode, int argument, int alternative) throws UnsupportedSyntaxException {
+      if (size == MAX_INSTRUCTIONS) {
+        throw new UnsupportedSyntaxException();
+      }
+      if (size == opcodes.length) {
+        opcodes = Arrays.copyOf(opcodes, size * 2);
+        arguments = Arrays.copyOf(arguments, size * 2);
+        alternatives = Arrays.copyOf(alternatives, size * 2);
+      }
+      opcodes[size] = opcode;
+      arguments[size] = argument;
+      alternatives[size] = alternative;
+      return size++;
+    }
+  }
+
+  /**
+   * Set of code points: a table for ASCII and ranges for the rest. Checked ignoring case, a code
+   * point matches if its upper or lower case version is in the set. Non ASCII code points are only
+   * checked ignoring case if unicodeCase.
+   */
+  private static class CharClass {
+
+    private static final int ASCII = 128;
+
+    private final boolean negated;
+    private final boolean[] ascii = new boolean[ASCII];
+    private final List<int[]> ranges = new ArrayList<>();
+    private boolean everyNonAscii;
+
+    CharClass(boolean negated) {
+      this.negated = negated;
+    }
+
+    /**
+     * Returns \d \w \s or their negations, null for any other escaped char.
+     */
+    static CharClass predefined(char escaped) {
+      CharClass charClass = new CharClass(Character.isUpperCase(escaped));
+      switch (Character.toLowerCase(escaped)) {
+        case 'd':
+          charClass.addRange('0', '9');
+          break;
+        case 'w':
+          charClass.addRange('a', 'z');
+          charClass.addRange('A', 'Z');
+          charClass.addRange('0', '9');
+          charClass.addRange('_', '_');
+          break;
+        case 's':
+          for (char space : " \t\n\u000B\f\r".toCharArray()) {
+            charClass.addRange(space, space);
+          }
+          break;
+        default:
+          return null;
+      }
+      return charClass;
+    }
+
+    void addRange(int from, int to) {
+      for (int codePoint = from; codePoint <= to && codePoint < ASCII; codePoint++) {
+        ascii[codePoint] = true;
+      }
+      if (to >= ASCII) {
+        ranges.add(new int[] { Math.max(from, ASCII), to });
+      }
+    }
+
+    /**
+     * Adds every code point of a predefined class, which may be negated.
+     */
+    void addClass(CharClass predefined) {
+      for (int codePoint = 0; codePoint < ASCII; codePoint++) {
+        ascii[codePoint] |= predefined.matchesExactly(codePoint);
+      }
+      everyNonAscii |= predefined.negated;
+    }
+
+    boolean matches(int codePoint, boolean unicodeCase) {
+      boolean contains = contains(codePoint)
+          || ((codePoint < ASCII || unicodeCase)
+          && (contains(Character.toUpperCase(codePoint))
+          || contains(Character.toLowerCase(codePoint))));
+      return contains != negated;
+    }
+
+    private boolean matchesExactly(int codePoint) {
+      return contains(codePoint) != negated;
+    }
+
+    private boolean contains(int codePoint) {
+      if (codePoint < ASCII) {
+        return ascii[codePoint];
+      }
+      if (everyNonAscii) {
+        return true;
+      }
+      for (int[] range : ranges) {
+        if (codePoint >= range[0] && codePoint <= range[1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Set of instructions with constant time add, contains and clear, iterated in insertion order.
+   */
+  private static class SparseSet {
+
+    final int[] dense;
+    final int[] sparse;
+    int size;
+
+    SparseSet(int capacity) {
+      this.dense = new int[capacity];
+      this.sparse = new int[capacity];
+    }
+
+    boolean contains(int value) {
+      int index = sparse[value];
+      return index < size && dense[index] == value;
+    }
+
+    void add(int value) {
+      sparse[value] = size;
+      dense[size++] = value;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  private static class Simulation {
+
+    final SparseSet current;
+    final SparseSet next;
+    final int[] stack;
+
+    Simulation(int numberOfInstructions) {
+      this.current = new SparseSet(numberOfInstructions);
+      this.next = new SparseSet(numberOfInstructions);
+      this.stack = new int[2 * numberOfInstructions + 1];
+    }
+  }
+}
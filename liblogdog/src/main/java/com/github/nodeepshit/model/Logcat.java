@@ -18,14 +18,17 @@ package com.github.nodeepshit.model;
 
 import android.util.Log;
 
-import java.io.BufferedReader;
+import com.github.nodeepshit.LynxConfig;
+
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.TimeZone;
 
 /**
- * Logcat abstraction created to be able to read from the device console output. This implementation is
- * based on a BufferReader connected to the process InputStream you can obtain executing a command
- * using Android Runtime object.
+ * Logcat abstraction created to be able to read from the device console output. This implementation
+ * parses the bytes of the process InputStream you can obtain executing a command using Android
+ * Runtime object with a LogcatParser, so lines discarded by the configured TraceFilter never become
+ * Strings. If the LogcatCommand asks for the binary output it's decoded with a BinaryLogcatParser,
+ * the text output is read instead if the device logcat doesn't print logger_entry records.
  *
  * This class will notify listeners configured previously about new traces sent to the device and
  * will be reading and notifying traces until stopReading() method be invoked.
@@ -38,11 +41,27 @@ import java.io.InputStreamReader;
  */
 public class Logcat extends Thread implements Cloneable {
   private static final String LOGTAG = "Logcat";
+  static final long NO_TRACES_READ = Long.MIN_VALUE;
 
-  private Process process;
-  private BufferedReader bufferReader;
+  private final LogcatParser parser;
+  private final BinaryLogcatParser binaryParser;
+  private volatile Process process;
   private Listener listener;
-  private boolean continueReading = true;
+  private volatile boolean continueReading = true;
+  private LogcatCommand command = LogcatCommand.from(new LynxConfig());
+  private long since = LogcatCommand.FROM_THE_BEGINNING;
+  private volatile long lastTimestamp = NO_TRACES_READ;
+
+  public Logcat() {
+    Listener parserListener = new Listener() {
+      @Override public void onTraceRead(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        notifyListener(level, tag, message, timestamp, threadId);
+      }
+    };
+    parser = new LogcatParser(parserListener);
+    binaryParser = new BinaryLogcatParser(parserListener, command);
+  }
 
   /**
    * Configures a listener to be notified with new traces read from the application logcat.
@@ -62,17 +81,61 @@ public class Logcat extends Thread implements Cloneable {
     return listener;
   }
 
+  /**
+   * Configures the filter applied to the logcat lines before notifying them.
+   */
+  void setFilter(TraceFilter filter) {
+    parser.setFilter(filter);
+    binaryParser.setFilter(filter);
+  }
+
+  /**
+   * Configures the logcat command executed and the epoch milliseconds of the first trace to read,
+   * or LogcatCommand.FROM_THE_BEGINNING to read the whole logcat buffer. Has to be invoked before
+   * starting this thread.
+   */
+  void setCommand(LogcatCommand command, long since) {
+    this.command = command;
+    this.since = since;
+    binaryParser.setCommand(command);
+  }
+
+  LogcatCommand getCommand() {
+    return command;
+  }
+
+  /**
+   * Returns the epoch milliseconds of the last trace read or NO_TRACES_READ.
+   */
+  long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  /**
+   * Returns true if this Logcat has been started and stopReading has not been invoked yet.
+   */
+  boolean isReading() {
+    return continueReading && isAlive();
+  }
+
   /**
    * Starts reading traces from the application logcat and notifying listeners if needed.
    */
   @Override public void run() {
     super.run();
-    try {
-      process = Runtime.getRuntime().exec("logcat -v time");
-    } catch (IOException e) {
-      Log.e(LOGTAG, "IOException executing logcat command.", e);
+    LogcatCommand command = this.command;
+    long since = this.since;
+    if (command.isBinary()) {
+      if (readBinaryLogcat(command, since)) {
+        return;
+      }
+      Log.w(LOGTAG, "Binary logcat output not supported, reading the text output.");
+      long lastTimestamp = this.lastTimestamp;
+      since = lastTimestamp == NO_TRACES_READ ? since : lastTimestamp + 1;
+    }
+    if (exec(command.asText(), since)) {
+      readLogcat();
     }
-    readLogcat();
   }
 
   /**
@@ -80,40 +143,89 @@ public class Logcat extends Thread implements Cloneable {
    */
   public void stopReading() {
     continueReading = false;
+    parser.stop();
+    binaryParser.stop();
+    Process process = this.process;
+    if (process != null) {
+      process.destroy();
+    }
   }
 
-  private void readLogcat() {
-    BufferedReader bufferedReader = getBufferReader();
+  private boolean exec(LogcatCommand command, long since) {
+    if (!continueReading) {
+      return false;
+    }
     try {
-      String trace = bufferedReader.readLine();
-      while (trace != null && continueReading) {
-        notifyListener(trace);
-        trace = bufferedReader.readLine();
+      process = Runtime.getRuntime().exec(command.toArguments(since, TimeZone.getDefault()));
+      return true;
+    } catch (IOException e) {
+      Log.e(LOGTAG, "IOException executing logcat command.", e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns false if the process didn't print logger_entry records, the logcat binary of the
+   * device doesn't support "-B" and printed its usage or an error instead.
+   */
+  private boolean readBinaryLogcat(LogcatCommand command, long since) {
+    if (!exec(command, since)) {
+      return !continueReading;
+    }
+    try {
+      if (continueReading) {
+        binaryParser.read(process.getInputStream());
       }
+      return binaryParser.getEntriesRead() > 0 || !continueReading;
+    } catch (BinaryLogcatParser.InvalidEntryException e) {
+      return !continueReading;
     } catch (IOException e) {
-      Log.e(LOGTAG, "IOException reading logcat trace.", e);
+      if (continueReading) {
+        Log.e(LOGTAG, "IOException reading logcat trace.", e);
+      }
+      return true;
+    } finally {
+      process.destroy();
     }
   }
 
-  private void notifyListener(String trace) {
-    if (listener != null) {
-      listener.onTraceRead(trace);
+  private void readLogcat() {
+    try {
+      if (continueReading) {
+        parser.read(process.getInputStream());
+      }
+    } catch (IOException e) {
+      if (continueReading) {
+        Log.e(LOGTAG, "IOException reading logcat trace.", e);
+      }
+    } finally {
+      process.destroy();
     }
   }
 
-  private BufferedReader getBufferReader() {
-    if (bufferReader == null) {
-      bufferReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+  private void notifyListener(TraceLevel level, String tag, String message, long timestamp,
+      long threadId) {
+    lastTimestamp = timestamp;
+    Listener listener = this.listener;
+    if (listener != null && continueReading) {
+      listener.onTraceRead(level, tag, message, timestamp, threadId);
     }
-    return bufferReader;
   }
 
   @Override public Object clone() {
-    return new Logcat();
+    Logcat logcat = new Logcat();
+    logcat.setFilter(parser.getFilter());
+    logcat.setCommand(command, since);
+    return logcat;
   }
 
+  /**
+   * Receives the traces read. The thread id is the Linux tid of the thread which printed the
+   * trace if the output format includes it, Trace.UNKNOWN_THREAD_ID if not.
+   */
   interface Listener {
 
-    void onTraceRead(String logcatTrace);
+    void onTraceRead(TraceLevel level, String tag, String message, long timestamp,
+        long threadId);
   }
 }
@@ -0,0 +1,177 @@
+package com.github.nodeepshit.model;
+
+import android.os.Build;
+import android.os.Process;
+
+import com.github.nodeepshit.LynxConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Immutable description of the logcat process used to read traces. The parts of LynxConfig logcat
+ * is able to apply by itself are translated into arguments so the OS only pipes the relevant
+ * lines: the minimum TraceLevel and the tags as filterspecs, the own process only mode as "--pid"
+ * and the moment to start reading from as "-T". Options not supported by the logcat binary of the
+ * device are omitted, LogcatParser applies the whole TraceFilter anyway.
+ * <p>
+ * In binary mode logcat prints logger_entry records with "-B" and ignores the filterspecs, the
+ * BinaryLogcatParser applies them with accepts, along with the own process only mode even where
+ * "--pid" is not available.
+ * <p>
+ * Two commands are equal if they generate the same arguments for the same start time and, in
+ * binary mode, read the same process, so Lynx can keep the running process when a config change
+ * doesn't affect it.
+ */
+class LogcatCommand {
+
+  static final long FROM_THE_BEGINNING = -1;
+
+  private static final String LOGCAT = "logcat";
+  private static final String TIME_FORMAT = "time";
+  private static final String BINARY = "-B";
+  private static final String LOGDOG_TAG = "Logdog";
+  private static final String ALL_TAGS = "*";
+  private static final char SILENT = 'S';
+
+  private final TraceLevel minimumLevel;
+  private final List<String> tags;
+  private final int pid;
+  private final int sdkVersion;
+  private final boolean binary;
+
+  LogcatCommand(TraceLevel minimumLevel, List<String> tags, int pid, int sdkVersion,
+      boolean binary) {
+    this.minimumLevel = minimumLevel;
+    this.tags = new ArrayList<>(tags);
+    this.pid = pid;
+    this.sdkVersion = sdkVersion;
+    this.binary = binary;
+  }
+
+  static LogcatCommand from(LynxConfig lynxConfig) {
+    int pid = lynxConfig.isLogcatOwnProcessOnly() ? Process.myPid() : 0;
+    return new LogcatCommand(lynxConfig.getFilterTraceLevel(), lynxConfig.getLogcatTags(), pid,
+        Build.VERSION.SDK_INT, lynxConfig.isLogcatBinary());
+  }
+
+  boolean isBinary() {
+    return binary;
+  }
+
+  /**
+   * Returns the same command printing the "time" text format, used when the logcat binary of the
+   * device doesn't support the binary output.
+   */
+  LogcatCommand asText() {
+    return binary ? new LogcatCommand(minimumLevel, tags, pid, sdkVersion, false) : this;
+  }
+
+  /**
+   * Returns true if a trace printed by the process and with the tag passed as parameter passes the
+   * filterspecs and process of this command. The minimum level is checked by TraceFilter.
+   */
+  boolean accepts(int pid, String tag) {
+    if (this.pid != 0 && this.pid != pid) {
+      return false;
+    }
+    return tags.isEmpty() ? !LOGDOG_TAG.equals(tag) : tags.contains(tag);
+  }
+
+  /**
+   * Returns the command line reading the traces logged from the epoch milliseconds passed as
+   * parameter, or the whole logcat buffer if it's FROM_THE_BEGINNING.
+   */
+  String[] toArguments(long since, TimeZone timeZone) {
+    List<String> arguments = new ArrayList<>();
+    arguments.add(LOGCAT);
+    if (binary) {
+      arguments.add(BINARY);
+    } else {
+      arguments.add("-v");
+      arguments.add(TIME_FORMAT);
+    }
+    if (since != FROM_THE_BEGINNING && sdkVersion >= Build.VERSION_CODES.LOLLIPOP) {
+      arguments.add("-T");
+      arguments.add(formatTime(since, timeZone));
+    }
+    if (pid != 0 && sdkVersion >= Build.VERSION_CODES.N) {
+      arguments.add("--pid=" + pid);
+    }
+    char priority = getPriority(minimumLevel);
+    if (tags.isEmpty()) {
+      arguments.add(LOGDOG_TAG + ':' + SILENT);
+      arguments.add(ALL_TAGS + ':' + priority);
+    } else {
+      for (String tag : tags) {
+        arguments.add(tag + ':' + priority);
+      }
+      arguments.add(ALL_TAGS + ':' + SILENT);
+    }
+    return arguments.toArray(new String[arguments.size()]);
+  }
+
+  /**
+   * Logcat priorities are V, D, I, W, E and F. Logdog only levels lower than VERBOSE never come
+   * from logcat, so they don't discard anything, and UPDATE is only followed by fatal traces.
+   */
+  private static char getPriority(TraceLevel level) {
+    switch (level) {
+      case DEBUG:
+        return 'D';
+      case INFO:
+        return 'I';
+      case WARNING:
+        return 'W';
+      case ERROR:
+        return 'E';
+      case ASSERT:
+      case UPDATE:
+      case WTF:
+        return 'F';
+
+      default:
+        return 'V';
+    }
+  }
+
+  /**
+   * Formats the time using the "MM-DD hh:mm:ss.mmm" format accepted by "logcat -T".
+   */
+  private static String formatTime(long epochMillis, TimeZone timeZone) {
+    Calendar calendar = Calendar.getInstance(timeZone);
+    calendar.setTimeInMillis(epochMillis);
+    return String.format(Locale.US, "%02d-%02d %02d:%02d:%02d.%03d",
+        calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH),
+        calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE),
+        calendar.get(Calendar.SECOND), calendar.get(Calendar.MILLISECOND));
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof LogcatCommand)) {
+      return false;
+    }
+    LogcatCommand that = (LogcatCommand) o;
+    if (binary && pid != that.pid) {
+      return false;
+    }
+    TimeZone utc = TimeZone.getTimeZone("UTC");
+    return Arrays.equals(toArguments(FROM_THE_BEGINNING, utc),
+        that.toArguments(FROM_THE_BEGINNING, utc));
+  }
+
+  @Override public int hashCode() {
+    return Arrays.hashCode(toArguments(FROM_THE_BEGINNING, TimeZone.getTimeZone("UTC")));
+  }
+
+  @Override public String toString() {
+    return Arrays.toString(toArguments(FROM_THE_BEGINNING, TimeZone.getDefault()));
+  }
+}
@@ -0,0 +1,204 @@
+package com.github.nodeepshit.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the output of "logcat -v time" straight from the process bytes. Lines are found scanning
+ * a reusable buffer, the "MM-DD HH:MM:SS.mmm L/Tag( pid): message" header is parsed in place and
+ * the TraceFilter is applied over the raw message bytes, so Strings are only created for the tag
+ * and message of the lines kept.
+ * <p>
+ * Lines follow the same rules used by Trace.fromString: lines shorter than the header or without
+ * the level separator are ignored and lines without "Tag( pid): " keep everything after the level
+ * separator as message. Logcat doesn't print the year, the most recent year which doesn't move the
+ * trace to the future is used.
+ * <p>
+ * The read method has to be invoked from one thread, setFilter and stop can be invoked from any
+ * thread.
+ */
+class LogcatParser {
+
+  static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int LEVEL_INDEX = 19;
+  private static final int LEVEL_SEPARATOR_INDEX = 20;
+  private static final int MESSAGE_INDEX = 21;
+
+  private final Logcat.Listener listener;
+  private final TimeZone timeZone;
+  private final TimeProvider timeProvider;
+  private final TagCache tagCache = new TagCache();
+
+  private byte[] buffer;
+  private int cachedHourKey = -1;
+  private long cachedHourStart;
+  private volatile TraceFilter filter = TraceFilter.NONE;
+  private volatile boolean reading;
+
+  LogcatParser(Logcat.Listener listener) {
+    this(listener, TimeZone.getDefault(), new TimeProvider(), DEFAULT_BUFFER_SIZE);
+  }
+
+  LogcatParser(Logcat.Listener listener, TimeZone timeZone, TimeProvider timeProvider,
+      int bufferSize) {
+    this.listener = listener;
+    this.timeZone = timeZone;
+    this.timeProvider = timeProvider;
+    this.buffer = new byte[bufferSize];
+  }
+
+  void setFilter(TraceFilter filter) {
+    this.filter = filter;
+  }
+
+  TraceFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * Reads and parses lines until the end of the stream or until stop is invoked. A trailing line
+   * without line break is parsed once the stream ends.
+   */
+  void read(InputStream inputStream) throws IOException {
+    reading = true;
+    int end = 0;
+    while (reading) {
+      if (end == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      int read = inputStream.read(buffer, end, buffer.length - end);
+      if (read == -1) {
+        break;
+      }
+      end += read;
+      int consumed = parse(buffer, 0, end);
+      end -= consumed;
+      System.arraycopy(buffer, consumed, buffer, 0, end);
+    }
+    if (reading && end > 0) {
+      parseLine(buffer, 0, end);
+    }
+  }
+
+  void stop() {
+    reading = false;
+  }
+
+  /**
+   * Parses every complete line between start and end.
+   *
+   * @return the number of bytes consumed, the bytes of the last line if it's not complete yet are
+   * not consumed
+   */
+  int parse(byte[] bytes, int start, int end) {
+    int lineStart = start;
+    for (int i = start; i < end; i++) {
+      if (bytes[i] == '\n') {
+        int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+        parseLine(bytes, lineStart, lineEnd);
+        lineStart = i + 1;
+      }
+    }
+    return lineStart - start;
+  }
+
+  private void parseLine(byte[] bytes, int start, int end) {
+    if (end - start < MESSAGE_INDEX || bytes[start + LEVEL_SEPARATOR_INDEX] != '/') {
+      return;
+    }
+    TraceFilter filter = this.filter;
+    TraceLevel level = TraceLevel.getTraceLevel((char) bytes[start + LEVEL_INDEX]);
+    if (!filter.matchesLevel(level)) {
+      return;
+    }
+    int tagStart = start + MESSAGE_INDEX;
+    int pidEnd = indexOfPidEnd(bytes, tagStart, end);
+    int tagEnd = pidEnd == -1 ? -1 : lastIndexOf(bytes, (byte) '(', tagStart, pidEnd);
+    int messageStart = tagEnd == -1 ? tagStart : pidEnd + 3;
+    int matchesMessage = filter.matchesMessage(bytes, messageStart, end);
+    if (matchesMessage == TraceFilter.NO_MATCH) {
+      return;
+    }
+    String tag = tagEnd == -1 ? Trace.NO_TAG : tagCache.get(bytes, tagStart, tagEnd);
+    String message = new String(bytes, messageStart, end - messageStart, UTF_8);
+    if (matchesMessage == TraceFilter.UNDECIDED && !filter.matches(level, tag, message)) {
+      return;
+    }
+    listener.onTraceRead(level, tag, message, parseTimestamp(bytes, start),
+        Trace.UNKNOWN_THREAD_ID);
+  }
+
+  /**
+   * Returns the index of the first "): " after start or -1 if there is none.
+   */
+  private static int indexOfPidEnd(byte[] bytes, int start, int end) {
+    for (int i = start; i + 2 < end; i++) {
+      if (bytes[i] == ')' && bytes[i + 1] == ':' && bytes[i + 2] == ' ') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int lastIndexOf(byte[] bytes, byte value, int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      if (bytes[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses the "MM-DD HH:MM:SS.mmm" header. The epoch milliseconds of the start of the hour are
+   * cached, so only traces logged in a different hour need a Calendar. Headers with unexpected
+   * characters get the current time.
+   */
+  private long parseTimestamp(byte[] bytes, int start) {
+    int month = parseDigits(bytes, start, 2);
+    int day = parseDigits(bytes, start + 3, 2);
+    int hour = parseDigits(bytes, start + 6, 2);
+    int minute = parseDigits(bytes, start + 9, 2);
+    int second = parseDigits(bytes, start + 12, 2);
+    int millis = parseDigits(bytes, start + 15, 3);
+    if ((month | day | hour | minute | second | millis) < 0 || month < 1 || month > 12) {
+      return timeProvider.getCurrentTimeMillis();
+    }
+    int hourKey = (month * 32 + day) * 24 + hour;
+    if (hourKey != cachedHourKey) {
+      cachedHourStart = getHourStart(month, day, hour);
+      cachedHourKey = hourKey;
+    }
+    return cachedHourStart + (minute * 60 + second) * 1000L + millis;
+  }
+
+  private long getHourStart(int month, int day, int hour) {
+    Calendar calendar = Calendar.getInstance(timeZone);
+    calendar.setTimeInMillis(timeProvider.getCurrentTimeMillis());
+    int year = calendar.get(Calendar.YEAR);
+    if (month - 1 > calendar.get(Calendar.MONTH)) {
+      year--;
+    }
+    calendar.clear();
+    calendar.set(year, month - 1, day, hour, 0, 0);
+    return calendar.getTimeInMillis();
+  }
+
+  private static int parseDigits(byte[] bytes, int start, int length) {
+    int value = 0;
+    for (int i = start; i < start + length; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+}
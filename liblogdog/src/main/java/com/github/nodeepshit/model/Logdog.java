@@ -2,10 +2,26 @@ package com.github.nodeepshit.model;
 
 import android.util.Log;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Static logging API. Every trace is printed in the Android log and sent to the Lynx instance
+ * listening, if any.
+ * <p>
+ * Traces with a level the active LynxConfig would discard are dropped before building the message
+ * or calling the Android log. Use the MessageSupplier or format overloads when the message is
+ * expensive to build, so that work is skipped as well. Every Logdog instance configures its own
+ * minimum level while its Lynx reads, and traces are logged if any of them would keep them.
+ */
 public class Logdog {
 
-    private static Listener listener;
+    private static volatile Listener listener;
+    private static volatile TraceLevel minimumLevel = TraceLevel.VERBOSE;
+    private static volatile boolean androidLogDeferred;
+    private static volatile PrintedTraces printedTraces;
     private static final String TAG = "Logdog";
+    private static final Map<Logdog, TraceLevel> MINIMUM_LEVELS = new IdentityHashMap<>();
 
     /**
      * Configures a listener to be notified with new traces read from the application logcat.
@@ -13,76 +29,293 @@ public class Logdog {
      * @param listener the Logcat listener
      */
     public void setListener(Listener listener) {
-        this.listener = listener;
+        Logdog.listener = listener;
+    }
+
+    /**
+     * Configures the minimum level a trace needs to be logged for this instance. TraceLevel.VERBOSE
+     * logs every trace. Traces are logged if they reach the lowest minimum level configured.
+     */
+    void setMinimumLevel(TraceLevel minimumLevel) {
+        synchronized (MINIMUM_LEVELS) {
+            MINIMUM_LEVELS.put(this, minimumLevel);
+            updateMinimumLevel();
+        }
+    }
+
+    /**
+     * Removes the minimum level configured by this instance. Once no instance configures one,
+     * every trace is logged.
+     */
+    void clearMinimumLevel() {
+        synchronized (MINIMUM_LEVELS) {
+            MINIMUM_LEVELS.remove(this);
+            updateMinimumLevel();
+        }
+    }
+
+    /**
+     * Configures if the listener takes care of printing traces in the Android log, so callers
+     * don't pay for it.
+     */
+    void setAndroidLogDeferred(boolean androidLogDeferred) {
+        Logdog.androidLogDeferred = androidLogDeferred;
+    }
+
+    /**
+     * Configures where the traces printed with a custom tag are recorded while logcat is read, so
+     * their logcat lines are skipped. Null stops recording them.
+     */
+    void setPrintedTraces(PrintedTraces printedTraces) {
+        Logdog.printedTraces = printedTraces;
+    }
+
+    /**
+     * Returns true if a trace with the given level is going to be logged.
+     */
+    public static boolean isLoggable(TraceLevel level) {
+        TraceLevel minimumLevel = Logdog.minimumLevel;
+        return minimumLevel == TraceLevel.VERBOSE || level.ordinal() >= minimumLevel.ordinal();
     }
 
     public static void debug(String message) {
-        Log.d(TAG, message);
-        listener.onTraceRead('D' + message);
+        if (isLoggable(TraceLevel.DEBUG)) {
+            print(TraceLevel.DEBUG, TAG, message);
+        }
+    }
+
+    public static void debug(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.DEBUG)) {
+            debug(messageSupplier.get());
+        }
+    }
+
+    public static void debug(String format, Object... args) {
+        if (isLoggable(TraceLevel.DEBUG)) {
+            debug(String.format(format, args));
+        }
     }
 
     public static void info(String message) {
-        Log.i(TAG, message);
-        listener.onTraceRead('I' + message);
+        if (isLoggable(TraceLevel.INFO)) {
+            print(TraceLevel.INFO, TAG, message);
+        }
+    }
+
+    public static void info(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.INFO)) {
+            info(messageSupplier.get());
+        }
+    }
+
+    public static void info(String format, Object... args) {
+        if (isLoggable(TraceLevel.INFO)) {
+            info(String.format(format, args));
+        }
     }
 
     public static void warning(String message) {
-        Log.w(TAG, message);
-        listener.onTraceRead('W' + message);
+        if (isLoggable(TraceLevel.WARNING)) {
+            print(TraceLevel.WARNING, TAG, message);
+        }
+    }
+
+    public static void warning(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.WARNING)) {
+            warning(messageSupplier.get());
+        }
+    }
+
+    public static void warning(String format, Object... args) {
+        if (isLoggable(TraceLevel.WARNING)) {
+            warning(String.format(format, args));
+        }
     }
 
     public static void error(String message) {
-        Log.e(TAG, message);
-        listener.onTraceRead('E' + message);
+        if (isLoggable(TraceLevel.ERROR)) {
+            print(TraceLevel.ERROR, TAG, message);
+        }
+    }
+
+    public static void error(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.ERROR)) {
+            error(messageSupplier.get());
+        }
+    }
+
+    public static void error(String format, Object... args) {
+        if (isLoggable(TraceLevel.ERROR)) {
+            error(String.format(format, args));
+        }
     }
 
     public static void tip(String message) {
-        Log.d(TAG, message);
-        listener.onTraceRead('T' + message);
+        if (isLoggable(TraceLevel.TIP)) {
+            print(TraceLevel.TIP, TAG, message);
+        }
+    }
+
+    public static void tip(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.TIP)) {
+            tip(messageSupplier.get());
+        }
+    }
+
+    public static void tip(String format, Object... args) {
+        if (isLoggable(TraceLevel.TIP)) {
+            tip(String.format(format, args));
+        }
     }
 
     public static void result(String message) {
-        Log.d(TAG, message);
-        listener.onTraceRead('S' + message);
+        if (isLoggable(TraceLevel.RESULT)) {
+            print(TraceLevel.RESULT, TAG, message);
+        }
+    }
+
+    public static void result(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.RESULT)) {
+            result(messageSupplier.get());
+        }
+    }
+
+    public static void result(String format, Object... args) {
+        if (isLoggable(TraceLevel.RESULT)) {
+            result(String.format(format, args));
+        }
     }
 
     public static void response(String message) {
-        Log.d(TAG, message);
-        listener.onTraceRead('R' + message);
+        if (isLoggable(TraceLevel.RESPONSE)) {
+            print(TraceLevel.RESPONSE, TAG, message);
+        }
+    }
+
+    public static void response(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.RESPONSE)) {
+            response(messageSupplier.get());
+        }
+    }
+
+    public static void response(String format, Object... args) {
+        if (isLoggable(TraceLevel.RESPONSE)) {
+            response(String.format(format, args));
+        }
     }
 
     public static void update(String message) {
-        Log.d(TAG, message);
-        listener.onTraceRead('U' + message);
+        if (isLoggable(TraceLevel.UPDATE)) {
+            print(TraceLevel.UPDATE, TAG, message);
+        }
+    }
+
+    public static void update(MessageSupplier messageSupplier) {
+        if (isLoggable(TraceLevel.UPDATE)) {
+            update(messageSupplier.get());
+        }
+    }
+
+    public static void update(String format, Object... args) {
+        if (isLoggable(TraceLevel.UPDATE)) {
+            update(String.format(format, args));
+        }
     }
 
     public static void log(TraceLevel level, String message) {
-        switch(level) {
-            case RESULT:
-                result(message);
-                break;
-            case RESPONSE:
-                response(message);
-                break;
-            case TIP:
-                tip(message);
-                break;
-            case DEBUG:
-                debug(message);
-                break;
+        log(level, TAG, message);
+    }
+
+    /**
+     * Logs a trace with a custom tag. The tag is used for the Android log and kept in the Trace.
+     */
+    public static void log(TraceLevel level, String tag, String message) {
+        if (isLoggable(level)) {
+            PrintedTraces printedTraces = Logdog.printedTraces;
+            if (printedTraces != null && !TAG.equals(tag)) {
+                printedTraces.add(tag, message, System.currentTimeMillis());
+            }
+            print(level, tag, message);
+        }
+    }
+
+    public static void log(TraceLevel level, String tag, MessageSupplier messageSupplier) {
+        if (isLoggable(level)) {
+            log(level, tag, messageSupplier.get());
+        }
+    }
+
+    private static void updateMinimumLevel() {
+        TraceLevel lowestLevel = null;
+        for (TraceLevel level : MINIMUM_LEVELS.values()) {
+            if (lowestLevel == null || level == TraceLevel.VERBOSE
+                    || (lowestLevel != TraceLevel.VERBOSE
+                    && level.ordinal() < lowestLevel.ordinal())) {
+                lowestLevel = level;
+            }
+        }
+        minimumLevel = lowestLevel == null ? TraceLevel.VERBOSE : lowestLevel;
+    }
+
+    private static void print(TraceLevel level, String tag, String message) {
+        Listener listener = Logdog.listener;
+        if (listener == null || !androidLogDeferred) {
+            printToAndroidLog(level, tag, message);
+        }
+        if (listener != null) {
+            listener.onTraceLogged(level, tag, message, System.currentTimeMillis(),
+                    Thread.currentThread().getId());
+        }
+    }
+
+    /**
+     * Returns true if the tag passed as parameter is the one of the traces logged without a custom
+     * tag. Used to skip those traces when reading logcat, Lynx already got them from Logdog.
+     */
+    static boolean isLogdogTag(String tag) {
+        return TAG.equals(tag);
+    }
+
+    /**
+     * Prints a trace in the Android log. Used by the Lynx dispatcher thread when printing has been
+     * deferred.
+     */
+    static void printToAndroidLog(TraceLevel level, String tag, String message) {
+        Log.println(getAndroidPriority(level), tag, message);
+    }
+
+    private static int getAndroidPriority(TraceLevel level) {
+        switch (level) {
+            case VERBOSE:
+                return Log.VERBOSE;
+            case INFO:
+                return Log.INFO;
             case WARNING:
-                warning(message);
-                break;
+                return Log.WARN;
             case ERROR:
-                error(message);
-                break;
+            case ASSERT:
+            case WTF:
+                return Log.ERROR;
 
             default:
-                info(message);
+                return Log.DEBUG;
         }
     }
 
+    /**
+     * Builds a message only if the trace is going to be logged. java.util.function.Supplier is not
+     * available in the minimum API level supported by this library.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
+    /**
+     * Receives every trace logged as separate fields, so nothing has to be allocated or parsed
+     * between the log call and the listener.
+     */
     interface Listener {
-        void onTraceRead(String logcatTrace);
+        void onTraceLogged(TraceLevel level, String tag, String message, long timestamp,
+                           long threadId);
     }
 }
@@ -16,15 +16,19 @@
 
 package com.github.nodeepshit.model;
 
-import android.util.Log;
-
 import com.github.nodeepshit.LynxConfig;
-import com.github.nodeepshit.exception.IllegalTraceException;
 
-import java.util.LinkedList;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Main business logic class for this project. Lynx responsibility is related to listen Logcat
@@ -34,31 +38,93 @@ import java.util.regex.PatternSyntaxException;
  * Given a LynxConfig object the sample rating used to notify Lynx clients about new traces can be
  * modified on demand. LynxConfig object will be used to filter traces if any filter has been
  * previously configured. Filtering will remove traces that contains given string or that match a
- * regular expression specified as filter.
+ * regular expression specified as filter. If that regular expression is too slow to evaluate it's
+ * searched as plain text from then on, and the listeners are told from the main thread.
+ * <p>
+ * Traces are ingested from any thread without locking. Producers filter the trace, publish it into
+ * a bounded lock-free ring buffer and schedule one delivery over the main thread, right away if
+ * the sampling rate allows it or at the end of the current sampling period if not. At most one
+ * delivery is pending at any time and nothing is scheduled while no traces arrive, so every trace
+ * is notified to the listeners within the configured sampling rate.
+ * <p>
+ * If LynxConfig enables the background dispatch, Logdog callers only publish the trace fields into
+ * a TraceDispatcher queue and its worker thread prints the trace in the Android log, filters it,
+ * builds the Trace and schedules the delivery once per batch.
+ * <p>
+ * Traces pending to be notified are bounded by LynxConfig.getMaxNumberOfTracesToShow(), more
+ * traces would be discarded by the view anyway. Once the bound is reached the configured
+ * OverflowPolicy decides which traces are discarded, and every discarded trace is counted per
+ * policy, so memory stays flat during a burst no matter how many traces are logged. If
+ * LynxConfig enables the collapse of duplicates, consecutive identical traces pending to be
+ * notified are folded into one Trace with a repeat count and don't take room.
+ * <p>
+ * If LynxConfig enables the session journal and a journal directory is configured, every trace
+ * logged or read from logcat is appended to a TraceJournal by the thread producing it, before the
+ * background dispatch and the filters, so the traces logged right before the process dies are
+ * kept. Appending never locks nor touches files. The newest traces journaled by the previous
+ * process are available through getPreviousSessionTraces once the journal is open.
  *
  * @author Pedro Vicente Gomez Sanchez.
  */
 public class Lynx {
 
-    private static final String LOGTAG = "Lynx";
+    private static final int INGESTION_QUEUE_CAPACITY = 1024;
+    private static final long OVERFLOW_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
 
     private Logcat logcat;
     private Logdog console;
     private final MainThread mainThread;
     private final TimeProvider timeProvider;
-    private final List<Trace> tracesToNotify;
+    private final MpscRingBuffer<Trace> ingestionQueue;
+    private final AtomicBoolean consuming;
+    private final AtomicBoolean deliveryScheduled;
+    private final Runnable deliverTraces;
+    private final Runnable notifyFilterRegexpDisabled;
+    private final Runnable onFilterRegexpDisabled;
+    private final ArrayDeque<Trace> tracesToNotify;
     private final List<Listener> listeners;
+    private final AtomicLongArray droppedTraces;
+    private final Random random;
+    private final PrintedTraces printedTraces;
 
-    private LynxConfig lynxConfig = new LynxConfig();
-    private long lastNotificationTime;
+    private volatile LynxConfig lynxConfig = new LynxConfig();
+    private volatile long lastNotificationTime;
+    private volatile boolean isReading;
+    private volatile TraceDispatcher dispatcher;
+    private volatile TraceJournal journal;
+    private File journalDirectory;
+    private LogcatCommand logcatCommand;
+    private long logcatStart = LogcatCommand.FROM_THE_BEGINNING;
 
-    private String lowerCaseFilter = "";
-    private Pattern regexpFilter;
-    private TraceLevel mLastLevel;
+    private volatile TraceFilter traceFilter = TraceFilter.NONE;
 
     public Lynx(Logcat logcat, Logdog console, MainThread mainThread, TimeProvider timeProvider) {
-        this.listeners = new LinkedList<>();
-        this.tracesToNotify = new LinkedList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.ingestionQueue = new MpscRingBuffer<>(INGESTION_QUEUE_CAPACITY);
+        this.consuming = new AtomicBoolean();
+        this.deliveryScheduled = new AtomicBoolean();
+        this.deliverTraces = new Runnable() {
+            @Override
+            public void run() {
+                deliverTraces();
+            }
+        };
+        this.notifyFilterRegexpDisabled = new Runnable() {
+            @Override
+            public void run() {
+                notifyFilterRegexpDisabled();
+            }
+        };
+        this.onFilterRegexpDisabled = new Runnable() {
+            @Override
+            public void run() {
+                mainThread.post(notifyFilterRegexpDisabled);
+            }
+        };
+        this.tracesToNotify = new ArrayDeque<>();
+        this.droppedTraces = new AtomicLongArray(OverflowPolicy.values().length);
+        this.random = new Random();
+        this.printedTraces = new PrintedTraces();
         this.logcat = logcat;
         this.console = console;
         this.mainThread = mainThread;
@@ -74,6 +140,11 @@ public class Lynx {
     public synchronized void setConfig(LynxConfig lynxConfig) {
         this.lynxConfig = lynxConfig;
         setFilters();
+        if (isReading) {
+            console.setMinimumLevel(lynxConfig.getFilterTraceLevel());
+        }
+        updateLogcatCommand();
+        updateJournal();
     }
 
     /**
@@ -86,57 +157,100 @@ public class Lynx {
     }
 
     /**
-     * Configures a Logcat.Listener and initialize Logcat dependency to read traces from the OS console.
+     * Configures the directory the session journal is kept in, used if LynxConfig enables it the
+     * next time startReading is invoked.
      */
-    public void startReading() {
-//        logcat.setListener(new Logcat.Listener() {
-//            @Override
-//            public void onTraceRead(String logcatTrace) {
-//                try {
-//                    addTraceToTheBuffer(logcatTrace);
-//                } catch (IllegalTraceException e) {
-//                    return;
-//                }
-//                notifyNewTraces();
-//            }
-//        });
+    public synchronized void setJournalDirectory(File journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
 
-        console.setListener(logcatTrace -> {
-            try {
-                addTraceToTheBuffer(logcatTrace);
-            } catch (IllegalTraceException e) {
-                return;
+    /**
+     * Returns the newest traces ingested by the previous process, up to the max number of traces
+     * to show, replayed from the session journal. The list is empty until the journal is open or
+     * if the journal is not enabled.
+     */
+    public List<Trace> getPreviousSessionTraces() {
+        TraceJournal journal = this.journal;
+        return journal == null ? Collections.<Trace>emptyList() : journal.getPreviousSession();
+    }
+
+    /**
+     * Returns true if the regular expression of the LynxConfig filter was too slow to evaluate and
+     * is no longer applied to the traces read.
+     */
+    public boolean isFilterRegexpDisabled() {
+        return traceFilter.isRegexpDisabled();
+    }
+
+    /**
+     * Configures a Logdog.Listener and, if LynxConfig enables it, initialize Logcat dependency to
+     * read traces from the OS console. The background dispatch and logcat configuration is read
+     * here, changes done later with setConfig are applied the next time this method is invoked.
+     */
+    public synchronized void startReading() {
+        isReading = true;
+        console.setMinimumLevel(lynxConfig.getFilterTraceLevel());
+        updateJournal();
+        startDispatcherIfNeeded();
+        console.setListener(this::onTraceLogged);
+        if (lynxConfig.isReadLogcat() && !logcat.isReading()) {
+            if (logcatCommand == null) {
+                logcatStart = lynxConfig.isLogcatStartFromNow()
+                        ? timeProvider.getCurrentTimeMillis() : LogcatCommand.FROM_THE_BEGINNING;
             }
-            notifyNewTraces();
-        });
-//
-//        boolean logcatWasNotStarted = Thread.State.NEW.equals(logcat.getState());
-//        if (logcatWasNotStarted) {
-//            logcat.start();
-//        }
+            logcatCommand = LogcatCommand.from(lynxConfig);
+            startLogcat(getLogcatResumeTime());
+        }
     }
 
     /**
-     * Stops Logcat dependency to stop receiving logcat traces.
+     * Stops Logcat dependency to stop receiving logcat traces and removes the minimum level this
+     * instance configured in Logdog.
      */
-    public void stopReading() {
-//        logcat.stopReading();
-//        logcat.interrupt();
+    public synchronized void stopReading() {
+        isReading = false;
+        console.clearMinimumLevel();
+        stopDispatcher();
+        stopLogcat();
     }
 
     /**
      * Stops the configured Logcat dependency and creates a clone to restart using Logcat and
-     * LogcatListener configured previously.
+     * LogcatListener configured previously. The new logcat process reads again the traces logged
+     * since Lynx started reading, only the ones matching the current configuration are piped.
      */
     public synchronized void restart() {
-        Logcat.Listener previousListener = logcat.getListener();
-        logcat.stopReading();
-        logcat.interrupt();
-        logcat = (Logcat) logcat.clone();
-        logcat.setListener(previousListener);
+        stopLogcat();
         lastNotificationTime = 0;
-        tracesToNotify.clear();
-        logcat.start();
+        acquireConsumer();
+        try {
+            ingestionQueue.clear();
+            tracesToNotify.clear();
+        } finally {
+            releaseConsumer();
+        }
+        if (isReading && lynxConfig.isReadLogcat() && logcatCommand != null) {
+            logcatCommand = LogcatCommand.from(lynxConfig);
+            startLogcat(logcatStart);
+        }
+    }
+
+    /**
+     * Returns the number of traces discarded so far by the overflow policy passed as parameter.
+     */
+    public long getDroppedTraces(OverflowPolicy overflowPolicy) {
+        return droppedTraces.get(overflowPolicy.ordinal());
+    }
+
+    /**
+     * Returns the number of traces discarded so far by any overflow policy.
+     */
+    public long getDroppedTraces() {
+        long dropped = 0;
+        for (int i = 0; i < droppedTraces.length(); i++) {
+            dropped += droppedTraces.get(i);
+        }
+        return dropped;
     }
 
     /**
@@ -144,7 +258,7 @@ public class Lynx {
      *
      * @param lynxPresenter a lynx listener
      */
-    public synchronized void registerListener(Listener lynxPresenter) {
+    public void registerListener(Listener lynxPresenter) {
         listeners.add(lynxPresenter);
     }
 
@@ -153,85 +267,332 @@ public class Lynx {
      *
      * @param lynxPresenter a lynx listener
      */
-    public synchronized void unregisterListener(Listener lynxPresenter) {
+    public void unregisterListener(Listener lynxPresenter) {
         listeners.remove(lynxPresenter);
     }
 
-    private void setFilters() {
-        lowerCaseFilter = lynxConfig.getFilter().toLowerCase();
-        try {
-            regexpFilter = Pattern.compile(lowerCaseFilter);
-        } catch (PatternSyntaxException exception) {
-            regexpFilter = null;
-            Log.d(LOGTAG, "Invalid regexp filter!");
+    private void startLogcat(long since) {
+        if (logcat.isReading()) {
+            return;
         }
+        if (logcat.getState() != Thread.State.NEW) {
+            logcat = (Logcat) logcat.clone();
+        }
+        logcat.setCommand(logcatCommand, since);
+        logcat.setListener(this::onLogcatTraceRead);
+        console.setPrintedTraces(printedTraces);
+        logcat.start();
     }
 
-    private synchronized void addTraceToTheBuffer(String logcatTrace) throws IllegalTraceException {
-        if (shouldAddTrace(logcatTrace)) {
-            Trace trace = Trace.fromString(logcatTrace);
-            tracesToNotify.add(trace);
+    /**
+     * Keeps the logcat process running if the new configuration generates the same command. If
+     * not, a new process continues right after the last trace read instead of reading the whole
+     * logcat buffer again.
+     */
+    private void updateLogcatCommand() {
+        if (!logcat.isReading()) {
+            return;
         }
+        LogcatCommand command = LogcatCommand.from(lynxConfig);
+        if (command.equals(logcatCommand)) {
+            return;
+        }
+        logcatCommand = command;
+        stopLogcat();
+        startLogcat(getLogcatResumeTime());
     }
 
-    private boolean shouldAddTrace(String logcatTrace) {
-        boolean hasFilterConfigured = lynxConfig.hasFilter();
-        return !hasFilterConfigured || traceMatchesFilter(logcatTrace);
+    /**
+     * Returns the moment right after the last trace read from logcat, so a new process doesn't
+     * notify traces already read.
+     */
+    private long getLogcatResumeTime() {
+        long lastTimestamp = logcat.getLastTimestamp();
+        return lastTimestamp == Logcat.NO_TRACES_READ ? logcatStart : lastTimestamp + 1;
     }
 
-    private synchronized boolean traceMatchesFilter(String logcatTrace) {
-        return traceStringMatchesFilter(logcatTrace)
-                && containsTraceLevel(logcatTrace, lynxConfig.getFilterTraceLevel());
+    private void stopLogcat() {
+        console.setPrintedTraces(null);
+        logcat.stopReading();
+        logcat.interrupt();
     }
 
-    private boolean traceStringMatchesFilter(String logcatTrace) {
-        String lowerCaseLogcatTrace = logcatTrace.toLowerCase();
-        boolean matchesFilter = lowerCaseLogcatTrace.contains(lowerCaseFilter);
-        if (!matchesFilter && regexpFilter != null) {
-            matchesFilter = regexpFilter.matcher(lowerCaseLogcatTrace).find();
+    /**
+     * Logcat lines are filtered by LogcatParser. Lines printed by Logdog are skipped, Lynx already
+     * got them with their original TraceLevel through onTraceLogged: the ones with the Logdog tag
+     * and the ones echoing a trace logged with a custom tag, other lines with that tag are kept.
+     */
+    private void onLogcatTraceRead(TraceLevel level, String tag, String message, long timestamp,
+                                   long threadId) {
+        if (!Logdog.isLogdogTag(tag) && !printedTraces.remove(tag, message, timestamp)) {
+            appendToTheJournal(level, tag, message, timestamp, threadId);
+            enqueue(new Trace(level, tag, message, timestamp, threadId));
+            notifyNewTraces();
         }
-        return matchesFilter;
     }
 
-    private boolean containsTraceLevel(String logcatTrace, TraceLevel levelFilter) {
-        return levelFilter.equals(TraceLevel.VERBOSE) || hasTraceLevelEqualOrHigher(logcatTrace,
-                levelFilter);
+    private void onTraceLogged(TraceLevel level, String tag, String message, long timestamp,
+                               long threadId) {
+        appendToTheJournal(level, tag, message, timestamp, threadId);
+        TraceDispatcher dispatcher = this.dispatcher;
+        if (dispatcher != null && dispatcher.dispatch(level, tag, message, timestamp, threadId)) {
+            return;
+        }
+        if (dispatcher != null) {
+            Logdog.printToAndroidLog(level, tag, message);
+        }
+        addTraceToTheBuffer(level, tag, message, timestamp, threadId);
+        notifyNewTraces();
     }
 
-    private boolean hasTraceLevelEqualOrHigher(String logcatTrace, TraceLevel levelFilter) {
-        TraceLevel level = TraceLevel.getTraceLevel(logcatTrace.charAt(Trace.TRACE_LEVEL_INDEX));
-        return level.ordinal() >= levelFilter.ordinal();
+    private void appendToTheJournal(TraceLevel level, String tag, String message, long timestamp,
+                                    long threadId) {
+        TraceJournal journal = this.journal;
+        if (journal != null) {
+            journal.append(level, tag, message, timestamp, threadId);
+        }
     }
 
-    private synchronized void notifyNewTraces() {
-        if (shouldNotifyListeners()) {
-            final List<Trace> traces = new LinkedList<>(tracesToNotify);
-            tracesToNotify.clear();
-            notifyListeners(traces);
+    /**
+     * Releases the session journal if LynxConfig no longer enables it, its directory changed or
+     * it was closed, and opens the journal of the directory configured while reading if enabled.
+     * The journal is shared by every Lynx of the process and closed once none of them uses it.
+     */
+    private void updateJournal() {
+        boolean enabled = lynxConfig.isSessionJournal() && journalDirectory != null;
+        TraceJournal journal = this.journal;
+        if (journal != null && (!enabled || journal.isClosed()
+                || !journalDirectory.equals(journal.getDirectory()))) {
+            this.journal = null;
+            TraceJournal.release(journal);
+        }
+        if (this.journal == null && enabled && isReading) {
+            this.journal = TraceJournal.getInstance(journalDirectory,
+                    lynxConfig.getMaxBytesOfSessionJournal(),
+                    lynxConfig.getMaxNumberOfTracesToShow());
+        }
+    }
+
+    private synchronized void startDispatcherIfNeeded() {
+        stopDispatcher();
+        if (!lynxConfig.isDispatchOnBackgroundThread()) {
+            return;
         }
+        TraceDispatcher dispatcher = new TraceDispatcher(lynxConfig.getDispatchQueueSize(),
+                new TraceDispatcher.Sink() {
+                    @Override
+                    public void onTraceDispatched(TraceLevel level, String tag, String message,
+                                                  long timestamp, long threadId) {
+                        Logdog.printToAndroidLog(level, tag, message);
+                        addTraceToTheBuffer(level, tag, message, timestamp, threadId);
+                    }
+
+                    @Override
+                    public void onBatchDispatched() {
+                        notifyNewTraces();
+                    }
+                });
+        dispatcher.start();
+        this.dispatcher = dispatcher;
+        console.setAndroidLogDeferred(true);
     }
 
-    private synchronized boolean shouldNotifyListeners() {
-        long now = timeProvider.getCurrentTimeMillis();
-        long timeFromLastNotification = now - lastNotificationTime;
-        boolean hasTracesToNotify = tracesToNotify.size() > 0;
-        return timeFromLastNotification > lynxConfig.getSamplingRate() && hasTracesToNotify;
+    /**
+     * Moves back to the inline ingestion. The worker dispatches every trace already published
+     * before finishing, a caller which read the dispatcher right before this call could still lose
+     * its trace. A caller finding the queue full once the worker is stopped doesn't wait for it
+     * and adds its trace inline, printing it in the Android log the worker would have printed it
+     * in.
+     */
+    private synchronized void stopDispatcher() {
+        TraceDispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null) {
+            return;
+        }
+        this.dispatcher = null;
+        console.setAndroidLogDeferred(false);
+        dispatcher.stopDispatching();
     }
 
-    private synchronized void notifyListeners(final List<Trace> traces) {
-        mainThread.post(new Runnable() {
-            @Override
-            public void run() {
-                for (Listener listener : listeners) {
-                    listener.onNewTraces(traces);
+    private void setFilters() {
+        traceFilter = TraceFilter.from(lynxConfig, onFilterRegexpDisabled);
+        logcat.setFilter(traceFilter);
+    }
+
+    private void addTraceToTheBuffer(TraceLevel level, String tag, String message, long timestamp,
+                                     long threadId) {
+        if (shouldAddTrace(level, tag, message)) {
+            enqueue(new Trace(level, tag, message, timestamp, threadId));
+        }
+    }
+
+    /**
+     * Publishes the trace into the ingestion queue. If the queue is full the producer takes the
+     * consumer role to move the queued traces to the bounded list of traces pending to be
+     * notified, where the overflow policy is applied. With OverflowPolicy.BLOCK_WITH_TIMEOUT
+     * nothing is moved once that list is full and the producer waits for the next delivery.
+     */
+    private void enqueue(Trace trace) {
+        long waitStart = 0;
+        boolean waiting = false;
+        while (!ingestionQueue.offer(trace)) {
+            if (tryAcquireConsumer()) {
+                int moved;
+                try {
+                    moved = stageIngestedTraces(false);
+                } finally {
+                    releaseConsumer();
+                }
+                if (moved > 0) {
+                    continue;
                 }
-                lastNotificationTime = timeProvider.getCurrentTimeMillis();
             }
-        });
+            LynxConfig lynxConfig = this.lynxConfig;
+            if (lynxConfig.getOverflowPolicy() != OverflowPolicy.BLOCK_WITH_TIMEOUT) {
+                Thread.yield();
+                continue;
+            }
+            if (!waiting) {
+                waiting = true;
+                waitStart = System.nanoTime();
+            }
+            long timeout = TimeUnit.MILLISECONDS.toNanos(lynxConfig.getOverflowTimeoutInMillis());
+            if (mainThread.isCurrentThread() || System.nanoTime() - waitStart >= timeout) {
+                droppedTraces.incrementAndGet(OverflowPolicy.BLOCK_WITH_TIMEOUT.ordinal());
+                return;
+            }
+            notifyNewTraces();
+            LockSupport.parkNanos(OVERFLOW_WAIT_NANOS);
+        }
+    }
+
+    /**
+     * Moves traces from the ingestion queue to the list of traces pending to be notified applying
+     * the overflow policy. Consumer role only.
+     *
+     * @param delivering true if the pending traces are going to be notified right away, so
+     *                   OverflowPolicy.BLOCK_WITH_TIMEOUT doesn't need to hold traces back
+     * @return the number of traces moved out of the ingestion queue
+     */
+    private int stageIngestedTraces(boolean delivering) {
+        LynxConfig lynxConfig = this.lynxConfig;
+        OverflowPolicy overflowPolicy = lynxConfig.getOverflowPolicy();
+        int maxPendingTraces = lynxConfig.getMaxNumberOfTracesToShow();
+        boolean holdBack = !delivering && overflowPolicy == OverflowPolicy.BLOCK_WITH_TIMEOUT;
+        boolean collapseDuplicates = lynxConfig.isCollapseDuplicates();
+        int moved = 0;
+        Trace trace;
+        while (!(holdBack && tracesToNotify.size() >= maxPendingTraces)
+                && (trace = ingestionQueue.poll()) != null) {
+            moved++;
+            Trace lastTrace = tracesToNotify.peekLast();
+            if (collapseDuplicates && trace.equals(lastTrace)) {
+                tracesToNotify.pollLast();
+                tracesToNotify.addLast(lastTrace.collapse(trace));
+                continue;
+            }
+            if (tracesToNotify.size() < maxPendingTraces
+                    || overflowPolicy == OverflowPolicy.BLOCK_WITH_TIMEOUT) {
+                tracesToNotify.addLast(trace);
+                continue;
+            }
+            droppedTraces.incrementAndGet(overflowPolicy.ordinal());
+            boolean keepNewTrace = overflowPolicy == OverflowPolicy.DROP_OLDEST
+                    || (overflowPolicy == OverflowPolicy.SAMPLING
+                    && random.nextFloat() < lynxConfig.getOverflowSamplingProbability());
+            if (keepNewTrace) {
+                tracesToNotify.pollFirst();
+                tracesToNotify.addLast(trace);
+            }
+        }
+        return moved;
+    }
+
+    private boolean shouldAddTrace(TraceLevel level, String tag, String message) {
+        return traceFilter.matches(level, tag, message);
+    }
+
+    /**
+     * Schedules the delivery of the traces ingested unless there is one already pending.
+     */
+    private void notifyNewTraces() {
+        if (deliveryScheduled.get() || !deliveryScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        long timeFromLastNotification = timeProvider.getCurrentTimeMillis() - lastNotificationTime;
+        long delay = lynxConfig.getSamplingRate() - timeFromLastNotification;
+        if (delay < 0) {
+            mainThread.post(deliverTraces);
+        } else {
+            mainThread.postDelayed(deliverTraces, delay);
+        }
+    }
+
+    /**
+     * Executed over the main thread, drains every trace ingested and notifies the listeners. Traces
+     * published after the drain by producers which found this delivery already scheduled are
+     * covered by the check done once the delivery is no longer flagged as pending.
+     */
+    private void deliverTraces() {
+        final List<Trace> traces;
+        acquireConsumer();
+        try {
+            stageIngestedTraces(true);
+            traces = new ArrayList<>(tracesToNotify);
+            tracesToNotify.clear();
+        } finally {
+            releaseConsumer();
+        }
+        lastNotificationTime = timeProvider.getCurrentTimeMillis();
+        deliveryScheduled.set(false);
+        if (!traces.isEmpty()) {
+            for (Listener listener : listeners) {
+                listener.onNewTraces(traces);
+            }
+        }
+        if (!ingestionQueue.isEmpty()) {
+            notifyNewTraces();
+        }
+    }
+
+    /**
+     * Only the thread holding the consumer role can read from the ingestion queue and touch the
+     * list of traces pending to be notified.
+     */
+    private boolean tryAcquireConsumer() {
+        return consuming.compareAndSet(false, true);
+    }
+
+    private void acquireConsumer() {
+        while (!tryAcquireConsumer()) {
+            Thread.yield();
+        }
+    }
+
+    private void releaseConsumer() {
+        consuming.set(false);
+    }
+
+    /**
+     * Tells the listeners the LynxConfig filter regexp was disabled, unless the filter changed
+     * since then.
+     */
+    private void notifyFilterRegexpDisabled() {
+        if (isFilterRegexpDisabled()) {
+            for (Listener listener : listeners) {
+                listener.onFilterRegexpDisabled();
+            }
+        }
     }
 
     public interface Listener {
 
         void onNewTraces(List<Trace> traces);
+
+        /**
+         * Invoked from the main thread once the regular expression of the LynxConfig filter is too
+         * slow to evaluate and is searched as plain text.
+         */
+        void onFilterRegexpDisabled();
     }
 }
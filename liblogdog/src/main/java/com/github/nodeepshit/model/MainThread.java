@@ -26,4 +26,8 @@ package com.github.nodeepshit.model;
 public interface MainThread {
 
   void post(Runnable runnable);
+
+  void postDelayed(Runnable runnable, long delayMillis);
+
+  boolean isCurrentThread();
 }
@@ -0,0 +1,108 @@
+package com.github.nodeepshit.model;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer ring buffer used by Lynx to ingest traces from
+ * any number of logging threads without making them wait on a monitor.
+ *
+ * Slots follow the sequence protocol of RingSequencer: producers claim a position with one CAS
+ * and publish the element with an ordered store over the slot sequence. Only one thread at a time
+ * can call the consumer side methods (poll, drainTo and clear); callers have to guarantee that
+ * exclusion themselves.
+ */
+class MpscRingBuffer<E> {
+
+  private final RingSequencer sequencer;
+  private final AtomicReferenceArray<E> elements;
+
+  MpscRingBuffer(int requestedCapacity) {
+    this.sequencer = new RingSequencer(requestedCapacity);
+    this.elements = new AtomicReferenceArray<>(sequencer.capacity());
+  }
+
+  /**
+   * Publishes a new element. Can be called from any thread.
+   *
+   * @return false if the buffer is full and the element was not added
+   */
+  boolean offer(E element) {
+    if (element == null) {
+      throw new NullPointerException("You can't add a null element to the ring buffer.");
+    }
+    long index = sequencer.claim();
+    if (index == RingSequencer.NO_INDEX) {
+      return false;
+    }
+    elements.lazySet(sequencer.getSlot(index), element);
+    sequencer.publish(index);
+    return true;
+  }
+
+  /**
+   * Removes and returns the oldest published element or null if there is nothing to consume.
+   * Consumer side only.
+   */
+  E poll() {
+    long index = sequencer.getPublishedIndex();
+    if (index == RingSequencer.NO_INDEX) {
+      return null;
+    }
+    int slot = sequencer.getSlot(index);
+    E element = elements.get(slot);
+    elements.lazySet(slot, null);
+    sequencer.release(index);
+    return element;
+  }
+
+  /**
+   * Moves every published element to the collection passed as parameter keeping the insertion
+   * order. Consumer side only.
+   *
+   * @return the number of elements moved
+   */
+  int drainTo(Collection<? super E> sink) {
+    return drainTo(sink, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Moves up to limit published elements to the collection passed as parameter keeping the
+   * insertion order. Consumer side only.
+   *
+   * @return the number of elements moved
+   */
+  int drainTo(Collection<? super E> sink, int limit) {
+    int drained = 0;
+    E element;
+    while (drained < limit && (element = poll()) != null) {
+      sink.add(element);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * Discards every published element. Consumer side only.
+   */
+  void clear() {
+    while (poll() != null) {
+      //Empty
+    }
+  }
+
+  /**
+   * Returns an estimation of the number of elements claimed by producers and not yet consumed.
+   */
+  int size() {
+    return sequencer.size();
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  int capacity() {
+    return sequencer.capacity();
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.nodeepshit.model;
+
+/**
+ * Strategies used by Lynx when traces arrive faster than they are delivered and the number of
+ * traces pending to be notified reaches LynxConfig.getMaxNumberOfTracesToShow().
+ */
+public enum OverflowPolicy {
+  /**
+   * Discards the oldest pending trace to make room for the new one. The view keeps showing the
+   * most recent traces, like TraceBuffer does.
+   */
+  DROP_OLDEST,
+  /**
+   * Discards the new trace and keeps the pending ones, preserving the beginning of the burst.
+   */
+  DROP_NEWEST,
+  /**
+   * Keeps every new trace with the probability configured in LynxConfig, discarding the oldest
+   * pending trace to make room, and discards it otherwise. The traces notified are a sample of the
+   * whole burst.
+   */
+  SAMPLING,
+  /**
+   * Makes the logging thread wait for the next delivery up to the timeout configured in
+   * LynxConfig and discards the new trace if there is still no room. The main thread never waits.
+   */
+  BLOCK_WITH_TIMEOUT
+}
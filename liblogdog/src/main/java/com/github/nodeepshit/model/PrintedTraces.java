@@ -0,0 +1,82 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Traces printed by Logdog in the Android log with a custom tag while Lynx reads logcat. Lynx
+ * already got those traces from Logdog, so the logcat line echoing each of them is skipped once.
+ * Lines are matched by tag and message instead of by tag alone, so the lines other components or
+ * processes print with the same tag are still shown.
+ * <p>
+ * Logging threads add the traces to a bounded MpscRingBuffer, one entry per line of the message
+ * as the Android log splits them. The logcat thread moves them to a list in printing order and
+ * removes the first one matching every line read. Traces not echoed after MAX_ECHO_DELAY_MILLIS,
+ * because logcat filtered them out, are forgotten, and so are the oldest ones past CAPACITY. A
+ * trace printed while the ring is full is not recorded and its line is shown.
+ */
+class PrintedTraces {
+
+  static final int CAPACITY = 1024;
+  static final long MAX_ECHO_DELAY_MILLIS = 10_000;
+  private static final int MIN_TRUNCATED_LINE_LENGTH = 1000;
+
+  private final MpscRingBuffer<PrintedTrace> addedTraces = new MpscRingBuffer<>(CAPACITY);
+  private final ArrayDeque<PrintedTrace> printedTraces = new ArrayDeque<>();
+
+  /**
+   * Records a trace printed in the Android log. Can be called from any thread.
+   */
+  void add(String tag, String message, long timestamp) {
+    int start = 0;
+    int end;
+    while ((end = message.indexOf('\n', start)) != -1) {
+      addedTraces.offer(new PrintedTrace(tag, message.substring(start, end), timestamp));
+      start = end + 1;
+    }
+    addedTraces.offer(
+        new PrintedTrace(tag, start == 0 ? message : message.substring(start), timestamp));
+  }
+
+  /**
+   * Forgets the oldest trace printed matching the logcat line passed as parameter, if any. The
+   * Android log truncates long messages, so a long line matches the start of a message printed.
+   *
+   * @return true if the line echoes a trace printed and has to be skipped
+   */
+  synchronized boolean remove(String tag, String message, long timestamp) {
+    addedTraces.drainTo(printedTraces);
+    PrintedTrace oldest;
+    while ((oldest = printedTraces.peekFirst()) != null
+        && (printedTraces.size() > CAPACITY
+        || oldest.timestamp < timestamp - MAX_ECHO_DELAY_MILLIS)) {
+      printedTraces.pollFirst();
+    }
+    Iterator<PrintedTrace> iterator = printedTraces.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().matches(tag, message)) {
+        iterator.remove();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class PrintedTrace {
+
+    private final String tag;
+    private final String message;
+    private final long timestamp;
+
+    PrintedTrace(String tag, String message, long timestamp) {
+      this.tag = tag;
+      this.message = message;
+      this.timestamp = timestamp;
+    }
+
+    boolean matches(String tag, String line) {
+      return this.tag.equals(tag) && (message.equals(line)
+          || line.length() >= MIN_TRUNCATED_LINE_LENGTH && message.startsWith(line));
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.github.nodeepshit.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Slot sequence protocol of the bounded multi-producer single-consumer rings used by
+ * MpscRingBuffer and TraceDispatcher. The rings keep their elements in arrays indexed by slot and
+ * use this class to know which slots are free or published.
+ * <p>
+ * Every slot keeps a sequence number that tells producers and the consumer whether the slot is
+ * free or published for a given lap. Producers claim a position with one CAS over the producer
+ * index, store the element in its slot and publish it with an ordered store over the slot
+ * sequence. The consumer reads the element published at its index and releases the slot for the
+ * next lap. Only one thread at a time can call the consumer side methods.
+ */
+class RingSequencer {
+
+  static final long NO_INDEX = -1;
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final AtomicLong producerIndex = new AtomicLong();
+  private volatile long consumerIndex;
+
+  RingSequencer(int requestedCapacity) {
+    if (requestedCapacity <= 0) {
+      throw new IllegalArgumentException("You can't create a ring buffer with a zero or negative "
+          + "capacity.");
+    }
+    this.capacity = roundToPowerOfTwo(requestedCapacity);
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Claims the next position for a producer. Can be called from any thread.
+   *
+   * @return the position claimed, or NO_INDEX if every slot is published and not yet consumed
+   */
+  long claim() {
+    while (true) {
+      long index = producerIndex.get();
+      long slotSequence = sequences.get(getSlot(index));
+      if (slotSequence == index) {
+        if (producerIndex.compareAndSet(index, index + 1)) {
+          return index;
+        }
+      } else if (slotSequence < index) {
+        return NO_INDEX;
+      }
+    }
+  }
+
+  /**
+   * Makes the element stored in the slot of a claimed position visible to the consumer.
+   */
+  void publish(long index) {
+    sequences.set(getSlot(index), index + 1);
+  }
+
+  /**
+   * Returns the position the consumer reads next, or NO_INDEX if nothing is published there yet.
+   * Consumer side only.
+   */
+  long getPublishedIndex() {
+    long index = consumerIndex;
+    return sequences.get(getSlot(index)) == index + 1 ? index : NO_INDEX;
+  }
+
+  /**
+   * Frees the slot of the position returned by getPublishedIndex once its element has been read.
+   * Consumer side only.
+   */
+  void release(long index) {
+    sequences.lazySet(getSlot(index), index + capacity);
+    consumerIndex = index + 1;
+  }
+
+  int getSlot(long index) {
+    return (int) (index & mask);
+  }
+
+  /**
+   * Returns an estimation of the number of positions claimed by producers and not yet consumed.
+   */
+  int size() {
+    long size = producerIndex.get() - consumerIndex;
+    if (size < 0) {
+      return 0;
+    }
+    return size > capacity ? capacity : (int) size;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  private static int roundToPowerOfTwo(int value) {
+    int highestOneBit = Integer.highestOneBit(value);
+    if (highestOneBit == value) {
+      return value;
+    }
+    if (highestOneBit == 1 << 30) {
+      throw new IllegalArgumentException("Ring buffer capacity too big: " + value);
+    }
+    return highestOneBit << 1;
+  }
+}
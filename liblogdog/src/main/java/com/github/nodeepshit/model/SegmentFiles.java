@@ -0,0 +1,142 @@
+package com.github.nodeepshit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped files of fixed size the traces of TraceJournal and of the disk history are written
+ * to. Segment files are named with a prefix and a number growing with every segment added, so they
+ * are listed oldest first, and the oldest one is deleted once the segments take more than the max
+ * bytes. Bytes stored in a mapped segment are in the page cache right away, so they survive the
+ * death of the process without flushing anything.
+ * <p>
+ * This class does file I/O and is not thread safe, every call has to be done from the same
+ * background thread.
+ */
+public class SegmentFiles {
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private final File directory;
+  private final String prefix;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final List<File> segments;
+  private long nextSegmentNumber;
+
+  /**
+   * @param prefix      the start of the name of every segment file, the number and ".log" follow
+   * @param segmentSize the bytes of every segment file
+   * @param maxBytes    the max bytes taken by the segment files, at least two segments are kept
+   */
+  public SegmentFiles(File directory, String prefix, int segmentSize, long maxBytes) {
+    this.directory = directory;
+    this.prefix = prefix;
+    this.segmentSize = segmentSize;
+    this.maxSegments = (int) Math.min(Integer.MAX_VALUE, Math.max(2, maxBytes / segmentSize));
+    this.segments = new ArrayList<>();
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * Returns the max number of segment files kept, the oldest one is deleted by add once reached.
+   */
+  public int getMaxSegments() {
+    return maxSegments;
+  }
+
+  public void createDirectory() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Can't create the directory " + directory);
+    }
+  }
+
+  /**
+   * Creates and maps a new segment file, deleting the oldest one added if there are already max
+   * segments.
+   */
+  public MappedByteBuffer add() throws IOException {
+    if (segments.size() == maxSegments) {
+      File oldest = segments.remove(0);
+      if (!oldest.delete()) {
+        throw new IOException("Can't delete the segment " + oldest);
+      }
+    }
+    File file = new File(directory, prefix + nextSegmentNumber++ + SEGMENT_SUFFIX);
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      randomAccessFile.setLength(segmentSize);
+      MappedByteBuffer buffer =
+          randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+      segments.add(file);
+      return buffer;
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Returns the segment files of the directory, oldest first, including the ones left by a
+   * previous process.
+   */
+  public List<File> list() throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Can't list the directory " + directory);
+    }
+    List<File> segmentFiles = new ArrayList<>();
+    List<Long> numbers = new ArrayList<>();
+    for (File file : files) {
+      long number = getSegmentNumber(file.getName());
+      if (number >= 0) {
+        int index = Collections.binarySearch(numbers, number);
+        index = index < 0 ? -index - 1 : index;
+        numbers.add(index, number);
+        segmentFiles.add(index, file);
+      }
+    }
+    return segmentFiles;
+  }
+
+  /**
+   * Deletes every segment file of the directory, the ones left by a previous process included.
+   *
+   * @return false if a segment file can't be listed or deleted
+   */
+  public boolean deleteAll() {
+    segments.clear();
+    File[] files = directory.listFiles();
+    boolean deleted = files != null;
+    for (int i = 0; files != null && i < files.length; i++) {
+      if (getSegmentNumber(files[i].getName()) >= 0) {
+        deleted &= files[i].delete();
+      }
+    }
+    return deleted;
+  }
+
+  private long getSegmentNumber(String name) {
+    if (!name.startsWith(prefix) || !name.endsWith(SEGMENT_SUFFIX)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(
+          name.substring(prefix.length(), name.length() - SEGMENT_SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.nodeepshit.model;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Decodes the UTF-8 tags read from logcat reusing the String created for the last tag with the
+ * same bytes and hash slot, most of the lines share a handful of tags. Not thread safe, every
+ * parser owns its cache.
+ */
+class TagCache {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int SIZE = 64;
+
+  private final byte[][] cachedTagBytes = new byte[SIZE][];
+  private final String[] cachedTags = new String[SIZE];
+
+  /**
+   * Returns the tag between start (inclusive) and end (exclusive) without leading and trailing
+   * whitespaces.
+   */
+  String get(byte[] bytes, int start, int end) {
+    while (start < end && (bytes[start] & 0xFF) <= ' ') {
+      start++;
+    }
+    while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+      end--;
+    }
+    int hash = 1;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + bytes[i];
+    }
+    int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+    byte[] cached = cachedTagBytes[slot];
+    if (cached != null && equals(cached, bytes, start, end)) {
+      return cachedTags[slot];
+    }
+    String tag = new String(bytes, start, end - start, UTF_8);
+    cachedTagBytes[slot] = Arrays.copyOfRange(bytes, start, end);
+    cachedTags[slot] = tag;
+    return tag;
+  }
+
+  private static boolean equals(byte[] cached, byte[] bytes, int start, int end) {
+    if (cached.length != end - start) {
+      return false;
+    }
+    for (int i = 0; i < cached.length; i++) {
+      if (cached[i] != bytes[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.nodeepshit.model;
+
+import java.util.TimeZone;
+
+/**
+ * Formats trace timestamps as "HH:mm:ss.SSS" in the local time zone without creating Date or
+ * SimpleDateFormat instances. The hours, minutes and seconds of the last second formatted are
+ * cached, so consecutive traces only need to update the milliseconds.
+ *
+ * This class is not thread safe, every instance has to be confined to one thread.
+ */
+public class TimestampFormatter {
+
+  /**
+   * Appended after the message of collapsed traces followed by the number of repetitions.
+   */
+  public static final String REPEAT_COUNT_PREFIX = " \u00d7";
+
+  private static final int MILLIS_PER_SECOND = 1000;
+  private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+  private static final int MILLIS_INDEX = 9;
+
+  private final TimeZone timeZone;
+  private final char[] time = "00:00:00.000".toCharArray();
+  private long cachedSecond = Long.MIN_VALUE;
+
+  public TimestampFormatter() {
+    this(TimeZone.getDefault());
+  }
+
+  public TimestampFormatter(TimeZone timeZone) {
+    this.timeZone = timeZone;
+  }
+
+  /**
+   * Appends the trace passed as parameter as it's shown to the user, the time the trace was
+   * logged followed by the message and the "\u00d7N" badge if it represents N repeated traces.
+   * TraceLevel.TIP traces are shown without time.
+   */
+  public StringBuilder appendTrace(StringBuilder builder, Trace trace) {
+    if (trace.getLevel() != TraceLevel.TIP) {
+      appendTime(builder, trace.getTimestamp()).append(' ');
+    }
+    builder.append(trace.getMessage());
+    if (trace.getRepeatCount() > 1) {
+      builder.append(REPEAT_COUNT_PREFIX).append(trace.getRepeatCount());
+    }
+    return builder;
+  }
+
+  /**
+   * Appends the epoch milliseconds passed as parameter using the "HH:mm:ss.SSS" format.
+   */
+  public StringBuilder appendTime(StringBuilder builder, long epochMillis) {
+    long second = floorDiv(epochMillis, MILLIS_PER_SECOND);
+    if (second != cachedSecond) {
+      updateSecond(second);
+    }
+    int millis = (int) (epochMillis - second * MILLIS_PER_SECOND);
+    time[MILLIS_INDEX] = (char) ('0' + millis / 100);
+    time[MILLIS_INDEX + 1] = (char) ('0' + millis / 10 % 10);
+    time[MILLIS_INDEX + 2] = (char) ('0' + millis % 10);
+    return builder.append(time);
+  }
+
+  /**
+   * Returns the trace passed as parameter as it's shown to the user.
+   */
+  public String format(Trace trace) {
+    return appendTrace(new StringBuilder(trace.getMessage().length() + time.length + 1), trace)
+        .toString();
+  }
+
+  private void updateSecond(long second) {
+    long secondMillis = second * MILLIS_PER_SECOND;
+    long localSecond =
+        floorDiv(secondMillis + timeZone.getOffset(secondMillis), MILLIS_PER_SECOND);
+    int secondOfDay =
+        (int) (localSecond - floorDiv(localSecond, SECONDS_PER_DAY) * SECONDS_PER_DAY);
+    writeTwoDigits(0, secondOfDay / 3600);
+    writeTwoDigits(3, secondOfDay / 60 % 60);
+    writeTwoDigits(6, secondOfDay % 60);
+    cachedSecond = second;
+  }
+
+  private void writeTwoDigits(int index, int value) {
+    time[index] = (char) ('0' + value / 10);
+    time[index + 1] = (char) ('0' + value % 10);
+  }
+
+  /**
+   * Math.floorDiv is not available in the minimum API level supported by this library.
+   */
+  private static long floorDiv(long dividend, long divisor) {
+    long quotient = dividend / divisor;
+    if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+      quotient--;
+    }
+    return quotient;
+  }
+}
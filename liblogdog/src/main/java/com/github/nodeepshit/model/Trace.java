@@ -18,11 +18,19 @@ package com.github.nodeepshit.model;
 
 import com.github.nodeepshit.exception.IllegalTraceException;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Logcat trace representation. All traces contains a message and a TraceLevel assigned.
+ * Logcat trace representation. All traces contains a message and a TraceLevel assigned. Every
+ * trace gets a sequence number when created, unique and increasing in creation order, which can
+ * be used as a stable identifier of the trace.
+ * <p>
+ * The moment the trace was logged is kept as epoch milliseconds and is not part of the message.
+ * Use TimestampFormatter to render it.
+ * <p>
+ * When duplicates are collapsed a Trace can represent a run of consecutive identical traces. In
+ * that case it keeps the sequence and fields of the first one, the number of repetitions and the
+ * moment the last one was logged.
  *
  * @author Pedro Vicente Gomez Sanchez.
  */
@@ -31,41 +39,122 @@ public class Trace {
     private static final char TRACE_LEVEL_SEPARATOR = '/';
     private static final int END_OF_DATE_INDEX = 18;
     private static final int START_OF_MESSAGE_INDEX = 21;
+    private static final char TAG_END = '(';
+    private static final String PID_END = "): ";
     public static final int MIN_TRACE_SIZE = 21;
     public static final int TRACE_LEVEL_INDEX = 19;
+    public static final String NO_TAG = "";
+    public static final long UNKNOWN_THREAD_ID = -1;
 
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final long sequence;
+    private final long timestamp;
+    private final long threadId;
     private final TraceLevel level;
+    private final String tag;
     private final String message;
+    private final int repeatCount;
+    private final long lastTimestamp;
 
     public Trace(TraceLevel level, String message) {
+        this(level, message, System.currentTimeMillis());
+    }
+
+    public Trace(TraceLevel level, String message, long timestamp) {
+        this(level, NO_TAG, message, timestamp, UNKNOWN_THREAD_ID);
+    }
+
+    public Trace(TraceLevel level, String tag, String message, long timestamp, long threadId) {
+        this(SEQUENCE.incrementAndGet(), level, tag, message, timestamp, threadId, 1, timestamp);
+    }
+
+    private Trace(long sequence, TraceLevel level, String tag, String message, long timestamp,
+                  long threadId, int repeatCount, long lastTimestamp) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.threadId = threadId;
         this.level = level;
+        this.tag = tag;
         this.message = message;
+        this.repeatCount = repeatCount;
+        this.lastTimestamp = lastTimestamp;
     }
 
     /**
      * Factory method used to create a Trace instance from a String. The format of the input string
-     * have to be something like: "02-07 17:45:33.014 D/Any debug trace"
+     * have to be something like: "02-07 17:45:33.014 D/Any debug trace" or the format used by
+     * "logcat -v time": "02-07 17:45:33.014 D/AnyTag( 1234): Any debug trace".
      *
      * @param logcatTrace the logcat string
      * @return a new Trace instance
      * @throws IllegalTraceException if the string argument is an invalid string
      */
     public static Trace fromString(String logcatTrace) throws IllegalTraceException {
-//    if (logcatTrace == null
-//        || logcatTrace.length() < MIN_TRACE_SIZE
-//        || logcatTrace.charAt(20) != TRACE_LEVEL_SEPARATOR) {
-//      throw new IllegalTraceException(
-//          "You are trying to create a Trace object from a invalid String. Your trace have to be "
-//              + "something like: '02-07 17:45:33.014 D/Any debug trace'.");
-//    }
-        TraceLevel level = TraceLevel.getTraceLevel(logcatTrace.charAt(0));
-        String date = "date";
-        String message = logcatTrace.substring(1, logcatTrace.length());
-        if (level != TraceLevel.TIP) {
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
-            message = sdf.format(new Date()) + " " + message;
+        return fromString(logcatTrace, System.currentTimeMillis());
+    }
+
+    /**
+     * Factory method used to create a Trace instance from a String read at the given moment.
+     *
+     * @param logcatTrace the logcat string
+     * @param timestamp   epoch milliseconds when the trace was read
+     * @return a new Trace instance
+     * @throws IllegalTraceException if the string argument is an invalid string
+     */
+    public static Trace fromString(String logcatTrace, long timestamp)
+            throws IllegalTraceException {
+        if (logcatTrace == null
+                || logcatTrace.length() < MIN_TRACE_SIZE
+                || logcatTrace.charAt(20) != TRACE_LEVEL_SEPARATOR) {
+            throw new IllegalTraceException(
+                    "You are trying to create a Trace object from a invalid String. Your trace have to be "
+                            + "something like: '02-07 17:45:33.014 D/Any debug trace'.");
         }
-        return new Trace(level, message);
+        TraceLevel level = TraceLevel.getTraceLevel(logcatTrace.charAt(TRACE_LEVEL_INDEX));
+        String tag = NO_TAG;
+        String message = logcatTrace.substring(START_OF_MESSAGE_INDEX);
+        int pidEnd = logcatTrace.indexOf(PID_END, START_OF_MESSAGE_INDEX);
+        int tagEnd = pidEnd == -1 ? -1 : logcatTrace.lastIndexOf(TAG_END, pidEnd);
+        if (tagEnd >= START_OF_MESSAGE_INDEX) {
+            tag = logcatTrace.substring(START_OF_MESSAGE_INDEX, tagEnd).trim();
+            message = logcatTrace.substring(pidEnd + PID_END.length());
+        }
+        return new Trace(level, tag, message, timestamp, UNKNOWN_THREAD_ID);
+    }
+
+    /**
+     * Recreates a trace stored field by field instead of as an object. The trace keeps the
+     * sequence number it got when created, so it's identified as the same one.
+     */
+    public static Trace restore(long sequence, TraceLevel level, String tag, String message,
+                                long timestamp, long threadId, int repeatCount,
+                                long lastTimestamp) {
+        return new Trace(sequence, level, tag, message, timestamp, threadId, repeatCount,
+                lastTimestamp);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the epoch milliseconds when this trace was logged.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the id of the thread which logged this trace, the Linux tid for traces read from the
+     * binary logcat output or UNKNOWN_THREAD_ID for traces read from the text output.
+     */
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getTag() {
+        return tag;
     }
 
     public TraceLevel getLevel() {
@@ -76,6 +165,38 @@ public class Trace {
         return message;
     }
 
+    /**
+     * Returns the number of consecutive identical traces represented by this one, 1 if duplicates
+     * were not collapsed.
+     */
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    /**
+     * Returns the epoch milliseconds when the last trace represented by this one was logged.
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns a new Trace representing this trace followed by the repeated one passed as
+     * parameter. The result keeps the sequence number of this trace, so views can identify it as
+     * the same row.
+     *
+     * @param repeatedTrace a trace with the same level and message
+     * @return a trace with the sum of both repeat counts
+     */
+    public Trace collapse(Trace repeatedTrace) {
+        if (!equals(repeatedTrace)) {
+            throw new IllegalArgumentException(
+                    "You can't collapse traces with a different level or message.");
+        }
+        return new Trace(sequence, level, tag, message, timestamp, threadId,
+                repeatCount + repeatedTrace.repeatCount, repeatedTrace.lastTimestamp);
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -99,6 +220,8 @@ public class Trace {
 
     @Override
     public String toString() {
-        return "Trace{" + "level=" + level + ", message='" + message + '\'' + '}';
+        return "Trace{" + "level=" + level + ", tag='" + tag + '\'' + ", timestamp=" + timestamp
+                + ", threadId=" + threadId + ", repeatCount=" + repeatCount + ", message='" + message
+                + '\'' + '}';
     }
 }
@@ -0,0 +1,158 @@
+package com.github.nodeepshit.model;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Worker thread used by Lynx to take the filtering and Trace creation out of the threads calling
+ * Logdog. Callers only copy the trace fields into a preallocated slot of a bounded
+ * multi-producer single-consumer ring and wake the worker up if it's parked, so a log call costs
+ * one CAS and a few plain stores.
+ * <p>
+ * Slots follow the sequence protocol of RingSequencer, shared with MpscRingBuffer, but keep the
+ * fields in parallel arrays so nothing is allocated on the caller side. The worker is the only
+ * consumer and hands the published fields to the configured Sink in batches.
+ */
+class TraceDispatcher extends Thread {
+
+  private static final String THREAD_NAME = "Lynx-dispatcher";
+
+  private final Sink sink;
+  private final RingSequencer sequencer;
+  private final TraceLevel[] levels;
+  private final String[] tags;
+  private final String[] messages;
+  private final long[] timestamps;
+  private final long[] threadIds;
+
+  private volatile boolean dispatching = true;
+  private volatile boolean sleeping;
+
+  TraceDispatcher(int requestedCapacity, Sink sink) {
+    super(THREAD_NAME);
+    setDaemon(true);
+    this.sink = sink;
+    this.sequencer = new RingSequencer(requestedCapacity);
+    int capacity = sequencer.capacity();
+    this.levels = new TraceLevel[capacity];
+    this.tags = new String[capacity];
+    this.messages = new String[capacity];
+    this.timestamps = new long[capacity];
+    this.threadIds = new long[capacity];
+  }
+
+  /**
+   * Publishes a trace to be dispatched by the worker. Can be called from any thread. If the queue
+   * is full the caller waits for the worker to make room, unless the worker has been stopped.
+   *
+   * @return false if the queue is full and the worker stopped, the trace was not published and
+   * the caller has to handle it
+   */
+  boolean dispatch(TraceLevel level, String tag, String message, long timestamp, long threadId) {
+    while (!offer(level, tag, message, timestamp, threadId)) {
+      if (!dispatching) {
+        return false;
+      }
+      wakeUp();
+      Thread.yield();
+    }
+    wakeUp();
+    return true;
+  }
+
+  /**
+   * Stops the worker once the traces already published have been dispatched.
+   */
+  void stopDispatching() {
+    dispatching = false;
+    LockSupport.unpark(this);
+  }
+
+  boolean isDispatching() {
+    return dispatching;
+  }
+
+  int capacity() {
+    return sequencer.capacity();
+  }
+
+  @Override public void run() {
+    while (dispatching) {
+      if (drain() == 0) {
+        park();
+      }
+    }
+    drain();
+  }
+
+  private boolean offer(TraceLevel level, String tag, String message, long timestamp,
+      long threadId) {
+    long index = sequencer.claim();
+    if (index == RingSequencer.NO_INDEX) {
+      return false;
+    }
+    int slot = sequencer.getSlot(index);
+    levels[slot] = level;
+    tags[slot] = tag;
+    messages[slot] = message;
+    timestamps[slot] = timestamp;
+    threadIds[slot] = threadId;
+    sequencer.publish(index);
+    return true;
+  }
+
+  private int drain() {
+    int dispatched = 0;
+    long index;
+    while ((index = sequencer.getPublishedIndex()) != RingSequencer.NO_INDEX) {
+      int slot = sequencer.getSlot(index);
+      TraceLevel level = levels[slot];
+      String tag = tags[slot];
+      String message = messages[slot];
+      long timestamp = timestamps[slot];
+      long threadId = threadIds[slot];
+      tags[slot] = null;
+      messages[slot] = null;
+      sequencer.release(index);
+      sink.onTraceDispatched(level, tag, message, timestamp, threadId);
+      dispatched++;
+    }
+    if (dispatched > 0) {
+      sink.onBatchDispatched();
+    }
+    return dispatched;
+  }
+
+  /**
+   * Parks the worker unless something was published after the last drain. Producers read the
+   * sleeping flag after publishing, so one of both sides always sees the other.
+   */
+  private void park() {
+    sleeping = true;
+    if (!hasPendingTraces() && dispatching) {
+      LockSupport.park(this);
+    }
+    sleeping = false;
+  }
+
+  private boolean hasPendingTraces() {
+    return sequencer.getPublishedIndex() != RingSequencer.NO_INDEX;
+  }
+
+  private void wakeUp() {
+    if (sleeping) {
+      LockSupport.unpark(this);
+    }
+  }
+
+  /**
+   * Receives the traces from the worker thread. onBatchDispatched is invoked once every trace
+   * published so far has been passed to onTraceDispatched.
+   */
+  interface Sink {
+
+    void onTraceDispatched(TraceLevel level, String tag, String message, long timestamp,
+        long threadId);
+
+    void onBatchDispatched();
+  }
+}
@@ -0,0 +1,217 @@
+package com.github.nodeepshit.model;
+
+import android.util.Log;
+
+import com.github.nodeepshit.LynxConfig;
+
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable snapshot of the filter configured in LynxConfig. A trace matches if its level is
+ * equal or higher than the filter level and its message contains the filter text or matches it as
+ * a regular expression, both ignoring case.
+ * <p>
+ * If the text is a TraceQuery it's compiled once to a TracePredicate tree instead, and the level
+ * implied by the query raises the filter level so the parsers keep discarding lines by level before
+ * decoding them. An invalid query is used as text.
+ * <p>
+ * The text is searched with a precompiled CaseInsensitiveMatcher, so messages are not copied to
+ * lower case. The regular expression is only compiled if the filter text contains
+ * metacharacters, a literal pattern can't match anything the matcher doesn't, and it's searched
+ * with a BoundedRegexp: in linear time if possible, with a step budget per trace otherwise.
+ * isRegexpDisabled reports a regular expression disabled for exceeding the budget, which is
+ * searched as plain text from then on.
+ * A regular expression made only of literal alternatives, like a list of error codes, is searched
+ * with a KeywordMatcher instead, in a single pass whatever the number of alternatives.
+ * Messages still encoded as UTF-8 bytes can be checked without decoding them when the filter text
+ * is ASCII.
+ * <p>
+ * Texts, keywords and the text terms of a query can also be looked up in a TrigramIndex to find
+ * the retained traces which may match without searching every message.
+ * <p>
+ * Lynx applies the LynxConfig filter to the traces it reads, LynxPresenter applies the filter typed
+ * by the user to the traces already read.
+ */
+public class TraceFilter {
+
+  static final int NO_MATCH = 0;
+  static final int MATCH = 1;
+  static final int UNDECIDED = 2;
+
+  public static final TraceFilter NONE = new TraceFilter("", TraceLevel.VERBOSE);
+
+  private static final String LOGTAG = "Lynx";
+  private static final String REGEXP_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private final TraceLevel minimumLevel;
+  private final String text;
+  private final String lowerCaseText;
+  private final TracePredicate query;
+  private final CaseInsensitiveMatcher matcher;
+  private final List<String> alternatives;
+  private final KeywordMatcher keywords;
+  private final TracePredicate regexp;
+
+  public TraceFilter(String text, TraceLevel minimumLevel) {
+    this(text, minimumLevel, null);
+  }
+
+  /**
+   * @param onRegexpDisabled invoked, if not null, from the thread checking a trace once a regular
+   *                         expression of the filter exceeds its step budget
+   */
+  TraceFilter(String text, TraceLevel minimumLevel, Runnable onRegexpDisabled) {
+    this.text = text;
+    this.lowerCaseText = text.toLowerCase();
+    this.query = parseIfQuery(text, onRegexpDisabled);
+    if (query == null) {
+      this.minimumLevel = minimumLevel;
+      this.matcher = new CaseInsensitiveMatcher(text);
+      this.alternatives = KeywordMatcher.parseLiteralAlternation(text);
+      this.keywords = alternatives == null ? null : new KeywordMatcher(alternatives);
+      this.regexp = alternatives == null ? compileIfNeeded(text, onRegexpDisabled) : null;
+    } else {
+      this.minimumLevel = TracePredicate.higherMinimumLevel(minimumLevel, query.getMinimumLevel());
+      this.matcher = new CaseInsensitiveMatcher("");
+      this.alternatives = null;
+      this.keywords = null;
+      this.regexp = null;
+    }
+  }
+
+  static TraceFilter from(LynxConfig lynxConfig, Runnable onRegexpDisabled) {
+    return new TraceFilter(lynxConfig.getFilter(), lynxConfig.getFilterTraceLevel(),
+        onRegexpDisabled);
+  }
+
+  TraceLevel getMinimumLevel() {
+    return minimumLevel;
+  }
+
+  String getText() {
+    return lowerCaseText;
+  }
+
+  public boolean matches(TraceLevel level, String tag, String message) {
+    if (!matchesLevel(level)) {
+      return false;
+    }
+    return query == null ? matchesMessage(message) : query.matches(level, tag, message);
+  }
+
+  /**
+   * Returns true if every trace matching this filter matches the filter passed as parameter too,
+   * so the traces matching this one can be found among the ones matching the other. Only proven
+   * for literal texts, a regular expression is never considered narrower and a query only if it's
+   * the same query.
+   */
+  public boolean isNarrowerThan(TraceFilter filter) {
+    boolean narrowerLevel = filter.minimumLevel == TraceLevel.VERBOSE
+        || (minimumLevel != TraceLevel.VERBOSE
+        && minimumLevel.ordinal() >= filter.minimumLevel.ordinal());
+    boolean narrowerText = filter.lowerCaseText.isEmpty()
+        || (query != null && text.equals(filter.text))
+        || (isLiteral() && filter.isLiteral() && lowerCaseText.contains(filter.lowerCaseText));
+    return narrowerLevel && narrowerText;
+  }
+
+  /**
+   * Returns true if the regular expression of this filter exceeded its step budget searching a
+   * trace and is no longer applied.
+   */
+  public boolean isRegexpDisabled() {
+    return (regexp != null && regexp.isRegexpDisabled())
+        || (query != null && query.isRegexpDisabled());
+  }
+
+  /**
+   * Returns the sequences of the traces of the index whose message may match this filter, or null
+   * if every trace has to be checked: the text is shorter than a trigram or a regular expression.
+   */
+  long[] findCandidates(TrigramIndex index) {
+    if (query != null) {
+      return query.findCandidates(index);
+    }
+    if (regexp != null || text.isEmpty()) {
+      return null;
+    }
+    return keywords != null ? index.findContainingAny(alternatives) : index.findContaining(text);
+  }
+
+  private boolean isLiteral() {
+    return query == null && keywords == null && regexp == null;
+  }
+
+  /**
+   * Returns true if traces of the level passed are shown by this filter, so traces stored field by
+   * field only have their message read if they can match.
+   */
+  public boolean matchesLevel(TraceLevel level) {
+    return minimumLevel == TraceLevel.VERBOSE || level.ordinal() >= minimumLevel.ordinal();
+  }
+
+  private boolean matchesMessage(String message) {
+    return matcher.matches(message)
+        || (keywords != null && keywords.matches(message))
+        || (regexp != null && regexp.matches(TraceLevel.VERBOSE, Trace.NO_TAG, message));
+  }
+
+  /**
+   * Checks the UTF-8 encoded message between start (inclusive) and end (exclusive).
+   *
+   * @return MATCH or NO_MATCH if the bytes are enough to know it, UNDECIDED if the message has to
+   * be decoded and the trace checked with matches(TraceLevel, String, String)
+   */
+  int matchesMessage(byte[] bytes, int start, int end) {
+    if (query != null) {
+      return UNDECIDED;
+    }
+    if (matcher.isEmpty()) {
+      return MATCH;
+    }
+    if (!matcher.isAscii()) {
+      return UNDECIDED;
+    }
+    if (matcher.matches(bytes, start, end)) {
+      return MATCH;
+    }
+    if (keywords != null) {
+      if (!keywords.isAscii()) {
+        return UNDECIDED;
+      }
+      return keywords.matches(bytes, start, end) ? MATCH : NO_MATCH;
+    }
+    return regexp == null ? NO_MATCH : UNDECIDED;
+  }
+
+  private static TracePredicate parseIfQuery(String text, Runnable onRegexpDisabled) {
+    try {
+      return TraceQuery.parse(text, onRegexpDisabled);
+    } catch (TraceQuery.InvalidQueryException exception) {
+      Log.d(LOGTAG, "Invalid query filter!");
+      return null;
+    }
+  }
+
+  private static TracePredicate compileIfNeeded(String text, Runnable onRegexpDisabled) {
+    if (!hasRegexpMetacharacters(text)) {
+      return null;
+    }
+    try {
+      return new TracePredicate.Regexp(text, onRegexpDisabled);
+    } catch (PatternSyntaxException exception) {
+      Log.d(LOGTAG, "Invalid regexp filter!");
+      return null;
+    }
+  }
+
+  static boolean hasRegexpMetacharacters(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (REGEXP_METACHARACTERS.indexOf(text.charAt(i)) != -1) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
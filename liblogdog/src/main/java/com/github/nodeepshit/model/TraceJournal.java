@@ -0,0 +1,441 @@
+package com.github.nodeepshit.model;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append only journal of the traces ingested by Lynx, written to SegmentFiles, so the journal
+ * survives the death of the process without flushing anything. Once the journal is opened again,
+ * by the next process, the newest traces of the previous session are read back and its files are
+ * deleted.
+ * <p>
+ * A record is the length of its body as an int followed by the body: timestamp, thread id, level,
+ * length of the tag, tag and message, the strings as UTF-8. The length is stored once the body is
+ * written, so a record interrupted by the death of the process is never read: a zero length, or a
+ * length going past the segment, ends the segment. Messages are truncated if the record doesn't
+ * fit in an empty segment. The oldest segment file is deleted once the segments take more than
+ * the max bytes, the spare segment included.
+ * <p>
+ * Traces are appended from any thread without locking or touching files: the caller encodes the
+ * record, reserves its bytes with a CAS over the end of the current segment and copies it there.
+ * A caller finding the segment full swaps in a spare segment. The writer thread does the file
+ * I/O: it opens the journal and maps a new spare segment every time the previous one is used.
+ * Records appended while the journal isn't open or no spare segment is mapped wait in a queue
+ * the writer drains, up to MAX_PENDING_TRACES, the oldest are discarded past it. Records are
+ * reserved in order but copied concurrently, so a record not fully copied when the process dies
+ * ends its segment and the ones reserved after it in that segment are lost.
+ */
+class TraceJournal {
+
+  static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+  static final int MAX_PENDING_TRACES = 1024;
+  private static final String LOGTAG = "Lynx";
+  private static final String WRITER_THREAD_NAME = "Lynx-journal";
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final int LENGTH_SIZE = 4;
+  private static final int TIMESTAMP = LENGTH_SIZE;
+  private static final int THREAD_ID = TIMESTAMP + 8;
+  private static final int LEVEL = THREAD_ID + 8;
+  private static final int TAG_LENGTH = LEVEL + 1;
+  private static final int HEADER_SIZE = TAG_LENGTH + 4;
+  private static final TraceLevel[] LEVELS = TraceLevel.values();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Map<File, TraceJournal> JOURNALS = new HashMap<>();
+  private static final Map<File, List<Trace>> PREVIOUS_SESSIONS = new HashMap<>();
+
+  private final SegmentFiles segmentFiles;
+  private final AtomicReference<Segment> segment = new AtomicReference<>();
+  private final AtomicReference<Segment> spareSegment = new AtomicReference<>();
+  private final ConcurrentLinkedQueue<byte[]> pendingRecords = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger numberOfPendingRecords = new AtomicInteger();
+  private volatile List<Trace> previousSession = Collections.emptyList();
+  private volatile Thread writer;
+  private volatile boolean closed;
+  private volatile boolean sleeping;
+  private int references;
+
+  /**
+   * Creates a journal written to segment files of the size passed as parameter, up to maxBytes.
+   * Nothing is written until start is invoked.
+   */
+  TraceJournal(File directory, int segmentSize, long maxBytes) {
+    this.segmentFiles = new SegmentFiles(directory, SEGMENT_PREFIX, segmentSize, maxBytes);
+  }
+
+  /**
+   * Returns the journal of the directory passed as parameter, created and started by the first
+   * call of the process. The configuration passed by later calls is ignored, so every Lynx created
+   * by the process shares the journal and the previous session. Every call has to be balanced by
+   * a call to release.
+   * <p>
+   * Once closed, the journal is replaced by a new one replaying the previous session read by the
+   * first journal of the directory, its writer thread starts once the writer of the closed journal
+   * is done with the files of the directory.
+   *
+   * @param maxTracesToReplay the max number of traces of the previous session read back
+   */
+  static synchronized TraceJournal getInstance(File directory, long maxBytes,
+      int maxTracesToReplay) {
+    TraceJournal journal = JOURNALS.get(directory);
+    if (journal == null || journal.closed) {
+      TraceJournal closedJournal = journal;
+      journal = new TraceJournal(directory, DEFAULT_SEGMENT_SIZE, maxBytes);
+      journal.start(maxTracesToReplay, closedJournal, true);
+      JOURNALS.put(directory, journal);
+    }
+    journal.references++;
+    return journal;
+  }
+
+  /**
+   * Releases a journal returned by getInstance. The journal is closed once released by every
+   * caller, and forgotten once its writer thread is done, so a journal no longer used doesn't keep
+   * its thread nor its segments mapped.
+   */
+  static synchronized void release(TraceJournal journal) {
+    if (--journal.references == 0) {
+      journal.close();
+    }
+  }
+
+  private static synchronized void remove(TraceJournal journal) {
+    File directory = journal.segmentFiles.getDirectory();
+    if (JOURNALS.get(directory) == journal) {
+      JOURNALS.remove(directory);
+    }
+  }
+
+  private static synchronized List<Trace> getSharedPreviousSession(File directory) {
+    return PREVIOUS_SESSIONS.get(directory);
+  }
+
+  private static synchronized void putSharedPreviousSession(File directory,
+      List<Trace> previousSession) {
+    PREVIOUS_SESSIONS.put(directory, previousSession);
+  }
+
+  /**
+   * Starts the writer thread, which reads back the newest traces of the previous session, deletes
+   * its files and maps the segments the traces appended are written to.
+   *
+   * @param maxTracesToReplay the max number of traces of the previous session read back
+   */
+  void start(int maxTracesToReplay) {
+    start(maxTracesToReplay, null, false);
+  }
+
+  File getDirectory() {
+    return segmentFiles.getDirectory();
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Starts the writer thread once the writer of the closed journal passed as parameter, if any,
+   * is done. A shared journal replays the previous session read by the first shared journal of
+   * the directory, if any, instead of the traces written by the journals closed since.
+   */
+  private void start(final int maxTracesToReplay, final TraceJournal closedJournal,
+      final boolean shared) {
+    Thread writer = new Thread(new Runnable() {
+      @Override public void run() {
+        File directory = segmentFiles.getDirectory();
+        try {
+          if (closedJournal != null) {
+            closedJournal.awaitWriter();
+          }
+          List<Trace> sharedPreviousSession = shared ? getSharedPreviousSession(directory) : null;
+          if (sharedPreviousSession != null) {
+            previousSession = sharedPreviousSession;
+            open(0);
+          } else {
+            open(maxTracesToReplay);
+            if (shared) {
+              putSharedPreviousSession(directory, previousSession);
+            }
+          }
+          writeUntilClosed();
+        } catch (IOException e) {
+          Log.e(LOGTAG, "IOException writing the trace journal, it's disabled.", e);
+          close();
+        } finally {
+          if (shared) {
+            remove(TraceJournal.this);
+          }
+        }
+      }
+    }, WRITER_THREAD_NAME);
+    writer.setDaemon(true);
+    this.writer = writer;
+    writer.start();
+  }
+
+  /**
+   * Appends a trace to the journal. Can be called from any thread, it never locks nor does file
+   * I/O.
+   */
+  void append(TraceLevel level, String tag, String message, long timestamp, long threadId) {
+    if (closed) {
+      return;
+    }
+    byte[] record = encode(level, tag, message, timestamp, threadId,
+        segmentFiles.getSegmentSize());
+    if (numberOfPendingRecords.get() > 0 || !write(record)) {
+      addPendingRecord(record);
+    }
+  }
+
+  /**
+   * Returns the newest traces of the previous session, oldest first, or an empty list until the
+   * journal is open.
+   */
+  List<Trace> getPreviousSession() {
+    return previousSession;
+  }
+
+  /**
+   * Waits until the journal is open, the records pending have been written and a spare segment is
+   * mapped, or it's closed.
+   */
+  void awaitPendingRecords() {
+    while (!closed && (segment.get() == null || spareSegment.get() == null
+        || numberOfPendingRecords.get() > 0)) {
+      wakeUp();
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Stops writing traces and stops the writer thread. The segment files are kept.
+   */
+  void close() {
+    closed = true;
+    segment.set(null);
+    pendingRecords.clear();
+    numberOfPendingRecords.set(0);
+    Thread writer = this.writer;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Waits until the writer thread is done, which happens once the journal is closed.
+   */
+  void awaitWriter() {
+    Thread writer = this.writer;
+    boolean interrupted = false;
+    while (writer != null && writer.isAlive()) {
+      try {
+        writer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void open(int maxTracesToReplay) throws IOException {
+    segmentFiles.createDirectory();
+    List<File> previousSegments = segmentFiles.list();
+    ArrayDeque<Trace> tail = new ArrayDeque<>();
+    for (int i = 0; maxTracesToReplay > 0 && i < previousSegments.size(); i++) {
+      readSegment(previousSegments.get(i), maxTracesToReplay, tail);
+    }
+    if (!segmentFiles.deleteAll()) {
+      throw new IOException(
+          "Can't delete the trace journal segments in " + segmentFiles.getDirectory());
+    }
+    if (maxTracesToReplay > 0) {
+      previousSession = Collections.unmodifiableList(new ArrayList<>(tail));
+    }
+    Segment firstSegment = new Segment(segmentFiles.add());
+    if (!closed) {
+      segment.set(firstSegment);
+    }
+  }
+
+  /**
+   * Keeps a spare segment mapped and writes the records pending until the journal is closed.
+   * Writer thread only.
+   */
+  private void writeUntilClosed() throws IOException {
+    while (!closed) {
+      if (spareSegment.get() == null) {
+        spareSegment.set(new Segment(segmentFiles.add()));
+      }
+      byte[] record;
+      while ((record = pendingRecords.poll()) != null) {
+        numberOfPendingRecords.decrementAndGet();
+        while (!closed && !write(record)) {
+          spareSegment.set(new Segment(segmentFiles.add()));
+        }
+      }
+      park();
+    }
+  }
+
+  /**
+   * Copies the record to the current segment, swapping the spare segment in if it doesn't fit.
+   *
+   * @return false if the journal isn't open or the record doesn't fit and no spare segment is
+   * mapped
+   */
+  private boolean write(byte[] record) {
+    while (true) {
+      Segment current = segment.get();
+      if (current == null) {
+        return closed;
+      }
+      if (current.write(record)) {
+        return true;
+      }
+      Segment spare = spareSegment.get();
+      if (spare == null || spare == current) {
+        return false;
+      }
+      if (segment.compareAndSet(current, spare)) {
+        spareSegment.compareAndSet(spare, null);
+        wakeUp();
+      }
+    }
+  }
+
+  private void addPendingRecord(byte[] record) {
+    pendingRecords.offer(record);
+    if (numberOfPendingRecords.incrementAndGet() > MAX_PENDING_TRACES
+        && pendingRecords.poll() != null) {
+      numberOfPendingRecords.decrementAndGet();
+    }
+    wakeUp();
+  }
+
+  /**
+   * Parks the writer unless there's something to do. Callers read the sleeping flag after
+   * publishing a record or using the spare segment, so one of both sides always sees the other.
+   */
+  private void park() {
+    sleeping = true;
+    if (!closed && spareSegment.get() != null && numberOfPendingRecords.get() == 0) {
+      LockSupport.park(this);
+    }
+    sleeping = false;
+  }
+
+  private void wakeUp() {
+    Thread writer = this.writer;
+    if (sleeping && writer != null) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Returns the record of the trace, its length included. The tag and the message are truncated
+   * if the record doesn't fit in a segment.
+   */
+  private static byte[] encode(TraceLevel level, String tag, String message, long timestamp,
+      long threadId, int segmentSize) {
+    tag = Utf8.truncate(tag, Utf8.getEncodedLength(tag), segmentSize - HEADER_SIZE);
+    int tagLength = Utf8.getEncodedLength(tag);
+    message = Utf8.truncate(message, Utf8.getEncodedLength(message),
+        segmentSize - HEADER_SIZE - tagLength);
+    int messageLength = Utf8.getEncodedLength(message);
+    byte[] record = new byte[HEADER_SIZE + tagLength + messageLength];
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    buffer.putInt(0, record.length - LENGTH_SIZE);
+    buffer.putLong(TIMESTAMP, timestamp);
+    buffer.putLong(THREAD_ID, threadId);
+    buffer.put(LEVEL, (byte) level.ordinal());
+    buffer.putInt(TAG_LENGTH, tagLength);
+    Utf8.encode(message, record, Utf8.encode(tag, record, HEADER_SIZE));
+    return record;
+  }
+
+  /**
+   * Adds the traces of the segment file to the tail, keeping the newest maxTraces ones.
+   */
+  private static void readSegment(File file, int maxTraces, ArrayDeque<Trace> tail)
+      throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      randomAccessFile.readFully(bytes);
+    } finally {
+      randomAccessFile.close();
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    int start = 0;
+    while (start + HEADER_SIZE <= bytes.length) {
+      int length = buffer.getInt(start);
+      if (length < HEADER_SIZE - LENGTH_SIZE || length > bytes.length - start - LENGTH_SIZE) {
+        break;
+      }
+      int end = start + LENGTH_SIZE + length;
+      int level = buffer.get(start + LEVEL);
+      int tagLength = buffer.getInt(start + TAG_LENGTH);
+      int tagStart = start + HEADER_SIZE;
+      if (level < 0 || level >= LEVELS.length || tagLength < 0 || tagLength > end - tagStart) {
+        break;
+      }
+      String tag = new String(bytes, tagStart, tagLength, UTF_8);
+      String message = new String(bytes, tagStart + tagLength, end - tagStart - tagLength, UTF_8);
+      if (tail.size() == maxTraces) {
+        tail.pollFirst();
+      }
+      tail.addLast(new Trace(LEVELS[level], tag, message, buffer.getLong(start + TIMESTAMP),
+          buffer.getLong(start + THREAD_ID)));
+      start = end;
+    }
+  }
+
+  private static class Segment {
+
+    private final MappedByteBuffer buffer;
+    private final AtomicInteger end = new AtomicInteger();
+
+    Segment(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    /**
+     * Reserves the bytes of the record with a CAS over the end of the segment and copies it, the
+     * length last. The copy uses a duplicate of the buffer, so callers never share a position.
+     *
+     * @return false if the record doesn't fit
+     */
+    boolean write(byte[] record) {
+      int start;
+      do {
+        start = end.get();
+        if (start + record.length > buffer.capacity()) {
+          return false;
+        }
+      } while (!end.compareAndSet(start, start + record.length));
+      ByteBuffer copy = buffer.duplicate();
+      copy.position(start + LENGTH_SIZE);
+      copy.put(record, LENGTH_SIZE, record.length - LENGTH_SIZE);
+      copy.putInt(start, record.length - LENGTH_SIZE);
+      return true;
+    }
+  }
+}
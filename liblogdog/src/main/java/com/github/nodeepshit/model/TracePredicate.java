@@ -0,0 +1,398 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Node of the predicate tree a TraceQuery is compiled to. Every node estimates the cost of
+ * evaluating it, AND and OR nodes evaluate their children from the cheapest to the most expensive
+ * one, so level and tag checks reject most traces before any message is searched. The texts of an
+ * OR node are searched together in a single pass by a KeywordMatcher.
+ */
+abstract class TracePredicate {
+
+  static final int LEVEL_COST = 1;
+  static final int TAG_COST = 2;
+  static final int TEXT_COST = 16;
+  static final int REGEXP_COST = 128;
+
+  private static final Comparator<TracePredicate> BY_COST = new Comparator<TracePredicate>() {
+    @Override public int compare(TracePredicate predicate, TracePredicate other) {
+      return predicate.cost() < other.cost() ? -1 : (predicate.cost() == other.cost() ? 0 : 1);
+    }
+  };
+
+  abstract boolean matches(TraceLevel level, String tag, String message);
+
+  abstract int cost();
+
+  /**
+   * Returns true if a regular expression of the tree exceeded its step budget and no longer
+   * matches any trace.
+   */
+  boolean isRegexpDisabled() {
+    return false;
+  }
+
+  /**
+   * Returns the sequences, sorted, of the traces of the index whose message may match, or null if
+   * the index can't narrow them down.
+   */
+  long[] findCandidates(TrigramIndex index) {
+    return null;
+  }
+
+  /**
+   * Returns a level every matching trace is equal or higher than, following TraceFilter minimum
+   * level semantics, VERBOSE if there is none.
+   */
+  TraceLevel getMinimumLevel() {
+    return TraceLevel.VERBOSE;
+  }
+
+  static TracePredicate and(List<TracePredicate> operands) {
+    if (operands.size() == 1) {
+      return operands.get(0);
+    }
+    return new And(sortByCost(flatten(operands, And.class)));
+  }
+
+  static TracePredicate or(List<TracePredicate> operands) {
+    if (operands.size() == 1) {
+      return operands.get(0);
+    }
+    List<TracePredicate> merged = mergeTexts(flatten(operands, Or.class));
+    return merged.size() == 1 ? merged.get(0) : new Or(sortByCost(merged));
+  }
+
+  static TracePredicate not(TracePredicate operand) {
+    return operand instanceof Not ? ((Not) operand).operand : new Not(operand);
+  }
+
+  private static List<TracePredicate> flatten(List<TracePredicate> operands,
+      Class<? extends Composite> kind) {
+    List<TracePredicate> flattened = new ArrayList<>();
+    for (TracePredicate operand : operands) {
+      if (operand.getClass() == kind) {
+        flattened.addAll(Arrays.asList(((Composite) operand).operands));
+      } else {
+        flattened.add(operand);
+      }
+    }
+    return flattened;
+  }
+
+  /**
+   * Replaces the texts of an OR node with a single Keywords operand if there are more than one.
+   */
+  private static List<TracePredicate> mergeTexts(List<TracePredicate> operands) {
+    List<String> texts = new ArrayList<>();
+    List<TracePredicate> merged = new ArrayList<>();
+    for (TracePredicate operand : operands) {
+      if (operand instanceof Text) {
+        texts.add(((Text) operand).text);
+      } else {
+        merged.add(operand);
+      }
+    }
+    if (texts.size() < 2) {
+      return operands;
+    }
+    merged.add(new Keywords(texts));
+    return merged;
+  }
+
+  /**
+   * Sorts the operands from the cheapest to the most expensive, keeping the query order for
+   * operands with the same cost.
+   */
+  private static TracePredicate[] sortByCost(List<TracePredicate> operands) {
+    Collections.sort(operands, BY_COST);
+    return operands.toArray(new TracePredicate[operands.size()]);
+  }
+
+  /**
+   * Returns the minimum level of a trace matching both minimum levels.
+   */
+  static TraceLevel higherMinimumLevel(TraceLevel level, TraceLevel other) {
+    return fromLowerBound(Math.max(lowerBound(level), lowerBound(other)));
+  }
+
+  /**
+   * Returns the ordinal a level check accepts from, VERBOSE accepts every level like in
+   * TraceFilter.
+   */
+  private static int lowerBound(TraceLevel level) {
+    return level == TraceLevel.VERBOSE ? 0 : level.ordinal();
+  }
+
+  private static TraceLevel fromLowerBound(int ordinal) {
+    return ordinal == 0 ? TraceLevel.VERBOSE : TraceLevel.values()[ordinal];
+  }
+
+  static class Level extends TracePredicate {
+
+    static final int LOWER = -2;
+    static final int LOWER_OR_EQUAL = -1;
+    static final int EQUAL = 0;
+    static final int HIGHER_OR_EQUAL = 1;
+    static final int HIGHER = 2;
+
+    private final int comparison;
+    private final TraceLevel level;
+
+    Level(int comparison, TraceLevel level) {
+      this.comparison = comparison;
+      this.level = level;
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      int difference = level.ordinal() - this.level.ordinal();
+      switch (comparison) {
+        case LOWER:
+          return difference < 0;
+        case LOWER_OR_EQUAL:
+          return difference <= 0;
+        case EQUAL:
+          return difference == 0;
+        case HIGHER_OR_EQUAL:
+          return this.level == TraceLevel.VERBOSE || difference >= 0;
+        default:
+          return difference > 0;
+      }
+    }
+
+    @Override int cost() {
+      return LEVEL_COST;
+    }
+
+    @Override TraceLevel getMinimumLevel() {
+      return comparison >= EQUAL ? level : TraceLevel.VERBOSE;
+    }
+  }
+
+  /**
+   * Matches the traces with the given tag ignoring case.
+   */
+  static class Tag extends TracePredicate {
+
+    private final String tag;
+
+    Tag(String tag) {
+      this.tag = tag;
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      return this.tag.equalsIgnoreCase(tag);
+    }
+
+    @Override int cost() {
+      return TAG_COST;
+    }
+  }
+
+  /**
+   * Matches the traces whose message contains the text ignoring case.
+   */
+  static class Text extends TracePredicate {
+
+    private final String text;
+    private final CaseInsensitiveMatcher matcher;
+
+    Text(String text) {
+      this.text = text;
+      this.matcher = new CaseInsensitiveMatcher(text);
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      return matcher.matches(message);
+    }
+
+    @Override int cost() {
+      return TEXT_COST;
+    }
+
+    @Override long[] findCandidates(TrigramIndex index) {
+      return index.findContaining(text);
+    }
+  }
+
+  /**
+   * Matches the traces whose message contains any of the keywords ignoring case.
+   */
+  static class Keywords extends TracePredicate {
+
+    private final List<String> keywords;
+    private final KeywordMatcher matcher;
+
+    Keywords(List<String> keywords) {
+      this.keywords = keywords;
+      this.matcher = new KeywordMatcher(keywords);
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      return matcher.matches(message);
+    }
+
+    @Override int cost() {
+      return TEXT_COST;
+    }
+
+    @Override long[] findCandidates(TrigramIndex index) {
+      return index.findContainingAny(keywords);
+    }
+  }
+
+  /**
+   * Matches the traces whose message contains a match of the regular expression, searched with a
+   * BoundedRegexp.
+   */
+  static class Regexp extends TracePredicate {
+
+    private final BoundedRegexp regexp;
+
+    /**
+     * @param onRegexpDisabled invoked, if not null, once the expression exceeds its step budget
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+     */
+    Regexp(String regexp, Runnable onRegexpDisabled) {
+      this.regexp = new BoundedRegexp(regexp, onRegexpDisabled);
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      return regexp.find(message);
+    }
+
+    @Override int cost() {
+      return REGEXP_COST;
+    }
+
+    @Override boolean isRegexpDisabled() {
+      return regexp.isBudgetExceeded();
+    }
+  }
+
+  static class Not extends TracePredicate {
+
+    private final TracePredicate operand;
+
+    Not(TracePredicate operand) {
+      this.operand = operand;
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      return !operand.matches(level, tag, message);
+    }
+
+    @Override int cost() {
+      return operand.cost();
+    }
+
+    @Override boolean isRegexpDisabled() {
+      return operand.isRegexpDisabled();
+    }
+  }
+
+  abstract static class Composite extends TracePredicate {
+
+    final TracePredicate[] operands;
+    private final int cost;
+
+    Composite(TracePredicate[] operands) {
+      this.operands = operands;
+      int cost = 0;
+      for (TracePredicate operand : operands) {
+        cost += operand.cost();
+      }
+      this.cost = cost;
+    }
+
+    @Override int cost() {
+      return cost;
+    }
+
+    @Override boolean isRegexpDisabled() {
+      for (TracePredicate operand : operands) {
+        if (operand.isRegexpDisabled()) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  static class And extends Composite {
+
+    And(TracePredicate[] operands) {
+      super(operands);
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      for (TracePredicate operand : operands) {
+        if (!operand.matches(level, tag, message)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override long[] findCandidates(TrigramIndex index) {
+      long[] candidates = null;
+      for (TracePredicate operand : operands) {
+        long[] operandCandidates = operand.findCandidates(index);
+        if (operandCandidates != null) {
+          candidates = candidates == null ? operandCandidates
+              : TrigramIndex.intersection(candidates, operandCandidates);
+        }
+      }
+      return candidates;
+    }
+
+    @Override TraceLevel getMinimumLevel() {
+      TraceLevel minimumLevel = TraceLevel.VERBOSE;
+      for (TracePredicate operand : operands) {
+        minimumLevel = higherMinimumLevel(minimumLevel, operand.getMinimumLevel());
+      }
+      return minimumLevel;
+    }
+  }
+
+  static class Or extends Composite {
+
+    Or(TracePredicate[] operands) {
+      super(operands);
+    }
+
+    @Override boolean matches(TraceLevel level, String tag, String message) {
+      for (TracePredicate operand : operands) {
+        if (operand.matches(level, tag, message)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override long[] findCandidates(TrigramIndex index) {
+      long[] candidates = new long[0];
+      for (TracePredicate operand : operands) {
+        long[] operandCandidates = operand.findCandidates(index);
+        if (operandCandidates == null) {
+          return null;
+        }
+        candidates = TrigramIndex.union(candidates, operandCandidates);
+      }
+      return candidates;
+    }
+
+    @Override TraceLevel getMinimumLevel() {
+      int minimumLevel = Integer.MAX_VALUE;
+      for (TracePredicate operand : operands) {
+        minimumLevel = Math.min(minimumLevel, lowerBound(operand.getMinimumLevel()));
+      }
+      return fromLowerBound(minimumLevel);
+    }
+  }
+}
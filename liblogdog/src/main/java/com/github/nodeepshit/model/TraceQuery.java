@@ -0,0 +1,265 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Parses the filter query language into a TracePredicate tree:
+ * <pre>
+ *   level&gt;=W AND (tag:net OR "timeout") AND NOT "heartbeat"
+ * </pre>
+ * Terms are level comparisons (level followed by &lt;, &lt;=, =, &gt;= or &gt; and a level letter
+ * or name), tags (tag:name), quoted texts, regular expressions between slashes and any other word
+ * as text. Terms are combined with NOT, AND and OR, in that precedence, and parentheses. Terms
+ * without an operator between them are combined with AND. Texts, tags and regular expressions
+ * ignore case, operators have to be upper case.
+ * <p>
+ * A text is only a query if it uses an operator or a level or tag term, so plain filters keep their
+ * meaning: quotes, slashes and parentheses alone, like in a JSON fragment, a path or a regular
+ * expression group, don't make a query. A text that isn't a valid query before using any of them is
+ * not a query either.
+ */
+class TraceQuery {
+
+  private static final String AND = "AND";
+  private static final String OR = "OR";
+  private static final String NOT = "NOT";
+  private static final String LEVEL = "level";
+  private static final String TAG = "tag:";
+
+  private final String query;
+  private final Runnable onRegexpDisabled;
+  private int position;
+  private boolean usesQuerySyntax;
+
+  private TraceQuery(String query, Runnable onRegexpDisabled) {
+    this.query = query;
+    this.onRegexpDisabled = onRegexpDisabled;
+  }
+
+  /**
+   * Returns the predicate tree of the query passed as parameter or null if the text doesn't use
+   * the query syntax.
+   *
+   * @throws InvalidQueryException if the text uses the query syntax but it isn't a valid query
+   */
+  static TracePredicate parse(String text) {
+    return parse(text, null);
+  }
+
+  /**
+   * Returns the predicate tree of the query passed as parameter or null if the text doesn't use
+   * the query syntax.
+   *
+   * @param onRegexpDisabled invoked, if not null, once a regular expression of the query exceeds
+   *                         its step budget
+   * @throws InvalidQueryException if the text uses the query syntax but it isn't a valid query
+   */
+  static TracePredicate parse(String text, Runnable onRegexpDisabled) {
+    TraceQuery parser = new TraceQuery(text, onRegexpDisabled);
+    if (parser.atEnd()) {
+      return null;
+    }
+    TracePredicate predicate;
+    try {
+      predicate = parser.parseOr();
+      if (!parser.atEnd()) {
+        throw parser.error("Unexpected " + parser.query.charAt(parser.position));
+      }
+    } catch (InvalidQueryException exception) {
+      if (parser.usesQuerySyntax) {
+        throw exception;
+      }
+      return null;
+    }
+    return parser.usesQuerySyntax ? predicate : null;
+  }
+
+  private TracePredicate parseOr() {
+    List<TracePredicate> operands = new ArrayList<>();
+    operands.add(parseAnd());
+    while (consumeKeyword(OR)) {
+      operands.add(parseAnd());
+    }
+    return TracePredicate.or(operands);
+  }
+
+  private TracePredicate parseAnd() {
+    List<TracePredicate> operands = new ArrayList<>();
+    operands.add(parseNot());
+    while (!atEnd() && peek() != ')' && !isKeyword(OR)) {
+      consumeKeyword(AND);
+      operands.add(parseNot());
+    }
+    return TracePredicate.and(operands);
+  }
+
+  private TracePredicate parseNot() {
+    if (consumeKeyword(NOT)) {
+      return TracePredicate.not(parseNot());
+    }
+    if (atEnd()) {
+      throw error("Missing term");
+    }
+    if (peek() == '(') {
+      position++;
+      TracePredicate predicate = parseOr();
+      if (atEnd() || peek() != ')') {
+        throw error("Missing )");
+      }
+      position++;
+      return predicate;
+    }
+    return parseTerm();
+  }
+
+  private TracePredicate parseTerm() {
+    char first = peek();
+    if (first == '"') {
+      return new TracePredicate.Text(readDelimited('"'));
+    }
+    if (first == '/') {
+      return parseRegexp(readDelimited('/'));
+    }
+    if (query.regionMatches(true, position, TAG, 0, TAG.length())) {
+      usesQuerySyntax = true;
+      position += TAG.length();
+      String tag = !atEnd() && peek() == '"' ? readDelimited('"') : readWord();
+      if (tag.isEmpty()) {
+        throw error("Missing tag");
+      }
+      return new TracePredicate.Tag(tag);
+    }
+    if (query.regionMatches(true, position, LEVEL, 0, LEVEL.length())
+        && position + LEVEL.length() < query.length()
+        && "<=>".indexOf(query.charAt(position + LEVEL.length())) != -1) {
+      usesQuerySyntax = true;
+      position += LEVEL.length();
+      return parseLevel();
+    }
+    String word = readWord();
+    if (word.isEmpty()) {
+      throw error("Unexpected " + first);
+    }
+    return new TracePredicate.Text(word);
+  }
+
+  private TracePredicate parseLevel() {
+    int comparison;
+    if (consume("<=")) {
+      comparison = TracePredicate.Level.LOWER_OR_EQUAL;
+    } else if (consume(">=")) {
+      comparison = TracePredicate.Level.HIGHER_OR_EQUAL;
+    } else if (consume("<")) {
+      comparison = TracePredicate.Level.LOWER;
+    } else if (consume(">")) {
+      comparison = TracePredicate.Level.HIGHER;
+    } else {
+      consume("=");
+      comparison = TracePredicate.Level.EQUAL;
+    }
+    String name = readWord();
+    for (TraceLevel level : TraceLevel.values()) {
+      if (level.getValue().equalsIgnoreCase(name) || level.name().equalsIgnoreCase(name)) {
+        return new TracePredicate.Level(comparison, level);
+      }
+    }
+    throw error("Unknown level " + name);
+  }
+
+  private TracePredicate parseRegexp(String regexp) {
+    List<String> alternatives = KeywordMatcher.parseLiteralAlternation(regexp);
+    if (alternatives != null) {
+      return new TracePredicate.Keywords(alternatives);
+    }
+    try {
+      return new TracePredicate.Regexp(regexp, onRegexpDisabled);
+    } catch (PatternSyntaxException exception) {
+      throw error("Invalid regexp " + regexp);
+    }
+  }
+
+  /**
+   * Reads the text between the delimiter at the current position and the next one not escaped
+   * with a backslash. Escaped delimiters are unescaped, other escapes are kept.
+   */
+  private String readDelimited(char delimiter) {
+    StringBuilder text = new StringBuilder();
+    position++;
+    while (position < query.length()) {
+      char c = query.charAt(position++);
+      if (c == delimiter) {
+        return text.toString();
+      }
+      if (c == '\\' && position < query.length() && query.charAt(position) == delimiter) {
+        c = query.charAt(position++);
+      }
+      text.append(c);
+    }
+    throw error("Missing closing " + delimiter);
+  }
+
+  private String readWord() {
+    int start = position;
+    while (position < query.length() && !isWordEnd(query.charAt(position))) {
+      position++;
+    }
+    return query.substring(start, position);
+  }
+
+  private boolean consumeKeyword(String keyword) {
+    if (!isKeyword(keyword)) {
+      return false;
+    }
+    usesQuerySyntax = true;
+    position += keyword.length();
+    return true;
+  }
+
+  private boolean isKeyword(String keyword) {
+    if (atEnd()) {
+      return false;
+    }
+    int end = position + keyword.length();
+    return query.startsWith(keyword, position)
+        && (end == query.length() || isWordEnd(query.charAt(end)));
+  }
+
+  private boolean consume(String token) {
+    if (query.startsWith(token, position)) {
+      position += token.length();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Skips the whitespaces before the next token and returns true if there are no more tokens.
+   */
+  private boolean atEnd() {
+    while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+      position++;
+    }
+    return position == query.length();
+  }
+
+  private char peek() {
+    return query.charAt(position);
+  }
+
+  private InvalidQueryException error(String message) {
+    return new InvalidQueryException(message + " at " + position + " in " + query);
+  }
+
+  private static boolean isWordEnd(char c) {
+    return Character.isWhitespace(c) || c == '(' || c == ')';
+  }
+
+  static class InvalidQueryException extends IllegalArgumentException {
+
+    InvalidQueryException(String message) {
+      super(message);
+    }
+  }
+}
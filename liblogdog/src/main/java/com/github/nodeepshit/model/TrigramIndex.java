@@ -0,0 +1,629 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inverted index of the trigrams of the messages retained, so the traces containing a text are
+ * found intersecting posting lists instead of searching every message.
+ * <p>
+ * Traces are identified by a sequence growing with every trace added, like FilteredTraceBuffer
+ * positions. Trigrams are case folded like CaseInsensitiveMatcher does and hashed to an int. A
+ * collision only adds candidates, findCandidates returns a superset of the traces matching a
+ * TraceFilter which still have to be checked with it.
+ * <p>
+ * Sequences are indexed in blocks of consecutive traces with posting lists of 16 bit offsets. The
+ * newest block grows with the traces added and is compacted to sorted arrays and bitmaps once
+ * full, so trigrams found in most messages take a bit per trace and intersect a word at a time.
+ * A block is dropped when every trace in it has been discarded, so pruning the oldest traces never
+ * touches a posting list, at the price of keeping up to a block of discarded traces indexed.
+ * <p>
+ * The bytes of the index can be bounded: a block is compacted early once it takes its share of
+ * them, and the oldest blocks are dropped, the newest one excepted, until the index fits. The
+ * traces before getFirstIndexedSequence are still retained by the caller but no longer indexed,
+ * so they are not returned by findCandidates and have to be checked.
+ */
+public class TrigramIndex {
+
+  static final int MIN_BLOCK_SIZE = 64;
+  static final int MAX_BLOCK_SIZE = 1 << 16;
+
+  private static final int BLOCKS_PER_INDEX = 8;
+  private static final int ARRAY_BYTES = 16;
+  private static final int OBJECT_BYTES = 16;
+  private static final int REFERENCE_BYTES = 4;
+  private static final long[] NO_SEQUENCES = new long[0];
+
+  private final List<Block> blocks = new ArrayList<>();
+  private int blockSize;
+  private long maxBytes = Long.MAX_VALUE;
+  private long firstSequence;
+  private long firstIndexedSequence;
+
+  public TrigramIndex(int maxNumberOfTraces) {
+    setMaxNumberOfTraces(maxNumberOfTraces);
+  }
+
+  /**
+   * Sizes the blocks created from now on so about BLOCKS_PER_INDEX of them cover the traces
+   * retained.
+   */
+  public void setMaxNumberOfTraces(int maxNumberOfTraces) {
+    blockSize = Math.max(MIN_BLOCK_SIZE,
+        Math.min(MAX_BLOCK_SIZE, maxNumberOfTraces / BLOCKS_PER_INDEX));
+  }
+
+  /**
+   * Configures the max number of bytes taken by the index, as returned by getMemoryFootprint. The
+   * block being filled is never dropped, so it can take more than the max on its own.
+   */
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    removeExceededBytesIfNeeded();
+  }
+
+  /**
+   * Indexes the message of the trace with the given sequence. Sequences have to be added in
+   * increasing order. Adding the last sequence again indexes the new message too, like replacing
+   * the last trace: the trigrams of the previous message only add candidates.
+   */
+  public void add(long sequence, String message) {
+    if (sequence < Math.max(firstSequence, firstIndexedSequence)) {
+      return;
+    }
+    Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+    if (needsNewBlock(block, sequence)) {
+      if (block != null) {
+        block.seal((int) Math.min(block.capacity, sequence - block.firstSequence));
+      }
+      block = new Block(sequence, blockSize);
+      blocks.add(block);
+    }
+    if (message != null) {
+      block.add((int) (sequence - block.firstSequence), message);
+    }
+    removeExceededBytesIfNeeded();
+  }
+
+  /**
+   * Forgets the traces with a sequence lower than the one passed as parameter.
+   */
+  public void discardBefore(long sequence) {
+    firstSequence = Math.max(firstSequence, sequence);
+    int discardedBlocks = 0;
+    while (discardedBlocks < blocks.size()
+        && blocks.get(discardedBlocks).firstSequence + blocks.get(discardedBlocks).capacity
+        <= firstSequence) {
+      discardedBlocks++;
+    }
+    blocks.subList(0, discardedBlocks).clear();
+  }
+
+  /**
+   * Returns the lowest sequence indexed. The traces before it have been discarded, or dropped
+   * from the index to respect the max bytes.
+   */
+  public long getFirstIndexedSequence() {
+    return Math.max(firstSequence, firstIndexedSequence);
+  }
+
+  /**
+   * Returns the sequences, sorted, of the traces indexed which may match the filter, or null if
+   * the index can't narrow them down and every trace has to be checked.
+   */
+  public long[] findCandidates(TraceFilter filter) {
+    return filter.findCandidates(this);
+  }
+
+  /**
+   * Returns an estimation of the bytes used by the index, in time proportional to the number of
+   * blocks.
+   */
+  public long getMemoryFootprint() {
+    long bytes = OBJECT_BYTES + ARRAY_BYTES + (long) blocks.size() * REFERENCE_BYTES;
+    for (Block block : blocks) {
+      bytes += block.getMemoryFootprint();
+    }
+    return bytes;
+  }
+
+  int getNumberOfBlocks() {
+    return blocks.size();
+  }
+
+  /**
+   * Returns true if the sequence is past the capacity of the newest block, or past its last trace
+   * while the block takes more than its share of the max bytes, so it's sealed before growing more.
+   */
+  private boolean needsNewBlock(Block block, long sequence) {
+    if (block == null || sequence >= block.firstSequence + block.capacity) {
+      return true;
+    }
+    return block.lastOffset >= 0 && sequence > block.firstSequence + block.lastOffset
+        && block.getMemoryFootprint() > maxBytes / BLOCKS_PER_INDEX;
+  }
+
+  private void removeExceededBytesIfNeeded() {
+    while (maxBytes != Long.MAX_VALUE && blocks.size() > 1 && getMemoryFootprint() > maxBytes) {
+      Block oldest = blocks.remove(0);
+      firstIndexedSequence = oldest.firstSequence + oldest.capacity;
+    }
+  }
+
+  /**
+   * Returns the sequences of the traces which may contain the text ignoring case, or null if the
+   * text is too short to have trigrams.
+   */
+  long[] findContaining(String text) {
+    int[] keys = getTrigrams(text);
+    if (keys == null) {
+      return null;
+    }
+    Sequences sequences = new Sequences();
+    for (Block block : blocks) {
+      block.find(keys, firstSequence, sequences);
+    }
+    return sequences.toArray();
+  }
+
+  /**
+   * Returns the sequences of the traces which may contain any of the texts, or null if any of
+   * them is too short to have trigrams.
+   */
+  long[] findContainingAny(List<String> texts) {
+    long[] sequences = NO_SEQUENCES;
+    for (String text : texts) {
+      long[] containing = findContaining(text);
+      if (containing == null) {
+        return null;
+      }
+      sequences = union(sequences, containing);
+    }
+    return sequences;
+  }
+
+  static long[] intersection(long[] sequences, long[] others) {
+    long[] intersection = new long[Math.min(sequences.length, others.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sequences.length && j < others.length) {
+      if (sequences[i] < others[j]) {
+        i++;
+      } else if (sequences[i] > others[j]) {
+        j++;
+      } else {
+        intersection[size++] = sequences[i];
+        i++;
+        j++;
+      }
+    }
+    return size == intersection.length ? intersection : Arrays.copyOf(intersection, size);
+  }
+
+  static long[] union(long[] sequences, long[] others) {
+    if (sequences.length == 0) {
+      return others;
+    }
+    long[] union = new long[sequences.length + others.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sequences.length || j < others.length) {
+      long next;
+      if (j == others.length || (i < sequences.length && sequences[i] <= others[j])) {
+        next = sequences[i++];
+      } else {
+        next = others[j++];
+      }
+      if (size == 0 || union[size - 1] != next) {
+        union[size++] = next;
+      }
+    }
+    return size == union.length ? union : Arrays.copyOf(union, size);
+  }
+
+  /**
+   * Returns the distinct trigram keys of the text, sorted, or null if it's shorter than three
+   * chars.
+   */
+  private static int[] getTrigrams(String text) {
+    if (text.length() < 3) {
+      return null;
+    }
+    int[] keys = new int[text.length() - 2];
+    char first = CaseInsensitiveMatcher.fold(text.charAt(0));
+    char second = CaseInsensitiveMatcher.fold(text.charAt(1));
+    for (int i = 2; i < text.length(); i++) {
+      char third = CaseInsensitiveMatcher.fold(text.charAt(i));
+      keys[i - 2] = key(first, second, third);
+      first = second;
+      second = third;
+    }
+    Arrays.sort(keys);
+    int distinct = 1;
+    for (int i = 1; i < keys.length; i++) {
+      if (keys[i] != keys[distinct - 1]) {
+        keys[distinct++] = keys[i];
+      }
+    }
+    return Arrays.copyOf(keys, distinct);
+  }
+
+  /**
+   * Packs ASCII trigrams in 21 bits, the rest are hashed with the sign bit set.
+   */
+  private static int key(char first, char second, char third) {
+    if ((first | second | third) < 0x80) {
+      return first << 14 | second << 7 | third;
+    }
+    int hash = ((first * 31 + second) * 31 + third) * 0x9E3779B1;
+    return hash | Integer.MIN_VALUE;
+  }
+
+  /**
+   * Posting lists of the traces with sequences from firstSequence to firstSequence + capacity.
+   * While open, a hash table maps every key to a growable list. Once sealed the keys are sorted,
+   * the lists concatenated and the dense ones stored as bitmaps.
+   */
+  private static class Block {
+
+    private static final int MIN_TABLE_SIZE = 256;
+    private static final int MIN_LIST_SIZE = 2;
+    private static final int DENSE_RATIO = 16;
+    private static final int NO_BITMAP = -1;
+
+    final long firstSequence;
+    int capacity;
+
+    private int[] tableKeys;
+    private int[] tableLists;
+    private char[][] lists;
+    private int[] listSizes;
+    private int numberOfLists;
+    private int lastOffset = -1;
+    private long bytes;
+
+    private int[] keys;
+    private int[] listStarts;
+    private int[] bitmapStarts;
+    private char[] postings;
+    private long[] bitmaps;
+
+    Block(long firstSequence, int capacity) {
+      this.firstSequence = firstSequence;
+      this.capacity = capacity;
+      this.tableKeys = new int[MIN_TABLE_SIZE];
+      this.tableLists = new int[MIN_TABLE_SIZE];
+      this.lists = new char[MIN_TABLE_SIZE / 2][];
+      this.listSizes = new int[MIN_TABLE_SIZE / 2];
+      this.bytes = OBJECT_BYTES + 9 * REFERENCE_BYTES + 2 * 8 + 3 * 4 + 4 * ARRAY_BYTES
+          + 8L * MIN_TABLE_SIZE + 8L * (MIN_TABLE_SIZE / 2);
+    }
+
+    void add(int offset, String message) {
+      lastOffset = offset;
+      if (message.length() < 3) {
+        return;
+      }
+      char first = CaseInsensitiveMatcher.fold(message.charAt(0));
+      char second = CaseInsensitiveMatcher.fold(message.charAt(1));
+      for (int i = 2; i < message.length(); i++) {
+        char third = CaseInsensitiveMatcher.fold(message.charAt(i));
+        append(getList(key(first, second, third)), (char) offset);
+        first = second;
+        second = third;
+      }
+    }
+
+    private void append(int list, char offset) {
+      int size = listSizes[list];
+      char[] postings = lists[list];
+      if (size > 0 && postings[size - 1] == offset) {
+        return;
+      }
+      if (size == postings.length) {
+        postings = Arrays.copyOf(postings, size * 2);
+        lists[list] = postings;
+        bytes += 2L * size;
+      }
+      postings[size] = offset;
+      listSizes[list] = size + 1;
+    }
+
+    /**
+     * Returns the list of the key in the hash table, creating it if needed.
+     */
+    private int getList(int key) {
+      int mask = tableKeys.length - 1;
+      int slot = slot(key, mask);
+      while (tableLists[slot] != 0) {
+        if (tableKeys[slot] == key) {
+          return tableLists[slot] - 1;
+        }
+        slot = (slot + 1) & mask;
+      }
+      int list = numberOfLists++;
+      if (list == lists.length) {
+        lists = Arrays.copyOf(lists, list * 2);
+        listSizes = Arrays.copyOf(listSizes, list * 2);
+        bytes += 8L * list;
+      }
+      lists[list] = new char[MIN_LIST_SIZE];
+      bytes += ARRAY_BYTES + 2 * MIN_LIST_SIZE;
+      tableKeys[slot] = key;
+      tableLists[slot] = list + 1;
+      if (numberOfLists * 2 > tableKeys.length) {
+        rehash(tableKeys.length * 2);
+      }
+      return list;
+    }
+
+    private void rehash(int tableSize) {
+      int[] previousKeys = tableKeys;
+      int[] previousLists = tableLists;
+      tableKeys = new int[tableSize];
+      tableLists = new int[tableSize];
+      bytes += 8L * (tableSize - previousKeys.length);
+      int mask = tableSize - 1;
+      for (int i = 0; i < previousKeys.length; i++) {
+        if (previousLists[i] != 0) {
+          int slot = slot(previousKeys[i], mask);
+          while (tableLists[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          tableKeys[slot] = previousKeys[i];
+          tableLists[slot] = previousLists[i];
+        }
+      }
+    }
+
+    private static int slot(int key, int mask) {
+      int hash = key * 0x9E3779B1;
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Replaces the hash table and the growable lists with the sorted keys and the concatenated
+     * lists, using only the memory needed. Lists with more than one offset every DENSE_RATIO
+     * traces take less memory as bitmaps. The block only covers the capacity passed from then on,
+     * so a block sealed before it's full doesn't take the bitmap bits of the traces it lacks.
+     */
+    void seal(int capacity) {
+      if (keys != null) {
+        return;
+      }
+      this.capacity = capacity;
+      long[] entries = new long[numberOfLists];
+      int sparseSize = 0;
+      int denseLists = 0;
+      int entry = 0;
+      for (int i = 0; i < tableKeys.length; i++) {
+        if (tableLists[i] != 0) {
+          int list = tableLists[i] - 1;
+          entries[entry++] = (long) tableKeys[i] << 32 | list;
+          if (isDense(listSizes[list])) {
+            denseLists++;
+          } else {
+            sparseSize += listSizes[list];
+          }
+        }
+      }
+      Arrays.sort(entries);
+      int words = getBitmapWords();
+      keys = new int[numberOfLists];
+      listStarts = new int[numberOfLists + 1];
+      bitmapStarts = new int[numberOfLists];
+      postings = new char[sparseSize];
+      bitmaps = new long[denseLists * words];
+      int start = 0;
+      int bitmapStart = 0;
+      for (int i = 0; i < entries.length; i++) {
+        int list = (int) entries[i];
+        keys[i] = (int) (entries[i] >> 32);
+        listStarts[i] = start;
+        if (isDense(listSizes[list])) {
+          for (int j = 0; j < listSizes[list]; j++) {
+            char offset = lists[list][j];
+            bitmaps[bitmapStart + (offset >>> 6)] |= 1L << offset;
+          }
+          bitmapStarts[i] = bitmapStart;
+          bitmapStart += words;
+        } else {
+          System.arraycopy(lists[list], 0, postings, start, listSizes[list]);
+          bitmapStarts[i] = NO_BITMAP;
+          start += listSizes[list];
+        }
+      }
+      listStarts[numberOfLists] = start;
+      tableKeys = null;
+      tableLists = null;
+      lists = null;
+      listSizes = null;
+      bytes = OBJECT_BYTES + 9 * REFERENCE_BYTES + 2 * 8 + 3 * 4 + 5 * ARRAY_BYTES
+          + 4L * keys.length + 4L * listStarts.length + 4L * bitmapStarts.length
+          + 2L * postings.length + 8L * bitmaps.length;
+    }
+
+    private boolean isDense(int listSize) {
+      return (long) listSize * DENSE_RATIO > capacity;
+    }
+
+    private int getBitmapWords() {
+      return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * Appends to the sequences passed as parameter the ones of the block, not lower than
+     * firstRetained, whose message has every trigram key passed as parameter.
+     */
+    void find(int[] keys, long firstRetained, Sequences sequences) {
+      long minimumOffset = Math.max(0, firstRetained - firstSequence);
+      if (minimumOffset > lastOffset) {
+        return;
+      }
+      Lists found = new Lists(keys.length);
+      int shortest = -1;
+      for (int i = 0; i < keys.length; i++) {
+        if (!findList(keys[i], i, found)) {
+          return;
+        }
+        if (found.arrays[i] != null
+            && (shortest == -1 || found.size(i) < found.size(shortest))) {
+          shortest = i;
+        }
+      }
+      if (shortest == -1) {
+        findInBitmaps(found.bitmapStarts, minimumOffset, sequences);
+        return;
+      }
+      char[] candidates = found.arrays[shortest];
+      for (int i = found.starts[shortest]; i < found.ends[shortest]; i++) {
+        char offset = candidates[i];
+        if (offset >= minimumOffset && containedInEveryList(offset, found)) {
+          sequences.add(firstSequence + offset);
+        }
+      }
+    }
+
+    /**
+     * Moves the start of every list past the offsets lower than the one passed as parameter and
+     * returns true if every list contains it.
+     */
+    private boolean containedInEveryList(char offset, Lists found) {
+      for (int i = 0; i < found.arrays.length; i++) {
+        char[] array = found.arrays[i];
+        if (array == null) {
+          if ((bitmaps[found.bitmapStarts[i] + (offset >>> 6)] & 1L << offset) == 0) {
+            return false;
+          }
+          continue;
+        }
+        int start = advance(array, found.starts[i], found.ends[i], offset);
+        found.starts[i] = start;
+        if (start == found.ends[i] || array[start] != offset) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void findInBitmaps(int[] bitmapStarts, long minimumOffset, Sequences sequences) {
+      int words = getBitmapWords();
+      for (int word = (int) (minimumOffset >>> 6); word < words; word++) {
+        long bits = -1L;
+        for (int bitmapStart : bitmapStarts) {
+          bits &= bitmaps[bitmapStart + word];
+        }
+        while (bits != 0) {
+          int offset = word << 6 | Long.numberOfTrailingZeros(bits);
+          bits &= bits - 1;
+          if (offset >= minimumOffset) {
+            sequences.add(firstSequence + offset);
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns the first index from start with a value equal or greater than the target, galloping
+     * so a short list is intersected with a long one in time proportional to the short one.
+     */
+    private static int advance(char[] array, int start, int end, char target) {
+      int step = 1;
+      int low = start;
+      int high = start;
+      while (high < end && array[high] < target) {
+        low = high + 1;
+        high += step;
+        step <<= 1;
+      }
+      high = Math.min(high, end);
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (array[middle] < target) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    private boolean findList(int key, int index, Lists found) {
+      if (keys != null) {
+        int position = Arrays.binarySearch(keys, key);
+        if (position < 0) {
+          return false;
+        }
+        if (bitmapStarts[position] != NO_BITMAP) {
+          found.bitmapStarts[index] = bitmapStarts[position];
+        } else {
+          found.arrays[index] = postings;
+          found.starts[index] = listStarts[position];
+          found.ends[index] = listStarts[position + 1];
+        }
+        return true;
+      }
+      int mask = tableKeys.length - 1;
+      for (int slot = slot(key, mask); tableLists[slot] != 0; slot = (slot + 1) & mask) {
+        if (tableKeys[slot] == key) {
+          int list = tableLists[slot] - 1;
+          found.arrays[index] = lists[list];
+          found.ends[index] = listSizes[list];
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns the bytes used by the block, counted as the arrays are allocated so the footprint
+     * of the index can be checked on every trace added.
+     */
+    long getMemoryFootprint() {
+      return bytes;
+    }
+  }
+
+  /**
+   * Posting lists found for the trigrams searched: a slice of a char array, or a bitmap of the
+   * sealed block if the array is null.
+   */
+  private static class Lists {
+
+    final char[][] arrays;
+    final int[] starts;
+    final int[] ends;
+    final int[] bitmapStarts;
+
+    Lists(int numberOfLists) {
+      this.arrays = new char[numberOfLists][];
+      this.starts = new int[numberOfLists];
+      this.ends = new int[numberOfLists];
+      this.bitmapStarts = new int[numberOfLists];
+    }
+
+    int size(int list) {
+      return ends[list] - starts[list];
+    }
+  }
+
+  private static class Sequences {
+
+    private long[] sequences = new long[16];
+    private int size;
+
+    void add(long sequence) {
+      if (size == sequences.length) {
+        sequences = Arrays.copyOf(sequences, size * 2);
+      }
+      sequences[size++] = sequence;
+    }
+
+    long[] toArray() {
+      return Arrays.copyOf(sequences, size);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.nodeepshit.model;
+
+/**
+ * UTF-8 encoding of the traces stored in byte arrays by the presenter and written to the segment
+ * files of TraceJournal and the disk history. Surrogates not forming a pair are written as '?',
+ * so the length of an encoding is known before writing it and no CharsetEncoder is needed.
+ */
+public class Utf8 {
+
+  private Utf8() {
+  }
+
+  /**
+   * Returns the number of bytes the encoding of the text takes.
+   */
+  public static int getEncodedLength(String text) {
+    int length = text.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        bytes += 1;
+      } else if (!isSurrogate(c)) {
+        bytes += 2;
+      } else if (isSurrogatePair(text, i)) {
+        bytes += 2;
+        i++;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Writes the text encoded as getEncodedLength counts it and returns the offset after it.
+   */
+  public static int encode(String text, byte[] bytes, int offset) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        bytes[offset++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[offset++] = (byte) (0xC0 | c >> 6);
+        bytes[offset++] = (byte) (0x80 | c & 0x3F);
+      } else if (!isSurrogate(c)) {
+        bytes[offset++] = (byte) (0xE0 | c >> 12);
+        bytes[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+        bytes[offset++] = (byte) (0x80 | c & 0x3F);
+      } else if (isSurrogatePair(text, i)) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        bytes[offset++] = (byte) (0xF0 | codePoint >> 18);
+        bytes[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+        bytes[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+        bytes[offset++] = (byte) (0x80 | codePoint & 0x3F);
+      } else {
+        bytes[offset++] = '?';
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Returns the text, or its start if its encoding takes more than maxLength bytes. Every char
+   * takes up to three bytes, so the start is cut at maxLength / 3 chars without splitting a
+   * surrogate pair.
+   */
+  public static String truncate(String text, int encodedLength, int maxLength) {
+    if (encodedLength <= maxLength) {
+      return text;
+    }
+    int end = Math.max(0, maxLength / 3);
+    if (end > 0 && Character.isHighSurrogate(text.charAt(end - 1))) {
+      end--;
+    }
+    return text.substring(0, end);
+  }
+
+  private static boolean isSurrogate(char c) {
+    return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+  }
+
+  private static boolean isSurrogatePair(String text, int index) {
+    return Character.isHighSurrogate(text.charAt(index))
+        && index + 1 < text.length()
+        && Character.isLowSurrogate(text.charAt(index + 1));
+  }
+}
@@ -0,0 +1,412 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TrigramIndex;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Keeps every trace received, unfiltered, in a TraceBuffer and the rows matching the current
+ * TraceFilter as positions of that buffer, so a filter change is computed from the retained traces
+ * instead of reading them again.
+ * <p>
+ * A filter is searched out of the main thread: startSearch only applies it to the traces added
+ * from then on and returns a TraceSearch over the retained traces to check, whose results are
+ * prepended to the rows with addSearchResults. Positions from the search end are decided by add
+ * and replaceLast, the search end moves back if the last trace searched is replaced.
+ * <p>
+ * Messages are indexed by a TrigramIndex as they are added, so the search of a filter with texts
+ * only checks the traces containing their trigrams. A narrower filter only checks the rows shown
+ * if there are fewer of them. The index takes part of the max bytes: the oldest traces are
+ * discarded until the traces and the index fit. It never takes more than MAX_INDEX_BYTES, so once
+ * many traces are retained only the newest ones are indexed and the older ones are always checked.
+ * <p>
+ * Positions are absolute, the n-th trace ever added gets position n, so they stay valid while the
+ * oldest traces are discarded and rows always show the trace currently stored in their position.
+ * A DiscardListener is notified of the traces discarded with their positions. Rows keep only the
+ * low 32 bits of their positions, restored from the first position retained since fewer than 2^31
+ * traces are ever retained.
+ * <p>
+ * Changes are tracked per batch: once the batch is applied the rows shown when it started which
+ * have been removed are always the oldest ones and the new rows are the ones after them, unless a
+ * replacement hid or showed the last row of the batch start and the rows have to be refreshed.
+ */
+class FilteredTraceBuffer {
+
+    static final long MAX_INDEX_BYTES = 8 * 1024 * 1024;
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long NO_ROW = -1;
+    private static final long NO_SEARCH = -1;
+
+    private final TraceBuffer traces;
+    private final TrigramIndex index;
+    private final List<Trace> rowsView;
+    private TraceFilter filter = TraceFilter.NONE;
+    private long maxBytes = Long.MAX_VALUE;
+    private long firstPosition;
+    private int[] rows;
+    private int rowsHead;
+    private int rowsSize;
+    private long searchEnd = NO_SEARCH;
+    private int discardsNotified;
+
+    private long batchLastRow = NO_ROW;
+    private int batchRows;
+    private boolean batchNeedsRefresh;
+
+    FilteredTraceBuffer(int bufferSize) {
+        this.traces = new TraceBuffer(bufferSize);
+        this.index = new TrigramIndex(bufferSize);
+        this.index.setMaxBytes(MAX_INDEX_BYTES);
+        this.rows = new int[Math.min(bufferSize, MIN_CAPACITY)];
+        this.rowsView = new RowsView();
+    }
+
+    /**
+     * Configures the listener notified of the traces discarded, oldest first, null to stop
+     * notifying them.
+     */
+    void setDiscardListener(final DiscardListener discardListener) {
+        if (discardListener == null) {
+            traces.setDiscardListener(null);
+            return;
+        }
+        traces.setDiscardListener(new TraceBuffer.DiscardListener() {
+            @Override public void onTraceDiscarded(Trace trace) {
+                discardListener.onTraceDiscarded(firstPosition + discardsNotified++, trace);
+            }
+        });
+    }
+
+    /**
+     * Configures the max number of traces retained.
+     *
+     * @return the number of rows discarded
+     */
+    int setBufferSize(int bufferSize) {
+        int rowsBefore = rowsSize;
+        index.setMaxNumberOfTraces(bufferSize);
+        discardTraces(traces.setBufferSize(bufferSize));
+        return rowsBefore - rowsSize;
+    }
+
+    /**
+     * Configures the max number of bytes taken by the traces retained and their index, as returned
+     * by getTracesMemoryFootprint and getIndexMemoryFootprint.
+     *
+     * @return the number of rows discarded
+     */
+    int setMaxBytes(long maxBytes) {
+        int rowsBefore = rowsSize;
+        this.maxBytes = maxBytes;
+        discardTraces(traces.setMaxBytes(getMaxBytesOfTraces()));
+        return rowsBefore - rowsSize;
+    }
+
+    /**
+     * Shows only the traces matching the filter passed as parameter, but only checks the ones added
+     * from now on. Returns the search of the retained traces which may match: the ones found in
+     * the index along with the ones too old to be indexed, the rows shown if the filter is narrower
+     * and there are fewer of them, or every trace retained.
+     */
+    TraceSearch startSearch(TraceFilter filter) {
+        TraceFilter previousFilter = this.filter;
+        this.filter = filter;
+        boolean narrower = isSearchFinished() && filter.isNarrowerThan(previousFilter);
+        int numberOfTraces = traces.getCurrentNumberOfTraces();
+        searchEnd = firstPosition + numberOfTraces;
+        long[] candidates = index.findCandidates(filter);
+        if (candidates != null) {
+            candidates = addUnindexedPositions(candidates);
+        }
+        if (narrower && (candidates == null || rowsSize < candidates.length)) {
+            candidates = new long[rowsSize];
+            for (int i = 0; i < rowsSize; i++) {
+                candidates[i] = getRowPosition(i);
+            }
+        }
+        rowsSize = 0;
+        rowsHead = 0;
+        if (candidates == null) {
+            return new TraceSearch(traces.snapshot(null), null, firstPosition, filter);
+        }
+        int retainedCandidates = 0;
+        for (long position : candidates) {
+            if (position >= firstPosition) {
+                candidates[retainedCandidates++] = position;
+            }
+        }
+        int[] retained = new int[retainedCandidates];
+        for (int i = 0; i < retainedCandidates; i++) {
+            retained[i] = (int) (candidates[i] - firstPosition);
+        }
+        return new TraceSearch(traces.snapshot(retained),
+                Arrays.copyOf(candidates, retainedCandidates), firstPosition, filter);
+    }
+
+    /**
+     * Prepends the rows found by the current search which are still retained and not decided by
+     * add or replaceLast. Positions have to be lower than the ones of the previous results.
+     *
+     * @return the rows prepended
+     */
+    List<Trace> addSearchResults(long[] positions) {
+        int rowsBefore = rowsSize;
+        for (int i = positions.length - 1; i >= 0; i--) {
+            long position = positions[i];
+            if (position >= firstPosition && position < searchEnd) {
+                prependRow(position);
+            }
+        }
+        return new ArrayList<>(rowsView.subList(0, rowsSize - rowsBefore));
+    }
+
+    void finishSearch() {
+        searchEnd = NO_SEARCH;
+    }
+
+    /**
+     * Returns false while the rows of a search are being added, the rows shown are not all the
+     * traces matching the filter yet.
+     */
+    boolean isSearchFinished() {
+        return searchEnd == NO_SEARCH;
+    }
+
+    TraceFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the bytes taken by the traces retained, which are bounded along with the index by
+     * setMaxBytes.
+     */
+    long getTracesMemoryFootprint() {
+        return traces.getMemoryFootprint();
+    }
+
+    /**
+     * Returns an estimation of the bytes used by the index of the messages retained.
+     */
+    long getIndexMemoryFootprint() {
+        return index.getMemoryFootprint();
+    }
+
+    /**
+     * Starts tracking the rows removed, appended and replaced until the next call.
+     */
+    void startBatch() {
+        batchLastRow = rowsSize == 0 ? NO_ROW : getRowPosition(rowsSize - 1);
+        batchRows = rowsSize;
+        batchNeedsRefresh = false;
+    }
+
+    void add(Trace trace) {
+        long position = firstPosition + traces.getCurrentNumberOfTraces();
+        index.add(position, trace.getMessage());
+        discardTraces(traces.add(trace) + traces.setMaxBytes(getMaxBytesOfTraces()));
+        if (position >= firstPosition && matches(trace)) {
+            addRow(position);
+        }
+    }
+
+    /**
+     * Replaces the newest trace retained.
+     *
+     * @return true if the trace replaced is shown in the last row shown when the batch started and
+     * the new trace keeps it shown, so only that row changes. The new trace is discarded if it
+     * takes more bytes than the max
+     */
+    boolean replaceLast(Trace trace) {
+        long position = firstPosition + traces.getCurrentNumberOfTraces() - 1;
+        int tracesDiscarded = traces.replaceLast(trace);
+        index.add(position, trace.getMessage());
+        discardTraces(tracesDiscarded + traces.setMaxBytes(getMaxBytesOfTraces()));
+        if (position < searchEnd) {
+            searchEnd = position;
+        }
+        boolean shown = rowsSize > 0 && getRowPosition(rowsSize - 1) == position;
+        boolean matches = position >= firstPosition && matches(trace);
+        if (shown && !matches) {
+            rowsSize--;
+        } else if (!shown && matches) {
+            addRow(position);
+        }
+        if (position == batchLastRow) {
+            batchNeedsRefresh |= shown != matches;
+            return shown && matches;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the newest trace retained, shown or not, or null if there are none.
+     */
+    Trace getLastTrace() {
+        int size = traces.getCurrentNumberOfTraces();
+        return size == 0 ? null : traces.get(size - 1);
+    }
+
+    /**
+     * Returns the position of the oldest trace retained, the one the next trace added gets if
+     * there are none.
+     */
+    long getFirstPosition() {
+        return firstPosition;
+    }
+
+    int getNumberOfTraces() {
+        return traces.getCurrentNumberOfTraces();
+    }
+
+    /**
+     * Returns a read only view of the traces shown. The view reflects further changes.
+     */
+    List<Trace> getRows() {
+        return rowsView;
+    }
+
+    int getNumberOfRows() {
+        return rowsSize;
+    }
+
+    /**
+     * Returns true if the changes done in the current batch can't be described as the oldest rows
+     * removed and new rows appended.
+     */
+    boolean batchNeedsRefresh() {
+        return batchNeedsRefresh;
+    }
+
+    /**
+     * Returns the number of rows shown when the batch started which have been discarded.
+     */
+    int getBatchRemovedRows() {
+        return batchRows - (rowsSize - countBatchAppendedRows());
+    }
+
+    /**
+     * Returns the rows added after the rows shown when the batch started.
+     */
+    List<Trace> getBatchAppendedRows() {
+        int appendedRows = countBatchAppendedRows();
+        return new ArrayList<>(rowsView.subList(rowsSize - appendedRows, rowsSize));
+    }
+
+    private boolean matches(Trace trace) {
+        return filter.matches(trace.getLevel(), trace.getTag(), trace.getMessage());
+    }
+
+    private Trace getTrace(long position) {
+        return traces.get((int) (position - firstPosition));
+    }
+
+    private int countBatchAppendedRows() {
+        int appendedRows = 0;
+        while (appendedRows < rowsSize
+                && getRowPosition(rowsSize - 1 - appendedRows) > batchLastRow) {
+            appendedRows++;
+        }
+        return appendedRows;
+    }
+
+    /**
+     * Returns the bytes left to the traces by the index. The index only shrinks once a block of
+     * traces is discarded, so it's checked again on every change.
+     */
+    private long getMaxBytesOfTraces() {
+        if (maxBytes == Long.MAX_VALUE) {
+            return maxBytes;
+        }
+        return Math.max(0, maxBytes - index.getMemoryFootprint());
+    }
+
+    /**
+     * Returns the candidates found in the index preceded by the positions of the retained traces
+     * older than the ones indexed.
+     */
+    private long[] addUnindexedPositions(long[] candidates) {
+        int unindexed = (int) Math.max(0, index.getFirstIndexedSequence() - firstPosition);
+        if (unindexed == 0) {
+            return candidates;
+        }
+        long[] positions = new long[unindexed + candidates.length];
+        for (int i = 0; i < unindexed; i++) {
+            positions[i] = firstPosition + i;
+        }
+        System.arraycopy(candidates, 0, positions, unindexed, candidates.length);
+        return positions;
+    }
+
+    private void discardTraces(int tracesDiscarded) {
+        firstPosition += tracesDiscarded;
+        discardsNotified = 0;
+        index.discardBefore(firstPosition);
+        removeDiscardedRows();
+    }
+
+    private void removeDiscardedRows() {
+        while (rowsSize > 0 && getRowPosition(0) < firstPosition) {
+            rowsHead = rowsHead + 1 == rows.length ? 0 : rowsHead + 1;
+            rowsSize--;
+        }
+    }
+
+    private void addRow(long position) {
+        ensureRowsCapacity();
+        rows[rowIndex(rowsSize)] = (int) position;
+        rowsSize++;
+    }
+
+    private void prependRow(long position) {
+        ensureRowsCapacity();
+        rowsHead = rowsHead == 0 ? rows.length - 1 : rowsHead - 1;
+        rows[rowsHead] = (int) position;
+        rowsSize++;
+    }
+
+    private void ensureRowsCapacity() {
+        if (rowsSize == rows.length) {
+            int[] resized = new int[rows.length * 2];
+            int firstChunk = Math.min(rowsSize, rows.length - rowsHead);
+            System.arraycopy(rows, rowsHead, resized, 0, firstChunk);
+            System.arraycopy(rows, 0, resized, firstChunk, rowsSize - firstChunk);
+            rows = resized;
+            rowsHead = 0;
+        }
+    }
+
+    private long getRowPosition(int row) {
+        return firstPosition + (rows[rowIndex(row)] - (int) firstPosition);
+    }
+
+    private int rowIndex(int row) {
+        int index = rowsHead + row;
+        return index < rows.length ? index : index - rows.length;
+    }
+
+    private class RowsView extends AbstractList<Trace> implements RandomAccess {
+
+        @Override public Trace get(int row) {
+            if (row < 0 || row >= rowsSize) {
+                throw new IndexOutOfBoundsException("Row: " + row + ", rows: " + rowsSize);
+            }
+            return getTrace(getRowPosition(row));
+        }
+
+        @Override public int size() {
+            return rowsSize;
+        }
+    }
+
+    interface DiscardListener {
+
+        void onTraceDiscarded(long position, Trace trace);
+    }
+}
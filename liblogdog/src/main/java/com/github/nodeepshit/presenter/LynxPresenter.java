@@ -16,38 +16,131 @@
 
 package com.github.nodeepshit.presenter;
 
+import android.util.Log;
+
 import androidx.annotation.CheckResult;
 
 import com.github.nodeepshit.LynxConfig;
+import com.github.nodeepshit.model.AndroidMainThread;
 import com.github.nodeepshit.model.Lynx;
+import com.github.nodeepshit.model.MainThread;
+import com.github.nodeepshit.model.TimestampFormatter;
 import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
 import com.github.nodeepshit.model.TraceLevel;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Presenter created to decouple Lynx library view implementations from Lynx model. This presenter
  * responsibility is related to all the presentation logic to Lynx UI implementations. Lynx UI
  * implementations have to implement LynxPresenter.View interface.
+ * <p>
+ * Every trace notified by Lynx is retained, the filter typed by the user only decides which ones
+ * are shown, so changing it doesn't lose the history or read logcat again. The LynxConfig filter
+ * still decides which traces Lynx reads.
+ * <p>
+ * Filter changes never check the retained traces in the main thread. The filter typed is applied
+ * once the user stops typing for FILTER_DEBOUNCE_MILLIS, new traces are checked as they arrive and
+ * a TraceSearch checks the retained ones in the search executor, showing the newest matches first
+ * and prepending older ones as they are found. A newer filter cancels the search in progress.
+ * <p>
+ * If LynxConfig.isDiskHistory() the traces discarded are appended to a TraceHistory in the search
+ * executor once per batch, so the main thread never writes to disk. Once the user scrolls to the
+ * top, pages of older traces matching the filter are read in the same executor and shown above
+ * the rows, and while they are shown the rows discarded stay in the view as history too, up to
+ * MAX_HISTORY_ROWS. Changing the filter or the config removes the history shown.
+ * <p>
+ * The traces of the previous session replayed by Lynx can be shown instead of the rows, unfiltered.
+ * Meanwhile the current session keeps being retained and filtered without notifying the view, and
+ * its rows are shown again once the user goes back to it.
  *
  * @author Pedro Vicente Gomez Sanchez.
  */
 public class LynxPresenter implements Lynx.Listener {
 
   private static final int MIN_VISIBLE_POSITION_TO_ENABLE_AUTO_SCROLL = 3;
+  private static final long FILTER_DEBOUNCE_MILLIS = 150;
+  private static final String SEARCH_THREAD_NAME = "Lynx-search";
+  private static final long SEARCH_THREAD_KEEP_ALIVE_SECONDS = 30;
+  private static final int HISTORY_PAGE_SIZE = 200;
+  static final int MAX_HISTORY_ROWS = 10000;
+  private static final long HISTORY_NOT_SHOWN = -2;
+  private static final String LOGTAG = "LynxPresenter";
 
   private final Lynx lynx;
   private final View view;
-  private final TraceBuffer traceBuffer;
+  private View rowsView;
+  private final FilteredTraceBuffer traceBuffer;
+  private final MainThread mainThread;
+  private final Executor searchExecutor;
+  private final TraceSearch.Listener searchListener;
+  private final FilteredTraceBuffer.DiscardListener discardListener;
+  private final List<Trace> discardedTraces = new ArrayList<>();
+  private final List<Trace> discardedRows = new ArrayList<>();
+  private final List<Trace> historyRows = new ArrayList<>();
   private boolean isInitialized;
-  private TraceLevel mLastLevel;
+  private TraceLevel lastLevel;
+  private boolean collapseDuplicates;
+  private String filter = "";
+  private TraceLevel filterTraceLevel = TraceLevel.VERBOSE;
+  private boolean regexpFilterDisabledNotified;
+  private int filterUpdates;
+  private TraceSearch search;
+  private File diskHistoryDirectory;
+  private File historyDirectory;
+  private long maxBytesOfHistory;
+  private long firstDiscardedPosition;
+  private long historyEnd = HISTORY_NOT_SHOWN;
+  private boolean historyLoading;
+  private int historyGeneration;
+  private volatile TraceHistory history;
+  private volatile boolean historyFailed;
 
   public LynxPresenter(Lynx lynx, View view, int maxNumberOfTracesToShow) {
+    this(lynx, view, maxNumberOfTracesToShow, new AndroidMainThread(), newSearchExecutor());
+  }
+
+  /**
+   * @param mainThread     the thread the view is updated from
+   * @param searchExecutor the executor the retained traces are searched in when the filter changes
+   *                       and the disk history is written and read in, which has to run one task
+   *                       at a time in the order they are executed
+   */
+  public LynxPresenter(Lynx lynx, View view, int maxNumberOfTracesToShow, MainThread mainThread,
+      Executor searchExecutor) {
     validateNumberOfTracesConfiguration(maxNumberOfTracesToShow);
     this.lynx = lynx;
     this.view = view;
-    this.traceBuffer = new TraceBuffer(maxNumberOfTracesToShow);
+    this.rowsView = view;
+    this.traceBuffer = new FilteredTraceBuffer(maxNumberOfTracesToShow);
+    this.traceBuffer.setMaxBytes(lynx.getConfig().getMaxBytesOfTracesToShow());
+    this.collapseDuplicates = lynx.getConfig().isCollapseDuplicates();
+    this.mainThread = mainThread;
+    this.searchExecutor = searchExecutor;
+    this.searchListener = new TraceSearch.Listener() {
+      @Override public void onSearchResults(TraceSearch search, long[] positions) {
+        showSearchResults(search, positions);
+      }
+
+      @Override public void onSearchFinished(TraceSearch search) {
+        finishSearch(search);
+      }
+    };
+    this.discardListener = new FilteredTraceBuffer.DiscardListener() {
+      @Override public void onTraceDiscarded(long position, Trace trace) {
+        onTraceDiscardedFromBuffer(position, trace);
+      }
+    };
   }
 
   /**
@@ -58,10 +151,23 @@ public class LynxPresenter implements Lynx.Listener {
    */
   public void setLynxConfig(LynxConfig lynxConfig) {
     validateLynxConfig(lynxConfig);
+    collapseDuplicates = lynxConfig.isCollapseDuplicates();
+    updateHistoryConfig(lynxConfig);
     updateBufferConfig(lynxConfig);
     updateLynxConfig(lynxConfig);
   }
 
+  /**
+   * Configures the directory the disk history is kept in if LynxConfig.isDiskHistory(). Every
+   * history gets its own directory inside it, so presenters sharing it don't delete each other's
+   * files. The directories of the histories no longer used are deleted once the first trace is
+   * discarded.
+   */
+  public void setDiskHistoryDirectory(File directory) {
+    diskHistoryDirectory = directory;
+    updateHistoryConfig(lynx.getConfig());
+  }
+
   /**
    * Initializes presenter lifecycle if it wasn't initialized before.
    */
@@ -70,7 +176,7 @@ public class LynxPresenter implements Lynx.Listener {
       isInitialized = true;
       lynx.registerListener(this);
     }
-//    lynx.startReading();
+    lynx.startReading();
   }
 
   /**
@@ -85,36 +191,67 @@ public class LynxPresenter implements Lynx.Listener {
   }
 
   /**
-   * Given a list of Trace objects to show, updates the buffer of traces and refresh the view.
+   * Given a list of Trace objects to show, updates the buffer of traces and notifies the view just
+   * with the rows changed: the last row replaced by a new TraceLevel.UPDATE trace or by the
+   * collapse of a repeated trace, the oldest rows discarded from the buffer and the new rows
+   * appended. Traces not matching the filter are retained without notifying the view.
    */
   @Override public void onNewTraces(List<Trace> traces) {
-    int tracesRemoved = updateTraceBuffer(traces);
-    List<Trace> tracesToNotify = getCurrentTraces();
-    view.showTraces(tracesToNotify, tracesRemoved);
+    traceBuffer.startBatch();
+    for (Trace trace : traces) {
+      Trace lastTrace = traceBuffer.getLastTrace();
+      Trace replacement = null;
+      if (shouldReplaceLastTrace(trace)) {
+        replacement = trace;
+      } else if (collapseDuplicates && trace.equals(lastTrace)) {
+        replacement = lastTrace.collapse(trace);
+      }
+      if (replacement == null) {
+        traceBuffer.add(trace);
+      } else if (traceBuffer.replaceLast(replacement)) {
+        rowsView.replaceLastTrace(replacement);
+      }
+      lastLevel = trace.getLevel();
+    }
+    notifyBatchChanges();
+    notifyRegexpFilterDisabled();
+  }
+
+  /**
+   * Tells the view the regular expression of the LynxConfig filter is no longer applied, even if
+   * no trace matches the filter anymore.
+   */
+  @Override public void onFilterRegexpDisabled() {
+    notifyRegexpFilterDisabled();
   }
 
   /**
-   * Updates the filter used to know which Trace objects we have to show in the UI.
+   * Updates the filter used to know which Trace objects we have to show in the UI. The search in
+   * progress is cancelled right away, the new filter is applied once no other filter is typed for
+   * FILTER_DEBOUNCE_MILLIS. The rows are computed from the traces already retained.
    *
    * @param filter the filter to use
    */
   public void updateFilter(String filter) {
     if (isInitialized) {
-      LynxConfig lynxConfig = lynx.getConfig();
-      lynxConfig.setFilter(filter);
-      lynx.setConfig(lynxConfig);
-      clearView();
-      restartLynx();
+      this.filter = filter;
+      cancelSearch();
+      final int filterUpdate = ++filterUpdates;
+      mainThread.postDelayed(new Runnable() {
+        @Override public void run() {
+          if (filterUpdate == filterUpdates) {
+            applyFilter();
+          }
+        }
+      }, FILTER_DEBOUNCE_MILLIS);
     }
   }
 
   public void updateFilterTraceLevel(TraceLevel level) {
     if (isInitialized) {
-      clearView();
-      LynxConfig lynxConfig = lynx.getConfig();
-      lynxConfig.setFilterTraceLevel(level);
-      lynx.setConfig(lynxConfig);
-      restartLynx();
+      this.filterTraceLevel = level;
+      filterUpdates++;
+      applyFilter();
     }
   }
 
@@ -123,13 +260,37 @@ public class LynxPresenter implements Lynx.Listener {
    * them to other applications.
    */
   public void onShareButtonClicked() {
-    List<Trace> tracesToShare = new LinkedList<Trace>(traceBuffer.getTraces());
+    List<Trace> tracesToShare = new LinkedList<Trace>(
+        isShowingPreviousSession() ? lynx.getPreviousSessionTraces() : getCurrentTraces());
     String plainTraces = generatePlainTracesToShare(tracesToShare);
     if (!view.shareTraces(plainTraces)) {
       view.notifyShareTracesFailed();
     }
   }
 
+  /**
+   * Shows the traces of the previous session replayed by Lynx instead of the current rows. The
+   * current session rows are not updated until showCurrentSession is invoked.
+   */
+  public void showPreviousSession() {
+    rowsView = DETACHED_VIEW;
+    view.showTraces(lynx.getPreviousSessionTraces(), 0);
+  }
+
+  /**
+   * Shows the rows of the current session again, with the traces retained meanwhile.
+   */
+  public void showCurrentSession() {
+    if (isShowingPreviousSession()) {
+      rowsView = view;
+      refreshTraces(0);
+    }
+  }
+
+  public boolean isShowingPreviousSession() {
+    return rowsView != view;
+  }
+
   /**
    * Based on the int passed as parameter changes auto scroll feature configuration to
    * enable/disabled. If the last visible item of the list is in the last position of the list,
@@ -146,42 +307,314 @@ public class LynxPresenter implements Lynx.Listener {
   }
 
   /**
-   * Returns a list of the current traces stored in this presenter.
+   * Reads the previous page of the disk history, if any, and shows the traces matching the filter
+   * above the rows once read. Does nothing while a page or a filter search is being read.
+   */
+  public void onScrollToTop() {
+    if (historyDirectory == null
+        || isShowingPreviousSession()
+        || historyLoading
+        || historyEnd == TraceHistory.NO_POSITION
+        || !traceBuffer.isSearchFinished()
+        || historyRows.size() >= MAX_HISTORY_ROWS) {
+      return;
+    }
+    if (historyEnd == HISTORY_NOT_SHOWN) {
+      historyEnd = traceBuffer.getFirstPosition();
+    }
+    historyLoading = true;
+    final long end = historyEnd;
+    final TraceFilter filter = traceBuffer.getFilter();
+    final int generation = historyGeneration;
+    searchExecutor.execute(new Runnable() {
+      @Override public void run() {
+        final List<Trace> page = new ArrayList<>();
+        final long nextEnd = readHistory(end, filter, page);
+        mainThread.post(new Runnable() {
+          @Override public void run() {
+            showHistoryPage(generation, page, nextEnd);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Returns a list of the current traces stored in this presenter, the history read from disk
+   * first.
    *
    * @return a list of the current traces
    */
   public List<Trace> getCurrentTraces() {
-    return traceBuffer.getTraces();
+    if (historyRows.isEmpty()) {
+      return traceBuffer.getRows();
+    }
+    List<Trace> traces = new ArrayList<>(historyRows);
+    traces.addAll(traceBuffer.getRows());
+    return traces;
   }
 
-  private void clearView() {
-    traceBuffer.clear();
-    view.clear();
+  /**
+   * Returns the bytes taken by the traces retained: the UTF-8 message and the fields stored for
+   * every trace. Along with getSearchIndexMemoryFootprint() they are bounded by
+   * LynxConfig.getMaxBytesOfTracesToShow().
+   */
+  public long getTracesMemoryFootprint() {
+    return traceBuffer.getTracesMemoryFootprint();
+  }
+
+  /**
+   * Returns an estimation of the bytes used by the trigram index of the traces retained, which
+   * lets filters with texts avoid searching every trace.
+   */
+  public long getSearchIndexMemoryFootprint() {
+    return traceBuffer.getIndexMemoryFootprint();
+  }
+
+  private void applyFilter() {
+    cancelSearch();
+    clearHistoryRows();
+    search = traceBuffer.startSearch(new TraceFilter(filter, filterTraceLevel));
+    rowsView.showTraces(getCurrentTraces(), 0);
+    regexpFilterDisabledNotified = false;
+    search.start(searchExecutor, mainThread, searchListener);
+  }
+
+  private void cancelSearch() {
+    if (search != null) {
+      search.cancel();
+      search = null;
+    }
+  }
+
+  private void showSearchResults(TraceSearch search, long[] positions) {
+    if (search != this.search) {
+      return;
+    }
+    List<Trace> rows = traceBuffer.addSearchResults(positions);
+    if (!rows.isEmpty()) {
+      rowsView.prependTraces(rows);
+    }
+  }
+
+  private void finishSearch(TraceSearch search) {
+    if (search != this.search) {
+      return;
+    }
+    this.search = null;
+    traceBuffer.finishSearch();
+    notifyRegexpFilterDisabled();
+  }
+
+  /**
+   * Returns an executor with a single daemon thread, stopped while there is nothing to search.
+   */
+  private static Executor newSearchExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, SEARCH_THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, SEARCH_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
-  private void restartLynx() {
-    lynx.restart();
+  /**
+   * Tells the view once if the regular expression of the filter typed or of the LynxConfig one
+   * exceeded its step budget and is no longer applied.
+   */
+  private void notifyRegexpFilterDisabled() {
+    boolean disabled = traceBuffer.getFilter().isRegexpDisabled() || lynx.isFilterRegexpDisabled();
+    if (disabled && !regexpFilterDisabledNotified) {
+      view.notifyRegexpFilterDisabled();
+    }
+    regexpFilterDisabledNotified = disabled;
   }
 
   private void updateBufferConfig(LynxConfig lynxConfig) {
-    traceBuffer.setBufferSize(lynxConfig.getMaxNumberOfTracesToShow());
-    refreshTraces();
+    int tracesRemoved = traceBuffer.setBufferSize(lynxConfig.getMaxNumberOfTracesToShow())
+        + traceBuffer.setMaxBytes(lynxConfig.getMaxBytesOfTracesToShow());
+    appendDiscardedTraces();
+    discardedRows.clear();
+    if (!historyRows.isEmpty()) {
+      tracesRemoved += historyRows.size();
+    }
+    clearHistoryRows();
+    refreshTraces(tracesRemoved);
+  }
+
+  /**
+   * Starts or stops keeping the traces discarded in the disk history. The history is opened again
+   * if its directory or max bytes change.
+   */
+  private void updateHistoryConfig(LynxConfig lynxConfig) {
+    File directory = lynxConfig.isDiskHistory() ? diskHistoryDirectory : null;
+    long maxBytes = lynxConfig.getMaxBytesOfDiskHistory();
+    boolean sameDirectory =
+        directory == null ? historyDirectory == null : directory.equals(historyDirectory);
+    if (sameDirectory && maxBytes == maxBytesOfHistory) {
+      return;
+    }
+    if (historyDirectory != null) {
+      closeHistory();
+    }
+    historyDirectory = directory;
+    maxBytesOfHistory = maxBytes;
+    traceBuffer.setDiscardListener(directory == null ? null : discardListener);
+    removeHistoryRows();
   }
 
-  private void refreshTraces() {
-    onNewTraces(traceBuffer.getTraces());
+  private void onTraceDiscardedFromBuffer(long position, Trace trace) {
+    if (discardedTraces.isEmpty()) {
+      firstDiscardedPosition = position;
+    }
+    discardedTraces.add(trace);
+    if (historyEnd != HISTORY_NOT_SHOWN && traceBuffer.getFilter()
+        .matches(trace.getLevel(), trace.getTag(), trace.getMessage())) {
+      discardedRows.add(trace);
+      historyRows.add(trace);
+    }
+  }
+
+  /**
+   * Appends the traces discarded since the last call to the disk history in the search executor.
+   */
+  private void appendDiscardedTraces() {
+    if (discardedTraces.isEmpty()) {
+      return;
+    }
+    final List<Trace> traces = new ArrayList<>(discardedTraces);
+    final long firstPosition = firstDiscardedPosition;
+    final File directory = historyDirectory;
+    final long maxBytes = maxBytesOfHistory;
+    discardedTraces.clear();
+    searchExecutor.execute(new Runnable() {
+      @Override public void run() {
+        if (historyFailed) {
+          return;
+        }
+        try {
+          if (history == null) {
+            history = TraceHistory.create(directory, TraceHistory.DEFAULT_SEGMENT_SIZE, maxBytes);
+          }
+          for (int i = 0; i < traces.size(); i++) {
+            history.append(firstPosition + i, traces.get(i));
+          }
+        } catch (IOException e) {
+          Log.e(LOGTAG, "IOException writing the disk history, it's disabled.", e);
+          historyFailed = true;
+        }
+      }
+    });
+  }
+
+  /**
+   * Reads in the search executor the page of the disk history before the end position.
+   *
+   * @return the end of the previous page or TraceHistory.NO_POSITION if there is none
+   */
+  private long readHistory(long end, TraceFilter filter, List<Trace> page) {
+    TraceHistory history = this.history;
+    if (historyFailed || history == null) {
+      return TraceHistory.NO_POSITION;
+    }
+    try {
+      return history.readBefore(end, filter, HISTORY_PAGE_SIZE, page);
+    } catch (IOException e) {
+      Log.e(LOGTAG, "IOException reading the disk history.", e);
+      page.clear();
+      return TraceHistory.NO_POSITION;
+    }
+  }
+
+  private void closeHistory() {
+    appendDiscardedTraces();
+    searchExecutor.execute(new Runnable() {
+      @Override public void run() {
+        if (history != null) {
+          history.close();
+          history = null;
+        }
+        historyFailed = false;
+      }
+    });
+  }
+
+  private void showHistoryPage(int generation, List<Trace> page, long nextEnd) {
+    if (generation != historyGeneration) {
+      return;
+    }
+    historyLoading = false;
+    historyEnd = nextEnd;
+    if (!page.isEmpty()) {
+      historyRows.addAll(0, page);
+      rowsView.prependTraces(page);
+    } else if (nextEnd != TraceHistory.NO_POSITION) {
+      onScrollToTop();
+    }
+  }
+
+  /**
+   * Removes the history shown from the view and stops keeping the rows discarded as history.
+   */
+  private void removeHistoryRows() {
+    if (!historyRows.isEmpty()) {
+      rowsView.removeFirstTraces(historyRows.size());
+    }
+    clearHistoryRows();
+  }
+
+  private void clearHistoryRows() {
+    historyGeneration++;
+    historyLoading = false;
+    historyEnd = HISTORY_NOT_SHOWN;
+    historyRows.clear();
+  }
+
+  private void refreshTraces(int tracesRemoved) {
+    rowsView.showTraces(getCurrentTraces(), tracesRemoved);
   }
 
   private void updateLynxConfig(LynxConfig lynxConfig) {
     lynx.setConfig(lynxConfig);
   }
 
-  private int updateTraceBuffer(List<Trace> traces) {
-    if (mLastLevel == TraceLevel.UPDATE && traces.get(0).getLevel() == TraceLevel.UPDATE) {
-      traceBuffer.removeLast();
+  private boolean shouldReplaceLastTrace(Trace trace) {
+    return lastLevel == TraceLevel.UPDATE
+        && trace.getLevel() == TraceLevel.UPDATE
+        && traceBuffer.getNumberOfTraces() > 0;
+  }
+
+  /**
+   * Notifies the view of the rows changed by the batch. While history is shown the rows discarded
+   * are kept as history instead of removed, the ones added and discarded in the same batch are
+   * appended before the new rows.
+   */
+  private void notifyBatchChanges() {
+    appendDiscardedTraces();
+    List<Trace> movedRows = new ArrayList<>(discardedRows);
+    discardedRows.clear();
+    int removedRows = traceBuffer.getBatchRemovedRows();
+    boolean historyShown = historyEnd != HISTORY_NOT_SHOWN;
+    if (traceBuffer.batchNeedsRefresh() || (historyShown && movedRows.size() < removedRows)) {
+      rowsView.showTraces(getCurrentTraces(), 0);
+    } else {
+      List<Trace> appendedRows = traceBuffer.getBatchAppendedRows();
+      if (historyShown) {
+        appendedRows.addAll(0, movedRows.subList(removedRows, movedRows.size()));
+      } else if (removedRows > 0) {
+        rowsView.removeFirstTraces(removedRows);
+      }
+      if (!appendedRows.isEmpty()) {
+        rowsView.appendTraces(appendedRows);
+      }
+    }
+    if (historyRows.size() > MAX_HISTORY_ROWS) {
+      removeHistoryRows();
     }
-    mLastLevel = traces.get(0).getLevel();
-    return traceBuffer.add(traces);
   }
 
   private void validateNumberOfTracesConfiguration(long maxNumberOfTracesToShow) {
@@ -199,18 +632,19 @@ public class LynxPresenter implements Lynx.Listener {
   }
 
   private boolean shouldDisableAutoScroll(int lastVisiblePosition) {
-    int positionOffset = traceBuffer.getCurrentNumberOfTraces() - lastVisiblePosition;
+    int positionOffset =
+        historyRows.size() + traceBuffer.getNumberOfRows() - lastVisiblePosition;
     return positionOffset >= MIN_VISIBLE_POSITION_TO_ENABLE_AUTO_SCROLL;
   }
 
   private String generatePlainTracesToShare(List<Trace> tracesToShare) {
     StringBuilder sb = new StringBuilder();
+    TimestampFormatter timestampFormatter = new TimestampFormatter();
     for (Trace trace : tracesToShare) {
       String traceLevel = trace.getLevel().getValue();
-      String traceMessage = trace.getMessage();
       sb.append(traceLevel);
       sb.append("/ ");
-      sb.append(traceMessage);
+      timestampFormatter.appendTrace(sb, trace);
       sb.append("\n");
     }
     return sb.toString();
@@ -220,6 +654,14 @@ public class LynxPresenter implements Lynx.Listener {
 
     void showTraces(List<Trace> traces, int removedTraces);
 
+    void appendTraces(List<Trace> traces);
+
+    void prependTraces(List<Trace> traces);
+
+    void removeFirstTraces(int numberOfTraces);
+
+    void replaceLastTrace(Trace trace);
+
     void clear();
 
     @CheckResult
@@ -227,8 +669,49 @@ public class LynxPresenter implements Lynx.Listener {
 
     void notifyShareTracesFailed();
 
+    void notifyRegexpFilterDisabled();
+
     void disableAutoScroll();
 
     void enableAutoScroll();
   }
+
+  /**
+   * View notified of the rows changed while the previous session is shown, which ignores them.
+   */
+  private static final View DETACHED_VIEW = new View() {
+    @Override public void showTraces(List<Trace> traces, int removedTraces) {
+    }
+
+    @Override public void appendTraces(List<Trace> traces) {
+    }
+
+    @Override public void prependTraces(List<Trace> traces) {
+    }
+
+    @Override public void removeFirstTraces(int numberOfTraces) {
+    }
+
+    @Override public void replaceLastTrace(Trace trace) {
+    }
+
+    @Override public void clear() {
+    }
+
+    @Override public boolean shareTraces(String plainTraces) {
+      return false;
+    }
+
+    @Override public void notifyShareTracesFailed() {
+    }
+
+    @Override public void notifyRegexpFilterDisabled() {
+    }
+
+    @Override public void disableAutoScroll() {
+    }
+
+    @Override public void enableAutoScroll() {
+    }
+  };
 }
@@ -0,0 +1,179 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Utf8;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append only storage of trace messages encoded as UTF-8 in large byte chunks, every message
+ * followed by a few fields encoded as zigzag varints. A record is addressed by the number of its
+ * chunk in the high 32 bits and its offset in the low ones, and never spans two chunks.
+ * <p>
+ * Bytes are never modified once written, so a snapshot sharing the chunks can be read from another
+ * thread. The oldest chunks are released once every record in them is discarded and the newest
+ * record can be rewritten in place while no snapshot shares it.
+ */
+class TraceArena {
+
+  static final int MIN_CHUNK_SIZE = 4 * 1024;
+  static final int MAX_CHUNK_SIZE = 256 * 1024;
+  private static final int MAX_VARINT_SIZE = 10;
+  private static final long OFFSET_MASK = 0xFFFFFFFFL;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final List<byte[]> chunks;
+  private long firstChunk;
+  private int writeOffset;
+  private long sharedEnd;
+
+  TraceArena() {
+    this(new ArrayList<byte[]>(), 0, 0);
+  }
+
+  private TraceArena(List<byte[]> chunks, long firstChunk, int writeOffset) {
+    this.chunks = chunks;
+    this.firstChunk = firstChunk;
+    this.writeOffset = writeOffset;
+  }
+
+  /**
+   * Writes the message, whose length was returned by Utf8.getEncodedLength, followed by the
+   * fields.
+   *
+   * @return the address of the message
+   */
+  long write(String message, int encodedLength, long[] fields) {
+    int recordSize = encodedLength + fields.length * MAX_VARINT_SIZE;
+    if (chunks.isEmpty() || writeOffset + recordSize > getLastChunk().length) {
+      addChunk(recordSize);
+    }
+    byte[] chunk = getLastChunk();
+    long address = getEnd();
+    int offset = Utf8.encode(message, chunk, writeOffset);
+    for (long field : fields) {
+      offset = writeVarint((field << 1) ^ (field >> 63), chunk, offset);
+    }
+    writeOffset = offset;
+    return address;
+  }
+
+  String readMessage(long address, int encodedLength) {
+    return new String(getChunk(address), getOffset(address), encodedLength, UTF_8);
+  }
+
+  /**
+   * Reads as many fields written after the message as the length of the array passed.
+   */
+  void readFields(long address, int encodedLength, long[] fields) {
+    byte[] chunk = getChunk(address);
+    int offset = getOffset(address) + encodedLength;
+    for (int i = 0; i < fields.length; i++) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = chunk[offset++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      fields[i] = (value >>> 1) ^ -(value & 1);
+    }
+  }
+
+  /**
+   * Returns the bytes taken by the record of the message at the address, the given number of
+   * fields included.
+   */
+  int getRecordSize(long address, int encodedLength, int numberOfFields) {
+    byte[] chunk = getChunk(address);
+    int start = getOffset(address);
+    int offset = start + encodedLength;
+    for (int i = 0; i < numberOfFields; i++) {
+      while (chunk[offset] < 0) {
+        offset++;
+      }
+      offset++;
+    }
+    return offset - start;
+  }
+
+  /**
+   * Returns the address the next record will be written to if it fits in the last chunk.
+   */
+  long getEnd() {
+    return (firstChunk + chunks.size() - 1) << 32 | writeOffset;
+  }
+
+  /**
+   * Releases the chunks before the one of the address passed, the last chunk is always kept.
+   */
+  void discardBefore(long address) {
+    int chunksToDiscard = (int) Math.min((address >>> 32) - firstChunk, chunks.size() - 1);
+    if (chunksToDiscard > 0) {
+      chunks.subList(0, chunksToDiscard).clear();
+      firstChunk += chunksToDiscard;
+    }
+  }
+
+  /**
+   * Discards the bytes written from the address passed, which has to be the one of the newest
+   * record, so they are written again. Does nothing if the record is in an older chunk or shared
+   * with a snapshot.
+   */
+  void discardFrom(long address) {
+    if (address >>> 32 == firstChunk + chunks.size() - 1 && address >= sharedEnd) {
+      writeOffset = getOffset(address);
+    }
+  }
+
+  /**
+   * Returns a read only arena sharing the records written until now, which can be read from
+   * another thread while this one changes.
+   */
+  TraceArena snapshot() {
+    sharedEnd = getEnd();
+    return new TraceArena(new ArrayList<>(chunks), firstChunk, writeOffset);
+  }
+
+  /**
+   * Returns an estimation of the bytes used by the chunks, the unused end of every chunk
+   * included.
+   */
+  long getMemoryFootprint() {
+    long footprint = 0;
+    for (byte[] chunk : chunks) {
+      footprint += chunk.length;
+    }
+    return footprint;
+  }
+
+  private void addChunk(int recordSize) {
+    long liveBytes = getMemoryFootprint();
+    int chunkSize = (int) Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, liveBytes / 4));
+    chunks.add(new byte[Math.max(chunkSize, recordSize)]);
+    writeOffset = 0;
+  }
+
+  private byte[] getLastChunk() {
+    return chunks.get(chunks.size() - 1);
+  }
+
+  private byte[] getChunk(long address) {
+    return chunks.get((int) ((address >>> 32) - firstChunk));
+  }
+
+  private static int getOffset(long address) {
+    return (int) (address & OFFSET_MASK);
+  }
+
+  private static int writeVarint(long value, byte[] chunk, int offset) {
+    while ((value & ~0x7FL) != 0) {
+      chunk[offset++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    chunk[offset++] = (byte) value;
+    return offset;
+  }
+}
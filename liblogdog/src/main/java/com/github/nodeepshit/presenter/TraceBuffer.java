@@ -18,85 +18,417 @@ package com.github.nodeepshit.presenter;
 
 
 import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+import com.github.nodeepshit.model.Utf8;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * Buffer created to keep a max number of traces and be able to configure the size of the buffer.
+ * The bytes taken by the traces can be bounded too, the oldest traces are discarded until both
+ * limits are respected, the newest trace included if it doesn't fit alone.
+ * <p>
+ * Traces are stored in a circular array growing on demand up to the configured buffer size, so
+ * appending, discarding the oldest traces, indexed access and replacing the last trace are
+ * constant time operations independently of the number of traces stored.
+ * <p>
+ * Traces are not retained as objects. Levels and the address and length of the messages are kept
+ * in parallel primitive arrays, the messages in a TraceArena as UTF-8 followed by the tag, thread
+ * id, repeat count, last timestamp, sequence and timestamp of the trace. Sequences and timestamps
+ * are written relative to the ones of the first trace stored since the buffer was empty, so they
+ * take a few bytes instead of eight. Tags are stored once and referenced by number. A Trace is
+ * created every time one is read, so only the rows rendered exist as objects.
+ * <p>
+ * A DiscardListener can be notified of every trace discarded to respect the limits, in which case
+ * those traces are created too.
  *
  * @author Pedro Vicente Gomez Sanchez.
  */
 class TraceBuffer {
 
+    private static final int MIN_CAPACITY = 16;
+    private static final int TAG = 0;
+    private static final int THREAD_ID = 1;
+    private static final int REPEAT_COUNT = 2;
+    private static final int LAST_TIMESTAMP_DELTA = 3;
+    private static final int SEQUENCE_DELTA = 4;
+    private static final int TIMESTAMP_DELTA = 5;
+    private static final int NUMBER_OF_FIELDS = 6;
+    private static final int BYTES_PER_TRACE = 8 + 4 + 1;
+    private static final TraceLevel[] LEVELS = TraceLevel.values();
+
     private int bufferSize;
-    private final List<Trace> traces;
+    private long maxBytes = Long.MAX_VALUE;
+    private long bytes;
+    private long sequenceBase;
+    private long timestampBase;
+    private long[] addresses;
+    private int[] lengths;
+    private byte[] levels;
+    private int head;
+    private int size;
+    private final TraceArena arena;
+    private final List<String> tags;
+    private final Map<String, Integer> tagNumbers;
+    private final long[] fields;
+    private final List<Trace> tracesView;
+    private DiscardListener discardListener;
 
     TraceBuffer(int bufferSize) {
         this.bufferSize = bufferSize;
-        traces = new LinkedList<Trace>();
+        allocate(Math.min(bufferSize, MIN_CAPACITY));
+        this.arena = new TraceArena();
+        this.tags = new ArrayList<>();
+        this.tagNumbers = new HashMap<>();
+        this.fields = new long[NUMBER_OF_FIELDS];
+        this.tracesView = new TracesView();
     }
 
     /**
-     * Configures the max number of traces to keep inside the buffer
+     * Configures the max number of traces to keep inside the buffer. The newest traces are kept if
+     * the new size is lower than the number of traces already stored.
+     *
+     * @return the number of traces discarded
      */
-    void setBufferSize(int bufferSize) {
+    int setBufferSize(int bufferSize) {
         this.bufferSize = bufferSize;
-        removeExceededTracesIfNeeded();
+        int tracesDiscarded = removeExceededTracesIfNeeded(0);
+        if (levels.length > bufferSize) {
+            resize(Math.max(size, Math.min(bufferSize, MIN_CAPACITY)));
+        }
+        return tracesDiscarded;
+    }
+
+    /**
+     * Configures the max number of bytes taken by the traces kept, as returned by
+     * getMemoryFootprint. The newest traces are kept if the traces already stored take more.
+     *
+     * @return the number of traces discarded
+     */
+    int setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return removeExceededBytesIfNeeded();
+    }
+
+    /**
+     * Configures the listener notified of the traces discarded to respect the max number of
+     * traces and bytes, null to stop notifying them.
+     */
+    void setDiscardListener(DiscardListener discardListener) {
+        this.discardListener = discardListener;
     }
 
     /**
      * Adds a list of traces to the buffer, if the buffer is full your new traces will be added and
      * the previous one will be removed.
+     *
+     * @return the number of traces discarded, new traces that didn't fit in the buffer included
      */
     int add(List<Trace> traces) {
-        this.traces.addAll(traces);
-        return removeExceededTracesIfNeeded();
+        int newTraces = traces.size();
+        int tracesDiscarded = removeExceededTracesIfNeeded(newTraces);
+        int firstTraceToAdd = Math.max(0, newTraces - bufferSize);
+        for (int i = 0; discardListener != null && i < firstTraceToAdd; i++) {
+            discardListener.onTraceDiscarded(traces.get(i));
+        }
+        ensureCapacity(size + newTraces - firstTraceToAdd);
+        for (int i = firstTraceToAdd; i < newTraces; i++) {
+            store(index(size), traces.get(i));
+            size++;
+        }
+        return tracesDiscarded + removeExceededBytesIfNeeded();
+    }
+
+    /**
+     * Adds one trace to the buffer, the oldest traces are removed if the buffer is full.
+     *
+     * @return the number of traces discarded, the new trace included if it takes more bytes than
+     * the max
+     */
+    int add(Trace trace) {
+        int tracesDiscarded = removeExceededTracesIfNeeded(1);
+        ensureCapacity(size + 1);
+        store(index(size), trace);
+        size++;
+        return tracesDiscarded + removeExceededBytesIfNeeded();
     }
 
     /**
-     * Returns the current list of traces stored in the buffer.
+     * Returns a read only view of the traces stored in the buffer. The view reflects further
+     * changes in the buffer.
      */
     List<Trace> getTraces() {
-        return traces;
+        return tracesView;
+    }
+
+    /**
+     * Returns the trace stored in the position passed as parameter, where zero is the oldest one.
+     * A new Trace is created on every call.
+     */
+    Trace get(int position) {
+        checkPosition(position);
+        int index = index(position);
+        long address = addresses[index];
+        int length = lengths[index];
+        arena.readFields(address, length, fields);
+        long timestamp = timestampBase + fields[TIMESTAMP_DELTA];
+        return Trace.restore(sequenceBase + fields[SEQUENCE_DELTA], LEVELS[levels[index]],
+                tags.get((int) fields[TAG]), arena.readMessage(address, length), timestamp,
+                fields[THREAD_ID], (int) fields[REPEAT_COUNT],
+                timestamp + fields[LAST_TIMESTAMP_DELTA]);
+    }
+
+    /**
+     * Returns a copy of the traces stored in the positions passed as parameter, or of every trace
+     * if null, which can be read from another thread while this buffer changes.
+     */
+    Snapshot snapshot(int[] positions) {
+        int count = positions == null ? size : positions.length;
+        byte[] snapshotLevels = new byte[count];
+        long[] snapshotAddresses = new long[count];
+        int[] snapshotLengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            int position = positions == null ? i : positions[i];
+            checkPosition(position);
+            int index = index(position);
+            snapshotLevels[i] = levels[index];
+            snapshotAddresses[i] = addresses[index];
+            snapshotLengths[i] = lengths[index];
+        }
+        return new Snapshot(snapshotLevels, snapshotAddresses, snapshotLengths, arena.snapshot(),
+                new ArrayList<>(tags));
     }
 
     /**
      * Returns the number of traes stored in the buffer.
      */
     public int getCurrentNumberOfTraces() {
-        return traces.size();
+        return size;
+    }
+
+    /**
+     * Returns the bytes taken by the traces stored: the UTF-8 message and the fields written to the
+     * arena for every trace and its entries in the primitive arrays. The unused part of the arena
+     * chunks and of the arrays and the table of tags are not included.
+     */
+    long getMemoryFootprint() {
+        return bytes;
     }
 
     /**
      * Removes traces stored in the buffer.
      */
     public void clear() {
-        traces.clear();
+        removeTraces(size);
+        head = 0;
     }
 
     public void removeLast() {
-        traces.remove(traces.size() - 1);
+        checkPosition(size - 1);
+        int index = index(size - 1);
+        bytes -= getBytes(index);
+        arena.discardFrom(addresses[index]);
+        size--;
+    }
+
+    /**
+     * Replaces the newest trace stored in the buffer with the one passed as parameter.
+     *
+     * @return the number of traces discarded if the new trace takes more bytes, the new trace
+     * included if it takes more bytes than the max
+     */
+    public int replaceLast(Trace trace) {
+        checkPosition(size - 1);
+        int index = index(size - 1);
+        bytes -= getBytes(index);
+        arena.discardFrom(addresses[index]);
+        store(index, trace);
+        return removeExceededBytesIfNeeded();
+    }
+
+    private void store(int index, Trace trace) {
+        if (size == 0) {
+            sequenceBase = trace.getSequence();
+            timestampBase = trace.getTimestamp();
+        }
+        String message = trace.getMessage();
+        int length = Utf8.getEncodedLength(message);
+        fields[TAG] = getTagNumber(trace.getTag());
+        fields[THREAD_ID] = trace.getThreadId();
+        fields[REPEAT_COUNT] = trace.getRepeatCount();
+        fields[LAST_TIMESTAMP_DELTA] = trace.getLastTimestamp() - trace.getTimestamp();
+        fields[SEQUENCE_DELTA] = trace.getSequence() - sequenceBase;
+        fields[TIMESTAMP_DELTA] = trace.getTimestamp() - timestampBase;
+        long address = arena.write(message, length, fields);
+        bytes += BYTES_PER_TRACE + arena.getEnd() - address;
+        addresses[index] = address;
+        lengths[index] = length;
+        levels[index] = (byte) trace.getLevel().ordinal();
+    }
+
+    private int getTagNumber(String tag) {
+        Integer number = tagNumbers.get(tag);
+        if (number == null) {
+            number = tags.size();
+            tags.add(tag);
+            tagNumbers.put(tag, number);
+        }
+        return number;
+    }
+
+    private int getBytes(int index) {
+        return BYTES_PER_TRACE
+                + arena.getRecordSize(addresses[index], lengths[index], NUMBER_OF_FIELDS);
+    }
+
+    private int removeExceededBytesIfNeeded() {
+        int tracesDiscarded = 0;
+        while (bytes > maxBytes) {
+            discardTraces(1);
+            tracesDiscarded++;
+        }
+        return tracesDiscarded;
     }
 
-    private int removeExceededTracesIfNeeded() {
-        int tracesToDiscard = getNumberOfTracesToDiscard();
+    private int removeExceededTracesIfNeeded(int tracesToAdd) {
+        int tracesToDiscard = getNumberOfTracesToDiscard(tracesToAdd);
         if (tracesToDiscard > 0) {
-            discardTraces(tracesToDiscard);
+            discardTraces(Math.min(tracesToDiscard, size));
         }
         return tracesToDiscard;
     }
 
-    private int getNumberOfTracesToDiscard() {
-        int currentTracesSize = this.traces.size();
-        int tracesToDiscard = currentTracesSize - bufferSize;
+    private int getNumberOfTracesToDiscard(int tracesToAdd) {
+        int tracesToDiscard = size + tracesToAdd - bufferSize;
         tracesToDiscard = tracesToDiscard < 0 ? 0 : tracesToDiscard;
         return tracesToDiscard;
     }
 
     private void discardTraces(int tracesToDiscard) {
+        for (int i = 0; discardListener != null && i < tracesToDiscard; i++) {
+            discardListener.onTraceDiscarded(get(i));
+        }
+        removeTraces(tracesToDiscard);
+    }
+
+    private void removeTraces(int tracesToDiscard) {
         for (int i = 0; i < tracesToDiscard; i++) {
-            traces.remove(0);
+            bytes -= getBytes(index(i));
+        }
+        head = index(tracesToDiscard);
+        size -= tracesToDiscard;
+        arena.discardBefore(size == 0 ? arena.getEnd() : addresses[head]);
+    }
+
+    private void ensureCapacity(int requiredCapacity) {
+        if (requiredCapacity > levels.length) {
+            long doubledCapacity = (long) levels.length * 2;
+            resize((int) Math.min(bufferSize, Math.max(requiredCapacity, doubledCapacity)));
+        }
+    }
+
+    private void allocate(int capacity) {
+        addresses = new long[capacity];
+        lengths = new int[capacity];
+        levels = new byte[capacity];
+    }
+
+    private void resize(int capacity) {
+        long[] oldAddresses = addresses;
+        int[] oldLengths = lengths;
+        byte[] oldLevels = levels;
+        allocate(capacity);
+        int firstChunk = Math.min(size, oldLevels.length - head);
+        copy(oldAddresses, addresses, firstChunk);
+        copy(oldLengths, lengths, firstChunk);
+        copy(oldLevels, levels, firstChunk);
+        head = 0;
+    }
+
+    /**
+     * Copies the stored part of one of the circular arrays to the start of a new one.
+     */
+    private void copy(Object from, Object to, int firstChunk) {
+        System.arraycopy(from, head, to, 0, firstChunk);
+        System.arraycopy(from, 0, to, firstChunk, size - firstChunk);
+    }
+
+    private int index(int position) {
+        int index = head + position;
+        return index < levels.length ? index : index - levels.length;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        }
+    }
+
+    private static boolean matches(TraceFilter filter, TraceLevel level, TraceArena arena,
+            long address, int length, List<String> tags, long[] fields) {
+        if (!filter.matchesLevel(level)) {
+            return false;
         }
+        arena.readFields(address, length, fields);
+        String tag = tags.get((int) fields[TAG]);
+        return filter.matches(level, tag, arena.readMessage(address, length));
+    }
+
+    private class TracesView extends AbstractList<Trace> implements RandomAccess {
+
+        @Override public Trace get(int position) {
+            return TraceBuffer.this.get(position);
+        }
+
+        @Override public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Level, tag and message of some traces copied from the buffer. The messages are not copied,
+     * the arena chunks holding them are shared.
+     */
+    static class Snapshot {
+
+        private final byte[] levels;
+        private final long[] addresses;
+        private final int[] lengths;
+        private final TraceArena arena;
+        private final List<String> tags;
+        private final long[] fields = new long[TAG + 1];
+
+        private Snapshot(byte[] levels, long[] addresses, int[] lengths, TraceArena arena,
+                List<String> tags) {
+            this.levels = levels;
+            this.addresses = addresses;
+            this.lengths = lengths;
+            this.arena = arena;
+            this.tags = tags;
+        }
+
+        int size() {
+            return levels.length;
+        }
+
+        boolean matches(int index, TraceFilter filter) {
+            return TraceBuffer.matches(filter, LEVELS[levels[index]], arena, addresses[index],
+                    lengths[index], tags, fields);
+        }
+    }
+
+    /**
+     * Listener notified of the traces discarded to respect the max number of traces and bytes,
+     * oldest first. Traces removed by clear, removeLast or replaceLast are not notified.
+     */
+    interface DiscardListener {
+
+        void onTraceDiscarded(Trace trace);
     }
 }
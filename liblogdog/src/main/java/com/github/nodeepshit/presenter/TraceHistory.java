@@ -0,0 +1,386 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.SegmentFiles;
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+import com.github.nodeepshit.model.Utf8;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the traces discarded from memory in SegmentFiles, so older history can be read back.
+ * Every trace is appended with its position, which has to increase, and the position and offset
+ * of the first record of a segment and of every INDEX_INTERVAL records after it are kept in a
+ * sparse index, so finding a position only reads the records of one interval. The oldest segment
+ * file is deleted once the segments take more than the max bytes.
+ * <p>
+ * A record is the length of its body as a varint followed by the body: the position and the
+ * fields of the trace as zigzag varints, the tag and the message as UTF-8. Messages are truncated
+ * if the record doesn't fit in a segment.
+ * <p>
+ * This class does file I/O and is not thread safe, every call has to be done from the same
+ * background thread. Segment files found when the history is created are deleted. Histories alive
+ * at the same time, like the ones of two views, are created with create in their own directory so
+ * they never delete each other's files.
+ */
+class TraceHistory implements Closeable {
+
+  static final long NO_POSITION = -1;
+  static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+  static final int INDEX_INTERVAL = 64;
+  static final int MAX_RECORDS_READ = 16 * 1024;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String DIRECTORY_PREFIX = "history-";
+  private static final int MAX_VARINT_SIZE = 10;
+  private static final int NUMBER_OF_FIELDS = 8;
+  private static final int MAX_RECORD_HEADER_SIZE = (NUMBER_OF_FIELDS + 1) * MAX_VARINT_SIZE;
+  private static final TraceLevel[] LEVELS = TraceLevel.values();
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Map<File, WeakReference<TraceHistory>> HISTORIES = new HashMap<>();
+  private static long nextDirectoryNumber;
+
+  private final SegmentFiles segmentFiles;
+  private final List<Segment> segments;
+  private byte[] bytes;
+  private int offset;
+  private int readOffset;
+  private int recordLength;
+
+  /**
+   * @param segmentSize the bytes of every segment file, records larger than a segment get their
+   * message truncated
+   * @param maxBytes    the max bytes taken by the segment files, at least two segments are kept
+   */
+  TraceHistory(File directory, int segmentSize, long maxBytes) throws IOException {
+    this.segmentFiles = new SegmentFiles(directory, SEGMENT_PREFIX, segmentSize, maxBytes);
+    this.segments = new ArrayList<>();
+    this.bytes = new byte[256];
+    segmentFiles.createDirectory();
+    if (!segmentFiles.deleteAll()) {
+      throw new IOException("Can't delete the trace history segments in " + directory);
+    }
+  }
+
+  /**
+   * Creates a history in a new directory inside the parent one. The directories of the histories
+   * no longer referenced, and the ones left by a previous process, are deleted first.
+   */
+  static TraceHistory create(File parent, int segmentSize, long maxBytes) throws IOException {
+    synchronized (HISTORIES) {
+      deleteUnusedDirectories(parent);
+      File directory = new File(parent, DIRECTORY_PREFIX + nextDirectoryNumber++);
+      TraceHistory history = new TraceHistory(directory, segmentSize, maxBytes);
+      HISTORIES.put(directory, new WeakReference<>(history));
+      return history;
+    }
+  }
+
+  /**
+   * Appends the trace discarded from the position passed as parameter.
+   */
+  void append(long position, Trace trace) throws IOException {
+    int length = encode(position, trace);
+    Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (segment == null || segment.size + length > segmentFiles.getSegmentSize()) {
+      segment = addSegment(position);
+    }
+    segment.append(position, bytes, length);
+  }
+
+  /**
+   * Adds to the list passed as parameter, oldest first, the newest traces stored before the end
+   * position which match the filter. Stops once maxTraces traces are found or MAX_RECORDS_READ
+   * records are read.
+   *
+   * @return the position to read the traces before it from to continue, or NO_POSITION if there
+   * are no older traces
+   */
+  long readBefore(long end, TraceFilter filter, int maxTraces, List<Trace> traces)
+      throws IOException {
+    List<Trace> page = new ArrayList<>();
+    List<Trace> block = new ArrayList<>();
+    List<Long> blockPositions = new ArrayList<>();
+    int recordsRead = 0;
+    while (page.size() < maxTraces && recordsRead < MAX_RECORDS_READ) {
+      Segment segment = findSegment(end);
+      if (segment == null) {
+        end = NO_POSITION;
+        break;
+      }
+      int entry = segment.findIndexEntry(end);
+      long blockStart = segment.indexPositions[entry];
+      block.clear();
+      blockPositions.clear();
+      offset = segment.indexOffsets[entry];
+      while (offset < segment.size) {
+        readRecord(segment.buffer);
+        long position = readVarint();
+        if (position >= end) {
+          break;
+        }
+        recordsRead++;
+        Trace trace = decode(filter);
+        if (trace != null) {
+          block.add(trace);
+          blockPositions.add(position);
+        }
+      }
+      int firstNeeded = Math.max(0, block.size() - (maxTraces - page.size()));
+      page.addAll(0, block.subList(firstNeeded, block.size()));
+      end = firstNeeded > 0 ? blockPositions.get(firstNeeded) : blockStart;
+    }
+    traces.addAll(page);
+    return end != NO_POSITION && findSegment(end) != null ? end : NO_POSITION;
+  }
+
+  /**
+   * Returns true if traces stored before the position passed as parameter are kept.
+   */
+  boolean hasTracesBefore(long position) {
+    return findSegment(position) != null;
+  }
+
+  /**
+   * Releases the segments mapped and deletes the segment files and the directory, if empty.
+   */
+  @Override public void close() {
+    segments.clear();
+    segmentFiles.deleteAll();
+    segmentFiles.getDirectory().delete();
+  }
+
+  private Segment addSegment(long firstPosition) throws IOException {
+    if (segments.size() == segmentFiles.getMaxSegments()) {
+      segments.remove(0);
+    }
+    Segment segment = new Segment(segmentFiles.add(), firstPosition);
+    segments.add(segment);
+    return segment;
+  }
+
+  private static void deleteUnusedDirectories(File parent) {
+    Iterator<WeakReference<TraceHistory>> references = HISTORIES.values().iterator();
+    while (references.hasNext()) {
+      if (references.next().get() == null) {
+        references.remove();
+      }
+    }
+    File[] files = parent.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.getName().startsWith(DIRECTORY_PREFIX) && !HISTORIES.containsKey(file)) {
+        File[] directoryFiles = file.listFiles();
+        for (int i = 0; directoryFiles != null && i < directoryFiles.length; i++) {
+          directoryFiles[i].delete();
+        }
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Returns the newest segment with traces before the position passed as parameter.
+   */
+  private Segment findSegment(long position) {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (segment.firstPosition < position) {
+        return segment;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes the record of the trace at the start of the bytes buffer.
+   *
+   * @return the length of the record
+   */
+  private int encode(long position, Trace trace) {
+    String tag = trace.getTag();
+    String message = trace.getMessage();
+    int tagLength = Utf8.getEncodedLength(tag);
+    int messageLength = Utf8.getEncodedLength(message);
+    int maxMessageLength = segmentFiles.getSegmentSize() - MAX_RECORD_HEADER_SIZE - tagLength;
+    if (messageLength > maxMessageLength) {
+      message = Utf8.truncate(message, messageLength, maxMessageLength);
+      messageLength = Utf8.getEncodedLength(message);
+    }
+    ensureCapacity(MAX_RECORD_HEADER_SIZE + tagLength + messageLength);
+    long timestamp = trace.getTimestamp();
+    offset = MAX_VARINT_SIZE;
+    writeVarint(position);
+    writeVarint(trace.getSequence());
+    writeVarint(timestamp);
+    writeVarint(trace.getThreadId());
+    writeVarint(trace.getRepeatCount());
+    writeVarint(trace.getLastTimestamp() - timestamp);
+    writeVarint(trace.getLevel().ordinal());
+    writeVarint(tagLength);
+    offset = Utf8.encode(tag, bytes, offset);
+    offset = Utf8.encode(message, bytes, offset);
+    int bodyLength = offset - MAX_VARINT_SIZE;
+    int start = MAX_VARINT_SIZE - getUnsignedVarintSize(bodyLength);
+    offset = start;
+    writeUnsignedVarint(bodyLength);
+    System.arraycopy(bytes, start, bytes, 0, MAX_VARINT_SIZE + bodyLength - start);
+    return MAX_VARINT_SIZE + bodyLength - start;
+  }
+
+  /**
+   * Copies the body of the record at the current offset of the segment to the start of the bytes
+   * buffer, moving the offset to the next record.
+   */
+  private void readRecord(MappedByteBuffer buffer) {
+    buffer.position(offset);
+    int bodyLength = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      bodyLength |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    ensureCapacity(bodyLength);
+    buffer.get(bytes, 0, bodyLength);
+    recordLength = bodyLength;
+    offset = buffer.position();
+    readOffset = 0;
+  }
+
+  /**
+   * Reads the trace of the record copied after its position, or returns null without decoding the
+   * strings if its level doesn't match the filter.
+   */
+  private Trace decode(TraceFilter filter) {
+    long sequence = readVarint();
+    long timestamp = readVarint();
+    long threadId = readVarint();
+    int repeatCount = (int) readVarint();
+    long lastTimestamp = timestamp + readVarint();
+    TraceLevel level = LEVELS[(int) readVarint()];
+    if (!filter.matchesLevel(level)) {
+      return null;
+    }
+    int tagLength = (int) readVarint();
+    String tag = new String(bytes, readOffset, tagLength, UTF_8);
+    int messageStart = readOffset + tagLength;
+    String message = new String(bytes, messageStart, recordLength - messageStart, UTF_8);
+    if (!filter.matches(level, tag, message)) {
+      return null;
+    }
+    return Trace.restore(sequence, level, tag, message, timestamp, threadId, repeatCount,
+        lastTimestamp);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (bytes.length < capacity) {
+      byte[] resized = new byte[Math.max(capacity, bytes.length * 2)];
+      System.arraycopy(bytes, 0, resized, 0, bytes.length);
+      bytes = resized;
+    }
+  }
+
+  private void writeVarint(long value) {
+    writeUnsignedVarint((value << 1) ^ (value >> 63));
+  }
+
+  private void writeUnsignedVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      bytes[offset++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    bytes[offset++] = (byte) value;
+  }
+
+  private static int getUnsignedVarintSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  private long readVarint() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = bytes[readOffset++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static class Segment {
+
+    private final MappedByteBuffer buffer;
+    private final long firstPosition;
+    private int size;
+    private int numberOfRecords;
+    private long[] indexPositions = new long[16];
+    private int[] indexOffsets = new int[16];
+    private int indexSize;
+
+    Segment(MappedByteBuffer buffer, long firstPosition) {
+      this.buffer = buffer;
+      this.firstPosition = firstPosition;
+    }
+
+    void append(long position, byte[] record, int length) {
+      if (numberOfRecords % INDEX_INTERVAL == 0) {
+        addIndexEntry(position, size);
+      }
+      buffer.position(size);
+      buffer.put(record, 0, length);
+      size += length;
+      numberOfRecords++;
+    }
+
+    /**
+     * Returns the last index entry with a position lower than the one passed as parameter.
+     */
+    int findIndexEntry(long position) {
+      int low = 0;
+      int high = indexSize - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (indexPositions[middle] < position) {
+          low = middle;
+        } else {
+          high = middle - 1;
+        }
+      }
+      return low;
+    }
+
+    private void addIndexEntry(long position, int offset) {
+      if (indexSize == indexPositions.length) {
+        long[] positions = new long[indexSize * 2];
+        int[] offsets = new int[indexSize * 2];
+        System.arraycopy(indexPositions, 0, positions, 0, indexSize);
+        System.arraycopy(indexOffsets, 0, offsets, 0, indexSize);
+        indexPositions = positions;
+        indexOffsets = offsets;
+      }
+      indexPositions[indexSize] = position;
+      indexOffsets[indexSize] = offset;
+      indexSize++;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.MainThread;
+import com.github.nodeepshit.model.TraceFilter;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks a snapshot of the retained traces against a TraceFilter out of the main thread. Traces are
+ * checked in chunks from the newest to the oldest one and the positions matching every chunk are
+ * posted to the main thread as soon as the chunk is checked, so the most recent rows are shown
+ * first and older ones are prepended while the search goes on.
+ * <p>
+ * The snapshot is a copy of the levels and message addresses taken in the main thread, sharing the
+ * message bytes which are never modified, so the buffer can keep changing while the search runs.
+ * A cancelled search stops before its next chunk and posts nothing else.
+ */
+class TraceSearch implements Runnable {
+
+  static final int CHUNK_SIZE = 4096;
+
+  private final TraceBuffer.Snapshot traces;
+  private final long[] positions;
+  private final long firstPosition;
+  private final TraceFilter filter;
+  private MainThread mainThread;
+  private Listener listener;
+  private volatile boolean cancelled;
+
+  /**
+   * @param positions the position of every trace, or null if they are consecutive from
+   * firstPosition
+   */
+  TraceSearch(TraceBuffer.Snapshot traces, long[] positions, long firstPosition, TraceFilter filter) {
+    this.traces = traces;
+    this.positions = positions;
+    this.firstPosition = firstPosition;
+    this.filter = filter;
+  }
+
+  /**
+   * Starts checking the traces in the executor. The listener is notified in the main thread.
+   */
+  void start(Executor executor, MainThread mainThread, Listener listener) {
+    this.mainThread = mainThread;
+    this.listener = listener;
+    executor.execute(this);
+  }
+
+  void cancel() {
+    cancelled = true;
+  }
+
+  int getNumberOfTraces() {
+    return traces.size();
+  }
+
+  @Override public void run() {
+    long[] matches = new long[Math.min(CHUNK_SIZE, traces.size())];
+    for (int end = traces.size(); end > 0 && !cancelled; end -= CHUNK_SIZE) {
+      int numberOfMatches = 0;
+      for (int i = Math.max(0, end - CHUNK_SIZE); i < end; i++) {
+        if (traces.matches(i, filter)) {
+          matches[numberOfMatches++] = getPosition(i);
+        }
+      }
+      if (numberOfMatches > 0 && !cancelled) {
+        postResults(Arrays.copyOf(matches, numberOfMatches));
+      }
+    }
+    if (!cancelled) {
+      mainThread.post(new Runnable() {
+        @Override public void run() {
+          listener.onSearchFinished(TraceSearch.this);
+        }
+      });
+    }
+  }
+
+  private long getPosition(int index) {
+    return positions == null ? firstPosition + index : positions[index];
+  }
+
+  private void postResults(final long[] matches) {
+    mainThread.post(new Runnable() {
+      @Override public void run() {
+        listener.onSearchResults(TraceSearch.this, matches);
+      }
+    });
+  }
+
+  /**
+   * Receives the results of a search in the main thread.
+   */
+  interface Listener {
+
+    /**
+     * Called with the positions, sorted, of the traces matching in a chunk. Positions are lower
+     * than the ones of the previous chunks.
+     */
+    void onSearchResults(TraceSearch search, long[] positions);
+
+    void onSearchFinished(TraceSearch search);
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.nodeepshit.renderer;
+
+import com.github.nodeepshit.LynxConfig;
+import com.github.nodeepshit.model.Trace;
+import com.pedrogomez.renderers.AdapteeCollection;
+import com.pedrogomez.renderers.RVRendererAdapter;
+
+/**
+ * RecyclerView adapter rendering Trace objects with the same Renderer implementations used by
+ * TraceRendererBuilder, so colors and alignment are the same than in the ListView based LynxView.
+ * Every item uses the trace sequence number as stable id, this lets RecyclerView keep the scroll
+ * anchor and animate range changes when the oldest traces are removed.
+ */
+public class TraceRecyclerAdapter extends RVRendererAdapter<Trace> {
+
+  public TraceRecyclerAdapter(LynxConfig lynxConfig, AdapteeCollection<Trace> traces) {
+    super(new TraceRendererBuilder(lynxConfig), traces);
+    setHasStableIds(true);
+  }
+
+  @Override public long getItemId(int position) {
+    return getItem(position).getSequence();
+  }
+}
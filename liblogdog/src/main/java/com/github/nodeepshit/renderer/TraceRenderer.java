@@ -21,6 +21,7 @@ import android.graphics.Typeface;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.style.ForegroundColorSpan;
+import android.text.style.StyleSpan;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -29,6 +30,7 @@ import android.widget.TextView;
 
 import com.github.nodeepshit.LynxConfig;
 import com.github.nodeepshit.R;
+import com.github.nodeepshit.model.TimestampFormatter;
 import com.github.nodeepshit.model.Trace;
 import com.github.nodeepshit.model.TraceLevel;
 import com.pedrogomez.renderers.Renderer;
@@ -46,6 +48,13 @@ import com.pedrogomez.renderers.Renderer;
  */
 class TraceRenderer extends Renderer<Trace> {
 
+  /**
+   * Renderers are only used from the UI thread, so every renderer can share the same formatter
+   * and builder used to generate the text of the row.
+   */
+  private static final TimestampFormatter TIMESTAMP_FORMATTER = new TimestampFormatter();
+  private static final StringBuilder TRACE_TEXT_BUILDER = new StringBuilder();
+
   private final LynxConfig lynxConfig;
 
   private TextView tv_trace;
@@ -73,8 +82,13 @@ class TraceRenderer extends Renderer<Trace> {
 
   @Override public void render() {
     Trace trace = getContent();
-    String traceMessage = trace.getMessage();
-    Spannable traceRepresentation = getTraceVisualRepresentation(trace.getLevel(), traceMessage);
+    TRACE_TEXT_BUILDER.setLength(0);
+    TIMESTAMP_FORMATTER.appendTrace(TRACE_TEXT_BUILDER, trace);
+    Spannable traceRepresentation =
+        getTraceVisualRepresentation(trace.getLevel(), TRACE_TEXT_BUILDER);
+    if (trace.getRepeatCount() > 1) {
+      highlightRepeatCount(traceRepresentation);
+    }
     tv_trace.setText(traceRepresentation);
     tv_trace.setGravity(getAlignment());
   }
@@ -87,11 +101,17 @@ class TraceRenderer extends Renderer<Trace> {
     return Gravity.LEFT | Gravity.CENTER_VERTICAL;
   }
 
-  private Spannable getTraceVisualRepresentation(TraceLevel level, String traceMessage) {
+  private Spannable getTraceVisualRepresentation(TraceLevel level, CharSequence traceMessage) {
     Spannable traceRepresentation = new SpannableString(traceMessage);
     int traceColor = getTraceColor();
     traceRepresentation.setSpan(new ForegroundColorSpan(traceColor), 0, traceMessage.length(),
         Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     return traceRepresentation;
   }
+
+  private void highlightRepeatCount(Spannable traceRepresentation) {
+    int badgeStart = TRACE_TEXT_BUILDER.lastIndexOf(TimestampFormatter.REPEAT_COUNT_PREFIX);
+    traceRepresentation.setSpan(new StyleSpan(Typeface.BOLD), badgeStart,
+        traceRepresentation.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+  }
 }
@@ -0,0 +1,218 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The binary fixtures contain logger_entry records encoded from the lines of the text fixture with
+ * a tag, so both parsers have to return the same traces. binary_v4.bin uses the 28 bytes header of
+ * current Android versions and binary_v1.bin the original 20 bytes one.
+ */
+public class BinaryLogcatParserTest {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final int ANY_SMALL_BUFFER_SIZE = 16;
+  private static final int NO_PID = 0;
+  private static final int ANY_SDK_VERSION = 16;
+  private static final List<String> NO_TAGS = Collections.emptyList();
+
+  private List<Trace> parsedTraces;
+  private BinaryLogcatParser parser;
+
+  @Before public void setUp() {
+    parsedTraces = new ArrayList<>();
+    parser = new BinaryLogcatParser(new Logcat.Listener() {
+      @Override public void onTraceRead(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        parsedTraces.add(new Trace(level, tag, message, timestamp, threadId));
+      }
+    }, givenCommand(NO_TAGS, NO_PID), ANY_SMALL_BUFFER_SIZE);
+  }
+
+  @Test public void shouldDecodeTheSameTracesThanTheTextParser() throws Exception {
+    List<Trace> expectedTraces = parseTextFixtureTracesWithTag();
+
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    assertEquals(19, parsedTraces.size());
+    assertEquals(expectedTraces.size(), parsedTraces.size());
+    for (int i = 0; i < expectedTraces.size(); i++) {
+      assertEquals(expectedTraces.get(i).getLevel(), parsedTraces.get(i).getLevel());
+      assertEquals(expectedTraces.get(i).getTag(), parsedTraces.get(i).getTag());
+      assertEquals(expectedTraces.get(i).getMessage(), parsedTraces.get(i).getMessage());
+      assertEquals(expectedTraces.get(i).getTimestamp(), parsedTraces.get(i).getTimestamp());
+    }
+  }
+
+  @Test public void shouldDecodeTheThreadIdOfEveryEntry() throws Exception {
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    assertEquals(4533, findTraceWithTag("NetworkClient").getThreadId());
+    assertEquals(612, findTraceWithTag("ActivityManager").getThreadId());
+  }
+
+  @Test public void shouldDecodeUtf8TagsAndMessages() throws Exception {
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    Trace trace = findTraceWithTag("Caf\u00e9");
+    assertEquals("caf\u00e9 \u00fcn\u00efc\u00f6d\u00e9 \u65e5\u672c\u8a9e \u2713",
+        trace.getMessage());
+  }
+
+  @Test public void shouldReadEntriesWithTheFirstVersionHeader() throws Exception {
+    parser.read(openFixture("/logcat/binary_v1.bin"));
+
+    assertEquals(3, parsedTraces.size());
+    assertEquals(TraceLevel.INFO, parsedTraces.get(0).getLevel());
+    assertEquals("Polling", parsedTraces.get(0).getTag());
+    assertEquals(givenEpochMillis(2016, Calendar.FEBRUARY, 7, 17, 45, 33, 14),
+        parsedTraces.get(0).getTimestamp());
+    assertEquals(4540, parsedTraces.get(1).getThreadId());
+    assertEquals(TraceLevel.ERROR, parsedTraces.get(2).getLevel());
+  }
+
+  @Test public void shouldRemoveTheTrailingLineBreakOfMultilineMessages() throws Exception {
+    parser.read(openFixture("/logcat/binary_v1.bin"));
+
+    assertEquals("first line\nsecond line", findTraceWithTag("Multiline").getMessage());
+  }
+
+  @Test public void shouldParseEntriesSplitAcrossReads() throws Exception {
+    parser.read(new OneByteInputStream(readFixture("/logcat/binary_v4.bin")));
+
+    assertEquals(19, parsedTraces.size());
+  }
+
+  @Test public void shouldDiscardTracesWithLowerLevelThanTheFilter() throws Exception {
+    parser.setFilter(new TraceFilter("", TraceLevel.ERROR));
+
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    for (Trace trace : parsedTraces) {
+      assertEquals(true, trace.getLevel().ordinal() >= TraceLevel.ERROR.ordinal());
+    }
+    assertEquals(7, parsedTraces.size());
+  }
+
+  @Test public void shouldDiscardTracesNotContainingTheFilterIgnoringCase() throws Exception {
+    parser.setFilter(new TraceFilter("PID", TraceLevel.VERBOSE));
+
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    assertEquals(4, parsedTraces.size());
+  }
+
+  @Test public void shouldReadOnlyTheTagsOfTheCommand() throws Exception {
+    parser.setCommand(givenCommand(Collections.singletonList("Polling"), NO_PID));
+
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    assertEquals(3, parsedTraces.size());
+  }
+
+  @Test public void shouldReadOnlyTheProcessOfTheCommand() throws Exception {
+    parser.setCommand(givenCommand(NO_TAGS, 612));
+
+    parser.read(openFixture("/logcat/binary_v4.bin"));
+
+    assertEquals(1, parsedTraces.size());
+    assertEquals("ActivityManager", parsedTraces.get(0).getTag());
+  }
+
+  @Test(expected = BinaryLogcatParser.InvalidEntryException.class)
+  public void shouldThrowIfTheOutputIsText() throws Exception {
+    parser.read(new ByteArrayInputStream("logcat: invalid option -- B\n".getBytes("UTF-8")));
+  }
+
+  @Test(expected = BinaryLogcatParser.InvalidEntryException.class)
+  public void shouldThrowIfTheStreamEndsBeforeTheFirstEntry() throws Exception {
+    parser.read(new ByteArrayInputStream(new byte[] { 3, 0, 0 }));
+  }
+
+  private List<Trace> parseTextFixtureTracesWithTag() throws IOException {
+    final List<Trace> traces = new ArrayList<>();
+    FakeTimeProvider timeProvider = new FakeTimeProvider();
+    timeProvider.now = givenEpochMillis(2016, Calendar.MARCH, 1, 0, 0, 0, 0);
+    LogcatParser textParser = new LogcatParser(new Logcat.Listener() {
+      @Override public void onTraceRead(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        if (!Trace.NO_TAG.equals(tag) && level != TraceLevel.ASSERT) {
+          traces.add(new Trace(level, tag, message, timestamp, threadId));
+        }
+      }
+    }, UTC, timeProvider, LogcatParser.DEFAULT_BUFFER_SIZE);
+    textParser.read(openFixture("/logcat/time.txt"));
+    return traces;
+  }
+
+  private Trace findTraceWithTag(String tag) {
+    for (Trace trace : parsedTraces) {
+      if (trace.getTag().equals(tag)) {
+        return trace;
+      }
+    }
+    throw new AssertionError("No trace with tag " + tag);
+  }
+
+  private InputStream openFixture(String fixture) throws IOException {
+    return new ByteArrayInputStream(readFixture(fixture));
+  }
+
+  private byte[] readFixture(String fixture) throws IOException {
+    InputStream inputStream = getClass().getResourceAsStream(fixture);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[1024];
+    int read;
+    while ((read = inputStream.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    inputStream.close();
+    return bytes.toByteArray();
+  }
+
+  private static LogcatCommand givenCommand(List<String> tags, int pid) {
+    return new LogcatCommand(TraceLevel.VERBOSE, tags, pid, ANY_SDK_VERSION, true);
+  }
+
+  private static long givenEpochMillis(int year, int month, int day, int hour, int minute,
+      int second, int millis) {
+    Calendar calendar = Calendar.getInstance(UTC);
+    calendar.clear();
+    calendar.set(year, month, day, hour, minute, second);
+    return calendar.getTimeInMillis() + millis;
+  }
+
+  private static class OneByteInputStream extends InputStream {
+
+    private final byte[] bytes;
+    private int position;
+
+    OneByteInputStream(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override public int read() {
+      return position < bytes.length ? bytes[position++] & 0xFF : -1;
+    }
+
+    @Override public int read(byte[] buffer, int offset, int length) {
+      if (position == bytes.length) {
+        return -1;
+      }
+      buffer[offset] = bytes[position++];
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BoundedRegexpTest {
+
+  private static final String SLOW_TEXT = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+
+  @Test public void shouldSearchSupportedExpressionsInLinearTime() {
+    BoundedRegexp regexp = new BoundedRegexp("(a+)+b");
+
+    assertEquals(true, regexp.isLinear());
+    assertEquals(false, regexp.find(SLOW_TEXT));
+    assertEquals(true, regexp.find(SLOW_TEXT + "b"));
+  }
+
+  @Test public void shouldSearchOtherExpressionsWithJavaRegex() {
+    BoundedRegexp regexp = new BoundedRegexp("(\\w+) \\1");
+
+    assertEquals(false, regexp.isLinear());
+    assertEquals(true, regexp.find("said HELLO hello"));
+    assertEquals(false, regexp.find("said hello world"));
+    assertEquals(false, regexp.isBudgetExceeded());
+  }
+
+  @Test(timeout = 5000)
+  public void shouldDisableTheExpressionOnceASearchExceedsTheBudget() {
+    BoundedRegexp regexp = new BoundedRegexp("((a+)+)\\2b");
+
+    assertEquals(false, regexp.find(SLOW_TEXT));
+    assertEquals(true, regexp.isBudgetExceeded());
+    assertEquals(false, regexp.find("ab"));
+  }
+
+  @Test(timeout = 5000)
+  public void shouldSearchTheExpressionAsTextOnceDisabled() {
+    final int[] disabledNotifications = { 0 };
+    BoundedRegexp regexp = new BoundedRegexp("((a+)+)\\2b", new Runnable() {
+      @Override public void run() {
+        disabledNotifications[0]++;
+      }
+    });
+
+    regexp.find(SLOW_TEXT);
+    regexp.find(SLOW_TEXT);
+
+    assertEquals(1, disabledNotifications[0]);
+    assertEquals(true, regexp.find("typed ((A+)+)\\2b"));
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+
+public class CaseInsensitiveMatcherTest {
+
+  @Test public void shouldMatchEveryTextWithAnEmptyPattern() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("");
+
+    assertEquals(true, matcher.matches(""));
+    assertEquals(true, matcher.matches("any message"));
+  }
+
+  @Test public void shouldFindThePatternIgnoringCase() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("TimeOut");
+
+    assertEquals(true, matcher.matches("Request failed (TIMEOUT): GET /v1/users"));
+    assertEquals(true, matcher.matches("timeout"));
+    assertEquals(false, matcher.matches("time out"));
+  }
+
+  @Test public void shouldNotMatchTextsShorterThanThePattern() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("exception");
+
+    assertEquals(false, matcher.matches("except"));
+  }
+
+  @Test public void shouldNotSkipMatchesOverlappingAPartialMatch() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("aab");
+
+    assertEquals(true, matcher.matches("AAAAB"));
+    assertEquals(true, matcher.matches("abaab"));
+  }
+
+  @Test public void shouldFoldNonAsciiChars() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("\u00dcN\u00cfC\u00d6D\u00c9");
+
+    assertEquals(true, matcher.matches("caf\u00e9 \u00fcn\u00efc\u00f6d\u00e9"));
+    assertEquals(false, matcher.isAscii());
+  }
+
+  @Test public void shouldNotSkipMatchesOfCharsSharingAShiftSlot() {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("\u0161a\u0101b");
+
+    assertEquals(true, matcher.matches("x\u0160A\u0100B"));
+    assertEquals(false, matcher.matches("x\u0160A\u0001B"));
+  }
+
+  @Test public void shouldFindAsciiPatternsInUtf8Bytes() throws Exception {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("Polling");
+    byte[] bytes = utf8("caf\u00e9 POLLING \u65e5\u672c");
+
+    assertEquals(true, matcher.isAscii());
+    assertEquals(true, matcher.matches(bytes, 0, bytes.length));
+    assertEquals(false, matcher.matches(bytes, 0, 10));
+  }
+
+  @Test public void shouldOnlySearchBetweenTheGivenOffsets() throws Exception {
+    CaseInsensitiveMatcher matcher = new CaseInsensitiveMatcher("pid");
+    byte[] bytes = utf8("PID: 4521 message");
+
+    assertEquals(false, matcher.matches(bytes, 1, bytes.length));
+    assertEquals(true, matcher.matches(bytes, 0, 3));
+  }
+
+  private static byte[] utf8(String text) throws UnsupportedEncodingException {
+    return text.getBytes("UTF-8");
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MainThread implementation for tests executing every posted Runnable in the caller thread. Like a
+ * Looper, a Runnable posted while another one is running is executed once the running one finishes
+ * instead of recursively. Delayed runnables are kept until runDelayedTasks is invoked.
+ */
+class FakeMainThread implements MainThread {
+
+  private final List<Runnable> delayedTasks = new ArrayList<>();
+  private final ThreadLocal<List<Runnable>> pendingTasks = new ThreadLocal<>();
+
+  @Override public void post(Runnable runnable) {
+    List<Runnable> pending = pendingTasks.get();
+    if (pending != null) {
+      pending.add(runnable);
+      return;
+    }
+    pending = new ArrayList<>();
+    pendingTasks.set(pending);
+    try {
+      runnable.run();
+      while (!pending.isEmpty()) {
+        pending.remove(0).run();
+      }
+    } finally {
+      pendingTasks.remove();
+    }
+  }
+
+  @Override public synchronized void postDelayed(Runnable runnable, long delayMillis) {
+    delayedTasks.add(runnable);
+  }
+
+  @Override public boolean isCurrentThread() {
+    return false;
+  }
+
+  synchronized int getNumberOfDelayedTasks() {
+    return delayedTasks.size();
+  }
+
+  void runDelayedTasks() {
+    List<Runnable> tasks;
+    synchronized (this) {
+      tasks = new ArrayList<>(delayedTasks);
+      delayedTasks.clear();
+    }
+    for (Runnable task : tasks) {
+      task.run();
+    }
+  }
+}
@@ -0,0 +1,13 @@
+package com.github.nodeepshit.model;
+
+/**
+ * TimeProvider implementation for tests returning the time configured in the now field.
+ */
+class FakeTimeProvider extends TimeProvider {
+
+  long now;
+
+  @Override public long getCurrentTimeMillis() {
+    return now;
+  }
+}
@@ -0,0 +1,102 @@
+package com.github.nodeepshit.model;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmark comparing a list of keywords pasted as a regular expression alternation, like
+ * "E1001|E1002|req-4f2a", searched with java.util.regex and with the KeywordMatcher TraceFilter
+ * builds for it, from 1 to 1000 keywords. Run it from the IDE or with the test runtime classpath,
+ * it is not a unit test.
+ */
+public class KeywordFilterBenchmark {
+
+  private static final int NUMBER_OF_MESSAGES = 5_000;
+  private static final int ROUNDS = 4;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final int[] NUMBERS_OF_KEYWORDS = { 1, 10, 50, 100, 500, 1000 };
+  private static final String[] MESSAGES = {
+      "Skipped 31 frames!",
+      "Request took 120 ms: GET https://api.example.com/v1/users?page=2&per_page=50",
+      "Request failed with E%d: GET https://api.example.com/v1/users/4521/friends",
+      "Sync finished for req-%x, 14 items updated",
+      "java.net.SocketTimeoutException: failed to connect to api.example.com/93.184.216.34 (port "
+          + "443) from /10.0.2.15 (port 43210) after 10000ms",
+  };
+
+  private static int checksum;
+
+  public static void main(String[] args) {
+    String[] messages = givenMessages();
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      for (int numberOfKeywords : NUMBERS_OF_KEYWORDS) {
+        String alternation = givenAlternation(numberOfKeywords);
+        long regexpNanos = measureRegexp(messages, alternation);
+        long filterNanos =
+            measureTraceFilter(messages, new TraceFilter(alternation, TraceLevel.VERBOSE));
+        if (round == WARM_UP_ROUNDS) {
+          System.out.println(String.format(
+              "%4d keywords  regexp %8.1f ns/msg | TraceFilter %6.1f ns/msg", numberOfKeywords,
+              perMessage(regexpNanos), perMessage(filterNanos)));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns error codes and request ids, half of the messages contain one of the first 1000.
+   */
+  private static String givenAlternation(int numberOfKeywords) {
+    StringBuilder alternation = new StringBuilder();
+    for (int i = 0; i < numberOfKeywords; i++) {
+      if (i > 0) {
+        alternation.append('|');
+      }
+      alternation.append(i % 2 == 0 ? "E" + (10000 + i) : String.format(Locale.US, "req-%x",
+          0x4f2a0 + i));
+    }
+    return alternation.toString();
+  }
+
+  private static String[] givenMessages() {
+    Random random = new Random(42);
+    String[] messages = new String[NUMBER_OF_MESSAGES];
+    for (int i = 0; i < messages.length; i++) {
+      String message = MESSAGES[random.nextInt(MESSAGES.length)];
+      int code = random.nextInt(2000);
+      messages[i] = message.contains("%d") ? String.format(message, 10000 + code)
+          : message.contains("%x") ? String.format(message, 0x4f2a0 + code) : message;
+    }
+    return messages;
+  }
+
+  private static long measureRegexp(String[] messages, String alternation) {
+    Pattern regexp = Pattern.compile(alternation, Pattern.CASE_INSENSITIVE);
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (String message : messages) {
+        if (regexp.matcher(message).find()) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureTraceFilter(String[] messages, TraceFilter filter) {
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (String message : messages) {
+        if (filter.matches(TraceLevel.INFO, Trace.NO_TAG, message)) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static double perMessage(long nanos) {
+    return (double) nanos / ((long) NUMBER_OF_MESSAGES * ROUNDS);
+  }
+}
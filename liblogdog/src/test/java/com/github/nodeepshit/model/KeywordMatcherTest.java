@@ -0,0 +1,86 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class KeywordMatcherTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Test public void shouldMatchTextsContainingAnyKeywordIgnoringCase() {
+    KeywordMatcher matcher = givenMatcher("E1001", "timeout", "req-42");
+
+    assertEquals(true, matcher.matches("Read TIMEOUT after 10s"));
+    assertEquals(true, matcher.matches("error e1001"));
+    assertEquals(true, matcher.matches("REQ-42 done"));
+    assertEquals(false, matcher.matches("E1002 req-4 time out"));
+  }
+
+  @Test public void shouldFindKeywordsInsideOtherKeywords() {
+    KeywordMatcher matcher = givenMatcher("hers", "she", "his");
+
+    assertEquals(true, matcher.matches("ushe"));
+    assertEquals(false, matcher.matches("uhes"));
+  }
+
+  @Test public void shouldRestartFromTheLongestSuffixAfterAMismatch() {
+    KeywordMatcher matcher = givenMatcher("aab", "abcd");
+
+    assertEquals(true, matcher.matches("aaab"));
+    assertEquals(true, matcher.matches("aabcd"));
+    assertEquals(false, matcher.matches("abca"));
+  }
+
+  @Test public void shouldShareTheStatesOfCommonPrefixes() {
+    KeywordMatcher matcher = givenMatcher("E1001", "E1002", "E1003");
+
+    assertEquals(8, matcher.getNumberOfStates());
+  }
+
+  @Test public void shouldMatchNonAsciiKeywordsIgnoringCase() {
+    KeywordMatcher matcher = givenMatcher("caf\u00e9", "\u65e5\u672c");
+
+    assertEquals(false, matcher.isAscii());
+    assertEquals(true, matcher.matches("CAF\u00c9 open"));
+    assertEquals(true, matcher.matches("\u65e5\u672c\u8a9e"));
+    assertEquals(false, matcher.matches("cafe"));
+  }
+
+  @Test public void shouldMatchUtf8EncodedTextsWithAsciiKeywords() {
+    KeywordMatcher matcher = givenMatcher("timeout", "E1001");
+    byte[] bytes = "\u00fcber TIMEOUT".getBytes(UTF_8);
+
+    assertEquals(true, matcher.isAscii());
+    assertEquals(true, matcher.matches(bytes, 0, bytes.length));
+    assertEquals(false, matcher.matches(bytes, 0, bytes.length - 1));
+  }
+
+  @Test public void shouldMatchEveryTextWithAnEmptyKeyword() {
+    KeywordMatcher matcher = givenMatcher("E1001", "");
+
+    assertEquals(true, matcher.matches("any message"));
+  }
+
+  @Test public void shouldNotMatchAnythingWithoutKeywords() {
+    KeywordMatcher matcher = new KeywordMatcher(Collections.<String>emptyList());
+
+    assertEquals(false, matcher.matches("any message"));
+  }
+
+  @Test public void shouldParseRegularExpressionsMadeOnlyOfLiteralAlternatives() {
+    assertEquals(Arrays.asList("E1001", "E1002", "time out"),
+        KeywordMatcher.parseLiteralAlternation("E1001|E1002|time out"));
+    assertNull(KeywordMatcher.parseLiteralAlternation("E1001|E\\d+"));
+    assertNull(KeywordMatcher.parseLiteralAlternation("E1001"));
+  }
+
+  private static KeywordMatcher givenMatcher(String... keywords) {
+    return new KeywordMatcher(Arrays.asList(keywords));
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LinearRegexpTest {
+
+  private static final String[] TEXTS = {
+      "", "a", "abc", "ABC", "took 120 ms", "Took 7MS", "GET /v1/users?page=2", "aaab", "xyzzy",
+      "error: E1001 timeout", "foo.bar", "foo_bar baz", "tab\there", "line end ", "aaaaaaaaaa",
+  };
+
+  @Test public void shouldFindLikeJavaRegexIgnoringCase() {
+    String[] regexps = {
+        "abc", "a.c", "^abc$", "^a", "c$", "took \\d+ ms", "took \\d+\\s?ms", "[a-c]+", "[^a-z ]",
+        "E\\d{4}", "a{2,3}b", "a{3,}", "(ab|xy)z*", "(?:foo|bar)\\.bar", "\\bbar\\b", "\\Bar",
+        "\\w+_\\w+", "\\S+ \\S+", "x?y+z{2}", "a*?b", "(?<page>page=\\d)", "[\\d.]+", "\\t",
+        "\\?", "[-a]", "a|", "()", "v1/(users|groups)\\?",
+    };
+    for (String regexp : regexps) {
+      LinearRegexp linearRegexp = LinearRegexp.compile(regexp);
+      assertNotNull(regexp, linearRegexp);
+      Pattern pattern = Pattern.compile(regexp, Pattern.CASE_INSENSITIVE);
+      for (String text : TEXTS) {
+        assertEquals(regexp + " in \"" + text + "\"", pattern.matcher(text).find(),
+            linearRegexp.find(text));
+      }
+    }
+  }
+
+  @Test public void shouldMatchNonAsciiTextsIgnoringCase() {
+    LinearRegexp linearRegexp = LinearRegexp.compile("caf\u00e9 \\w+");
+
+    assertEquals(true, linearRegexp.find("CAF\u00c9 open"));
+    assertEquals(false, linearRegexp.find("cafe open"));
+  }
+
+  @Test public void shouldTreatAFinalCrlfAsOneLineTerminatorLikeJavaRegex() {
+    String[] regexps = { "\\Z\n+", "($)(\n)", "a$", "a\\Z", "$\r", "a\r$", "a$\r\n" };
+    String[] texts = { "a\r\n", "a\n", "a\r", "a\r\n\n", "a\n\r" };
+    for (String regexp : regexps) {
+      LinearRegexp linearRegexp = LinearRegexp.compile(regexp);
+      Pattern pattern = Pattern.compile(regexp, Pattern.CASE_INSENSITIVE);
+      for (String text : texts) {
+        assertEquals(regexp + " in " + text.replace("\r", "\\r").replace("\n", "\\n"),
+            pattern.matcher(text).find(), linearRegexp.find(text));
+      }
+    }
+  }
+
+  @Test public void shouldOnlyFoldAsciiCharsInAsciiExpressionsLikeJavaRegex() {
+    String[] regexps = { "k", "s", "[a-z]", "[k]", "\u212a", "\u017f" };
+    String[] texts = { "\u212a", "\u017f", "K", "s", "S" };
+    for (String regexp : regexps) {
+      LinearRegexp linearRegexp = LinearRegexp.compile(regexp);
+      Pattern pattern = Pattern.compile(regexp, LinearRegexp.isUnicodeCase(regexp)
+          ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : Pattern.CASE_INSENSITIVE);
+      for (String text : texts) {
+        assertEquals(regexp + " in " + text, pattern.matcher(text).find(),
+            linearRegexp.find(text));
+      }
+    }
+  }
+
+  @Test public void shouldNotCompileExpressionsNeedingBacktracking() {
+    assertNull(LinearRegexp.compile("(\\w+) \\1"));
+    assertNull(LinearRegexp.compile("a(?=b)"));
+    assertNull(LinearRegexp.compile("(?<!a)b"));
+    assertNull(LinearRegexp.compile("a++"));
+    assertNull(LinearRegexp.compile("\\p{Alpha}"));
+  }
+
+  @Test public void shouldNotCompileExpressionsWithTooManyInstructions() {
+    assertNull(LinearRegexp.compile("(a{1000}){1000}"));
+  }
+
+  @Test(timeout = 1000)
+  public void shouldSearchNestedQuantifiersInLinearTime() {
+    LinearRegexp linearRegexp = LinearRegexp.compile("(a+)+b");
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      text.append('a');
+    }
+
+    assertEquals(false, linearRegexp.find(text.toString()));
+  }
+}
@@ -0,0 +1,172 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class LogcatCommandTest {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final List<String> NO_TAGS = Collections.emptyList();
+  private static final int NO_PID = 0;
+  private static final int ANY_PID = 1234;
+  private static final int JELLY_BEAN = 16;
+  private static final int LOLLIPOP = 21;
+  private static final int NOUGAT = 24;
+
+  @Test public void shouldSilenceLogdogTracesAndFilterEveryOtherTagByLevel() {
+    LogcatCommand command = givenTextCommand(TraceLevel.WARNING, NO_TAGS, NO_PID, NOUGAT);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "Logdog:S", "*:W" }, arguments);
+  }
+
+  @Test public void shouldNotDiscardAnyPriorityIfTheLevelIsVerbose() {
+    LogcatCommand command = givenTextCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID, NOUGAT);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertEquals("*:V", arguments[arguments.length - 1]);
+  }
+
+  @Test public void shouldMapFatalLevelsToTheFatalPriority() {
+    LogcatCommand command = givenTextCommand(TraceLevel.WTF, NO_TAGS, NO_PID, NOUGAT);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertEquals("*:F", arguments[arguments.length - 1]);
+  }
+
+  @Test public void shouldReadOnlyTheConfiguredTagsAndSilenceTheRest() {
+    LogcatCommand command =
+        givenTextCommand(TraceLevel.DEBUG, Arrays.asList("Network", "Database"), NO_PID, NOUGAT);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "Network:D", "Database:D", "*:S" },
+        arguments);
+  }
+
+  @Test public void shouldStartReadingFromTheGivenTime() {
+    LogcatCommand command = givenTextCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID, LOLLIPOP);
+    long since = givenEpochMillis(2016, Calendar.MARCH, 7, 9, 5, 3, 42);
+
+    String[] arguments = command.toArguments(since, UTC);
+
+    assertArrayEquals(
+        new String[] { "logcat", "-v", "time", "-T", "03-07 09:05:03.042", "Logdog:S", "*:V" },
+        arguments);
+  }
+
+  @Test public void shouldNotUseTheStartTimeIfTheDeviceDoesNotSupportIt() {
+    LogcatCommand command = givenTextCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID, JELLY_BEAN);
+
+    String[] arguments = command.toArguments(givenEpochMillis(2016, 0, 1, 0, 0, 0, 0), UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "Logdog:S", "*:V" }, arguments);
+  }
+
+  @Test public void shouldReadOnlyTheTracesOfTheGivenProcess() {
+    LogcatCommand command = givenTextCommand(TraceLevel.VERBOSE, NO_TAGS, ANY_PID, NOUGAT);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "--pid=1234", "Logdog:S", "*:V" },
+        arguments);
+  }
+
+  @Test public void shouldNotFilterByProcessIfTheDeviceDoesNotSupportIt() {
+    LogcatCommand command = givenTextCommand(TraceLevel.VERBOSE, NO_TAGS, ANY_PID, LOLLIPOP);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "Logdog:S", "*:V" }, arguments);
+  }
+
+  @Test public void shouldConsiderEqualsCommandsGeneratingTheSameArguments() {
+    LogcatCommand command = givenTextCommand(TraceLevel.DEBUG, NO_TAGS, ANY_PID, LOLLIPOP);
+    LogcatCommand sameArguments = givenTextCommand(TraceLevel.DEBUG, NO_TAGS, NO_PID, LOLLIPOP);
+
+    assertEquals(command, sameArguments);
+    assertEquals(command.hashCode(), sameArguments.hashCode());
+  }
+
+  @Test public void shouldConsiderDifferentCommandsWithDifferentLevels() {
+    LogcatCommand command = givenTextCommand(TraceLevel.DEBUG, NO_TAGS, NO_PID, NOUGAT);
+    LogcatCommand otherLevel = givenTextCommand(TraceLevel.ERROR, NO_TAGS, NO_PID, NOUGAT);
+
+    assertNotEquals(command, otherLevel);
+  }
+
+  @Test public void shouldPrintTheBinaryOutputInBinaryMode() {
+    LogcatCommand command = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID);
+
+    String[] arguments = command.toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-B", "Logdog:S", "*:V" }, arguments);
+  }
+
+  @Test public void shouldPrintTheTextOutputWhenFallingBackToText() {
+    LogcatCommand command = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID);
+
+    String[] arguments = command.asText().toArguments(LogcatCommand.FROM_THE_BEGINNING, UTC);
+
+    assertArrayEquals(new String[] { "logcat", "-v", "time", "Logdog:S", "*:V" }, arguments);
+  }
+
+  @Test public void shouldAcceptEveryTagButLogdogIfThereAreNoTags() {
+    LogcatCommand command = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID);
+
+    assertEquals(true, command.accepts(ANY_PID, "AnyTag"));
+    assertEquals(false, command.accepts(ANY_PID, "Logdog"));
+  }
+
+  @Test public void shouldAcceptOnlyTheConfiguredTags() {
+    LogcatCommand command =
+        givenBinaryCommand(TraceLevel.VERBOSE, Collections.singletonList("Network"), NO_PID);
+
+    assertEquals(true, command.accepts(ANY_PID, "Network"));
+    assertEquals(false, command.accepts(ANY_PID, "AnyTag"));
+  }
+
+  @Test public void shouldAcceptOnlyTheConfiguredProcessInEveryVersion() {
+    LogcatCommand command = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, ANY_PID);
+
+    assertEquals(true, command.accepts(ANY_PID, "AnyTag"));
+    assertEquals(false, command.accepts(ANY_PID + 1, "AnyTag"));
+  }
+
+  @Test public void shouldConsiderDifferentBinaryCommandsWithDifferentProcesses() {
+    LogcatCommand command = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, ANY_PID);
+    LogcatCommand otherProcess = givenBinaryCommand(TraceLevel.VERBOSE, NO_TAGS, NO_PID);
+
+    assertNotEquals(command, otherProcess);
+  }
+
+  private static LogcatCommand givenTextCommand(TraceLevel level, List<String> tags, int pid,
+      int sdkVersion) {
+    return new LogcatCommand(level, tags, pid, sdkVersion, false);
+  }
+
+  private static LogcatCommand givenBinaryCommand(TraceLevel level, List<String> tags, int pid) {
+    return new LogcatCommand(level, tags, pid, JELLY_BEAN, true);
+  }
+
+  private static long givenEpochMillis(int year, int month, int day, int hour, int minute,
+      int second, int millis) {
+    Calendar calendar = Calendar.getInstance(UTC);
+    calendar.clear();
+    calendar.set(year, month, day, hour, minute, second);
+    calendar.set(Calendar.MILLISECOND, millis);
+    return calendar.getTimeInMillis();
+  }
+}
@@ -0,0 +1,107 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.exception.IllegalTraceException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+
+/**
+ * Micro-benchmark comparing LogcatParser with the previous BufferedReader.readLine plus
+ * Trace.fromString ingestion over the same "logcat -v time" output held in memory. It measures
+ * the throughput without filter, with a text filter keeping one line out of ten and with a level
+ * filter keeping errors only. Run it from the IDE or with the test runtime classpath, it is not a
+ * unit test.
+ */
+public class LogcatParserBenchmark {
+
+  private static final int NUMBER_OF_LINES = 500_000;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static int checksum;
+
+  public static void main(String[] args) throws IOException {
+    byte[] logcat = givenLogcatOutput();
+    TraceFilter[] filters = {
+        TraceFilter.NONE, new TraceFilter("timeout", TraceLevel.VERBOSE),
+        new TraceFilter("", TraceLevel.ERROR)
+    };
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      for (TraceFilter filter : filters) {
+        long readerNanos = measureBufferedReader(logcat, filter);
+        long parserNanos = measureParser(logcat, filter);
+        if (round == WARM_UP_ROUNDS) {
+          System.out.println(String.format(
+              "filter %-9s %-7s | parser %6.2f M lines/s vs readLine %6.2f M lines/s",
+              "'" + filter.getText() + "'", filter.getMinimumLevel(), linesPerMicro(parserNanos),
+              linesPerMicro(readerNanos)));
+        }
+      }
+    }
+    if (checksum == 42) {
+      System.out.print("");
+    }
+  }
+
+  private static long measureBufferedReader(byte[] logcat, TraceFilter filter)
+      throws IOException {
+    long start = System.nanoTime();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new ByteArrayInputStream(logcat), UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      try {
+        Trace trace = Trace.fromString(line, 0);
+        if (filter.matches(trace.getLevel(), trace.getTag(), trace.getMessage())) {
+          checksum += trace.getMessage().length();
+        }
+      } catch (IllegalTraceException e) {
+        //Ignored
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureParser(byte[] logcat, TraceFilter filter) throws IOException {
+    LogcatParser parser = new LogcatParser(new Logcat.Listener() {
+      @Override public void onTraceRead(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        checksum += message.length();
+      }
+    }, TimeZone.getDefault(), new TimeProvider(), LogcatParser.DEFAULT_BUFFER_SIZE);
+    parser.setFilter(filter);
+    long start = System.nanoTime();
+    parser.read(new ByteArrayInputStream(logcat));
+    return System.nanoTime() - start;
+  }
+
+  private static double linesPerMicro(long nanos) {
+    return NUMBER_OF_LINES * 1000.0 / nanos;
+  }
+
+  private static byte[] givenLogcatOutput() {
+    String[] templates = {
+        "I/ActivityManager(  612): Displayed com.example/.MainActivity: +%dms",
+        "D/OpenGLRenderer( 4521): Swap behavior %d",
+        "W/art     ( 4521): Suspending all threads took: %dms",
+        "V/Choreographer( 4521): Skipped %d frames!",
+        "E/NetworkClient( 4521): Request %d failed with timeout",
+        "I/Polling ( 4521): this is info message %d",
+        "D/RecyclerView( 4521): No adapter attached; skipping layout %d",
+        "I/chatty  ( 4521): uid=10087 expire %d lines",
+        "W/System.err( 4521): at com.example.Repository.load(Repository.java:%d)",
+        "D/Logdog  ( 4521): cache hit for key %d",
+    };
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < NUMBER_OF_LINES; i++) {
+      builder.append(String.format("02-07 17:%02d:%02d.%03d ", i / 60_000 % 60, i / 1000 % 60,
+          i % 1000));
+      builder.append(String.format(templates[i % templates.length], i)).append('\n');
+    }
+    return builder.toString().getBytes(UTF_8);
+  }
+}
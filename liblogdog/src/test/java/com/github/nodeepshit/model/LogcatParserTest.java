@@ -0,0 +1,191 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.exception.IllegalTraceException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogcatParserTest {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final int ANY_SMALL_BUFFER_SIZE = 32;
+
+  private FakeTimeProvider timeProvider;
+  private List<Trace> parsedTraces;
+  private LogcatParser parser;
+
+  @Before public void setUp() {
+    timeProvider = new FakeTimeProvider();
+    timeProvider.now = givenEpochMillis(2016, Calendar.MARCH, 1, 0, 0, 0, 0);
+    parsedTraces = new ArrayList<>();
+    parser = new LogcatParser(new Logcat.Listener() {
+      @Override public void onTraceRead(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        parsedTraces.add(new Trace(level, tag, message, timestamp, Trace.UNKNOWN_THREAD_ID));
+      }
+    }, UTC, timeProvider, ANY_SMALL_BUFFER_SIZE);
+  }
+
+  @Test public void shouldParseTheSameTracesThanTraceFromString() throws Exception {
+    List<Trace> expectedTraces = parseWithTraceFromString("/logcat/time.txt");
+
+    parser.read(openFixture("/logcat/time.txt"));
+
+    assertSameTraces(expectedTraces, parsedTraces);
+  }
+
+  @Test public void shouldParseLinesEndedWithCarriageReturnAndTheLastLineWithoutLineBreak()
+      throws Exception {
+    List<Trace> expectedTraces = parseWithTraceFromString("/logcat/time_crlf.txt");
+
+    parser.read(openFixture("/logcat/time_crlf.txt"));
+
+    assertEquals(4, parsedTraces.size());
+    assertSameTraces(expectedTraces, parsedTraces);
+  }
+
+  @Test public void shouldDecodeUtf8Messages() throws Exception {
+    parser.read(openFixture("/logcat/time.txt"));
+
+    Trace trace = findTraceWithTag("Caf\u00e9");
+    assertEquals("caf\u00e9 \u00fcn\u00efc\u00f6d\u00e9 \u65e5\u672c\u8a9e \u2713", trace.getMessage());
+  }
+
+  @Test public void shouldParseTheTimestampOfTheHeader() throws Exception {
+    parser.read(givenInput("02-07 17:45:33.014 I/AnyTag( 123): any message\n"));
+
+    long expected = givenEpochMillis(2016, Calendar.FEBRUARY, 7, 17, 45, 33, 14);
+    assertEquals(expected, parsedTraces.get(0).getTimestamp());
+  }
+
+  @Test public void shouldUseThePreviousYearForTracesOfALaterMonth() throws Exception {
+    parser.read(givenInput("12-31 23:59:59.999 I/AnyTag( 123): any message\n"));
+
+    long expected = givenEpochMillis(2015, Calendar.DECEMBER, 31, 23, 59, 59, 999);
+    assertEquals(expected, parsedTraces.get(0).getTimestamp());
+  }
+
+  @Test public void shouldUseTheCurrentTimeIfTheHeaderIsNotValid() throws Exception {
+    parser.read(givenInput("xx-07 17:45:33.014 I/AnyTag( 123): any message\n"));
+
+    assertEquals(timeProvider.now, parsedTraces.get(0).getTimestamp());
+  }
+
+  @Test public void shouldDiscardTracesWithLowerLevelThanTheFilter() throws Exception {
+    parser.setFilter(new TraceFilter("", TraceLevel.ERROR));
+
+    parser.read(openFixture("/logcat/time.txt"));
+
+    for (Trace trace : parsedTraces) {
+      assertEquals(true, trace.getLevel().ordinal() >= TraceLevel.ERROR.ordinal());
+    }
+    assertEquals(8, parsedTraces.size());
+  }
+
+  @Test public void shouldDiscardTracesNotContainingTheFilterIgnoringCase() throws Exception {
+    parser.setFilter(new TraceFilter("PID", TraceLevel.VERBOSE));
+
+    parser.read(openFixture("/logcat/time.txt"));
+
+    assertEquals(4, parsedTraces.size());
+  }
+
+  @Test public void shouldApplyRegexpFilters() throws Exception {
+    parser.setFilter(new TraceFilter("^(fatal|java)", TraceLevel.VERBOSE));
+
+    parser.read(openFixture("/logcat/time.txt"));
+
+    assertEquals(4, parsedTraces.size());
+  }
+
+  @Test public void shouldApplyNonAsciiFilters() throws Exception {
+    parser.setFilter(new TraceFilter("\u00dcN\u00cf", TraceLevel.VERBOSE));
+
+    parser.read(openFixture("/logcat/time.txt"));
+
+    assertEquals(1, parsedTraces.size());
+  }
+
+  @Test public void shouldReuseTheStringOfRepeatedTags() throws Exception {
+    parser.read(openFixture("/logcat/time.txt"));
+
+    List<Trace> pollingTraces = new ArrayList<>();
+    for (Trace trace : parsedTraces) {
+      if (trace.getTag().equals("Polling")) {
+        pollingTraces.add(trace);
+      }
+    }
+    assertEquals(3, pollingTraces.size());
+    assertEquals(true, pollingTraces.get(0).getTag() == pollingTraces.get(2).getTag());
+  }
+
+  private List<Trace> parseWithTraceFromString(String fixture) throws IOException {
+    List<Trace> traces = new ArrayList<>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(openFixture(fixture), "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      try {
+        traces.add(Trace.fromString(line, 0));
+      } catch (IllegalTraceException e) {
+        //Ignored like logcat does
+      }
+    }
+    return traces;
+  }
+
+  private void assertSameTraces(List<Trace> expectedTraces, List<Trace> traces) {
+    assertEquals(expectedTraces.size(), traces.size());
+    for (int i = 0; i < expectedTraces.size(); i++) {
+      assertEquals(expectedTraces.get(i).getLevel(), traces.get(i).getLevel());
+      assertEquals(expectedTraces.get(i).getTag(), traces.get(i).getTag());
+      assertEquals(expectedTraces.get(i).getMessage(), traces.get(i).getMessage());
+    }
+  }
+
+  private Trace findTraceWithTag(String tag) {
+    for (Trace trace : parsedTraces) {
+      if (trace.getTag().equals(tag)) {
+        return trace;
+      }
+    }
+    throw new AssertionError("No trace with tag " + tag);
+  }
+
+  private InputStream openFixture(String fixture) throws IOException {
+    InputStream inputStream = getClass().getResourceAsStream(fixture);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] chunk = new byte[1024];
+    int read;
+    while ((read = inputStream.read(chunk)) != -1) {
+      bytes.write(chunk, 0, read);
+    }
+    inputStream.close();
+    return new ByteArrayInputStream(bytes.toByteArray());
+  }
+
+  private static InputStream givenInput(String logcat) throws IOException {
+    return new ByteArrayInputStream(logcat.getBytes("UTF-8"));
+  }
+
+  private static long givenEpochMillis(int year, int month, int day, int hour, int minute,
+      int second, int millis) {
+    Calendar calendar = Calendar.getInstance(UTC);
+    calendar.clear();
+    calendar.set(year, month, day, hour, minute, second);
+    return calendar.getTimeInMillis() + millis;
+  }
+}
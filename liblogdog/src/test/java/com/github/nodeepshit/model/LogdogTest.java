@@ -0,0 +1,101 @@
+package com.github.nodeepshit.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogdogTest {
+
+  private Logdog logdog;
+  private List<String> loggedMessages;
+
+  @Before public void setUp() {
+    logdog = new Logdog();
+    loggedMessages = new ArrayList<>();
+    logdog.setListener(new Logdog.Listener() {
+      @Override public void onTraceLogged(TraceLevel level, String tag, String message,
+          long timestamp, long threadId) {
+        loggedMessages.add(message);
+      }
+    });
+  }
+
+  @After public void tearDown() {
+    logdog.clearMinimumLevel();
+    logdog.setListener(null);
+  }
+
+  @Test public void shouldLogEveryLevelByDefault() {
+    assertTrue(Logdog.isLoggable(TraceLevel.TIP));
+    assertTrue(Logdog.isLoggable(TraceLevel.DEBUG));
+  }
+
+  @Test public void shouldNotLogTracesBelowTheMinimumLevel() {
+    logdog.setMinimumLevel(TraceLevel.WARNING);
+
+    Logdog.debug("any debug message");
+    Logdog.error("any error message");
+
+    assertFalse(Logdog.isLoggable(TraceLevel.INFO));
+    assertEquals(1, loggedMessages.size());
+    assertEquals("any error message", loggedMessages.get(0));
+  }
+
+  @Test public void shouldNotInvokeTheSupplierOfDiscardedTraces() {
+    logdog.setMinimumLevel(TraceLevel.ERROR);
+    final boolean[] invoked = { false };
+
+    Logdog.debug(new Logdog.MessageSupplier() {
+      @Override public String get() {
+        invoked[0] = true;
+        return "expensive message";
+      }
+    });
+
+    assertFalse(invoked[0]);
+    assertTrue(loggedMessages.isEmpty());
+  }
+
+  @Test public void shouldLogTheLevelsKeptByAnyInstance() {
+    Logdog otherLogdog = new Logdog();
+    logdog.setMinimumLevel(TraceLevel.ERROR);
+    otherLogdog.setMinimumLevel(TraceLevel.INFO);
+
+    boolean loggable = Logdog.isLoggable(TraceLevel.INFO);
+    otherLogdog.clearMinimumLevel();
+
+    assertTrue(loggable);
+    assertFalse(Logdog.isLoggable(TraceLevel.INFO));
+  }
+
+  @Test public void shouldLogEveryLevelOnceNoInstanceConfiguresOne() {
+    logdog.setMinimumLevel(TraceLevel.ERROR);
+
+    logdog.clearMinimumLevel();
+
+    assertTrue(Logdog.isLoggable(TraceLevel.DEBUG));
+  }
+
+  @Test public void shouldLogTheMessageBuiltBySupplier() {
+    Logdog.info(new Logdog.MessageSupplier() {
+      @Override public String get() {
+        return "built message";
+      }
+    });
+
+    assertEquals("built message", loggedMessages.get(0));
+  }
+
+  @Test public void shouldFormatMessagesWithArguments() {
+    Logdog.warning("%s took %d ms", "request", 42);
+
+    assertEquals("request took 42 ms", loggedMessages.get(0));
+  }
+}
@@ -0,0 +1,127 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.LynxConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class LynxDispatcherTest {
+
+  private static final int ANY_SMALL_QUEUE_SIZE = 16;
+  private static final int ANY_NUMBER_OF_PRODUCERS = 8;
+  private static final int TRACES_PER_PRODUCER = 20_000;
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  private Lynx lynx;
+  private List<Trace> notifiedTraces;
+  private List<String> notifyingThreads;
+
+  @Before public void setUp() {
+    lynx = new Lynx(new Logcat(), new Logdog(), new FakeMainThread(),
+        new LynxTest.IncrementalTimeProvider());
+    lynx.setConfig(givenDispatchConfig());
+    notifiedTraces = Collections.synchronizedList(new ArrayList<Trace>());
+    notifyingThreads = Collections.synchronizedList(new ArrayList<String>());
+    lynx.registerListener(new Lynx.Listener() {
+      @Override public void onNewTraces(List<Trace> traces) {
+        notifyingThreads.add(Thread.currentThread().getName());
+        notifiedTraces.addAll(traces);
+      }
+
+      @Override public void onFilterRegexpDisabled() {
+      }
+    });
+    lynx.startReading();
+  }
+
+  @After public void tearDown() {
+    lynx.stopReading();
+  }
+
+  @Test public void shouldFilterAndNotifyTracesFromTheDispatcherThread() throws Exception {
+    Logdog.info("any message");
+
+    awaitNotifiedTraces(1);
+    assertEquals("Lynx-dispatcher", notifyingThreads.get(0));
+  }
+
+  @Test public void shouldKeepTheThreadOfTheCaller() throws Exception {
+    Logdog.log(TraceLevel.WARNING, "AnyTag", "any message");
+
+    awaitNotifiedTraces(1);
+    Trace trace = notifiedTraces.get(0);
+    assertEquals("AnyTag", trace.getTag());
+    assertEquals(Thread.currentThread().getId(), trace.getThreadId());
+  }
+
+  @Test public void shouldNotNotifyTracesNotMatchingTheFilter() throws Exception {
+    lynx.setConfig(givenDispatchConfig().setFilter("error"));
+
+    Logdog.info("any message");
+    Logdog.info("network error");
+
+    awaitNotifiedTraces(1);
+    assertEquals("network error", notifiedTraces.get(0).getMessage());
+  }
+
+  @Test public void shouldNotifyTracesInlineOnceStopped() {
+    lynx.stopReading();
+
+    Logdog.info("any message");
+
+    assertEquals(1, notifiedTraces.size());
+    assertEquals(Thread.currentThread().getName(), notifyingThreads.get(0));
+  }
+
+  @Test public void shouldNotifyEveryTraceLoggedConcurrentlyWithAFullQueue() throws Exception {
+    lynx.setConfig(givenDispatchConfig().setOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT)
+        .setOverflowTimeoutInMillis(TIMEOUT_MILLIS));
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < ANY_NUMBER_OF_PRODUCERS; i++) {
+      Thread producer = new Thread(new Runnable() {
+        @Override public void run() {
+          try {
+            startSignal.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < TRACES_PER_PRODUCER; j++) {
+            Logdog.debug("trace " + j);
+          }
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+
+    startSignal.countDown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    awaitNotifiedTraces(ANY_NUMBER_OF_PRODUCERS * TRACES_PER_PRODUCER);
+  }
+
+  private LynxConfig givenDispatchConfig() {
+    return new LynxConfig().setSamplingRate(0)
+        .setDispatchOnBackgroundThread(true)
+        .setDispatchQueueSize(ANY_SMALL_QUEUE_SIZE);
+  }
+
+  private void awaitNotifiedTraces(int expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (notifiedTraces.size() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(expected, notifiedTraces.size());
+  }
+}
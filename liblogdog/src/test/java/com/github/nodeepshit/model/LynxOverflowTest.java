@@ -0,0 +1,160 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.LynxConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LynxOverflowTest {
+
+  private static final int ANY_SAMPLING_RATE = 1000;
+  private static final int ANY_MAX_NUMBER_OF_TRACES = 100;
+  private static final int BURST_SIZE = 100_000;
+  private static final long ANY_TIMEOUT_MILLIS = 20;
+
+  private FakeMainThread mainThread;
+  private Lynx lynx;
+  private List<Trace> notifiedTraces;
+
+  @Before public void setUp() {
+    mainThread = new FakeMainThread();
+    FakeTimeProvider timeProvider = new FakeTimeProvider();
+    lynx = new Lynx(new Logcat(), new Logdog(), mainThread, timeProvider);
+    notifiedTraces = new ArrayList<>();
+    lynx.registerListener(new Lynx.Listener() {
+      @Override public void onNewTraces(List<Trace> traces) {
+        notifiedTraces.addAll(traces);
+      }
+
+      @Override public void onFilterRegexpDisabled() {
+      }
+    });
+    lynx.startReading();
+  }
+
+  @After public void tearDown() {
+    lynx.stopReading();
+  }
+
+  @Test public void shouldKeepTheLastTracesOfABurstDroppingTheOldest() {
+    givenOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+
+    logBurst();
+
+    assertEquals(ANY_MAX_NUMBER_OF_TRACES, notifiedTraces.size());
+    assertEquals("trace " + (BURST_SIZE - 1), lastNotifiedTrace().getMessage());
+    assertEquals(BURST_SIZE - ANY_MAX_NUMBER_OF_TRACES,
+        lynx.getDroppedTraces(OverflowPolicy.DROP_OLDEST));
+  }
+
+  @Test public void shouldKeepTheFirstTracesOfABurstDroppingTheNewest() {
+    givenOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+
+    logBurst();
+
+    assertEquals(ANY_MAX_NUMBER_OF_TRACES, notifiedTraces.size());
+    assertEquals("trace 0", notifiedTraces.get(0).getMessage());
+    assertEquals("trace " + (ANY_MAX_NUMBER_OF_TRACES - 1), lastNotifiedTrace().getMessage());
+    assertEquals(BURST_SIZE - ANY_MAX_NUMBER_OF_TRACES,
+        lynx.getDroppedTraces(OverflowPolicy.DROP_NEWEST));
+  }
+
+  @Test public void shouldKeepASampleOfTheWholeBurst() {
+    givenOverflowPolicy(OverflowPolicy.SAMPLING);
+
+    logBurst();
+
+    assertEquals(ANY_MAX_NUMBER_OF_TRACES, notifiedTraces.size());
+    assertTrue(notifiedTraces.get(0).getSequence() > firstSequenceOfTheBurst()
+        + ANY_MAX_NUMBER_OF_TRACES);
+    assertEquals(BURST_SIZE - ANY_MAX_NUMBER_OF_TRACES,
+        lynx.getDroppedTraces(OverflowPolicy.SAMPLING));
+  }
+
+  @Test public void shouldDropTheNewTraceOnceTheTimeoutExpires() {
+    givenOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT);
+    int capacity = ANY_MAX_NUMBER_OF_TRACES + 1024;
+    for (int i = 0; i < capacity; i++) {
+      Logdog.info("trace " + i);
+    }
+    long start = System.nanoTime();
+
+    Logdog.info("one more trace");
+
+    long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+    assertTrue(waitedMillis >= ANY_TIMEOUT_MILLIS);
+    assertEquals(1, lynx.getDroppedTraces(OverflowPolicy.BLOCK_WITH_TIMEOUT));
+    mainThread.runDelayedTasks();
+    assertEquals(capacity, notifiedTraces.size());
+  }
+
+  @Test public void shouldNotLoseTracesWhileTheProducerWaits() throws Exception {
+    givenOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT);
+    lynx.setConfig(lynx.getConfig().setOverflowTimeoutInMillis(10_000));
+    Thread producer = new Thread(new Runnable() {
+      @Override public void run() {
+        for (int i = 0; i < 10_000; i++) {
+          Logdog.info("trace " + i);
+        }
+      }
+    });
+    producer.start();
+
+    while (producer.isAlive()) {
+      mainThread.runDelayedTasks();
+      Thread.sleep(1);
+    }
+    mainThread.runDelayedTasks();
+
+    assertEquals(10_000, notifiedTraces.size());
+    assertEquals(0, lynx.getDroppedTraces());
+  }
+
+  @Test public void shouldKeepTheMemoryFlatDuringABurst() {
+    givenOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+    Runtime runtime = Runtime.getRuntime();
+    logBurst(BURST_SIZE / 10);
+    System.gc();
+    long usedAfterWarmUp = runtime.totalMemory() - runtime.freeMemory();
+
+    logBurst(BURST_SIZE);
+    System.gc();
+    long usedAfterBurst = runtime.totalMemory() - runtime.freeMemory();
+
+    long growthInBytes = usedAfterBurst - usedAfterWarmUp;
+    assertTrue("Memory grew " + growthInBytes + " bytes", growthInBytes < 1024 * 1024);
+  }
+
+  private void givenOverflowPolicy(OverflowPolicy overflowPolicy) {
+    lynx.setConfig(new LynxConfig().setSamplingRate(ANY_SAMPLING_RATE)
+        .setMaxNumberOfTracesToShow(ANY_MAX_NUMBER_OF_TRACES)
+        .setOverflowPolicy(overflowPolicy)
+        .setOverflowTimeoutInMillis(ANY_TIMEOUT_MILLIS));
+  }
+
+  private void logBurst() {
+    logBurst(BURST_SIZE);
+    mainThread.runDelayedTasks();
+  }
+
+  private void logBurst(int numberOfTraces) {
+    for (int i = 0; i < numberOfTraces; i++) {
+      Logdog.info("trace " + i);
+    }
+  }
+
+  private long firstSequenceOfTheBurst() {
+    return lastNotifiedTrace().getSequence() - BURST_SIZE + 1;
+  }
+
+  private Trace lastNotifiedTrace() {
+    return notifiedTraces.get(notifiedTraces.size() - 1);
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.LynxConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LynxSamplingTest {
+
+  private static final int ANY_SAMPLING_RATE = 150;
+
+  private FakeMainThread mainThread;
+  private FakeTimeProvider timeProvider;
+  private Lynx lynx;
+  private List<List<Trace>> notifications;
+
+  @Before public void setUp() {
+    mainThread = new FakeMainThread();
+    timeProvider = new FakeTimeProvider();
+    lynx = new Lynx(new Logcat(), new Logdog(), mainThread, timeProvider);
+    lynx.setConfig(new LynxConfig().setSamplingRate(ANY_SAMPLING_RATE));
+    notifications = new ArrayList<>();
+    lynx.registerListener(new Lynx.Listener() {
+      @Override public void onNewTraces(List<Trace> traces) {
+        notifications.add(traces);
+      }
+
+      @Override public void onFilterRegexpDisabled() {
+      }
+    });
+    lynx.startReading();
+  }
+
+  @After public void tearDown() {
+    lynx.stopReading();
+  }
+
+  @Test public void shouldNotifyRightAwayIfTheSamplingRateHasElapsed() {
+    timeProvider.now = 1000;
+
+    Logdog.info("any message");
+
+    assertEquals(1, notifications.size());
+    assertEquals(0, mainThread.getNumberOfDelayedTasks());
+  }
+
+  @Test public void shouldFlushTracesLoggedInsideTheSamplingPeriod() {
+    timeProvider.now = 1000;
+    Logdog.info("first message");
+    timeProvider.now = 1050;
+
+    Logdog.info("second message");
+
+    assertEquals(1, notifications.size());
+    assertEquals(1, mainThread.getNumberOfDelayedTasks());
+    timeProvider.now = 1150;
+    mainThread.runDelayedTasks();
+    assertEquals(2, notifications.size());
+    assertEquals("second message", notifications.get(1).get(0).getMessage());
+  }
+
+  @Test public void shouldCollapseRepeatedTracesPendingToBeNotified() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(ANY_SAMPLING_RATE).setCollapseDuplicates(true));
+    timeProvider.now = 1000;
+    Logdog.info("first message");
+    timeProvider.now = 1050;
+
+    for (int i = 0; i < 10; i++) {
+      Logdog.info("this is info message");
+    }
+    Logdog.debug("this is info message");
+
+    timeProvider.now = 1150;
+    mainThread.runDelayedTasks();
+    List<Trace> collapsedTraces = notifications.get(1);
+    assertEquals(2, collapsedTraces.size());
+    assertEquals(10, collapsedTraces.get(0).getRepeatCount());
+    assertEquals(1, collapsedTraces.get(1).getRepeatCount());
+  }
+
+  @Test public void shouldCoalesceTracesIntoOnePendingDelivery() {
+    timeProvider.now = 1000;
+    Logdog.info("first message");
+    timeProvider.now = 1050;
+
+    Logdog.info("second message");
+    Logdog.info("third message");
+    Logdog.info("fourth message");
+
+    assertEquals(1, mainThread.getNumberOfDelayedTasks());
+    mainThread.runDelayedTasks();
+    assertEquals(2, notifications.size());
+    assertEquals(3, notifications.get(1).size());
+  }
+
+  @Test public void shouldNotScheduleAnythingWhileIdle() {
+    timeProvider.now = 1000;
+    Logdog.info("any message");
+    timeProvider.now = 5000;
+
+    mainThread.runDelayedTasks();
+
+    assertEquals(0, mainThread.getNumberOfDelayedTasks());
+    assertEquals(1, notifications.size());
+  }
+}
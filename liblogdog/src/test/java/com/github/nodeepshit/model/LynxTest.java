@@ -0,0 +1,218 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.LynxConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LynxTest {
+
+  private static final int ANY_NUMBER_OF_PRODUCERS = 8;
+  private static final int TRACES_PER_PRODUCER = 20_000;
+  private static final long TIMEOUT_MILLIS = 10_000;
+
+  private Logcat logcat;
+  private Lynx lynx;
+  private List<Trace> notifiedTraces;
+  private int regexpDisabledNotifications;
+
+  @Before public void setUp() {
+    logcat = new Logcat();
+    lynx = new Lynx(logcat, new Logdog(), new FakeMainThread(), new IncrementalTimeProvider());
+    lynx.setConfig(new LynxConfig().setSamplingRate(0));
+    notifiedTraces = Collections.synchronizedList(new ArrayList<Trace>());
+    lynx.registerListener(new Lynx.Listener() {
+      @Override public void onNewTraces(List<Trace> traces) {
+        notifiedTraces.addAll(traces);
+      }
+
+      @Override public void onFilterRegexpDisabled() {
+        regexpDisabledNotifications++;
+      }
+    });
+    lynx.startReading();
+  }
+
+  @After public void tearDown() {
+    lynx.stopReading();
+  }
+
+  @Test public void shouldNotifyTracesLoggedUsingLogdog() {
+    Logdog.info("any message");
+
+    assertEquals(1, notifiedTraces.size());
+    assertEquals(TraceLevel.INFO, notifiedTraces.get(0).getLevel());
+  }
+
+  @Test public void shouldKeepTheFieldsOfTheLoggedTrace() {
+    Logdog.log(TraceLevel.WARNING, "AnyTag", "any message");
+
+    Trace trace = notifiedTraces.get(0);
+    assertEquals(TraceLevel.WARNING, trace.getLevel());
+    assertEquals("AnyTag", trace.getTag());
+    assertEquals("any message", trace.getMessage());
+    assertEquals(Thread.currentThread().getId(), trace.getThreadId());
+  }
+
+  @Test public void shouldShowTheLogcatLinesOfOtherCodeSharingATagLoggedWithLogdog() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setReadLogcat(true));
+    lynx.startReading();
+    Logdog.log(TraceLevel.INFO, "OkHttp", "any message");
+
+    long now = System.currentTimeMillis();
+    logcat.getListener().onTraceRead(TraceLevel.INFO, "OkHttp", "any message", now, 1);
+    logcat.getListener().onTraceRead(TraceLevel.INFO, "OkHttp", "--> GET /users", now, 2);
+
+    assertEquals(2, notifiedTraces.size());
+    assertEquals("any message", notifiedTraces.get(0).getMessage());
+    assertEquals("--> GET /users", notifiedTraces.get(1).getMessage());
+  }
+
+  @Test(timeout = 5000)
+  public void shouldSearchASlowFilterRegexpAsTextAndNotifyItOnce() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setFilter("((a+)+)\\2b"));
+
+    Logdog.info("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    Logdog.info("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    Logdog.info("filter ((a+)+)\\2b typed");
+
+    assertEquals(1, regexpDisabledNotifications);
+    assertEquals(1, notifiedTraces.size());
+    assertTrue(lynx.isFilterRegexpDisabled());
+  }
+
+  @Test public void shouldLogEveryLevelOnceStoppedReading() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setFilterTraceLevel(TraceLevel.ERROR));
+
+    lynx.stopReading();
+
+    assertTrue(Logdog.isLoggable(TraceLevel.DEBUG));
+  }
+
+  @Test public void shouldJournalTheTracesLoggedBeforeDispatchingThem() throws IOException {
+    File directory = Files.createTempDirectory("lynx-journal").toFile();
+    lynx.stopReading();
+    lynx.setJournalDirectory(directory);
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setSessionJournal(true)
+        .setDispatchOnBackgroundThread(true));
+    lynx.startReading();
+    TraceJournal journal = TraceJournal.getInstance(directory, Long.MAX_VALUE, 0);
+    TraceJournal.release(journal);
+    journal.awaitPendingRecords();
+
+    Logdog.info("any message");
+    lynx.setConfig(new LynxConfig().setSamplingRate(0));
+    journal.awaitWriter();
+
+    TraceJournal nextJournal =
+        new TraceJournal(directory, TraceJournal.DEFAULT_SEGMENT_SIZE, Long.MAX_VALUE);
+    nextJournal.start(1);
+    nextJournal.awaitPendingRecords();
+    nextJournal.close();
+    List<Trace> previousSession = nextJournal.getPreviousSession();
+    deleteDirectory(directory);
+    assertEquals(1, previousSession.size());
+    assertEquals("any message", previousSession.get(0).getMessage());
+  }
+
+  @Test public void shouldCloseTheJournalOnceTheConfigDisablesIt() throws IOException {
+    File directory = Files.createTempDirectory("lynx-journal").toFile();
+    lynx.setJournalDirectory(directory);
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setSessionJournal(true));
+    lynx.startReading();
+    TraceJournal journal = TraceJournal.getInstance(directory, Long.MAX_VALUE, 0);
+    TraceJournal.release(journal);
+
+    lynx.setConfig(new LynxConfig().setSamplingRate(0));
+
+    journal.awaitWriter();
+    deleteDirectory(directory);
+    assertTrue(journal.isClosed());
+    assertTrue(lynx.getPreviousSessionTraces().isEmpty());
+  }
+
+  @Test public void shouldNotNotifyTracesWithLowerLevelThanTheFilter() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setFilterTraceLevel(TraceLevel.WARNING));
+
+    Logdog.debug("any message");
+    Logdog.error("any error");
+
+    assertEquals(1, notifiedTraces.size());
+    assertEquals(TraceLevel.ERROR, notifiedTraces.get(0).getLevel());
+  }
+
+  @Test public void shouldNotNotifyTracesNotMatchingTheFilter() {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0).setFilter("error"));
+
+    Logdog.info("any message");
+    Logdog.info("network error");
+
+    assertEquals(1, notifiedTraces.size());
+  }
+
+  @Test public void shouldNotifyEveryTraceLoggedConcurrently() throws Exception {
+    lynx.setConfig(new LynxConfig().setSamplingRate(0)
+        .setOverflowPolicy(OverflowPolicy.BLOCK_WITH_TIMEOUT)
+        .setOverflowTimeoutInMillis(TIMEOUT_MILLIS));
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    List<Thread> producers = new ArrayList<>();
+    for (int i = 0; i < ANY_NUMBER_OF_PRODUCERS; i++) {
+      Thread producer = new Thread(new Runnable() {
+        @Override public void run() {
+          try {
+            startSignal.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int j = 0; j < TRACES_PER_PRODUCER; j++) {
+            Logdog.debug("trace " + j);
+          }
+        }
+      });
+      producers.add(producer);
+      producer.start();
+    }
+
+    startSignal.countDown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    Logdog.debug("last trace");
+
+    assertEquals(ANY_NUMBER_OF_PRODUCERS * TRACES_PER_PRODUCER + 1, notifiedTraces.size());
+  }
+
+  private static void deleteDirectory(File directory) {
+    File[] files = directory.listFiles();
+    for (int i = 0; files != null && i < files.length; i++) {
+      files[i].delete();
+    }
+    directory.delete();
+  }
+
+  /**
+   * TimeProvider moving forward one millisecond on every invocation so the sampling rate never
+   * holds traces back.
+   */
+  static class IncrementalTimeProvider extends TimeProvider {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Override public long getCurrentTimeMillis() {
+      return now.incrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.github.nodeepshit.model;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Micro-benchmark comparing the throughput of MpscRingBuffer with the previous ingestion, a
+ * bounded ArrayDeque guarded by a monitor, with 1, 2, 4 and 8 producers and a single consumer.
+ * Producers retry while the queue is full, so the numbers include the time they wait for the
+ * consumer. Run it from the IDE or with the test runtime classpath, it is not a unit test.
+ */
+public class MpscRingBufferBenchmark {
+
+  private static final int ELEMENTS_PER_ROUND = 2_000_000;
+  private static final int CAPACITY = 1024;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final int[] PRODUCER_COUNTS = { 1, 2, 4, 8 };
+  private static final Long ELEMENT = 42L;
+
+  public static void main(String[] args) throws InterruptedException {
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      for (int producers : PRODUCER_COUNTS) {
+        long ringBufferNanos = measure(new RingBufferQueue(), producers);
+        long synchronizedNanos = measure(new SynchronizedQueue(), producers);
+        if (round == WARM_UP_ROUNDS) {
+          System.out.println(String.format(
+              "%d producers | MpscRingBuffer %6.2f M ops/s | synchronized %6.2f M ops/s",
+              producers, opsPerMicro(ringBufferNanos), opsPerMicro(synchronizedNanos)));
+        }
+      }
+    }
+  }
+
+  private static long measure(final Queue queue, int producers) throws InterruptedException {
+    final int elementsPerProducer = ELEMENTS_PER_ROUND / producers;
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    Thread[] threads = new Thread[producers];
+    for (int i = 0; i < producers; i++) {
+      threads[i] = new Thread(new Runnable() {
+        @Override public void run() {
+          awaitQuietly(startSignal);
+          for (int j = 0; j < elementsPerProducer; j++) {
+            while (!queue.offer(ELEMENT)) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      threads[i].start();
+    }
+    long totalElements = (long) producers * elementsPerProducer;
+    long start = System.nanoTime();
+    startSignal.countDown();
+    long consumed = 0;
+    while (consumed < totalElements) {
+      if (queue.poll() == null) {
+        Thread.yield();
+      } else {
+        consumed++;
+      }
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return elapsedNanos;
+  }
+
+  private static double opsPerMicro(long nanos) {
+    return ELEMENTS_PER_ROUND * 1000.0 / nanos;
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private interface Queue {
+
+    boolean offer(Long element);
+
+    Long poll();
+  }
+
+  private static class RingBufferQueue implements Queue {
+
+    private final MpscRingBuffer<Long> ringBuffer = new MpscRingBuffer<>(CAPACITY);
+
+    @Override public boolean offer(Long element) {
+      return ringBuffer.offer(element);
+    }
+
+    @Override public Long poll() {
+      return ringBuffer.poll();
+    }
+  }
+
+  private static class SynchronizedQueue implements Queue {
+
+    private final ArrayDeque<Long> deque = new ArrayDeque<>(CAPACITY);
+
+    @Override public synchronized boolean offer(Long element) {
+      if (deque.size() == CAPACITY) {
+        return false;
+      }
+      deque.add(element);
+      return true;
+    }
+
+    @Override public synchronized Long poll() {
+      return deque.poll();
+    }
+  }
+}
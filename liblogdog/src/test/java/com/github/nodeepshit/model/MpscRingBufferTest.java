@@ -0,0 +1,174 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MpscRingBufferTest {
+
+  private static final int ELEMENTS_PER_PRODUCER = 200_000;
+
+  @Test public void shouldRoundCapacityToTheNextPowerOfTwo() {
+    MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(1000);
+
+    assertEquals(1024, ringBuffer.capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotAcceptZeroCapacity() {
+    new MpscRingBuffer<Integer>(0);
+  }
+
+  @Test public void shouldReturnElementsInInsertionOrder() {
+    MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4);
+
+    ringBuffer.offer(1);
+    ringBuffer.offer(2);
+    ringBuffer.offer(3);
+
+    assertEquals(Integer.valueOf(1), ringBuffer.poll());
+    assertEquals(Integer.valueOf(2), ringBuffer.poll());
+    assertEquals(Integer.valueOf(3), ringBuffer.poll());
+    assertNull(ringBuffer.poll());
+  }
+
+  @Test public void shouldRejectElementsWhenFull() {
+    MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(2);
+
+    assertTrue(ringBuffer.offer(1));
+    assertTrue(ringBuffer.offer(2));
+
+    assertFalse(ringBuffer.offer(3));
+    assertEquals(2, ringBuffer.size());
+  }
+
+  @Test public void shouldReuseSlotsAfterWrappingAround() {
+    MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(4);
+    List<Integer> drained = new ArrayList<>();
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(ringBuffer.offer(i));
+      ringBuffer.drainTo(drained);
+    }
+
+    assertEquals(10, drained.size());
+    assertEquals(Integer.valueOf(9), drained.get(9));
+    assertTrue(ringBuffer.isEmpty());
+  }
+
+  @Test public void shouldDrainUpToTheLimit() {
+    MpscRingBuffer<Integer> ringBuffer = new MpscRingBuffer<>(8);
+    for (int i = 0; i < 5; i++) {
+      ringBuffer.offer(i);
+    }
+    List<Integer> drained = new ArrayList<>();
+
+    int drainedElements = ringBuffer.drainTo(drained, 3);
+
+    assertEquals(3, drainedElements);
+    assertEquals(2, ringBuffer.size());
+  }
+
+  @Test public void shouldDeliverEveryElementOnceWithConcurrentProducers() throws Exception {
+    int producers = 8;
+    MpscRingBuffer<Long> ringBuffer = new MpscRingBuffer<>(1024);
+
+    long[] lastSeenByProducer = runProducersAndConsumer(ringBuffer, producers,
+        ELEMENTS_PER_PRODUCER);
+
+    for (int i = 0; i < producers; i++) {
+      assertEquals(ELEMENTS_PER_PRODUCER - 1, lastSeenByProducer[i]);
+    }
+  }
+
+  @Test public void shouldDeliverEveryElementInOrderPerProducer() throws Exception {
+    int[] producerCounts = { 1, 2, 4, 8 };
+    for (int producers : producerCounts) {
+      MpscRingBuffer<Long> ringBuffer = new MpscRingBuffer<>(16);
+
+      long[] lastSeenByProducer = runProducersAndConsumer(ringBuffer, producers,
+          ELEMENTS_PER_PRODUCER / producers);
+
+      for (int i = 0; i < producers; i++) {
+        assertEquals(ELEMENTS_PER_PRODUCER / producers - 1, lastSeenByProducer[i]);
+      }
+    }
+  }
+
+  /**
+   * Starts the given number of producers publishing elements with the producer id in the high bits
+   * and a counter in the low bits while a single consumer drains the ring buffer checking the
+   * order per producer.
+   */
+  private long[] runProducersAndConsumer(final MpscRingBuffer<Long> ringBuffer, int producers,
+      final int elementsPerProducer) throws Exception {
+    final long[] lastSeenByProducer = new long[producers];
+    for (int i = 0; i < producers; i++) {
+      lastSeenByProducer[i] = -1;
+    }
+    final CountDownLatch startSignal = new CountDownLatch(1);
+    final AtomicBoolean orderBroken = new AtomicBoolean();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < producers; i++) {
+      final long producerId = i;
+      Thread producer = new Thread(new Runnable() {
+        @Override public void run() {
+          awaitQuietly(startSignal);
+          for (long j = 0; j < elementsPerProducer; j++) {
+            Long element = (producerId << 32) | j;
+            while (!ringBuffer.offer(element)) {
+              Thread.yield();
+            }
+          }
+        }
+      });
+      threads.add(producer);
+      producer.start();
+    }
+    final long totalElements = (long) producers * elementsPerProducer;
+    Thread consumer = new Thread(new Runnable() {
+      @Override public void run() {
+        long consumed = 0;
+        while (consumed < totalElements) {
+          Long element = ringBuffer.poll();
+          if (element == null) {
+            Thread.yield();
+            continue;
+          }
+          int producerId = (int) (element >>> 32);
+          long counter = element & 0xFFFFFFFFL;
+          if (counter != lastSeenByProducer[producerId] + 1) {
+            orderBroken.set(true);
+          }
+          lastSeenByProducer[producerId] = counter;
+          consumed++;
+        }
+      }
+    });
+    consumer.start();
+    startSignal.countDown();
+    for (Thread producer : threads) {
+      producer.join();
+    }
+    consumer.join();
+    assertFalse("Elements from the same producer were consumed out of order", orderBroken.get());
+    assertTrue(ringBuffer.isEmpty());
+    return lastSeenByProducer;
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
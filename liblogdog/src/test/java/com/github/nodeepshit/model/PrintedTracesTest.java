@@ -0,0 +1,59 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrintedTracesTest {
+
+  private static final String ANY_TAG = "OkHttp";
+  private static final long ANY_TIMESTAMP = 1_000_000;
+
+  private PrintedTraces printedTraces;
+
+  @Before public void setUp() {
+    printedTraces = new PrintedTraces();
+  }
+
+  @Test public void shouldSkipTheLineEchoingATracePrintedOnlyOnce() {
+    printedTraces.add(ANY_TAG, "any message", ANY_TIMESTAMP);
+
+    assertTrue(printedTraces.remove(ANY_TAG, "any message", ANY_TIMESTAMP));
+    assertFalse(printedTraces.remove(ANY_TAG, "any message", ANY_TIMESTAMP));
+  }
+
+  @Test public void shouldKeepTheLinesWithTheSameTagAndAnotherMessage() {
+    printedTraces.add(ANY_TAG, "any message", ANY_TIMESTAMP);
+
+    assertFalse(printedTraces.remove(ANY_TAG, "--> GET https://api.example.com", ANY_TIMESTAMP));
+    assertFalse(printedTraces.remove("OtherTag", "any message", ANY_TIMESTAMP));
+  }
+
+  @Test public void shouldSkipEveryLineOfAMultilineMessage() {
+    printedTraces.add(ANY_TAG, "first line\nsecond line", ANY_TIMESTAMP);
+
+    assertTrue(printedTraces.remove(ANY_TAG, "first line", ANY_TIMESTAMP));
+    assertTrue(printedTraces.remove(ANY_TAG, "second line", ANY_TIMESTAMP));
+  }
+
+  @Test public void shouldSkipTheTruncatedLineOfALongMessage() {
+    StringBuilder message = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      message.append((char) ('a' + i % 26));
+    }
+    printedTraces.add(ANY_TAG, message.toString(), ANY_TIMESTAMP);
+
+    assertTrue(printedTraces.remove(ANY_TAG, message.substring(0, 4000), ANY_TIMESTAMP));
+  }
+
+  @Test public void shouldForgetTheTracesNotEchoedInTime() {
+    printedTraces.add(ANY_TAG, "filtered out by logcat", ANY_TIMESTAMP);
+    printedTraces.add(ANY_TAG, "any message", ANY_TIMESTAMP);
+
+    long later = ANY_TIMESTAMP + PrintedTraces.MAX_ECHO_DELAY_MILLIS + 1;
+    assertFalse(printedTraces.remove(ANY_TAG, "any message", later));
+    assertFalse(printedTraces.remove(ANY_TAG, "filtered out by logcat", ANY_TIMESTAMP));
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.nodeepshit.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentFilesTest {
+
+  private static final int SEGMENT_SIZE = 1024;
+  private static final String ANY_PREFIX = "segment-";
+
+  private File directory;
+
+  @Before public void setUp() throws IOException {
+    directory = Files.createTempDirectory("segment-files").toFile();
+  }
+
+  @After public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test public void shouldListTheSegmentsOldestFirst() throws IOException {
+    SegmentFiles segmentFiles = new SegmentFiles(directory, ANY_PREFIX, SEGMENT_SIZE,
+        Long.MAX_VALUE);
+    for (int i = 0; i < 12; i++) {
+      segmentFiles.add();
+    }
+
+    List<File> segments = segmentFiles.list();
+
+    assertEquals(12, segments.size());
+    assertEquals("segment-9.log", segments.get(9).getName());
+    assertEquals("segment-11.log", segments.get(11).getName());
+  }
+
+  @Test public void shouldDeleteTheOldestSegmentOnceTheMaxBytesAreTaken() throws IOException {
+    SegmentFiles segmentFiles = new SegmentFiles(directory, ANY_PREFIX, SEGMENT_SIZE,
+        3 * SEGMENT_SIZE);
+
+    for (int i = 0; i < 5; i++) {
+      segmentFiles.add();
+    }
+
+    List<File> segments = segmentFiles.list();
+    assertEquals(3, segments.size());
+    assertEquals("segment-2.log", segments.get(0).getName());
+    assertEquals(SEGMENT_SIZE, segments.get(0).length());
+  }
+
+  @Test public void shouldDeleteOnlyTheFilesWithItsPrefix() throws IOException {
+    SegmentFiles segmentFiles = new SegmentFiles(directory, ANY_PREFIX, SEGMENT_SIZE,
+        Long.MAX_VALUE);
+    segmentFiles.add();
+    File otherFile = new File(directory, "journal-0.log");
+    assertTrue(otherFile.createNewFile());
+
+    boolean deleted = segmentFiles.deleteAll();
+
+    assertTrue(deleted);
+    assertEquals(0, segmentFiles.list().size());
+    assertTrue(otherFile.exists());
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimestampFormatterTest {
+
+  private static final String[] ANY_TIME_ZONES = { "UTC", "Asia/Shanghai", "America/New_York",
+      "Asia/Kolkata", "Pacific/Chatham" };
+
+  @Test public void shouldFormatLikeSimpleDateFormat() {
+    Random random = new Random(42);
+    for (String timeZoneId : ANY_TIME_ZONES) {
+      TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+      TimestampFormatter formatter = new TimestampFormatter(timeZone);
+      SimpleDateFormat simpleDateFormat = new SimpleDateFormat("HH:mm:ss.SSS");
+      simpleDateFormat.setTimeZone(timeZone);
+      long epochMillis = 1_600_000_000_000L;
+      for (int i = 0; i < 10_000; i++) {
+        epochMillis += random.nextInt(5_000_000);
+
+        String formatted = formatter.appendTime(new StringBuilder(), epochMillis).toString();
+
+        assertEquals(simpleDateFormat.format(new Date(epochMillis)), formatted);
+      }
+    }
+  }
+
+  @Test public void shouldFormatTimesBeforeTheEpoch() {
+    TimestampFormatter formatter = new TimestampFormatter(TimeZone.getTimeZone("UTC"));
+
+    String formatted = formatter.appendTime(new StringBuilder(), -1).toString();
+
+    assertEquals("23:59:59.999", formatted);
+  }
+
+  @Test public void shouldPrependTheTimeToTheMessage() {
+    TimestampFormatter formatter = new TimestampFormatter(TimeZone.getTimeZone("UTC"));
+    Trace trace = new Trace(TraceLevel.INFO, "any message", 3_723_004L);
+
+    assertEquals("01:02:03.004 any message", formatter.format(trace));
+  }
+
+  @Test public void shouldAppendTheRepeatCountOfCollapsedTraces() {
+    TimestampFormatter formatter = new TimestampFormatter(TimeZone.getTimeZone("UTC"));
+    Trace trace = new Trace(TraceLevel.INFO, "any message", 3_723_004L);
+
+    Trace collapsed = trace.collapse(new Trace(TraceLevel.INFO, "any message", 3_723_005L));
+
+    assertEquals("01:02:03.004 any message \u00d72", formatter.format(collapsed));
+  }
+
+  @Test public void shouldNotPrependTheTimeToTips() {
+    TimestampFormatter formatter = new TimestampFormatter(TimeZone.getTimeZone("UTC"));
+    Trace trace = new Trace(TraceLevel.TIP, "any tip", 3_723_004L);
+
+    assertEquals("any tip", formatter.format(trace));
+  }
+}
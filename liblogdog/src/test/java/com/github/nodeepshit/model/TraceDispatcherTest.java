@@ -0,0 +1,66 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceDispatcherTest {
+
+  private static final int ANY_SMALL_CAPACITY = 4;
+  private static final String ANY_TAG = "Tag";
+
+  @Test public void shouldRoundCapacityToTheNextPowerOfTwo() {
+    TraceDispatcher dispatcher = new TraceDispatcher(1000, new RecordingSink());
+
+    assertEquals(1024, dispatcher.capacity());
+  }
+
+  @Test public void shouldDispatchEveryTracePublishedInOrderBeforeStopping() throws Exception {
+    RecordingSink sink = new RecordingSink();
+    TraceDispatcher dispatcher = new TraceDispatcher(ANY_SMALL_CAPACITY, sink);
+    dispatcher.start();
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(dispatcher.dispatch(TraceLevel.DEBUG, ANY_TAG, String.valueOf(i), i, 1));
+    }
+    dispatcher.stopDispatching();
+    dispatcher.join();
+
+    assertEquals(100, sink.messages.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(String.valueOf(i), sink.messages.get(i));
+    }
+  }
+
+  @Test(timeout = 10_000)
+  public void shouldNotWaitForRoomOnceTheQueueIsFullAndTheWorkerStopped() {
+    TraceDispatcher dispatcher = new TraceDispatcher(ANY_SMALL_CAPACITY, new RecordingSink());
+    for (int i = 0; i < dispatcher.capacity(); i++) {
+      dispatcher.dispatch(TraceLevel.DEBUG, ANY_TAG, String.valueOf(i), i, 1);
+    }
+
+    dispatcher.stopDispatching();
+    boolean dispatched = dispatcher.dispatch(TraceLevel.DEBUG, ANY_TAG, "any message", 0, 1);
+
+    assertFalse(dispatched);
+  }
+
+  private static class RecordingSink implements TraceDispatcher.Sink {
+
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+    @Override public void onTraceDispatched(TraceLevel level, String tag, String message,
+        long timestamp, long threadId) {
+      messages.add(message);
+    }
+
+    @Override public void onBatchDispatched() {
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.nodeepshit.model;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmark comparing TraceFilter with the previous implementation, which copied every
+ * message to lower case before the contains check and the regular expression. Messages follow the
+ * lengths found in a real logcat: mostly short lines, some request logs and a few stack trace
+ * lines. Run it from the IDE or with the test runtime classpath, it is not a unit test.
+ */
+public class TraceFilterBenchmark {
+
+  private static final int NUMBER_OF_MESSAGES = 20_000;
+  private static final int ROUNDS = 20;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final String[] FILTERS = {
+      "timeout", "Exception", "no match here", "took \\d+ ms"
+  };
+  private static final String[] MESSAGES = {
+      "Skipped 31 frames!",
+      "Use EGL_SWAP_BEHAVIOR_PRESERVED: true",
+      "Request took 120 ms: GET https://api.example.com/v1/users?page=2&per_page=50",
+      "Request failed (timeout): GET https://api.example.com/v1/users/4521/friends?include=profile",
+      "\tat libcore.io.IoBridge.connectErrno(IoBridge.java:169)",
+      "java.net.SocketTimeoutException: failed to connect to api.example.com/93.184.216.34 (port "
+          + "443) from /10.0.2.15 (port 43210) after 10000ms",
+      "Background concurrent copying GC freed 23456(1247KB) AllocSpace objects, 12(480KB) LOS "
+          + "objects, 49% free, 3MB/7MB, paused 1.234ms total 45.678ms",
+  };
+
+  private static int checksum;
+
+  public static void main(String[] args) {
+    String[] messages = givenMessages();
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      for (String filter : FILTERS) {
+        long lowerCaseNanos = measureLowerCaseCopy(messages, filter);
+        long matcherNanos =
+            measureTraceFilter(messages, new TraceFilter(filter, TraceLevel.VERBOSE));
+        if (round == WARM_UP_ROUNDS) {
+          System.out.println(String.format(
+              "%-14s toLowerCase %6.1f ns/msg | TraceFilter %6.1f ns/msg", filter,
+              perMessage(lowerCaseNanos), perMessage(matcherNanos)));
+        }
+      }
+    }
+  }
+
+  private static String[] givenMessages() {
+    Random random = new Random(42);
+    String[] messages = new String[NUMBER_OF_MESSAGES];
+    for (int i = 0; i < messages.length; i++) {
+      messages[i] = MESSAGES[random.nextInt(MESSAGES.length)];
+    }
+    return messages;
+  }
+
+  private static long measureLowerCaseCopy(String[] messages, String filter) {
+    String lowerCaseFilter = filter.toLowerCase();
+    Pattern regexp = filter.contains("\\") ? Pattern.compile(lowerCaseFilter) : null;
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (String message : messages) {
+        String lowerCaseMessage = message.toLowerCase();
+        if (lowerCaseMessage.contains(lowerCaseFilter)
+            || (regexp != null && regexp.matcher(lowerCaseMessage).find())) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureTraceFilter(String[] messages, TraceFilter filter) {
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (String message : messages) {
+        if (filter.matches(TraceLevel.INFO, Trace.NO_TAG, message)) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static double perMessage(long nanos) {
+    return (double) nanos / ((long) NUMBER_OF_MESSAGES * ROUNDS);
+  }
+}
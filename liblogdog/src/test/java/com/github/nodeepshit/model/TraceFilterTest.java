@@ -0,0 +1,87 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceFilterTest {
+
+  private static final String ANY_TAG = "AnyTag";
+
+  @Test public void shouldMatchMessagesContainingTheTextIgnoringCase() {
+    TraceFilter filter = new TraceFilter("Socket", TraceLevel.VERBOSE);
+
+    assertEquals(true,
+        filter.matches(TraceLevel.ERROR, ANY_TAG, "java.net.SOCKETTimeoutException"));
+    assertEquals(false, filter.matches(TraceLevel.ERROR, ANY_TAG, "request sent"));
+  }
+
+  @Test public void shouldMatchRegularExpressionsIgnoringCase() {
+    TraceFilter filter = new TraceFilter("took \\d+ MS", TraceLevel.VERBOSE);
+
+    assertEquals(true, filter.matches(TraceLevel.INFO, ANY_TAG, "Request took 120 ms"));
+    assertEquals(false, filter.matches(TraceLevel.INFO, ANY_TAG, "Request took long"));
+  }
+
+  @Test public void shouldKeepTheMeaningOfUpperCaseRegularExpressionClasses() {
+    TraceFilter filter = new TraceFilter("^\\D+$", TraceLevel.VERBOSE);
+
+    assertEquals(true, filter.matches(TraceLevel.INFO, ANY_TAG, "no digits here"));
+    assertEquals(false, filter.matches(TraceLevel.INFO, ANY_TAG, "4521"));
+  }
+
+  @Test public void shouldUseInvalidRegularExpressionsAsText() {
+    TraceFilter filter = new TraceFilter("[unclosed", TraceLevel.VERBOSE);
+
+    assertEquals(true, filter.matches(TraceLevel.INFO, ANY_TAG, "an [UNCLOSED bracket"));
+  }
+
+  @Test public void shouldMatchAnyOfTheLiteralAlternativesOfARegularExpression() throws Exception {
+    TraceFilter filter = new TraceFilter("E1001|E1002|timeout", TraceLevel.VERBOSE);
+    byte[] bytes = "Read TIMEOUT".getBytes("UTF-8");
+
+    assertEquals(true, filter.matches(TraceLevel.INFO, ANY_TAG, "failed with e1002"));
+    assertEquals(false, filter.matches(TraceLevel.INFO, ANY_TAG, "failed with E1003"));
+    assertEquals(TraceFilter.MATCH, filter.matchesMessage(bytes, 0, bytes.length));
+    assertEquals(TraceFilter.NO_MATCH, filter.matchesMessage(bytes, 0, 4));
+  }
+
+  @Test public void shouldDiscardTracesWithLowerLevel() {
+    TraceFilter filter = new TraceFilter("", TraceLevel.WARNING);
+
+    assertEquals(false, filter.matches(TraceLevel.INFO, ANY_TAG, "any message"));
+    assertEquals(true, filter.matches(TraceLevel.ERROR, ANY_TAG, "any message"));
+  }
+
+  @Test public void shouldBeNarrowerIfTheTextContainsThePreviousText() {
+    TraceFilter previous = new TraceFilter("req", TraceLevel.VERBOSE);
+
+    assertEquals(true, new TraceFilter("Request", TraceLevel.INFO).isNarrowerThan(previous));
+    assertEquals(false, new TraceFilter("re", TraceLevel.INFO).isNarrowerThan(previous));
+    assertEquals(false, previous.isNarrowerThan(new TraceFilter("req", TraceLevel.INFO)));
+  }
+
+  @Test public void shouldNeverConsiderRegularExpressionsNarrower() {
+    TraceFilter previous = new TraceFilter("req", TraceLevel.VERBOSE);
+
+    assertEquals(false, new TraceFilter("req.*", TraceLevel.VERBOSE).isNarrowerThan(previous));
+  }
+
+  @Test public void shouldReportRegularExpressionsDisabledForBeingTooSlow() {
+    TraceFilter filter = new TraceFilter("((a+)+)\\2b", TraceLevel.VERBOSE);
+    String message = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+
+    assertEquals(false, filter.matches(TraceLevel.INFO, ANY_TAG, message));
+    assertEquals(true, filter.isRegexpDisabled());
+    assertEquals(false, new TraceFilter("(a+)+b", TraceLevel.VERBOSE).isRegexpDisabled());
+  }
+
+  @Test public void shouldSearchTheRegularExpressionsDisabledAsText() {
+    TraceFilter filter = new TraceFilter("tag:net AND /((a+)+)\\2b/", TraceLevel.VERBOSE);
+    filter.matches(TraceLevel.INFO, "net", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+
+    assertEquals(true, filter.isRegexpDisabled());
+    assertEquals(true, filter.matches(TraceLevel.INFO, "net", "typed ((a+)+)\\2b"));
+    assertEquals(false, filter.matches(TraceLevel.INFO, "net", "hello"));
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.nodeepshit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Micro-benchmark measuring the cost TraceJournal adds to the ingestion of every trace, appending
+ * typical logcat traces to the memory-mapped segments of a journal in a temporary directory. The
+ * journal is bounded to 4 MB, segment files are rolled and deleted by its writer thread. Run
+ * it from the IDE or with the test runtime classpath, it is not a unit test.
+ */
+public class TraceJournalBenchmark {
+
+  private static final int NUMBER_OF_TRACES = 1_000_000;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final long MAX_BYTES = 4 * 1024 * 1024;
+
+  public static void main(String[] args) throws IOException {
+    Trace[] traces = givenTraces();
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      long nanos = measureAppend(traces);
+      if (round == WARM_UP_ROUNDS) {
+        System.out.println(String.format("append %6.1f ns/trace, %d KB segments",
+            (double) nanos / traces.length, TraceJournal.DEFAULT_SEGMENT_SIZE / 1024));
+      }
+    }
+  }
+
+  private static long measureAppend(Trace[] traces) throws IOException {
+    File directory = Files.createTempDirectory("trace-journal-benchmark").toFile();
+    try {
+      TraceJournal journal =
+          new TraceJournal(directory, TraceJournal.DEFAULT_SEGMENT_SIZE, MAX_BYTES);
+      journal.start(0);
+      journal.awaitPendingRecords();
+      long start = System.nanoTime();
+      for (Trace trace : traces) {
+        journal.append(trace.getLevel(), trace.getTag(), trace.getMessage(), trace.getTimestamp(),
+            trace.getThreadId());
+      }
+      long nanos = System.nanoTime() - start;
+      journal.awaitPendingRecords();
+      journal.close();
+      return nanos;
+    } finally {
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      directory.delete();
+    }
+  }
+
+  private static Trace[] givenTraces() {
+    String[] templates = {
+        "Displayed com.example/.MainActivity: +%dms",
+        "Swap behavior %d",
+        "Suspending all threads took: %dms",
+        "Skipped %d frames!  The application may be doing too much work on its main thread.",
+        "Request %d failed with timeout",
+        "this is info message %d",
+    };
+    String[] tags = { "ActivityManager", "OpenGLRenderer", "art", "Choreographer", "Network" };
+    TraceLevel[] levels = TraceLevel.values();
+    Trace[] traces = new Trace[NUMBER_OF_TRACES];
+    for (int i = 0; i < NUMBER_OF_TRACES; i++) {
+      traces[i] = new Trace(levels[i % levels.length], tags[i % tags.length],
+          String.format(templates[i % templates.length], i), i, 4521);
+    }
+    return traces;
+  }
+}
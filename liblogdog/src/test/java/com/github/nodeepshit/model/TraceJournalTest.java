@@ -0,0 +1,249 @@
+package com.github.nodeepshit.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TraceJournalTest {
+
+  private static final int SEGMENT_SIZE = 4 * 1024;
+  private static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+  private static final int ANY_MAX_TRACES = 100;
+  private static final String ANY_TAG = "Tag";
+
+  private File directory;
+  private List<TraceJournal> journals;
+
+  @Before public void setUp() throws IOException {
+    directory = Files.createTempDirectory("trace-journal").toFile();
+    journals = new ArrayList<>();
+  }
+
+  @After public void tearDown() {
+    for (TraceJournal journal : journals) {
+      journal.close();
+    }
+    deleteDirectory(directory);
+  }
+
+  @Test public void shouldReplayTheTracesOfAJournalNotClosed() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    previousJournal.append(TraceLevel.WARNING, "N\u00e9t", "caf\u00e9 \ud83d\ude00", 1000, 7);
+    previousJournal.append(TraceLevel.ERROR, ANY_TAG, "crash", 2000, 8);
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES);
+    List<Trace> previousSession = journal.getPreviousSession();
+
+    assertEquals(2, previousSession.size());
+    Trace trace = previousSession.get(0);
+    assertEquals(TraceLevel.WARNING, trace.getLevel());
+    assertEquals("N\u00e9t", trace.getTag());
+    assertEquals("caf\u00e9 \ud83d\ude00", trace.getMessage());
+    assertEquals(1000, trace.getTimestamp());
+    assertEquals(7, trace.getThreadId());
+    assertEquals("crash", previousSession.get(1).getMessage());
+  }
+
+  @Test public void shouldReplayOnlyTheNewestTraces() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(previousJournal, 0, 1000);
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES, 10);
+    List<Trace> previousSession = journal.getPreviousSession();
+
+    assertEquals(10, previousSession.size());
+    assertEquals("990", previousSession.get(0).getMessage());
+    assertEquals("999", previousSession.get(9).getMessage());
+  }
+
+  @Test public void shouldNotReplayTheTracesOfTheCurrentSession() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(previousJournal, 0, 10);
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(journal, 10, 5);
+    TraceJournal nextJournal = givenOpenJournal(UNLIMITED_BYTES);
+
+    assertEquals(10, journal.getPreviousSession().size());
+    List<Trace> previousSession = nextJournal.getPreviousSession();
+    assertEquals(5, previousSession.size());
+    assertEquals("10", previousSession.get(0).getMessage());
+  }
+
+  @Test public void shouldWriteTheTracesAppendedBeforeOpening() {
+    TraceJournal previousJournal = new TraceJournal(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    journals.add(previousJournal);
+    appendTraces(previousJournal, 0, TraceJournal.MAX_PENDING_TRACES + 10);
+    previousJournal.start(ANY_MAX_TRACES);
+    previousJournal.awaitPendingRecords();
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES, Integer.MAX_VALUE);
+    List<Trace> previousSession = journal.getPreviousSession();
+
+    assertEquals(TraceJournal.MAX_PENDING_TRACES, previousSession.size());
+    assertEquals("10", previousSession.get(0).getMessage());
+  }
+
+  @Test public void shouldIgnoreARecordNotFullyWritten() throws IOException {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(previousJournal, 0, 2);
+    int recordsSize = 2 * (25 + ANY_TAG.length() + 1);
+    RandomAccessFile segment = new RandomAccessFile(new File(directory, "journal-0.log"), "rw");
+    segment.seek(recordsSize);
+    segment.writeInt(SEGMENT_SIZE);
+    segment.close();
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES);
+
+    assertEquals(2, journal.getPreviousSession().size());
+  }
+
+  @Test public void shouldDeleteTheOldestSegmentsOnceTheMaxBytesAreExceeded() {
+    TraceJournal previousJournal = givenOpenJournal(3 * SEGMENT_SIZE);
+    appendTraces(previousJournal, 0, 5000);
+    previousJournal.awaitPendingRecords();
+
+    assertEquals(3, directory.listFiles().length);
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES, Integer.MAX_VALUE);
+    List<Trace> previousSession = journal.getPreviousSession();
+
+    assertTrue(previousSession.size() < 5000);
+    assertEquals("4999", previousSession.get(previousSession.size() - 1).getMessage());
+  }
+
+  @Test public void shouldTruncateTheMessagesLargerThanASegment() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    StringBuilder message = new StringBuilder();
+    for (int i = 0; i < 10 * SEGMENT_SIZE; i++) {
+      message.append((char) ('a' + i % 26));
+    }
+    previousJournal.append(TraceLevel.INFO, ANY_TAG, message.toString(), 0, 1);
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES);
+    String read = journal.getPreviousSession().get(0).getMessage();
+
+    assertTrue(read.length() < SEGMENT_SIZE);
+    assertTrue(message.toString().startsWith(read));
+  }
+
+  @Test public void shouldNotWriteTracesOnceClosed() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(previousJournal, 0, 3);
+    previousJournal.close();
+    appendTraces(previousJournal, 3, 3);
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES);
+
+    assertEquals(3, journal.getPreviousSession().size());
+  }
+
+  @Test public void shouldCloseTheSharedJournalOnceReleasedByEveryCaller() {
+    TraceJournal journal = TraceJournal.getInstance(directory, UNLIMITED_BYTES, ANY_MAX_TRACES);
+    journals.add(journal);
+    TraceJournal sameJournal =
+        TraceJournal.getInstance(directory, UNLIMITED_BYTES, ANY_MAX_TRACES);
+
+    TraceJournal.release(journal);
+    assertSame(journal, sameJournal);
+    assertFalse(journal.isClosed());
+    TraceJournal.release(sameJournal);
+    assertTrue(journal.isClosed());
+  }
+
+  @Test public void shouldOpenANewSharedJournalKeepingThePreviousSessionOnceReleased() {
+    TraceJournal previousJournal = givenOpenJournal(UNLIMITED_BYTES);
+    appendTraces(previousJournal, 0, 3);
+    TraceJournal journal = TraceJournal.getInstance(directory, UNLIMITED_BYTES, ANY_MAX_TRACES);
+    journals.add(journal);
+    journal.awaitPendingRecords();
+    appendTraces(journal, 3, 2);
+
+    TraceJournal.release(journal);
+    TraceJournal nextJournal =
+        TraceJournal.getInstance(directory, UNLIMITED_BYTES, ANY_MAX_TRACES);
+    journals.add(nextJournal);
+    nextJournal.awaitPendingRecords();
+    TraceJournal.release(nextJournal);
+
+    assertNotSame(journal, nextJournal);
+    List<Trace> previousSession = nextJournal.getPreviousSession();
+    assertEquals(3, previousSession.size());
+    assertEquals("0", previousSession.get(0).getMessage());
+  }
+
+  @Test public void shouldKeepEveryTraceAppendedConcurrently() throws InterruptedException {
+    final TraceJournal previousJournal = new TraceJournal(directory, 1024 * 1024, UNLIMITED_BYTES);
+    journals.add(previousJournal);
+    previousJournal.start(ANY_MAX_TRACES);
+    previousJournal.awaitPendingRecords();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final int first = i * 1000;
+      threads[i] = new Thread(new Runnable() {
+        @Override public void run() {
+          appendTraces(previousJournal, first, 1000);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    TraceJournal journal = givenOpenJournal(UNLIMITED_BYTES, Integer.MAX_VALUE);
+    List<Trace> previousSession = journal.getPreviousSession();
+
+    assertEquals(4000, previousSession.size());
+    boolean[] replayed = new boolean[4000];
+    for (Trace trace : previousSession) {
+      replayed[Integer.parseInt(trace.getMessage())] = true;
+    }
+    for (boolean traceReplayed : replayed) {
+      assertTrue(traceReplayed);
+    }
+  }
+
+  private TraceJournal givenOpenJournal(long maxBytes) {
+    return givenOpenJournal(maxBytes, ANY_MAX_TRACES);
+  }
+
+  private TraceJournal givenOpenJournal(long maxBytes, int maxTracesToReplay) {
+    for (TraceJournal previousJournal : journals) {
+      previousJournal.awaitPendingRecords();
+    }
+    TraceJournal journal = new TraceJournal(directory, SEGMENT_SIZE, maxBytes);
+    journals.add(journal);
+    journal.start(maxTracesToReplay);
+    journal.awaitPendingRecords();
+    return journal;
+  }
+
+  private static void appendTraces(TraceJournal journal, int first, int numberOfTraces) {
+    for (int i = first; i < first + numberOfTraces; i++) {
+      journal.append(TraceLevel.DEBUG, ANY_TAG, String.valueOf(i), i, 1);
+    }
+  }
+
+  private static void deleteDirectory(File directory) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+}
@@ -0,0 +1,95 @@
+package com.github.nodeepshit.model;
+
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing a query evaluated in the order it's written, searching the messages
+ * first, with the same query compiled by TraceFilter, which checks levels and tags first. Most
+ * traces are verbose, debug or info ones like in a real logcat. Run it from the IDE or with the
+ * test runtime classpath, it is not a unit test.
+ */
+public class TraceQueryBenchmark {
+
+  private static final int NUMBER_OF_TRACES = 20_000;
+  private static final int ROUNDS = 20;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final String QUERY =
+      "NOT \"heartbeat\" AND (\"timeout\" OR tag:Network) AND level>=W";
+  private static final TraceLevel[] LEVELS = {
+      TraceLevel.VERBOSE, TraceLevel.VERBOSE, TraceLevel.DEBUG, TraceLevel.DEBUG,
+      TraceLevel.DEBUG, TraceLevel.INFO, TraceLevel.INFO, TraceLevel.INFO, TraceLevel.WARNING,
+      TraceLevel.ERROR
+  };
+  private static final String[] TAGS = { "Network", "Choreographer", "art", "ActivityManager" };
+  private static final String[] MESSAGES = {
+      "Skipped 31 frames!",
+      "heartbeat sent to api.example.com",
+      "Request took 120 ms: GET https://api.example.com/v1/users?page=2&per_page=50",
+      "Request failed (timeout): GET https://api.example.com/v1/users/4521/friends?include=profile",
+      "Background concurrent copying GC freed 23456(1247KB) AllocSpace objects, 12(480KB) LOS "
+          + "objects, 49% free, 3MB/7MB, paused 1.234ms total 45.678ms",
+  };
+
+  private static int checksum;
+
+  public static void main(String[] args) {
+    Trace[] traces = givenTraces();
+    TracePredicate writtenOrder = new TracePredicate.And(new TracePredicate[] {
+        new TracePredicate.Not(new TracePredicate.Text("heartbeat")),
+        new TracePredicate.Or(new TracePredicate[] {
+            new TracePredicate.Text("timeout"), new TracePredicate.Tag("Network")
+        }),
+        new TracePredicate.Level(TracePredicate.Level.HIGHER_OR_EQUAL, TraceLevel.WARNING)
+    });
+    TraceFilter filter = new TraceFilter(QUERY, TraceLevel.VERBOSE);
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      long writtenOrderNanos = measureWrittenOrder(traces, writtenOrder);
+      long filterNanos = measureTraceFilter(traces, filter);
+      if (round == WARM_UP_ROUNDS) {
+        System.out.println(QUERY);
+        System.out.println(String.format(
+            "written order %6.1f ns/trace | TraceFilter %6.1f ns/trace",
+            perTrace(writtenOrderNanos), perTrace(filterNanos)));
+      }
+    }
+  }
+
+  private static Trace[] givenTraces() {
+    Random random = new Random(42);
+    Trace[] traces = new Trace[NUMBER_OF_TRACES];
+    for (int i = 0; i < traces.length; i++) {
+      traces[i] = new Trace(LEVELS[random.nextInt(LEVELS.length)],
+          TAGS[random.nextInt(TAGS.length)], MESSAGES[random.nextInt(MESSAGES.length)], i,
+          Trace.UNKNOWN_THREAD_ID);
+    }
+    return traces;
+  }
+
+  private static long measureWrittenOrder(Trace[] traces, TracePredicate predicate) {
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (Trace trace : traces) {
+        if (predicate.matches(trace.getLevel(), trace.getTag(), trace.getMessage())) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureTraceFilter(Trace[] traces, TraceFilter filter) {
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (Trace trace : traces) {
+        if (filter.matches(trace.getLevel(), trace.getTag(), trace.getMessage())) {
+          checksum++;
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static double perTrace(long nanos) {
+    return (double) nanos / ((long) NUMBER_OF_TRACES * ROUNDS);
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TraceQueryTest {
+
+  private static final String ANY_TAG = "AnyTag";
+  private static final String ANY_MESSAGE = "any message";
+
+  @Test public void shouldCombineLevelTagAndTextTerms() {
+    TracePredicate query =
+        TraceQuery.parse("level>=W AND (tag:net OR \"timeout\") AND NOT \"heartbeat\"");
+
+    assertEquals(true, query.matches(TraceLevel.ERROR, "Net", ANY_MESSAGE));
+    assertEquals(true, query.matches(TraceLevel.WARNING, ANY_TAG, "Read TIMEOUT"));
+    assertEquals(false, query.matches(TraceLevel.INFO, "net", ANY_MESSAGE));
+    assertEquals(false, query.matches(TraceLevel.ERROR, ANY_TAG, ANY_MESSAGE));
+    assertEquals(false, query.matches(TraceLevel.ERROR, "net", "heartbeat timeout"));
+  }
+
+  @Test public void shouldGiveNotPrecedenceOverAndAndAndOverOr() {
+    TracePredicate query = TraceQuery.parse("tag:a OR tag:b AND NOT \"x\"");
+
+    assertEquals(true, query.matches(TraceLevel.INFO, "a", "x"));
+    assertEquals(true, query.matches(TraceLevel.INFO, "b", "y"));
+    assertEquals(false, query.matches(TraceLevel.INFO, "b", "x"));
+  }
+
+  @Test public void shouldCombineTermsWithoutOperatorWithAnd() {
+    TracePredicate query = TraceQuery.parse("tag:Network \"failed\" /took \\d+ ms/");
+
+    assertEquals(true, query.matches(TraceLevel.INFO, "Network", "failed, took 12 MS"));
+    assertEquals(false, query.matches(TraceLevel.INFO, "Network", "failed"));
+  }
+
+  @Test public void shouldSearchTheTextsOfAnOrInASinglePass() {
+    TracePredicate query =
+        TraceQuery.parse("\"E1001\" OR tag:Network OR E1002 OR /E1003|E1004/");
+
+    assertEquals(true, query.matches(TraceLevel.INFO, ANY_TAG, "failed with e1002"));
+    assertEquals(true, query.matches(TraceLevel.INFO, ANY_TAG, "failed with E1004"));
+    assertEquals(true, query.matches(TraceLevel.INFO, "Network", ANY_MESSAGE));
+    assertEquals(false, query.matches(TraceLevel.INFO, ANY_TAG, "failed with E1005"));
+  }
+
+  @Test public void shouldCheckLevelsAndTagsBeforeTheMessage() {
+    TracePredicate query = TraceQuery.parse("\"timeout\" AND /time.*out/ AND level>=E");
+
+    assertEquals(false, query.matches(TraceLevel.DEBUG, ANY_TAG, null));
+  }
+
+  @Test public void shouldReadLevelsByLetterOrName() {
+    TracePredicate query = TraceQuery.parse("level<info OR level=Error");
+
+    assertEquals(true, query.matches(TraceLevel.DEBUG, ANY_TAG, ANY_MESSAGE));
+    assertEquals(false, query.matches(TraceLevel.INFO, ANY_TAG, ANY_MESSAGE));
+    assertEquals(true, query.matches(TraceLevel.ERROR, ANY_TAG, ANY_MESSAGE));
+  }
+
+  @Test public void shouldUnescapeQuotesInsideQuotedTexts() {
+    TracePredicate query = TraceQuery.parse("level>=I \"say \\\"hi\\\"\"");
+
+    assertEquals(true, query.matches(TraceLevel.INFO, ANY_TAG, "I say \"hi\""));
+  }
+
+  @Test public void shouldNotParsePlainTextsAsQueries() {
+    assertNull(TraceQuery.parse("Exception in thread main"));
+    assertNull(TraceQuery.parse("took (\\d+) ms"));
+    assertNull(TraceQuery.parse("  "));
+  }
+
+  @Test public void shouldNotParseQuotesOrSlashesAloneAsQueries() {
+    assertNull(TraceQuery.parse("\"code\":\"E1001\""));
+    assertNull(TraceQuery.parse("/api/v1/users"));
+    assertNull(TraceQuery.parse("\"not closed"));
+  }
+
+  @Test(expected = TraceQuery.InvalidQueryException.class)
+  public void shouldThrowIfTheQueryIsNotClosed() {
+    TraceQuery.parse("level>=W AND (tag:net OR \"timeout\"");
+  }
+
+  @Test(expected = TraceQuery.InvalidQueryException.class)
+  public void shouldThrowIfTheLevelIsUnknown() {
+    TraceQuery.parse("level>=X");
+  }
+
+  @Test public void shouldRaiseTheFilterLevelToTheLevelImpliedByTheQuery() {
+    TraceFilter filter = new TraceFilter("level>=E AND (tag:a OR level>W)", TraceLevel.INFO);
+
+    assertEquals(TraceLevel.ERROR, filter.getMinimumLevel());
+    assertEquals(TraceLevel.INFO,
+        new TraceFilter("level>=E OR tag:a", TraceLevel.INFO).getMinimumLevel());
+  }
+
+  @Test public void shouldUseInvalidQueriesAsText() {
+    TraceFilter filter = new TraceFilter("tag:net AND", TraceLevel.VERBOSE);
+
+    assertEquals(true, filter.matches(TraceLevel.INFO, ANY_TAG, "missing tag:net and"));
+  }
+
+  @Test public void shouldSearchJsonFragmentsAndPathsAsText() {
+    TraceFilter json = new TraceFilter("\"code\":\"E1001\"", TraceLevel.VERBOSE);
+    TraceFilter path = new TraceFilter("/api/v1/users", TraceLevel.VERBOSE);
+
+    assertEquals(true, json.matches(TraceLevel.INFO, ANY_TAG, "{\"code\":\"E1001\"}"));
+    assertEquals(false, json.matches(TraceLevel.INFO, ANY_TAG, "code E1001"));
+    assertEquals(true, path.matches(TraceLevel.INFO, ANY_TAG, "GET /api/v1/users 200"));
+    assertEquals(false, path.matches(TraceLevel.INFO, ANY_TAG, "/api/ v1/users"));
+  }
+}
@@ -0,0 +1,58 @@
+package com.github.nodeepshit.model;
+
+import com.github.nodeepshit.exception.IllegalTraceException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceTest {
+
+  private static final long ANY_TIMESTAMP = 1234L;
+
+  @Test public void shouldParseLogcatTimeFormat() throws Exception {
+    Trace trace = Trace.fromString("02-07 17:45:33.014 W/ActivityManager( 1234): Slow operation",
+        ANY_TIMESTAMP);
+
+    assertEquals(TraceLevel.WARNING, trace.getLevel());
+    assertEquals("ActivityManager", trace.getTag());
+    assertEquals("Slow operation", trace.getMessage());
+    assertEquals(ANY_TIMESTAMP, trace.getTimestamp());
+    assertEquals(Trace.UNKNOWN_THREAD_ID, trace.getThreadId());
+  }
+
+  @Test public void shouldParseTracesWithoutTag() throws Exception {
+    Trace trace = Trace.fromString("02-07 17:45:33.014 D/Any debug trace", ANY_TIMESTAMP);
+
+    assertEquals(TraceLevel.DEBUG, trace.getLevel());
+    assertEquals(Trace.NO_TAG, trace.getTag());
+    assertEquals("Any debug trace", trace.getMessage());
+  }
+
+  @Test public void shouldCollapseRepeatedTracesKeepingTheFirstOne() {
+    Trace first = new Trace(TraceLevel.INFO, "any message", ANY_TIMESTAMP);
+    Trace repeated = new Trace(TraceLevel.INFO, "any message", ANY_TIMESTAMP + 10);
+
+    Trace collapsed = first.collapse(repeated).collapse(repeated);
+
+    assertEquals(3, collapsed.getRepeatCount());
+    assertEquals(first.getSequence(), collapsed.getSequence());
+    assertEquals(ANY_TIMESTAMP, collapsed.getTimestamp());
+    assertEquals(ANY_TIMESTAMP + 10, collapsed.getLastTimestamp());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotCollapseTracesWithDifferentMessages() {
+    new Trace(TraceLevel.INFO, "any message").collapse(new Trace(TraceLevel.INFO, "other"));
+  }
+
+  @Test(expected = IllegalTraceException.class)
+  public void shouldNotAcceptTracesWithoutLevelSeparator() throws Exception {
+    Trace.fromString("02-07 17:45:33.014 D Any debug trace", ANY_TIMESTAMP);
+  }
+
+  @Test(expected = IllegalTraceException.class)
+  public void shouldNotAcceptShortTraces() throws Exception {
+    Trace.fromString("D/short", ANY_TIMESTAMP);
+  }
+}
@@ -0,0 +1,116 @@
+package com.github.nodeepshit.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TrigramIndexTest {
+
+  private static final String[] MESSAGES = {
+      "GET /v1/users took 120 ms", "Request failed with E1001", "frame rendered in 16 ms",
+      "Sync finished for req-4f2a", "request TIMEOUT after 10s", "Caf\u00e9 open",
+  };
+
+  @Test public void shouldFindTheTracesContainingTheTextIgnoringCase() {
+    TrigramIndex index = givenIndex(MESSAGES);
+
+    assertCandidates(index, "request", 1, 4);
+    assertCandidates(index, " ms", 0, 2);
+    assertCandidates(index, "CAF\u00c9", 5);
+    assertCandidates(index, "not logged");
+  }
+
+  @Test public void shouldNotNarrowDownTextsShorterThanATrigramOrRegularExpressions() {
+    TrigramIndex index = givenIndex(MESSAGES);
+
+    assertNull(index.findCandidates(new TraceFilter("ms", TraceLevel.VERBOSE)));
+    assertNull(index.findCandidates(new TraceFilter("took \\d+ ms", TraceLevel.VERBOSE)));
+    assertNull(index.findCandidates(TraceFilter.NONE));
+  }
+
+  @Test public void shouldFindTheTracesContainingAnyKeyword() {
+    TrigramIndex index = givenIndex(MESSAGES);
+
+    assertCandidates(index, "E1001|req-4f2a|E1002", 1, 3);
+  }
+
+  @Test public void shouldCombineTheTextsOfAQuery() {
+    TrigramIndex index = givenIndex(MESSAGES);
+
+    assertCandidates(index, "\"request\" AND NOT \"failed\" AND level>=E", 1, 4);
+    assertCandidates(index, "(\"request\" OR \"frame\") AND \"ms\"", 1, 2, 4);
+    assertNull(index.findCandidates(new TraceFilter("\"request\" OR tag:net", TraceLevel.VERBOSE)));
+  }
+
+  @Test public void shouldIndexTheNewMessageOfAReplacedTrace() {
+    TrigramIndex index = givenIndex(MESSAGES);
+
+    index.add(MESSAGES.length - 1, "Caf\u00e9 closed");
+
+    assertCandidates(index, "closed", 5);
+  }
+
+  @Test public void shouldForgetTheDiscardedTraces() {
+    TrigramIndex index = new TrigramIndex(0);
+    for (int i = 0; i < 3 * TrigramIndex.MIN_BLOCK_SIZE; i++) {
+      index.add(i, "message " + i);
+    }
+    long memoryFootprint = index.getMemoryFootprint();
+
+    index.discardBefore(TrigramIndex.MIN_BLOCK_SIZE + 1);
+
+    assertEquals(2, index.getNumberOfBlocks());
+    assertCandidates(index, "message 7", 70, 71, 72, 73, 74, 75, 76, 77, 78, 79);
+    assertTrue(index.getMemoryFootprint() < memoryFootprint);
+  }
+
+  @Test public void shouldDropTheOldestBlocksTakingMoreBytesThanTheMax() {
+    TrigramIndex index = new TrigramIndex(0);
+    for (int i = 0; i < 3 * TrigramIndex.MIN_BLOCK_SIZE; i++) {
+      index.add(i, "message " + i);
+    }
+
+    index.setMaxBytes(index.getMemoryFootprint() - 1);
+
+    assertEquals(2, index.getNumberOfBlocks());
+    assertEquals(TrigramIndex.MIN_BLOCK_SIZE, index.getFirstIndexedSequence());
+    assertCandidates(index, "message 7", 70, 71, 72, 73, 74, 75, 76, 77, 78, 79);
+  }
+
+  @Test public void shouldKeepFindingTracesAfterCompactingTheFullBlocks() {
+    TrigramIndex index = new TrigramIndex(0);
+    for (int i = 0; i < 4 * TrigramIndex.MIN_BLOCK_SIZE; i++) {
+      index.add(i, i % 64 == 7 ? "Request failed" : "frame rendered " + i);
+    }
+
+    assertCandidates(index, "REQUEST", 7, 71, 135, 199);
+  }
+
+  @Test public void shouldReportTheMemoryUsedByThePostingLists() {
+    TrigramIndex index = new TrigramIndex(0);
+    long emptyMemoryFootprint = index.getMemoryFootprint();
+
+    index.add(0, "GET /v1/users took 120 ms");
+
+    assertTrue(index.getMemoryFootprint() > emptyMemoryFootprint + 23 * 2);
+  }
+
+  private static TrigramIndex givenIndex(String... messages) {
+    TrigramIndex index = new TrigramIndex(messages.length);
+    for (int i = 0; i < messages.length; i++) {
+      index.add(i, messages[i]);
+    }
+    return index;
+  }
+
+  private static void assertCandidates(TrigramIndex index, String filter, long... sequences) {
+    long[] candidates = index.findCandidates(new TraceFilter(filter, TraceLevel.VERBOSE));
+
+    assertArrayEquals(Arrays.toString(candidates), sequences, candidates);
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+
+import static com.github.nodeepshit.presenter.FilteredTraceBufferTest.search;
+
+/**
+ * Micro-benchmark measuring how long the search of a filter takes over a FilteredTraceBuffer
+ * retaining 100k traces, run in the caller thread: typing a longer filter only checks the rows
+ * shown, deleting characters checks the traces found in the index and lowering the level checks
+ * every trace retained. Run it from the IDE or with the test runtime classpath, it is not a unit
+ * test.
+ */
+public class FilteredTraceBufferBenchmark {
+
+  private static final int NUMBER_OF_TRACES = 100_000;
+  private static final String[] TYPED_FILTERS = { "r", "re", "req", "requ", "request" };
+  private static final int WARM_UP_ROUNDS = 2;
+
+  public static void main(String[] args) {
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      run(round == WARM_UP_ROUNDS);
+    }
+  }
+
+  private static void run(boolean printResults) {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(NUMBER_OF_TRACES);
+    TraceLevel[] levels = TraceLevel.values();
+    for (int i = 0; i < NUMBER_OF_TRACES; i++) {
+      String message = (i % 7 == 0 ? "GET /v1/request/" : "frame rendered in ") + i + " ms";
+      traceBuffer.add(new Trace(levels[i % levels.length], message));
+    }
+
+    for (String filter : TYPED_FILTERS) {
+      long nanos = measure(traceBuffer, new TraceFilter(filter, TraceLevel.VERBOSE));
+      print(printResults, "narrow to '" + filter + "'", nanos, traceBuffer);
+    }
+    for (int i = TYPED_FILTERS.length - 2; i >= 0; i--) {
+      long nanos = measure(traceBuffer, new TraceFilter(TYPED_FILTERS[i], TraceLevel.VERBOSE));
+      print(printResults, "widen to '" + TYPED_FILTERS[i] + "'", nanos, traceBuffer);
+    }
+    long nanos = measure(traceBuffer, new TraceFilter("", TraceLevel.ERROR));
+    print(printResults, "level ERROR", nanos, traceBuffer);
+    nanos = measure(traceBuffer, TraceFilter.NONE);
+    print(printResults, "no filter", nanos, traceBuffer);
+    nanos = measure(traceBuffer, new TraceFilter("request/\\d+0 ms", TraceLevel.VERBOSE));
+    print(printResults, "regexp", nanos, traceBuffer);
+  }
+
+  private static long measure(FilteredTraceBuffer traceBuffer, TraceFilter filter) {
+    long start = System.nanoTime();
+    search(traceBuffer, filter);
+    return System.nanoTime() - start;
+  }
+
+  private static void print(boolean printResults, String change, long nanos,
+      FilteredTraceBuffer traceBuffer) {
+    if (printResults) {
+      System.out.println(String.format("%-22s %7.2f ms, %6d rows", change, nanos / 1e6,
+          traceBuffer.getNumberOfRows()));
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.MainThread;
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.github.nodeepshit.presenter.TraceBufferTest.getUsedHeap;
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenMessage;
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenTraces;
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenTypicalTrace;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilteredTraceBufferTest {
+
+  @Test public void shouldShowEveryTraceWithoutFilter() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(10);
+
+    addAll(traceBuffer, givenTraces(0, 3));
+
+    assertRows(traceBuffer, "0", "1", "2");
+  }
+
+  @Test public void shouldShowOnlyTheTracesMatchingTheFilter() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(20);
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+
+    addAll(traceBuffer, givenTraces(0, 12));
+
+    assertRows(traceBuffer, "1", "10", "11");
+    assertEquals(12, traceBuffer.getNumberOfTraces());
+  }
+
+  @Test public void shouldRecoverTheTracesHiddenByAPreviousFilter() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(20);
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+    addAll(traceBuffer, givenTraces(0, 12));
+
+    search(traceBuffer, TraceFilter.NONE);
+
+    assertEquals(12, traceBuffer.getNumberOfRows());
+  }
+
+  @Test public void shouldNarrowTheRowsShown() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(200);
+    addAll(traceBuffer, givenTraces(0, 120));
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+
+    search(traceBuffer, new TraceFilter("11", TraceLevel.VERBOSE));
+
+    assertRows(traceBuffer, "11", "110", "111", "112", "113", "114", "115", "116", "117", "118",
+        "119");
+  }
+
+  @Test public void shouldDiscardTheRowsOfTheTracesNoLongerRetained() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(5);
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+
+    addAll(traceBuffer, givenTraces(0, 13));
+
+    assertRows(traceBuffer, "10", "11", "12");
+  }
+
+  @Test public void shouldReportTheRowsRemovedAndAppendedInABatch() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(4);
+    search(traceBuffer, new TraceFilter("", TraceLevel.WARNING));
+    traceBuffer.add(givenTrace(TraceLevel.ERROR, "shown 1"));
+    traceBuffer.add(givenTrace(TraceLevel.DEBUG, "hidden 1"));
+    traceBuffer.add(givenTrace(TraceLevel.ERROR, "shown 2"));
+
+    traceBuffer.startBatch();
+    traceBuffer.add(givenTrace(TraceLevel.DEBUG, "hidden 2"));
+    traceBuffer.add(givenTrace(TraceLevel.ERROR, "shown 3"));
+
+    assertEquals(false, traceBuffer.batchNeedsRefresh());
+    assertEquals(1, traceBuffer.getBatchRemovedRows());
+    assertEquals(1, traceBuffer.getBatchAppendedRows().size());
+    assertRows(traceBuffer, "shown 2", "shown 3");
+  }
+
+  @Test public void shouldReplaceTheLastRowShownWhenTheBatchStarted() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(4);
+    traceBuffer.add(givenTrace(TraceLevel.UPDATE, "10%"));
+
+    traceBuffer.startBatch();
+    boolean lastRowReplaced = traceBuffer.replaceLast(givenTrace(TraceLevel.UPDATE, "20%"));
+
+    assertEquals(true, lastRowReplaced);
+    assertEquals(false, traceBuffer.batchNeedsRefresh());
+    assertEquals(0, traceBuffer.getBatchAppendedRows().size());
+    assertRows(traceBuffer, "20%");
+  }
+
+  @Test public void shouldRefreshIfAReplacementHidesTheLastRowShownWhenTheBatchStarted() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(4);
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+    traceBuffer.add(givenTrace(TraceLevel.UPDATE, "10%"));
+
+    traceBuffer.startBatch();
+    boolean lastRowReplaced = traceBuffer.replaceLast(givenTrace(TraceLevel.UPDATE, "20%"));
+
+    assertEquals(false, lastRowReplaced);
+    assertEquals(true, traceBuffer.batchNeedsRefresh());
+    assertEquals(0, traceBuffer.getNumberOfRows());
+  }
+
+  @Test public void shouldAppendAHiddenTraceShownAfterAReplacement() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(4);
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+    traceBuffer.add(givenTrace(TraceLevel.UPDATE, "0%"));
+
+    traceBuffer.startBatch();
+    traceBuffer.replaceLast(givenTrace(TraceLevel.UPDATE, "10%"));
+
+    assertEquals(false, traceBuffer.batchNeedsRefresh());
+    assertEquals(1, traceBuffer.getBatchAppendedRows().size());
+    assertRows(traceBuffer, "10%");
+  }
+
+  @Test public void shouldDiscardTheRowOfAReplacementTakingMoreBytesThanTheMax() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(10);
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "0"));
+    traceBuffer.add(givenTrace(TraceLevel.UPDATE, "1"));
+    traceBuffer.setMaxBytes(traceBuffer.getTracesMemoryFootprint()
+        + traceBuffer.getIndexMemoryFootprint() + 50);
+
+    traceBuffer.startBatch();
+    boolean lastRowReplaced = traceBuffer.replaceLast(
+        givenTrace(TraceLevel.UPDATE, givenMessage(100)));
+
+    assertEquals(false, lastRowReplaced);
+    assertEquals(false, traceBuffer.batchNeedsRefresh());
+    assertEquals(2, traceBuffer.getBatchRemovedRows());
+    assertEquals(0, traceBuffer.getNumberOfTraces());
+    assertRows(traceBuffer);
+  }
+
+  @Test public void shouldKeepTheNewestRowsWhenTheBufferShrinks() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(10);
+    addAll(traceBuffer, givenTraces(0, 8));
+
+    int rowsRemoved = traceBuffer.setBufferSize(3);
+
+    assertEquals(5, rowsRemoved);
+    assertRows(traceBuffer, "5", "6", "7");
+  }
+
+  @Test public void shouldFindTheIndexedTracesStillRetained() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(200);
+    for (int i = 0; i < 300; i++) {
+      traceBuffer.add(givenTrace(TraceLevel.INFO, i % 50 == 0 ? "Request " + i : "frame " + i));
+    }
+    traceBuffer.replaceLast(givenTrace(TraceLevel.INFO, "request replaced"));
+
+    search(traceBuffer, new TraceFilter("REQUEST", TraceLevel.VERBOSE));
+
+    assertRows(traceBuffer, "Request 100", "Request 150", "Request 200", "Request 250",
+        "request replaced");
+  }
+
+  @Test public void shouldFindTheTracesTooOldToBeIndexed() {
+    int numberOfTraces = 400_000;
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(numberOfTraces);
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "Request failed"));
+    for (int i = 1; i < numberOfTraces - 1; i++) {
+      traceBuffer.add(givenTypicalTrace(i));
+    }
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "request FAILED"));
+
+    TraceSearch search = traceBuffer.startSearch(new TraceFilter("failed", TraceLevel.VERBOSE));
+    runSearch(traceBuffer, search);
+
+    assertTrue(traceBuffer.getIndexMemoryFootprint() <= FilteredTraceBuffer.MAX_INDEX_BYTES);
+    assertTrue(search.getNumberOfTraces() < numberOfTraces);
+    assertRows(traceBuffer, "Request failed", "request FAILED");
+  }
+
+  @Test public void shouldCheckTheIndexedTracesIfThereAreFewerThanRows() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(100);
+    addAll(traceBuffer, givenTraces(0, 100));
+    search(traceBuffer, new TraceFilter("1", TraceLevel.VERBOSE));
+
+    search(traceBuffer, new TraceFilter("199", TraceLevel.VERBOSE));
+    assertRows(traceBuffer);
+    search(traceBuffer, new TraceFilter("99", TraceLevel.VERBOSE));
+    assertRows(traceBuffer, "99");
+  }
+
+  @Test public void shouldPrependTheSearchResultsStillRetainedAndNotReplaced() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(4);
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "request 1"));
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "request 2"));
+    traceBuffer.add(givenTrace(TraceLevel.UPDATE, "request 10%"));
+
+    TraceSearch search = traceBuffer.startSearch(new TraceFilter("request", TraceLevel.VERBOSE));
+    traceBuffer.replaceLast(givenTrace(TraceLevel.UPDATE, "20%"));
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "request 3"));
+    traceBuffer.add(givenTrace(TraceLevel.INFO, "request 4"));
+    runSearch(traceBuffer, search);
+
+    assertEquals(true, traceBuffer.isSearchFinished());
+    assertRows(traceBuffer, "request 2", "request 3", "request 4");
+  }
+
+  @Test public void shouldSearchOnlyTheRowsShownIfTheFilterIsNarrower() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(100);
+    for (int i = 0; i < 100; i++) {
+      traceBuffer.add(givenTrace(i % 2 == 0 ? TraceLevel.ERROR : TraceLevel.DEBUG, "trace " + i));
+    }
+    search(traceBuffer, new TraceFilter("", TraceLevel.WARNING));
+
+    TraceSearch search = traceBuffer.startSearch(new TraceFilter("", TraceLevel.ERROR));
+
+    assertEquals(50, search.getNumberOfTraces());
+  }
+
+  @Test public void shouldDiscardTheOldestTracesUntilTheTracesAndTheIndexFitInTheMaxBytes() {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(10000);
+    long maxBytes = 256 * 1024;
+    traceBuffer.setMaxBytes(maxBytes);
+
+    for (int i = 0; i < 10000; i++) {
+      traceBuffer.add(givenTrace(TraceLevel.INFO, "Request " + i + " took " + i % 97 + " ms"));
+    }
+
+    long bytes = traceBuffer.getTracesMemoryFootprint() + traceBuffer.getIndexMemoryFootprint();
+    assertTrue(bytes + " bytes", bytes <= maxBytes);
+    assertTrue(traceBuffer.getIndexMemoryFootprint() > 0);
+    assertTrue(traceBuffer.getNumberOfTraces() > 0);
+    assertEquals("Request 9999 took 8 ms", traceBuffer.getLastTrace().getMessage());
+  }
+
+  @Test public void shouldRetainAndIndexAMillionTracesInLessThan100MegabytesOfHeap() {
+    int numberOfTraces = 1_000_000;
+    long heapBefore = getUsedHeap();
+
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(numberOfTraces);
+    for (int i = 0; i < numberOfTraces; i++) {
+      traceBuffer.add(givenTypicalTrace(i));
+    }
+    long usedHeap = getUsedHeap() - heapBefore;
+
+    assertTrue(usedHeap + " bytes", usedHeap < 100_000_000);
+    assertEquals(numberOfTraces, traceBuffer.getNumberOfRows());
+    assertEquals("onResume MainActivity@3", traceBuffer.getRows().get(3).getMessage());
+  }
+
+  /**
+   * Searches the filter passed as parameter in the caller thread, as the presenter does in the
+   * search executor, and adds the results to the rows shown.
+   */
+  static void search(FilteredTraceBuffer traceBuffer, TraceFilter filter) {
+    runSearch(traceBuffer, traceBuffer.startSearch(filter));
+  }
+
+  private static void runSearch(final FilteredTraceBuffer traceBuffer, TraceSearch search) {
+    MainThread mainThread = new MainThread() {
+      @Override public void post(Runnable runnable) {
+        runnable.run();
+      }
+
+      @Override public void postDelayed(Runnable runnable, long delayMillis) {
+        runnable.run();
+      }
+
+      @Override public boolean isCurrentThread() {
+        return true;
+      }
+    };
+    Executor executor = new Executor() {
+      @Override public void execute(Runnable runnable) {
+        runnable.run();
+      }
+    };
+    search.start(executor, mainThread, new TraceSearch.Listener() {
+      @Override public void onSearchResults(TraceSearch search, long[] positions) {
+        traceBuffer.addSearchResults(positions);
+      }
+
+      @Override public void onSearchFinished(TraceSearch search) {
+        traceBuffer.finishSearch();
+      }
+    });
+  }
+
+  private static void addAll(FilteredTraceBuffer traceBuffer, List<Trace> traces) {
+    for (Trace trace : traces) {
+      traceBuffer.add(trace);
+    }
+  }
+
+  private static Trace givenTrace(TraceLevel level, String message) {
+    return new Trace(level, message);
+  }
+
+  private static void assertRows(FilteredTraceBuffer traceBuffer, String... messages) {
+    List<String> rows = new ArrayList<>();
+    for (Trace trace : traceBuffer.getRows()) {
+      rows.add(trace.getMessage());
+    }
+    assertEquals(Arrays.asList(messages), rows);
+  }
+}
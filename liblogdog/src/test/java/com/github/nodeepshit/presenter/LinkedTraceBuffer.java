@@ -0,0 +1,37 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Previous LinkedList based TraceBuffer implementation. Kept only as the baseline of
+ * TraceBufferBenchmark.
+ */
+class LinkedTraceBuffer {
+
+  private final int bufferSize;
+  private final List<Trace> traces = new LinkedList<Trace>();
+
+  LinkedTraceBuffer(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  int add(List<Trace> traces) {
+    this.traces.addAll(traces);
+    int tracesToDiscard = Math.max(0, this.traces.size() - bufferSize);
+    for (int i = 0; i < tracesToDiscard; i++) {
+      this.traces.remove(0);
+    }
+    return tracesToDiscard;
+  }
+
+  List<Trace> getTraces() {
+    return traces;
+  }
+
+  void removeLast() {
+    traces.remove(traces.size() - 1);
+  }
+}
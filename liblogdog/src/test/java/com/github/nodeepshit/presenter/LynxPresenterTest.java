@@ -0,0 +1,452 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.LynxConfig;
+import com.github.nodeepshit.model.Logcat;
+import com.github.nodeepshit.model.Logdog;
+import com.github.nodeepshit.model.Lynx;
+import com.github.nodeepshit.model.MainThread;
+import com.github.nodeepshit.model.TimeProvider;
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceLevel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenTraces;
+import static org.junit.Assert.assertEquals;
+
+public class LynxPresenterTest {
+
+  private static final int ANY_MAX_NUMBER_OF_TRACES = 5;
+
+  private Lynx lynx;
+  private RecordingView view;
+  private ControlledThreads threads;
+  private LynxPresenter presenter;
+
+  @Before public void setUp() {
+    lynx = new Lynx(new Logcat(), new Logdog(), new MainThread() {
+      @Override public void post(Runnable runnable) {
+        runnable.run();
+      }
+
+      @Override public void postDelayed(Runnable runnable, long delayMillis) {
+        runnable.run();
+      }
+
+      @Override public boolean isCurrentThread() {
+        return true;
+      }
+    }, new TimeProvider());
+    view = new RecordingView();
+    threads = new ControlledThreads();
+    presenter = givenPresenter(ANY_MAX_NUMBER_OF_TRACES);
+  }
+
+  @After public void tearDown() {
+    presenter.pause();
+  }
+
+  @Test public void shouldAppendJustTheNewTraces() {
+    presenter.onNewTraces(givenTraces(0, 2));
+    presenter.onNewTraces(givenTraces(2, 2));
+
+    assertEquals(4, view.appendedTraces);
+    assertEquals(0, view.removedTraces);
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldRemoveTheOldestTracesWhenTheBufferIsFull() {
+    presenter.onNewTraces(givenTraces(0, 4));
+
+    presenter.onNewTraces(givenTraces(4, 3));
+
+    assertEquals(2, view.removedTraces);
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldNotAppendNewTracesDiscardedInTheSameBatch() {
+    presenter.onNewTraces(givenTraces(0, 2));
+
+    presenter.onNewTraces(givenTraces(2, 8));
+
+    assertEquals(2, view.removedTraces);
+    assertEquals(7, view.appendedTraces);
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldRemoveTheOldestTracesTakingMoreBytesThanTheMax() {
+    presenter.onNewTraces(givenTraces(0, 2));
+    long maxBytes =
+        presenter.getTracesMemoryFootprint() + presenter.getSearchIndexMemoryFootprint();
+    presenter.setLynxConfig(new LynxConfig().setMaxNumberOfTracesToShow(ANY_MAX_NUMBER_OF_TRACES)
+        .setMaxBytesOfTracesToShow(maxBytes));
+
+    presenter.onNewTraces(givenTraces(2, 1));
+
+    assertEquals(1, view.removedTraces);
+    assertEquals(2 * TraceBufferTest.TRACE_BYTES, presenter.getTracesMemoryFootprint());
+    assertEquals(maxBytes,
+        presenter.getTracesMemoryFootprint() + presenter.getSearchIndexMemoryFootprint());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldReplaceTheLastRowWithConsecutiveUpdateTraces() {
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.UPDATE, "this")));
+
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.UPDATE, "this is"),
+        new Trace(TraceLevel.UPDATE, "this is info")));
+
+    assertEquals(2, view.replacedTraces);
+    assertEquals(1, view.rows.size());
+    assertEquals("this is info", view.rows.get(0).getMessage());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldCollapseRepeatedTracesIntoTheLastRow() {
+    presenter.setLynxConfig(new LynxConfig().setMaxNumberOfTracesToShow(ANY_MAX_NUMBER_OF_TRACES)
+        .setCollapseDuplicates(true));
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "polling")));
+
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "polling"),
+        new Trace(TraceLevel.INFO, "polling"), new Trace(TraceLevel.DEBUG, "polling")));
+
+    assertEquals(2, view.rows.size());
+    assertEquals(3, view.rows.get(0).getRepeatCount());
+    assertEquals(1, view.rows.get(1).getRepeatCount());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldNotCollapseRepeatedTracesByDefault() {
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "polling"),
+        new Trace(TraceLevel.INFO, "polling")));
+
+    assertEquals(2, view.rows.size());
+  }
+
+  @Test public void shouldKeepTheTracesHiddenByTheFilter() {
+    presenter.resume();
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.INFO, "response received"), new Trace(TraceLevel.ERROR, "timeout")));
+
+    typeFilter("response");
+    typeFilter("");
+
+    assertEquals(3, view.rows.size());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldShowOnlyTheTracesMatchingTheTraceLevel() {
+    presenter.resume();
+    presenter.updateFilterTraceLevel(TraceLevel.ERROR);
+
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.ERROR, "timeout"), new Trace(TraceLevel.INFO, "retrying")));
+
+    assertEquals(1, view.rows.size());
+    assertEquals("timeout", view.rows.get(0).getMessage());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldNotRemoveRowsForHiddenTracesDiscarded() {
+    presenter.resume();
+    presenter.updateFilterTraceLevel(TraceLevel.ERROR);
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.ERROR, "timeout")));
+
+    presenter.onNewTraces(givenTraces(0, 4));
+
+    assertEquals(0, view.removedTraces);
+    assertEquals(1, view.rows.size());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldNotifyOnceThatAFilterRegexpTooSlowIsIgnored() {
+    presenter.resume();
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, givenMessage('a', 40))));
+
+    typeFilter("((a+)+)\\2b");
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, givenMessage('a', 41))));
+
+    assertEquals(1, view.regexpFilterDisabledNotifications);
+    assertEquals(0, view.rows.size());
+  }
+
+  @Test public void shouldNotifyTheLynxConfigFilterRegexpDisabledWithoutNewTraces() {
+    presenter.setLynxConfig(new LynxConfig().setMaxNumberOfTracesToShow(ANY_MAX_NUMBER_OF_TRACES)
+        .setFilter("((a+)+)\\2b"));
+    presenter.resume();
+
+    Logdog.info(givenMessage('a', 40));
+
+    assertEquals(1, view.regexpFilterDisabledNotifications);
+    assertEquals(0, view.rows.size());
+  }
+
+  @Test public void shouldApplyOnlyTheLastFilterTypedWhileTyping() {
+    presenter.resume();
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.INFO, "response received")));
+
+    presenter.updateFilter("r");
+    presenter.updateFilter("re");
+    presenter.updateFilter("res");
+    threads.runDelayedTasks();
+
+    assertEquals(1, threads.searches.size());
+    threads.runSearches();
+    assertEquals(1, view.rows.size());
+    assertEquals("response received", view.rows.get(0).getMessage());
+  }
+
+  @Test public void shouldShowTheNewestMatchesFirstAndPrependTheOlderOnes() {
+    presenter = givenPresenter(3 * TraceSearch.CHUNK_SIZE);
+    presenter.resume();
+    presenter.onNewTraces(givenTraces(0, 2 * TraceSearch.CHUNK_SIZE + 10));
+
+    typeFilter("5");
+
+    assertEquals(3, view.prependedBatches.size());
+    List<Trace> newestMatches = view.prependedBatches.get(0);
+    assertEquals("8195", newestMatches.get(newestMatches.size() - 1).getMessage());
+    assertEquals("5", view.rows.get(0).getMessage());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldCancelTheSearchInProgressWhenANewFilterIsTyped() {
+    presenter.resume();
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.INFO, "response received")));
+    presenter.updateFilter("request");
+    threads.runDelayedTasks();
+
+    presenter.updateFilter("response");
+    threads.runSearches();
+    threads.runDelayedTasks();
+    threads.runSearches();
+
+    assertEquals(1, view.prependedBatches.size());
+    assertEquals(1, view.rows.size());
+    assertEquals("response received", view.rows.get(0).getMessage());
+  }
+
+  @Test public void shouldShowTheTracesArrivedDuringTheSearchAfterTheOnesFound() {
+    presenter.resume();
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "request sent"),
+        new Trace(TraceLevel.INFO, "response received")));
+    presenter.updateFilter("re");
+    threads.runDelayedTasks();
+
+    presenter.onNewTraces(Arrays.asList(new Trace(TraceLevel.INFO, "retrying"),
+        new Trace(TraceLevel.INFO, "timeout")));
+    threads.runSearches();
+
+    assertEquals(3, view.rows.size());
+    assertEquals("retrying", view.rows.get(2).getMessage());
+    assertViewMatchesPresenter();
+  }
+
+  @Test public void shouldPrependTheTracesDiscardedToDiskOnceScrolledToTheTop() throws IOException {
+    File directory = givenDiskHistory();
+    presenter.onNewTraces(givenTraces(0, 20));
+    threads.runSearches();
+
+    presenter.onScrollToTop();
+    threads.runSearches();
+
+    assertEquals(15, view.prependedBatches.get(0).size());
+    assertEquals(20, view.rows.size());
+    assertEquals("0", view.rows.get(0).getMessage());
+    assertViewMatchesPresenter();
+    TraceHistoryTest.deleteDirectory(directory);
+  }
+
+  @Test public void shouldKeepTheRowsDiscardedWhileTheDiskHistoryIsShown() throws IOException {
+    File directory = givenDiskHistory();
+    presenter.onNewTraces(givenTraces(0, 20));
+    threads.runSearches();
+    presenter.onScrollToTop();
+    threads.runSearches();
+
+    presenter.onNewTraces(givenTraces(20, 8));
+
+    assertEquals(0, view.removedTraces);
+    assertEquals(28, view.rows.size());
+    assertEquals("27", view.rows.get(27).getMessage());
+    assertViewMatchesPresenter();
+    TraceHistoryTest.deleteDirectory(directory);
+  }
+
+  @Test public void shouldRemoveTheDiskHistoryShownWhenTheFilterChanges() throws IOException {
+    File directory = givenDiskHistory();
+    presenter.resume();
+    presenter.onNewTraces(givenTraces(0, 20));
+    threads.runSearches();
+    presenter.onScrollToTop();
+    threads.runSearches();
+
+    typeFilter("15");
+
+    assertEquals(1, view.rows.size());
+    assertViewMatchesPresenter();
+    TraceHistoryTest.deleteDirectory(directory);
+  }
+
+  @Test public void shouldNotShowTheNewTracesWhileThePreviousSessionIsShown() {
+    presenter.onNewTraces(givenTraces(0, 2));
+
+    presenter.showPreviousSession();
+    presenter.onNewTraces(givenTraces(2, 2));
+
+    assertEquals(0, view.rows.size());
+    assertEquals(2, view.appendedTraces);
+  }
+
+  @Test public void shouldShowTheTracesRetainedOnceBackToTheCurrentSession() {
+    presenter.onNewTraces(givenTraces(0, 2));
+    presenter.showPreviousSession();
+    presenter.onNewTraces(givenTraces(2, 2));
+
+    presenter.showCurrentSession();
+
+    assertEquals(4, view.rows.size());
+    assertViewMatchesPresenter();
+  }
+
+  private File givenDiskHistory() throws IOException {
+    File directory = Files.createTempDirectory("lynx-history").toFile();
+    presenter.setLynxConfig(new LynxConfig().setMaxNumberOfTracesToShow(ANY_MAX_NUMBER_OF_TRACES)
+        .setDiskHistory(true));
+    presenter.setDiskHistoryDirectory(directory);
+    return directory;
+  }
+
+  private LynxPresenter givenPresenter(int maxNumberOfTraces) {
+    return new LynxPresenter(lynx, view, maxNumberOfTraces, threads, threads);
+  }
+
+  private void typeFilter(String filter) {
+    presenter.updateFilter(filter);
+    threads.runDelayedTasks();
+    threads.runSearches();
+  }
+
+  private static String givenMessage(char c, int length) {
+    StringBuilder message = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      message.append(c);
+    }
+    return message.toString();
+  }
+
+  private void assertViewMatchesPresenter() {
+    assertEquals(new ArrayList<>(presenter.getCurrentTraces()), view.rows);
+  }
+
+  private static class RecordingView implements LynxPresenter.View {
+
+    private final List<Trace> rows = new ArrayList<>();
+    private int appendedTraces;
+    private int removedTraces;
+    private int replacedTraces;
+    private int regexpFilterDisabledNotifications;
+    private final List<List<Trace>> prependedBatches = new ArrayList<>();
+
+    @Override public void showTraces(List<Trace> traces, int removedTraces) {
+      rows.clear();
+      rows.addAll(traces);
+    }
+
+    @Override public void appendTraces(List<Trace> traces) {
+      appendedTraces += traces.size();
+      rows.addAll(traces);
+    }
+
+    @Override public void prependTraces(List<Trace> traces) {
+      prependedBatches.add(traces);
+      rows.addAll(0, traces);
+    }
+
+    @Override public void removeFirstTraces(int numberOfTraces) {
+      removedTraces += numberOfTraces;
+      rows.subList(0, numberOfTraces).clear();
+    }
+
+    @Override public void replaceLastTrace(Trace trace) {
+      replacedTraces++;
+      rows.set(rows.size() - 1, trace);
+    }
+
+    @Override public void clear() {
+      rows.clear();
+    }
+
+    @Override public boolean shareTraces(String plainTraces) {
+      return true;
+    }
+
+    @Override public void notifyShareTracesFailed() {
+    }
+
+    @Override public void notifyRegexpFilterDisabled() {
+      regexpFilterDisabledNotifications++;
+    }
+
+    @Override public void disableAutoScroll() {
+    }
+
+    @Override public void enableAutoScroll() {
+    }
+  }
+
+  /**
+   * Main thread running the posted tasks right away and the delayed ones on demand, and search
+   * executor running the searches on demand, both in the test thread.
+   */
+  private static class ControlledThreads implements MainThread, Executor {
+
+    private final List<Runnable> delayedTasks = new ArrayList<>();
+    private final List<Runnable> searches = new ArrayList<>();
+
+    @Override public void post(Runnable runnable) {
+      runnable.run();
+    }
+
+    @Override public void postDelayed(Runnable runnable, long delayMillis) {
+      delayedTasks.add(runnable);
+    }
+
+    @Override public boolean isCurrentThread() {
+      return true;
+    }
+
+    @Override public void execute(Runnable search) {
+      searches.add(search);
+    }
+
+    void runDelayedTasks() {
+      List<Runnable> tasks = new ArrayList<>(delayedTasks);
+      delayedTasks.clear();
+      for (Runnable task : tasks) {
+        task.run();
+      }
+    }
+
+    void runSearches() {
+      List<Runnable> tasks = new ArrayList<>(searches);
+      searches.clear();
+      for (Runnable search : tasks) {
+        search.run();
+      }
+    }
+  }
+}
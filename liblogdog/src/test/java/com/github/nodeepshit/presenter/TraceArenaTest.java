@@ -0,0 +1,78 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Utf8;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceArenaTest {
+
+  private static final String MESSAGE = "caf\u00e9 \u20ac10 \ud83d\ude00 done";
+
+  @Test public void shouldReadTheMessagesAndFieldsWritten() {
+    TraceArena arena = new TraceArena();
+    long[] fields = { 0, -1, 1L << 40, Long.MIN_VALUE };
+
+    int length = Utf8.getEncodedLength(MESSAGE);
+    long address = arena.write(MESSAGE, length, fields);
+    long[] readFields = new long[fields.length];
+    arena.readFields(address, length, readFields);
+
+    assertEquals(MESSAGE.getBytes(Charset.forName("UTF-8")).length, length);
+    assertEquals(MESSAGE, arena.readMessage(address, length));
+    assertArrayEquals(fields, readFields);
+  }
+
+  @Test public void shouldWriteTheSurrogatesNotFormingAPairAsQuestionMarks() {
+    TraceArena arena = new TraceArena();
+    String message = "\ud83d broken \ude00";
+
+    int length = Utf8.getEncodedLength(message);
+    long address = arena.write(message, length, new long[0]);
+
+    assertEquals("? broken ?", arena.readMessage(address, length));
+  }
+
+  @Test public void shouldReleaseTheChunksBeforeTheOldestRecordRetained() {
+    TraceArena arena = new TraceArena();
+    String message = givenMessage(1000);
+    long[] addresses = new long[1000];
+    for (int i = 0; i < addresses.length; i++) {
+      addresses[i] = arena.write(message, message.length(), new long[] { i });
+    }
+    long memoryFootprint = arena.getMemoryFootprint();
+
+    arena.discardBefore(addresses[900]);
+
+    assertTrue(arena.getMemoryFootprint() < memoryFootprint / 4);
+    assertEquals(message, arena.readMessage(addresses[900], message.length()));
+  }
+
+  @Test public void shouldRewriteTheNewestRecordOnlyIfNoSnapshotSharesIt() {
+    TraceArena arena = new TraceArena();
+    long first = arena.write("10%", 3, new long[0]);
+    arena.discardFrom(first);
+    long rewritten = arena.write("20%", 3, new long[0]);
+
+    TraceArena snapshot = arena.snapshot();
+    arena.discardFrom(rewritten);
+    long afterSnapshot = arena.write("30%", 3, new long[0]);
+
+    assertEquals(first, rewritten);
+    assertTrue(afterSnapshot > rewritten);
+    assertEquals("20%", snapshot.readMessage(rewritten, 3));
+  }
+
+  private static String givenMessage(int length) {
+    StringBuilder message = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      message.append((char) ('a' + i % 26));
+    }
+    return message.toString();
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+
+import java.util.List;
+
+/**
+ * Micro-benchmark comparing TraceBuffer with the previous LinkedList based implementation. For
+ * every buffer size it measures the cost of appending batches to a full buffer (which discards
+ * the oldest traces), replacing the last trace and reading rows by index the way the ListView
+ * adapter does. Run it from the IDE or with the test runtime classpath, it is not a unit test.
+ */
+public class TraceBufferBenchmark {
+
+  private static final int[] BUFFER_SIZES = { 2_500, 50_000, 500_000 };
+  private static final int BATCH_SIZE = 10;
+  private static final int BATCHES = 2_000;
+  private static final int INDEXED_READS = 2_000;
+  private static final int WARM_UP_ROUNDS = 2;
+
+  public static void main(String[] args) {
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      run(round == WARM_UP_ROUNDS);
+    }
+  }
+
+  private static void run(boolean printResults) {
+    List<Trace> batch = TraceBufferTest.givenTraces(0, BATCH_SIZE);
+    for (int bufferSize : BUFFER_SIZES) {
+      List<Trace> initialTraces = TraceBufferTest.givenTraces(0, bufferSize);
+
+      TraceBuffer traceBuffer = new TraceBuffer(bufferSize);
+      traceBuffer.add(initialTraces);
+      long ringAppendNanos = measureAppend(traceBuffer, batch);
+      long ringReadNanos = measureIndexedReads(traceBuffer.getTraces());
+
+      LinkedTraceBuffer linkedTraceBuffer = new LinkedTraceBuffer(bufferSize);
+      linkedTraceBuffer.add(initialTraces);
+      long linkedAppendNanos = measureAppend(linkedTraceBuffer, batch);
+      long linkedReadNanos = measureIndexedReads(linkedTraceBuffer.getTraces());
+
+      if (!printResults) {
+        continue;
+      }
+      System.out.println(String.format(
+          "%7d traces | append+evict %8.1f ns/batch vs %8.1f | get(i) %8.1f ns vs %10.1f",
+          bufferSize, (double) ringAppendNanos / BATCHES, (double) linkedAppendNanos / BATCHES,
+          (double) ringReadNanos / INDEXED_READS, (double) linkedReadNanos / INDEXED_READS));
+    }
+  }
+
+  private static long measureAppend(TraceBuffer traceBuffer, List<Trace> batch) {
+    long start = System.nanoTime();
+    for (int i = 0; i < BATCHES; i++) {
+      traceBuffer.add(batch);
+      traceBuffer.replaceLast(batch.get(0));
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureAppend(LinkedTraceBuffer traceBuffer, List<Trace> batch) {
+    long start = System.nanoTime();
+    for (int i = 0; i < BATCHES; i++) {
+      traceBuffer.add(batch);
+      traceBuffer.removeLast();
+      traceBuffer.add(batch.subList(0, 1));
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long measureIndexedReads(List<Trace> traces) {
+    long start = System.nanoTime();
+    int size = traces.size();
+    int checksum = 0;
+    for (int i = 0; i < INDEXED_READS; i++) {
+      int position = (int) ((i * 2654435761L) % size);
+      checksum += traces.get(position).getMessage().length();
+    }
+    long elapsed = System.nanoTime() - start;
+    if (checksum == 42) {
+      System.out.print("");
+    }
+    return elapsed;
+  }
+}
@@ -0,0 +1,255 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceLevel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceBufferTest {
+
+  /**
+   * Bytes taken by a trace with a one char message, no tag and no thread id: its entries in the
+   * arrays, the message and six one byte fields. Traces are created one after the other with the
+   * same timestamp, so their sequence and timestamp deltas take a byte.
+   */
+  static final int TRACE_BYTES = 8 + 4 + 1 + 1 + 6;
+
+  private static final long ANY_TIMESTAMP = 1_000_000;
+
+  private static final String[] TYPICAL_MESSAGES = {
+      "Skipped %d frames! The application may be doing too much work.",
+      "Request took %d ms: GET https://api.example.com/v1/users/%d",
+      "Sync finished for req-%x, %d items updated",
+      "onResume MainActivity@%x",
+      "java.net.SocketTimeoutException: connect timed out after %d ms",
+  };
+  private static final String[] TYPICAL_TAGS =
+      { "Choreographer", "OkHttp", "SyncAdapter", "ActivityThread", "Network" };
+  private static final TraceLevel[] LEVELS = TraceLevel.values();
+
+  @Test public void shouldKeepTracesInInsertionOrder() {
+    TraceBuffer traceBuffer = new TraceBuffer(10);
+
+    traceBuffer.add(givenTraces(0, 3));
+
+    assertMessages(traceBuffer, 0, 3);
+  }
+
+  @Test public void shouldDiscardTheOldestTracesWhenFull() {
+    TraceBuffer traceBuffer = new TraceBuffer(5);
+    traceBuffer.add(givenTraces(0, 4));
+
+    int tracesRemoved = traceBuffer.add(givenTraces(4, 3));
+
+    assertEquals(2, tracesRemoved);
+    assertMessages(traceBuffer, 2, 5);
+  }
+
+  @Test public void shouldKeepTheNewestTracesIfABatchDoesNotFit() {
+    TraceBuffer traceBuffer = new TraceBuffer(3);
+    traceBuffer.add(givenTraces(0, 2));
+
+    int tracesRemoved = traceBuffer.add(givenTraces(2, 5));
+
+    assertEquals(4, tracesRemoved);
+    assertMessages(traceBuffer, 4, 3);
+  }
+
+  @Test public void shouldKeepWorkingAfterWrappingAroundManyTimes() {
+    TraceBuffer traceBuffer = new TraceBuffer(7);
+
+    for (int i = 0; i < 100; i += 3) {
+      traceBuffer.add(givenTraces(i, 3));
+    }
+
+    assertMessages(traceBuffer, 95, 7);
+  }
+
+  @Test public void shouldKeepTheNewestTracesWhenTheBufferShrinks() {
+    TraceBuffer traceBuffer = new TraceBuffer(10);
+    traceBuffer.add(givenTraces(0, 8));
+
+    int tracesRemoved = traceBuffer.setBufferSize(3);
+
+    assertEquals(5, tracesRemoved);
+    assertMessages(traceBuffer, 5, 3);
+  }
+
+  @Test public void shouldAcceptMoreTracesWhenTheBufferGrows() {
+    TraceBuffer traceBuffer = new TraceBuffer(3);
+    traceBuffer.add(givenTraces(0, 3));
+
+    traceBuffer.setBufferSize(6);
+    traceBuffer.add(givenTraces(3, 3));
+
+    assertMessages(traceBuffer, 0, 6);
+  }
+
+  @Test public void shouldReplaceAndRemoveTheLastTrace() {
+    TraceBuffer traceBuffer = new TraceBuffer(4);
+    traceBuffer.add(givenTraces(0, 6));
+
+    traceBuffer.replaceLast(givenTrace(42));
+    assertEquals("42", traceBuffer.get(3).getMessage());
+
+    traceBuffer.removeLast();
+    assertMessages(traceBuffer, 2, 3);
+  }
+
+  @Test public void shouldBeEmptyAfterClear() {
+    TraceBuffer traceBuffer = new TraceBuffer(4);
+    traceBuffer.add(givenTraces(0, 6));
+
+    traceBuffer.clear();
+    traceBuffer.add(givenTraces(10, 1));
+
+    assertMessages(traceBuffer, 10, 1);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void shouldNotReturnTracesOutOfBounds() {
+    TraceBuffer traceBuffer = new TraceBuffer(4);
+    traceBuffer.add(givenTraces(0, 2));
+
+    traceBuffer.get(2);
+  }
+
+  @Test public void shouldIterateTheTracesView() {
+    TraceBuffer traceBuffer = new TraceBuffer(2);
+    traceBuffer.add(givenTraces(0, 3));
+
+    List<Trace> copy = new ArrayList<>(traceBuffer.getTraces());
+
+    assertEquals(Arrays.asList(givenTrace(1), givenTrace(2)), copy);
+  }
+
+  @Test public void shouldRestoreEveryFieldOfTheTracesStored() {
+    TraceBuffer traceBuffer = new TraceBuffer(4);
+    String message = "caf\u00e9 \ud83d\ude00 retrying";
+    Trace trace = new Trace(TraceLevel.WARNING, "Network", message, 1000, 4321);
+    Trace collapsed = trace.collapse(new Trace(TraceLevel.WARNING, "Network", message, 1250, 4321));
+
+    traceBuffer.add(trace);
+    traceBuffer.add(collapsed);
+
+    assertSameTrace(trace, traceBuffer.get(0));
+    assertSameTrace(collapsed, traceBuffer.get(1));
+  }
+
+  @Test public void shouldCountTheExactBytesOfTheTracesStored() {
+    TraceBuffer traceBuffer = new TraceBuffer(4);
+
+    traceBuffer.add(givenTrace(7));
+    traceBuffer.add(new Trace(TraceLevel.INFO, "caf\u00e9", ANY_TIMESTAMP));
+    assertEquals(TRACE_BYTES + TRACE_BYTES + 4, traceBuffer.getMemoryFootprint());
+
+    traceBuffer.replaceLast(givenTrace(8));
+    assertEquals(2 * TRACE_BYTES, traceBuffer.getMemoryFootprint());
+
+    traceBuffer.removeLast();
+    assertEquals(TRACE_BYTES, traceBuffer.getMemoryFootprint());
+
+    traceBuffer.clear();
+    assertEquals(0, traceBuffer.getMemoryFootprint());
+  }
+
+  @Test public void shouldDiscardTheOldestTracesUntilTheMaxBytesAreRespected() {
+    TraceBuffer traceBuffer = new TraceBuffer(10);
+    traceBuffer.setMaxBytes(3 * TRACE_BYTES);
+
+    int tracesRemoved = traceBuffer.add(givenTraces(0, 5));
+    assertEquals(2, tracesRemoved);
+    assertMessages(traceBuffer, 2, 3);
+
+    tracesRemoved = traceBuffer.setMaxBytes(TRACE_BYTES);
+    assertEquals(2, tracesRemoved);
+    assertMessages(traceBuffer, 4, 1);
+  }
+
+  @Test public void shouldDiscardANewTraceTakingMoreBytesThanTheMax() {
+    TraceBuffer traceBuffer = new TraceBuffer(10);
+    traceBuffer.setMaxBytes(100);
+    traceBuffer.add(givenTraces(0, 2));
+
+    int tracesRemoved = traceBuffer.add(new Trace(TraceLevel.DEBUG, givenMessage(100)));
+
+    assertEquals(3, tracesRemoved);
+    assertEquals(0, traceBuffer.getCurrentNumberOfTraces());
+    assertEquals(0, traceBuffer.getMemoryFootprint());
+  }
+
+  @Test public void shouldRetainAMillionTracesInLessThan100MegabytesOfHeap() {
+    int numberOfTraces = 1_000_000;
+    long heapBefore = getUsedHeap();
+
+    TraceBuffer traceBuffer = new TraceBuffer(numberOfTraces);
+    for (int i = 0; i < numberOfTraces; i++) {
+      traceBuffer.add(givenTypicalTrace(i));
+    }
+    long usedHeap = getUsedHeap() - heapBefore;
+
+    assertTrue(usedHeap + " bytes", usedHeap < 100_000_000);
+    assertEquals(numberOfTraces, traceBuffer.getCurrentNumberOfTraces());
+    assertEquals("onResume MainActivity@3", traceBuffer.get(3).getMessage());
+  }
+
+  private static void assertMessages(TraceBuffer traceBuffer, int firstMessage, int count) {
+    assertEquals(count, traceBuffer.getCurrentNumberOfTraces());
+    List<Trace> traces = traceBuffer.getTraces();
+    assertEquals(count, traces.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(String.valueOf(firstMessage + i), traces.get(i).getMessage());
+    }
+  }
+
+  private static void assertSameTrace(Trace expected, Trace actual) {
+    assertEquals(expected.getSequence(), actual.getSequence());
+    assertEquals(expected.getLevel(), actual.getLevel());
+    assertEquals(expected.getTag(), actual.getTag());
+    assertEquals(expected.getMessage(), actual.getMessage());
+    assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    assertEquals(expected.getThreadId(), actual.getThreadId());
+    assertEquals(expected.getRepeatCount(), actual.getRepeatCount());
+    assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp());
+  }
+
+  static String givenMessage(int length) {
+    return new String(new char[length]).replace('\0', 'x');
+  }
+
+  /**
+   * Returns one of the traces an application typically logs, with numbers changing with i.
+   */
+  static Trace givenTypicalTrace(int i) {
+    int kind = i % TYPICAL_MESSAGES.length;
+    String message = String.format(TYPICAL_MESSAGES[kind], i, i % 997);
+    return new Trace(LEVELS[i % LEVELS.length], TYPICAL_TAGS[kind], message, i, 1000 + kind);
+  }
+
+  static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  static List<Trace> givenTraces(int firstMessage, int count) {
+    List<Trace> traces = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      traces.add(givenTrace(firstMessage + i));
+    }
+    return traces;
+  }
+
+  static Trace givenTrace(int message) {
+    return new Trace(TraceLevel.DEBUG, String.valueOf(message), ANY_TIMESTAMP);
+  }
+}
@@ -0,0 +1,206 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenMessage;
+import static com.github.nodeepshit.presenter.TraceBufferTest.givenTraces;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceHistoryTest {
+
+  private static final int SEGMENT_SIZE = 4 * 1024;
+  private static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+
+  private File directory;
+
+  @Before public void setUp() throws IOException {
+    directory = Files.createTempDirectory("trace-history").toFile();
+  }
+
+  @After public void tearDown() {
+    deleteDirectory(directory);
+  }
+
+  @Test public void shouldReadTheTracesAppendedNewestPageFirst() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    List<Trace> traces = givenTraces(0, 1000);
+    appendTraces(history, 0, traces);
+
+    List<Trace> page = new ArrayList<>();
+    long end = history.readBefore(1000, TraceFilter.NONE, 300, page);
+    List<Trace> previousPage = new ArrayList<>();
+    long previousEnd = history.readBefore(end, TraceFilter.NONE, 300, previousPage);
+
+    assertEquals(700, end);
+    assertEquals(400, previousEnd);
+    assertTracesEqual(traces.subList(700, 1000), page);
+    assertTracesEqual(traces.subList(400, 700), previousPage);
+  }
+
+  @Test public void shouldReturnNoPositionOnceTheOldestTraceIsRead() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    List<Trace> traces = givenTraces(0, 100);
+    appendTraces(history, 0, traces);
+
+    List<Trace> page = new ArrayList<>();
+    long end = history.readBefore(100, TraceFilter.NONE, 300, page);
+
+    assertEquals(TraceHistory.NO_POSITION, end);
+    assertTracesEqual(traces, page);
+    assertFalse(history.hasTracesBefore(0));
+  }
+
+  @Test public void shouldRestoreEveryFieldOfTheTracesAppended() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    Trace trace = Trace.restore(42, TraceLevel.WARNING, "N\u00e9t", "caf\u00e9 \ud83d\ude00",
+        1000, 7, 3, 1500);
+    history.append(0, trace);
+
+    List<Trace> page = new ArrayList<>();
+    history.readBefore(1, TraceFilter.NONE, 1, page);
+
+    Trace read = page.get(0);
+    assertEquals(42, read.getSequence());
+    assertEquals(TraceLevel.WARNING, read.getLevel());
+    assertEquals("N\u00e9t", read.getTag());
+    assertEquals("caf\u00e9 \ud83d\ude00", read.getMessage());
+    assertEquals(1000, read.getTimestamp());
+    assertEquals(7, read.getThreadId());
+    assertEquals(3, read.getRepeatCount());
+    assertEquals(1500, read.getLastTimestamp());
+  }
+
+  @Test public void shouldReadOnlyTheTracesMatchingTheFilter() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    for (int i = 0; i < 1000; i++) {
+      TraceLevel level = i % 10 == 0 ? TraceLevel.ERROR : TraceLevel.DEBUG;
+      history.append(i, new Trace(level, String.valueOf(i)));
+    }
+
+    List<Trace> page = new ArrayList<>();
+    long end = history.readBefore(1000, new TraceFilter("", TraceLevel.ERROR), 5, page);
+
+    assertEquals(950, end);
+    assertEquals(5, page.size());
+    assertEquals("950", page.get(0).getMessage());
+    assertEquals("990", page.get(4).getMessage());
+  }
+
+  @Test public void shouldDeleteTheOldestSegmentsOnceTheMaxBytesAreExceeded() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, 3 * SEGMENT_SIZE);
+    List<Trace> traces = givenTraces(0, 5000);
+    appendTraces(history, 0, traces);
+
+    List<Trace> page = new ArrayList<>();
+    long end = history.readBefore(5000, TraceFilter.NONE, 5000, page);
+
+    assertEquals(3, directory.listFiles().length);
+    assertEquals(TraceHistory.NO_POSITION, end);
+    assertTrue(page.size() < 5000);
+    assertTracesEqual(traces.subList(5000 - page.size(), 5000), page);
+  }
+
+  @Test public void shouldTruncateTheMessagesLargerThanASegment() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    String message = givenMessage(10 * SEGMENT_SIZE);
+    history.append(0, new Trace(TraceLevel.INFO, message));
+
+    List<Trace> page = new ArrayList<>();
+    history.readBefore(1, TraceFilter.NONE, 1, page);
+
+    String read = page.get(0).getMessage();
+    assertTrue(read.length() < SEGMENT_SIZE);
+    assertTrue(message.startsWith(read));
+  }
+
+  @Test public void shouldDeleteTheSegmentFilesFoundWhenCreated() throws IOException {
+    TraceHistory previousHistory = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    appendTraces(previousHistory, 0, givenTraces(0, 100));
+    previousHistory.close();
+
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    List<Trace> page = new ArrayList<>();
+    long end = history.readBefore(100, TraceFilter.NONE, 100, page);
+
+    assertEquals(0, directory.listFiles().length);
+    assertEquals(TraceHistory.NO_POSITION, end);
+    assertTrue(page.isEmpty());
+  }
+
+  @Test public void shouldNotShareFilesBetweenHistoriesCreatedInTheSameDirectory()
+      throws IOException {
+    TraceHistory history = TraceHistory.create(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    List<Trace> traces = givenTraces(0, 100);
+    appendTraces(history, 0, traces);
+
+    TraceHistory otherHistory = TraceHistory.create(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    appendTraces(otherHistory, 0, givenTraces(100, 100));
+    List<Trace> page = new ArrayList<>();
+    history.readBefore(100, TraceFilter.NONE, 100, page);
+
+    assertEquals(2, directory.listFiles().length);
+    assertTracesEqual(traces, page);
+  }
+
+  @Test public void shouldDeleteTheDirectoriesOfAPreviousProcessWhenCreated() throws IOException {
+    File previousDirectory = new File(directory, "history-999");
+    new TraceHistory(previousDirectory, SEGMENT_SIZE, UNLIMITED_BYTES)
+        .append(0, givenTraces(0, 1).get(0));
+
+    TraceHistory.create(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+
+    assertFalse(previousDirectory.exists());
+  }
+
+  @Test public void shouldDeleteItsFilesOnceClosed() throws IOException {
+    TraceHistory history = new TraceHistory(directory, SEGMENT_SIZE, UNLIMITED_BYTES);
+    appendTraces(history, 0, givenTraces(0, 100));
+
+    history.close();
+
+    assertFalse(directory.exists());
+  }
+
+  private static void appendTraces(TraceHistory history, long firstPosition, List<Trace> traces)
+      throws IOException {
+    for (int i = 0; i < traces.size(); i++) {
+      history.append(firstPosition + i, traces.get(i));
+    }
+  }
+
+  private static void assertTracesEqual(List<Trace> expected, List<Trace> traces) {
+    assertEquals(expected.size(), traces.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getSequence(), traces.get(i).getSequence());
+      assertEquals(expected.get(i), traces.get(i));
+    }
+  }
+
+  static void deleteDirectory(File directory) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isDirectory()) {
+          deleteDirectory(file);
+        } else {
+          file.delete();
+        }
+      }
+    }
+    directory.delete();
+  }
+}
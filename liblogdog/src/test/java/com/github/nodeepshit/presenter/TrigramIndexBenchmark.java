@@ -0,0 +1,97 @@
+package com.github.nodeepshit.presenter;
+
+import com.github.nodeepshit.model.Trace;
+import com.github.nodeepshit.model.TraceFilter;
+import com.github.nodeepshit.model.TraceLevel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.nodeepshit.presenter.FilteredTraceBufferTest.search;
+
+/**
+ * Micro-benchmark measuring filter changes over a FilteredTraceBuffer retaining 500k traces,
+ * looking up the filter texts in its TrigramIndex, against searching every message retained. Also
+ * prints the cost of indexing the traces and the memory used by the index. Run it from the IDE or
+ * with the test runtime classpath, it is not a unit test.
+ */
+public class TrigramIndexBenchmark {
+
+  private static final int NUMBER_OF_TRACES = 500_000;
+  private static final int WARM_UP_ROUNDS = 2;
+  private static final int REPETITIONS = 10;
+  private static final String[] FILTERS = {
+      "req-4f2a7", "E10042|E10077|req-4f2b1", "SocketTimeoutException",
+      "\"users/4521\" AND level>=W", "frame",
+  };
+  private static final String[] MESSAGES = {
+      "Skipped %d frames! The application may be doing too much work on its main thread.",
+      "Request took %d ms: GET https://api.example.com/v1/users/%d/friends?page=2",
+      "Request failed with E%d: GET https://api.example.com/v1/users/%d",
+      "Sync finished for req-%x, %d items updated",
+      "java.net.SocketTimeoutException: failed to connect to api.example.com (port %d) after "
+          + "%d ms",
+  };
+
+  private static int checksum;
+
+  public static void main(String[] args) {
+    List<Trace> traces = givenTraces();
+    for (int round = 0; round <= WARM_UP_ROUNDS; round++) {
+      run(traces, round == WARM_UP_ROUNDS);
+    }
+  }
+
+  private static void run(List<Trace> traces, boolean printResults) {
+    FilteredTraceBuffer traceBuffer = new FilteredTraceBuffer(NUMBER_OF_TRACES);
+    long start = System.nanoTime();
+    for (Trace trace : traces) {
+      traceBuffer.add(trace);
+    }
+    long addNanos = System.nanoTime() - start;
+    if (printResults) {
+      System.out.println(String.format("add %6.0f ns/trace, index %6.1f MB",
+          (double) addNanos / NUMBER_OF_TRACES, traceBuffer.getIndexMemoryFootprint() / 1e6));
+    }
+    for (String text : FILTERS) {
+      TraceFilter filter = new TraceFilter(text, TraceLevel.VERBOSE);
+      long indexNanos = 0;
+      long scanNanos = 0;
+      for (int i = 0; i < REPETITIONS; i++) {
+        search(traceBuffer, TraceFilter.NONE);
+        start = System.nanoTime();
+        search(traceBuffer, filter);
+        indexNanos += System.nanoTime() - start;
+        scanNanos += measureScan(traces, filter);
+      }
+      if (printResults) {
+        System.out.println(String.format("%-28s index %7.2f ms | scan %7.2f ms, %6d rows", text,
+            indexNanos / 1e6 / REPETITIONS, scanNanos / 1e6 / REPETITIONS,
+            traceBuffer.getNumberOfRows()));
+      }
+    }
+  }
+
+  private static long measureScan(List<Trace> traces, TraceFilter filter) {
+    long start = System.nanoTime();
+    for (Trace trace : traces) {
+      if (filter.matches(trace.getLevel(), trace.getTag(), trace.getMessage())) {
+        checksum++;
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<Trace> givenTraces() {
+    Random random = new Random(42);
+    TraceLevel[] levels = TraceLevel.values();
+    List<Trace> traces = new ArrayList<>(NUMBER_OF_TRACES);
+    for (int i = 0; i < NUMBER_OF_TRACES; i++) {
+      String message = String.format(MESSAGES[random.nextInt(MESSAGES.length)],
+          random.nextInt(0x100000), random.nextInt(10000));
+      traces.add(new Trace(levels[random.nextInt(levels.length)], message));
+    }
+    return traces;
+  }
+}